@@ -93,6 +93,7 @@ CREATE TABLE IF NOT EXISTS guild_settings (
 
     -- AI and system settings
     ai_enabled BOOLEAN DEFAULT TRUE,
+    response_cache_enabled BOOLEAN DEFAULT FALSE,
     system_prompt_prefix TEXT,
     ignored_channels TEXT,
     disabled_commands TEXT,
@@ -119,6 +120,7 @@ COMMENT ON COLUMN guild_settings.quirks IS 'Custom speech patterns/catchphrases
 COMMENT ON COLUMN guild_settings.topics_interest IS 'Topics Pudel should be more engaged about';
 COMMENT ON COLUMN guild_settings.topics_avoid IS 'Topics Pudel should politely redirect away from';
 COMMENT ON COLUMN guild_settings.ai_enabled IS 'Whether AI/chatbot features are enabled for this guild';
+COMMENT ON COLUMN guild_settings.response_cache_enabled IS 'Whether replies to semantically repeated questions are served from cache';
 COMMENT ON COLUMN guild_settings.system_prompt_prefix IS 'Custom system prompt prefix for LLM customization per guild';
 COMMENT ON COLUMN guild_settings.ignored_channels IS 'Comma-separated list of channel IDs to completely ignore';
 
@@ -224,12 +226,18 @@ CREATE INDEX IF NOT EXISTS idx_subscriptions_target ON subscriptions(target_id,
 --
 -- dialogue_history: Stores conversation history
 --   - id, user_id, channel_id, user_message, bot_response, intent, created_at
+--   - search_vector: generated tsvector with a GIN index, for memory retrieval
 --
 -- user_preferences: Stores per-user preferences within guild
 --   - user_id, preferred_name, custom_settings (JSONB), notes, created_at, updated_at
 --
 -- memory: Key-value memory storage
 --   - id, key, value, category, created_by, created_at, updated_at
+--   - search_vector: generated tsvector with a GIN index, for memory retrieval
+--
+-- passive_context: Messages Pudel observed without replying (created on first use)
+--   - id, user_id, channel_id, content, intent, sentiment, entities (JSONB), created_at
+--   - search_vector: generated tsvector with a GIN index, for memory retrieval
 --
 -- memory_embeddings: Vector embeddings for semantic search (requires pgvector)
 --   - id, memory_id, embedding (vector), created_at
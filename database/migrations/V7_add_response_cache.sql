@@ -0,0 +1,8 @@
+-- Pudel Discord Bot - Migration V7
+-- Version: V7
+-- Description: Adds the per-guild opt-in for the semantic response cache
+
+ALTER TABLE guild_settings
+    ADD COLUMN IF NOT EXISTS response_cache_enabled BOOLEAN DEFAULT FALSE;
+
+COMMENT ON COLUMN guild_settings.response_cache_enabled IS 'Whether replies to semantically repeated questions are served from cache';
@@ -0,0 +1,46 @@
+-- Pudel Discord Bot - Migration V8
+-- Version: V8
+-- Description: Adds full-text search vectors to the memory tables of existing tenant schemas
+--
+-- The bot does the same on startup (pudel.memory.textSearch.backfillOnStartup) using the
+-- configured language; this script is for applying it ahead of a deploy, with 'english'.
+-- Adding a generated column rewrites the table, so large tenants take a while.
+
+DO $$
+DECLARE
+    tenant RECORD;
+BEGIN
+    FOR tenant IN
+        SELECT schema_name FROM information_schema.schemata
+        WHERE schema_name LIKE 'guild\_%' OR schema_name LIKE 'user\_%'
+    LOOP
+        IF to_regclass(format('%I.dialogue_history', tenant.schema_name)) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I.dialogue_history ADD COLUMN IF NOT EXISTS search_vector tsvector '
+                || 'GENERATED ALWAYS AS (setweight(to_tsvector(''english'', coalesce(user_message, '''')), ''A'') || '
+                || 'setweight(to_tsvector(''english'', coalesce(bot_response, '''')), ''B'')) STORED',
+                tenant.schema_name);
+            EXECUTE format('CREATE INDEX IF NOT EXISTS idx_dialogue_search ON %I.dialogue_history USING gin(search_vector)',
+                tenant.schema_name);
+        END IF;
+
+        IF to_regclass(format('%I.memory', tenant.schema_name)) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I.memory ADD COLUMN IF NOT EXISTS search_vector tsvector '
+                || 'GENERATED ALWAYS AS (setweight(to_tsvector(''english'', coalesce(key, '''')), ''A'') || '
+                || 'setweight(to_tsvector(''english'', coalesce(value, '''')), ''B'')) STORED',
+                tenant.schema_name);
+            EXECUTE format('CREATE INDEX IF NOT EXISTS idx_memory_search ON %I.memory USING gin(search_vector)',
+                tenant.schema_name);
+        END IF;
+
+        IF to_regclass(format('%I.passive_context', tenant.schema_name)) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I.passive_context ADD COLUMN IF NOT EXISTS search_vector tsvector '
+                || 'GENERATED ALWAYS AS (to_tsvector(''english'', coalesce(content, ''''))) STORED',
+                tenant.schema_name);
+            EXECUTE format('CREATE INDEX IF NOT EXISTS idx_passive_search ON %I.passive_context USING gin(search_vector)',
+                tenant.schema_name);
+            -- Superseded by idx_passive_search
+            EXECUTE format('DROP INDEX IF EXISTS %I.%I', tenant.schema_name,
+                'idx_' || replace(tenant.schema_name, '_', '') || '_passive_content');
+        END IF;
+    END LOOP;
+END $$;
@@ -0,0 +1,44 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}.
+ * <p>
+ * Accepts the usual JMH command line and always adds the gc profiler, so every result
+ * reports allocation per operation ({@code gc.alloc.rate.norm}) next to the score.
+ * None of the benchmarks touch Discord, Ollama or Postgres, so they run offline.
+ */
+public final class PudelBenchmarks {
+
+    private PudelBenchmarks() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.analyzer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import worldstandard.group.pudel.model.analyzer.TextAnalysis;
+import worldstandard.group.pudel.model.analyzer.TextAnalyzerService;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pattern-based analysis used on the passive and chatbot paths when the LLM is skipped.
+ * <p>
+ * The service is never initialized, so no analysis model is probed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextAnalyzerBenchmark {
+
+    @Param({"GREETING", "QUESTION", "MEMORY", "LONG"})
+    public String input;
+
+    private TextAnalyzerService analyzer;
+    private String text;
+
+    @Setup
+    public void setup() {
+        OllamaConfig config = new OllamaConfig();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        analyzer = new TextAnalyzerService(config, registry, new LlmScheduler(config, registry),
+                new OllamaEndpointPool(config, registry), new DiscordSyntaxProcessor());
+        text = switch (input) {
+            case "GREETING" -> "hi pudel! good morning :)";
+            case "QUESTION" -> "how do I set up the log channel so that commands show up there?";
+            case "MEMORY" -> "remember that my birthday is on March 3rd and I really like chocolate cake";
+            default -> "I've been playing the new patch all weekend and honestly I'm not sure how I feel. "
+                    + "The combat changes are great but the economy is broken, everything costs way too much, "
+                    + "and my friends stopped playing because of it. Do you think they will fix it soon? "
+                    + "Anyway thanks for listening, you're the best pudel.";
+        };
+    }
+
+    @Benchmark
+    public TextAnalysis analyzeFast() {
+        return analyzer.analyzeFast(text);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.brain;
+
+import org.openjdk.jmh.annotations.*;
+import worldstandard.group.pudel.core.brain.memory.MemoryManager;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword extraction that {@link MemoryManager} runs on every message before searching memories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryKeywordBenchmark {
+
+    @Param({"SHORT", "LONG"})
+    public String input;
+
+    private String message;
+
+    @Setup
+    public void setup() {
+        message = switch (input) {
+            case "SHORT" -> "what was the name of my dog again?";
+            default -> "Last week I told you about the trip to Kyoto with my sister, we visited the temples, "
+                    + "ate way too much ramen and got lost near the station twice. Do you remember which "
+                    + "temple I said was my favourite, and what the weather was like when we went there?";
+        };
+    }
+
+    @Benchmark
+    public Set<String> extractKeywords() {
+        return MemoryManager.extractKeywords(message);
+    }
+}
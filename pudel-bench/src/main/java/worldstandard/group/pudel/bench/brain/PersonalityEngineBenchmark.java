@@ -0,0 +1,67 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.brain;
+
+import org.openjdk.jmh.annotations.*;
+import worldstandard.group.pudel.core.brain.personality.PersonalityEngine;
+import worldstandard.group.pudel.core.brain.personality.PersonalityEngine.PersonalityProfile;
+import worldstandard.group.pudel.core.service.ChatbotService.PudelPersonality;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trait extraction in {@link PersonalityEngine#buildProfile}, which runs for every reply.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersonalityEngineBenchmark {
+
+    @Param({"DEFAULT", "CUSTOM"})
+    public String personality;
+
+    private PersonalityEngine engine;
+    private PudelPersonality settings;
+
+    @Setup
+    public void setup() {
+        engine = new PersonalityEngine();
+        settings = switch (personality) {
+            case "DEFAULT" -> PudelPersonality.defaultPersonality();
+            default -> new PudelPersonality(
+                    "Pudel is a retired ship's cat who sailed the northern seas and now keeps the server tidy.",
+                    "Cheerful, curious and a little sarcastic, but always kind and protective of newcomers.",
+                    "Loves fish, rainy days, old maps and puzzle games; dislikes loud noises.",
+                    "Speaks casually with short sentences, sometimes ends with a playful 'nya'.",
+                    "Captain Pudel",
+                    "en",
+                    "medium",
+                    "casual",
+                    "moderate",
+                    "Counts things out loud; calls everyone 'crewmate'; hums sea shanties.",
+                    "sailing, cats, board games, weather, history",
+                    "politics, religion"
+            );
+        };
+    }
+
+    @Benchmark
+    public PersonalityProfile buildProfile() {
+        return engine.buildProfile(settings);
+    }
+}
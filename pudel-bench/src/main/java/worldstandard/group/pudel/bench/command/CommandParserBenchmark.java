@@ -0,0 +1,121 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.command;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import worldstandard.group.pudel.api.command.TextCommandHandler;
+import worldstandard.group.pudel.core.command.CommandParser;
+import worldstandard.group.pudel.core.command.CommandRegistry;
+import worldstandard.group.pudel.core.command.ParsedCommand;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message command parsing cost: the original split/concat path versus {@link CommandParser}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandParserBenchmark {
+
+    private static final long SELF_ID = 1234567890123456789L;
+    private static final String SELF_ID_STRING = Long.toString(SELF_ID);
+    private static final String PREFIX = "!";
+
+    private static final String[] COMMANDS = {
+            "help", "enable", "disable", "ping", "settings", "prefix", "verbosity", "cooldown",
+            "logchannel", "botchannel", "biography", "personality", "preferences", "dialoguestyle",
+            "ai", "ignore", "listen"
+    };
+
+    @Param({"PREFIX_COMMAND", "MENTION_COMMAND", "CHAT"})
+    public String kind;
+
+    private String content;
+    private CommandRegistry registry;
+
+    @Setup
+    public void setup() {
+        registry = new CommandRegistry();
+        TextCommandHandler noop = _ -> { };
+        for (String command : COMMANDS) {
+            registry.registerCommand(command, noop);
+        }
+
+        content = switch (kind) {
+            case "PREFIX_COMMAND" -> "!Ignore add #general #random #memes";
+            case "MENTION_COMMAND" -> "<@" + SELF_ID_STRING + "> settings prefix ?";
+            default -> "hey did anyone see the match last night? that ending was wild";
+        };
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        String messageContent = content.trim();
+
+        if (messageContent.startsWith(PREFIX)) {
+            legacyHandle(messageContent, bh);
+            return;
+        }
+
+        String mentionPrefix = "<@" + SELF_ID_STRING + "> ";
+        String mentionPrefixAlt = "<@!" + SELF_ID_STRING + "> ";
+        if (messageContent.startsWith(mentionPrefix) || messageContent.startsWith(mentionPrefixAlt)) {
+            String withoutMention = messageContent.startsWith(mentionPrefix)
+                    ? messageContent.substring(mentionPrefix.length()).trim()
+                    : messageContent.substring(mentionPrefixAlt.length()).trim();
+            if (!withoutMention.isEmpty()) {
+                String[] parts = withoutMention.split("\\s+", 2);
+                String potentialCommand = parts[0].toLowerCase();
+                if (registry.hasCommand(potentialCommand)) {
+                    legacyHandle(PREFIX + withoutMention, bh);
+                    return;
+                }
+            }
+        }
+        bh.consume(false);
+    }
+
+    @Benchmark
+    public void parser(Blackhole bh) {
+        ParsedCommand parsed = CommandParser.parse(content, PREFIX, SELF_ID, registry);
+        if (parsed != null && parsed.isResolved()) {
+            bh.consume(parsed.getHandler());
+            bh.consume(parsed.getCommand());
+            // Handlers almost always read their arguments
+            bh.consume(parsed.getArgs());
+            return;
+        }
+        bh.consume(parsed);
+    }
+
+    private void legacyHandle(String messageContent, Blackhole bh) {
+        String withoutPrefix = messageContent.substring(PREFIX.length()).trim();
+        if (withoutPrefix.isEmpty()) {
+            return;
+        }
+        String[] parts = withoutPrefix.split("\\s+", 2);
+        String command = parts[0].toLowerCase();
+        String argsString = parts.length > 1 ? parts[1] : "";
+        String[] args = argsString.isEmpty() ? new String[0] : argsString.split("\\s+");
+        bh.consume(registry.getCommand(command));
+        bh.consume(command);
+        bh.consume(args);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.embedding;
+
+import org.openjdk.jmh.annotations.*;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor.DiscordContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discord markup normalization that runs before every LLM call and every embedding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiscordSyntaxBenchmark {
+
+    @Param({"PLAIN", "MENTIONS", "MARKUP"})
+    public String input;
+
+    private DiscordSyntaxProcessor processor;
+    private DiscordContext context;
+    private String content;
+
+    @Setup
+    public void setup() {
+        processor = new DiscordSyntaxProcessor();
+        context = new DiscordContext(
+                "100000000000000001", "Pudel", "Pudel-chan",
+                Map.of("200000000000000001", "alice", "200000000000000002", "bob"),
+                Map.of("300000000000000001", "Moderators"),
+                Map.of("400000000000000001", "general")
+        );
+        content = switch (input) {
+            case "PLAIN" -> "hey pudel what do you think about the new update, is it any good?";
+            case "MENTIONS" -> "<@100000000000000001> can you ask <@200000000000000001> and <@!200000000000000002>"
+                    + " to check <#400000000000000001>? ping <@&300000000000000001> if not";
+            default -> "**look** at this <:pudelwave:500000000000000001> <a:dance:500000000000000002> "
+                    + "||spoiler|| `code` https://example.com/page?x=1 <t:1700000000:R> ~~old~~ __new__";
+        };
+    }
+
+    @Benchmark
+    public String preprocessForLLM() {
+        return processor.preprocessForLLM(content, context);
+    }
+
+    @Benchmark
+    public String preprocessForEmbedding() {
+        return processor.preprocessForEmbedding(content);
+    }
+}
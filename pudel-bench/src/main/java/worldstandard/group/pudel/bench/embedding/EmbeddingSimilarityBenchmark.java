@@ -0,0 +1,88 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor;
+import worldstandard.group.pudel.model.embedding.OllamaEmbeddingService;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory similarity scoring in {@link OllamaEmbeddingService}.
+ * <p>
+ * The service is never initialized, so no endpoint is called; only the pure
+ * vector math is exercised.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddingSimilarityBenchmark {
+
+    @Param({"384", "768"})
+    public int dimension;
+
+    @Param({"100", "1000"})
+    public int candidates;
+
+    private OllamaEmbeddingService service;
+    private float[] query;
+    private float[] other;
+    private Map<String, float[]> candidateEmbeddings;
+
+    @Setup
+    public void setup() {
+        OllamaConfig config = new OllamaConfig();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new OllamaEmbeddingService(config, new DiscordSyntaxProcessor(),
+                new OllamaEndpointPool(config, registry), new LlmScheduler(config, registry));
+        SplittableRandom random = new SplittableRandom(42);
+        query = randomVector(random);
+        other = randomVector(random);
+        candidateEmbeddings = new HashMap<>();
+        for (int i = 0; i < candidates; i++) {
+            candidateEmbeddings.put("memory-" + i, randomVector(random));
+        }
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return service.cosineSimilarity(query, other);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Double>> findSimilarTop5() {
+        return service.findSimilar(query, candidateEmbeddings, 5);
+    }
+
+    private float[] randomVector(SplittableRandom random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) (random.nextDouble() * 2 - 1);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.event;
+
+import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.GenericEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import worldstandard.group.pudel.api.event.PluginEventListener;
+import worldstandard.group.pudel.core.event.PluginEventManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PluginEventManager#dispatchEvent} cost by handler count and by where the handlers
+ * sit in the event class hierarchy.
+ * <ul>
+ *     <li>EXACT: handlers registered for the dispatched class</li>
+ *     <li>PARENT: handlers registered for a superclass of the dispatched class</li>
+ *     <li>UNHANDLED: handlers registered for unrelated classes only, like most gateway events</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginEventDispatchBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int handlers;
+
+    @Param({"EXACT", "PARENT", "UNHANDLED"})
+    public String target;
+
+    private PluginEventManager manager;
+    private GenericEvent event;
+
+    @Setup
+    public void setup() {
+        manager = new PluginEventManager();
+        Class<? extends GenericEvent> handled = switch (target) {
+            case "EXACT" -> ChildEvent.class;
+            case "PARENT" -> ParentEvent.class;
+            default -> OtherEvent.class;
+        };
+        for (int i = 0; i < handlers; i++) {
+            manager.registerEventListener(new CountingListener<>(handled), "bench-plugin-" + (i % 4));
+        }
+        // Unrelated registrations that the hierarchy scan has to walk past
+        for (int i = 0; i < 8; i++) {
+            manager.registerEventListener(new CountingListener<>(UnrelatedEvent.class), "bench-other");
+        }
+        event = new ChildEvent();
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole bh) {
+        manager.dispatchEvent(event);
+        bh.consume(event);
+    }
+
+    /**
+     * Events are constructed without a JDA instance; the manager never touches it.
+     */
+    public static class ParentEvent extends Event {
+        public ParentEvent() {
+            super(null, 0);
+        }
+    }
+
+    public static class ChildEvent extends ParentEvent {
+    }
+
+    public static class OtherEvent extends Event {
+        public OtherEvent() {
+            super(null, 0);
+        }
+    }
+
+    public static class UnrelatedEvent extends Event {
+        public UnrelatedEvent() {
+            super(null, 0);
+        }
+    }
+
+    private static final class CountingListener<T extends GenericEvent> implements PluginEventListener<T> {
+        private final Class<T> eventClass;
+        private long count;
+
+        CountingListener(Class<T> eventClass) {
+            this.eventClass = eventClass;
+        }
+
+        @Override
+        public Class<T> getEventClass() {
+            return eventClass;
+        }
+
+        @Override
+        public void onEvent(T event) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the Ollama HTTP API.
+ * <p>
+ * Generation holds one of {@code --ollama-parallel} slots for as long as a real model would:
+ * prompt tokens at the prefill rate, then completion tokens at the generation rate. Requests
+ * beyond the slots wait, the same way Ollama queues them, so overload shows up as queueing
+ * rather than as instant replies. Prompt size is estimated as four characters per token.
+ * Supports {@code /}, {@code /api/tags}, {@code /api/chat}, {@code /api/generate}
+ * (both with and without {@code stream}) and {@code /api/embed}.
+ */
+final class OllamaStandIn {
+
+    private static final Pattern MODEL = Pattern.compile("\"model\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern STREAM = Pattern.compile("\"stream\"\\s*:\\s*true");
+    private static final String ANALYSIS_MARKER = "Analyze this Discord message briefly";
+    private static final String ANALYSIS_REPLY = "INTENT: chat\\nSENTIMENT: neutral\\nLANGUAGE: eng\\nKEYWORDS: replay,load";
+    private static final int ANALYSIS_TOKENS = 16;
+    private static final String[] WORDS = {
+            "sure", "I", "think", "that", "sounds", "like", "a", "great", "idea", "and", "we", "can",
+            "talk", "about", "it", "more", "later", "today", "if", "you", "want", "to"
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore slots;
+    private final double tokensPerSecond;
+    private final double prefillTokensPerSecond;
+    private final int replyTokens;
+    private final long embedMillis;
+    private final int embeddingDimension;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder generations = new LongAdder();
+    private final LongAdder embeddings = new LongAdder();
+
+    private OllamaStandIn(ReplayOptions options) throws IOException {
+        this.slots = new Semaphore(Math.max(1, options.ollamaParallel()), true);
+        this.tokensPerSecond = options.ollamaTokensPerSecond();
+        this.prefillTokensPerSecond = options.ollamaPrefillTokensPerSecond();
+        this.replyTokens = options.ollamaReplyTokens();
+        this.embedMillis = options.ollamaEmbedMs();
+        this.embeddingDimension = options.embeddingDimension();
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    static OllamaStandIn start(ReplayOptions options) throws IOException {
+        OllamaStandIn standIn = new OllamaStandIn(options);
+        standIn.server.start();
+        return standIn;
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Generation requests waiting for a slot. */
+    int getWaiting() {
+        return waiting.get();
+    }
+
+    /** Generation requests holding a slot. */
+    int getRunning() {
+        return running.get();
+    }
+
+    long getGenerationCount() {
+        return generations.sum();
+    }
+
+    long getEmbeddingCount() {
+        return embeddings.sum();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            switch (exchange.getRequestURI().getPath()) {
+                case "/" -> respond(exchange, "text/plain", "Ollama is running");
+                case "/api/tags" -> respond(exchange, "application/json",
+                        "{\"models\":[{\"name\":\"replay-stand-in\",\"size\":0,\"details\":{\"family\":\"replay\"}}]}");
+                case "/api/chat" -> generate(exchange, body, true);
+                case "/api/generate" -> generate(exchange, body, false);
+                case "/api/embed" -> embed(exchange, body);
+                default -> exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void generate(HttpExchange exchange, String body, boolean chat) throws IOException, InterruptedException {
+        String model = model(body);
+        boolean analysis = body.contains(ANALYSIS_MARKER);
+        int promptTokens = Math.max(1, body.length() / 4);
+        int completionTokens = analysis ? ANALYSIS_TOKENS : replyTokens;
+        long start = System.nanoTime();
+
+        waiting.incrementAndGet();
+        slots.acquire();
+        waiting.decrementAndGet();
+        running.incrementAndGet();
+        try {
+            sleepFor(promptTokens, prefillTokensPerSecond);
+            long evalStart = System.nanoTime();
+
+            if (STREAM.matcher(body).find()) {
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                String text = analysis ? ANALYSIS_REPLY : null;
+                for (int i = 0; i < completionTokens; i++) {
+                    sleepFor(1, tokensPerSecond);
+                    String piece = text != null ? (i == 0 ? text : "") : WORDS[i % WORDS.length] + " ";
+                    out.write((chunk(model, chat, piece) + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+                out.write((done(model, chat, "", start, evalStart, promptTokens, completionTokens) + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            } else {
+                sleepFor(completionTokens, tokensPerSecond);
+                String text = analysis ? ANALYSIS_REPLY : reply(completionTokens);
+                respond(exchange, "application/json",
+                        done(model, chat, text, start, evalStart, promptTokens, completionTokens));
+            }
+            generations.increment();
+        } finally {
+            running.decrementAndGet();
+            slots.release();
+        }
+    }
+
+    private void embed(HttpExchange exchange, String body) throws IOException, InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(embedMillis);
+        List<String> inputs = inputs(body);
+        StringBuilder json = new StringBuilder(inputs.size() * embeddingDimension * 10 + 64)
+                .append("{\"model\":\"").append(model(body)).append("\",\"embeddings\":[");
+        for (int n = 0; n < inputs.size(); n++) {
+            // Deterministic per input, so identical texts embed identically
+            SplittableRandom random = new SplittableRandom(inputs.get(n).hashCode());
+            json.append(n > 0 ? ",[" : "[");
+            for (int i = 0; i < embeddingDimension; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append((float) (random.nextDouble() * 2 - 1));
+            }
+            json.append(']');
+        }
+        json.append("]}");
+        embeddings.add(inputs.size());
+        respond(exchange, "application/json", json.toString());
+    }
+
+    /**
+     * Raw JSON string values of {@code input}, which is either a string or an array of strings.
+     */
+    private static List<String> inputs(String body) {
+        List<String> inputs = new ArrayList<>();
+        int at = body.indexOf("\"input\"");
+        if (at < 0) {
+            return List.of(body);
+        }
+        at = body.indexOf(':', at) + 1;
+        boolean array = false;
+        StringBuilder current = null;
+        for (int i = at; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (current != null) {
+                if (c == '\\' && i + 1 < body.length()) {
+                    current.append(c).append(body.charAt(++i));
+                } else if (c == '"') {
+                    inputs.add(current.toString());
+                    current = null;
+                    if (!array) {
+                        break;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                current = new StringBuilder();
+            } else if (c == '[') {
+                array = true;
+            } else if (c == ']' || (!array && !Character.isWhitespace(c))) {
+                break;
+            }
+        }
+        return inputs;
+    }
+
+    private static String chunk(String model, boolean chat, String piece) {
+        return "{\"model\":\"" + model + "\",\"created_at\":\"" + Instant.now() + "\","
+                + content(chat, piece) + ",\"done\":false}";
+    }
+
+    private static String done(String model, boolean chat, String text, long start, long evalStart,
+                               int promptTokens, int completionTokens) {
+        long now = System.nanoTime();
+        return "{\"model\":\"" + model + "\",\"created_at\":\"" + Instant.now() + "\","
+                + content(chat, text) + ",\"done\":true,\"done_reason\":\"stop\""
+                + ",\"total_duration\":" + (now - start)
+                + ",\"load_duration\":0"
+                + ",\"prompt_eval_count\":" + promptTokens
+                + ",\"prompt_eval_duration\":" + (evalStart - start)
+                + ",\"eval_count\":" + completionTokens
+                + ",\"eval_duration\":" + (now - evalStart) + "}";
+    }
+
+    private static String content(boolean chat, String text) {
+        return chat
+                ? "\"message\":{\"role\":\"assistant\",\"content\":\"" + text + "\"}"
+                : "\"response\":\"" + text + "\"";
+    }
+
+    private static String reply(int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[i % WORDS.length]);
+        }
+        return text.append('.').toString();
+    }
+
+    private static String model(String body) {
+        Matcher matcher = MODEL.matcher(body);
+        return matcher.find() ? matcher.group(1) : "replay-stand-in";
+    }
+
+    private static void sleepFor(int tokens, double tokensPerSecond) throws InterruptedException {
+        if (tokensPerSecond > 0) {
+            TimeUnit.NANOSECONDS.sleep((long) (tokens * 1_000_000_000L / tokensPerSecond));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The message shapes replayed by {@link ReplayHarness}.
+ * <p>
+ * A recorded corpus is a UTF-8 file with one {@code kind<TAB>content} line per message;
+ * blank lines and lines starting with {@code #} are skipped, and {@code \n} in the content
+ * stands for a line break. {@code {bot}} is replaced with a mention of the bot, and MENTION
+ * messages without one get it prepended. Without a file, a corpus is generated from templates using the
+ * configured mix. Either way the messages are replayed in order, cycling at the end.
+ */
+final class ReplayCorpus {
+
+    /**
+     * How a message reaches the bot.
+     */
+    enum Kind {
+        /** Prefixed command, e.g. {@code !ping} */
+        COMMAND,
+        /** Guild message that mentions the bot */
+        MENTION,
+        /** Guild message replying to one of the bot's messages */
+        REPLY,
+        /** Forwarded message without text of its own */
+        FORWARD,
+        /** Guild message the bot only tracks passively */
+        CHATTER,
+        /** Direct message */
+        DIRECT;
+
+        static Kind parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    record ReplayMessage(Kind kind, String content) {
+    }
+
+    private static final int GENERATED_SIZE = 10_000;
+
+    private static final Map<Kind, List<String>> TEMPLATES = Map.of(
+            Kind.COMMAND, List.of("!ping", "!help", "!ping", "!help ping"),
+            Kind.MENTION, List.of(
+                    "can you remind me what we talked about yesterday?",
+                    "what do you think about pineapple on pizza",
+                    "hi! how are you today?",
+                    "explain the difference between a list and a set, briefly please",
+                    "remember that my favourite colour is green"),
+            Kind.REPLY, List.of(
+                    "why though?",
+                    "thanks, that helped a lot",
+                    "can you say that again but shorter",
+                    "haha ok, and what about tomorrow?"),
+            Kind.FORWARD, List.of(
+                    "Server maintenance is scheduled for Saturday 10:00 UTC, expect about an hour of downtime.",
+                    "New event: community game night this Friday, bring your friends!"),
+            Kind.CHATTER, List.of(
+                    "anyone up for a match later tonight? I'm free after 9",
+                    "the new update broke my save file again, this is the third time this month",
+                    "lol that clip was amazing, send it to the highlights channel",
+                    "does anybody know if the store opens early on public holidays?",
+                    "good morning everyone, coffee is ready ☕",
+                    "I finally beat the final boss after like forty attempts https://example.com/clip"),
+            Kind.DIRECT, List.of(
+                    "hey pudel, are you there?",
+                    "what can you do?",
+                    "tell me something interesting about cats")
+    );
+
+    private final List<ReplayMessage> messages;
+
+    private ReplayCorpus(List<ReplayMessage> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * Generate a corpus from the built-in templates.
+     *
+     * @param mix  relative weight of each kind
+     * @param seed random seed
+     */
+    static ReplayCorpus generate(Map<Kind, Integer> mix, long seed) {
+        List<Kind> kinds = new ArrayList<>(mix.keySet());
+        int[] cumulative = new int[kinds.size()];
+        int total = 0;
+        for (int i = 0; i < kinds.size(); i++) {
+            total += mix.get(kinds.get(i));
+            cumulative[i] = total;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<ReplayMessage> messages = new ArrayList<>(GENERATED_SIZE);
+        for (int i = 0; i < GENERATED_SIZE; i++) {
+            int pick = random.nextInt(total);
+            int k = 0;
+            while (cumulative[k] <= pick) {
+                k++;
+            }
+            Kind kind = kinds.get(k);
+            List<String> templates = TEMPLATES.get(kind);
+            messages.add(new ReplayMessage(kind, templates.get(random.nextInt(templates.size()))));
+        }
+        return new ReplayCorpus(messages);
+    }
+
+    /**
+     * Load a recorded corpus.
+     *
+     * @param file the corpus file
+     * @throws IOException if the file cannot be read
+     */
+    static ReplayCorpus load(Path file) throws IOException {
+        List<ReplayMessage> messages = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IOException(file + ":" + lineNumber + ": expected kind<TAB>content");
+            }
+            Kind kind = Kind.parse(line.substring(0, tab));
+            messages.add(new ReplayMessage(kind, line.substring(tab + 1).replace("\\n", "\n")));
+        }
+        if (messages.isEmpty()) {
+            throw new IOException(file + " contains no messages");
+        }
+        return new ReplayCorpus(messages);
+    }
+
+    /**
+     * @param sequence the running event number
+     * @return the message to replay for it
+     */
+    ReplayMessage get(long sequence) {
+        return messages.get((int) (sequence % messages.size()));
+    }
+
+    int size() {
+        return messages.size();
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Mentions;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.SelfUser;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import worldstandard.group.pudel.bench.replay.ReplayCorpus.Kind;
+import worldstandard.group.pudel.bench.replay.ReplayCorpus.ReplayMessage;
+import worldstandard.group.pudel.bench.replay.StubFactory.Answer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A stubbed Discord: one JDA instance with synthetic guilds, channels and users, and a
+ * REST layer that answers every request after a fixed latency.
+ * <p>
+ * Nothing leaves the process. REST calls are counted per route (the JDA method that
+ * created the action, e.g. {@code sendMessage}) so the report shows what a real gateway
+ * session would have sent.
+ */
+final class ReplayDiscord {
+
+    static final long SELF_ID = 400_000_000_000_000_001L;
+    private static final long GUILD_BASE = 100_000_000_000_000_000L;
+    private static final long CHANNEL_BASE = 200_000_000_000_000_000L;
+    private static final long USER_BASE = 300_000_000_000_000_000L;
+    private static final long MESSAGE_BASE = 500_000_000_000_000_000L;
+    private static final long DM_CHANNEL_BASE = 600_000_000_000_000_000L;
+
+    private final StubFactory stubs = new StubFactory(this);
+    private final int channelsPerGuild;
+    private final int usersPerGuild;
+    private final long restLatencyNanos;
+
+    private final JDA jda;
+    private final SelfUser selfUser;
+    private final List<Guild> guilds = new ArrayList<>();
+    private final Map<Long, Guild> guildsById = new HashMap<>();
+    private final Map<Long, MessageChannelUnion> channelsById = new HashMap<>();
+    private final Map<Long, TextChannel> textChannelsById = new HashMap<>();
+    private final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, MessageChannelUnion> directChannels = new ConcurrentHashMap<>();
+
+    private final AtomicLong messageIds = new AtomicLong(MESSAGE_BASE);
+    private final ScheduledExecutorService rest = Executors.newScheduledThreadPool(4,
+            Thread.ofPlatform().name("replay-rest-", 0).daemon().factory());
+    private final ConcurrentHashMap<String, LongAdder> restCalls = new ConcurrentHashMap<>();
+    private final AtomicInteger restInFlight = new AtomicInteger();
+    private final LongAdder callbackErrors = new LongAdder();
+
+    ReplayDiscord(ReplayOptions options) {
+        this.channelsPerGuild = options.channelsPerGuild();
+        this.usersPerGuild = options.usersPerGuild();
+        this.restLatencyNanos = TimeUnit.MILLISECONDS.toNanos(options.restLatencyMs());
+
+        Map<String, Answer> jdaAnswers = new HashMap<>();
+        this.jda = stubs.stub(JDA.class, jdaAnswers);
+        this.selfUser = stubs.stub(SelfUser.class, userAnswers(SELF_ID, "Pudel", true));
+
+        jdaAnswers.put("getSelfUser", _ -> selfUser);
+        jdaAnswers.put("getGuilds", _ -> guilds);
+        jdaAnswers.put("getGuildById", args -> guildsById.get(snowflake(args[0])));
+        jdaAnswers.put("getTextChannelById", args -> textChannelsById.get(snowflake(args[0])));
+        jdaAnswers.put("getUserById", args -> users.get(snowflake(args[0])));
+        jdaAnswers.put("getStatus", _ -> JDA.Status.CONNECTED);
+        jdaAnswers.put("getShardInfo", _ -> JDA.ShardInfo.SINGLE);
+        jdaAnswers.put("getGatewayPing", _ -> 40L);
+        jdaAnswers.put("awaitReady", _ -> jda);
+        jdaAnswers.put("awaitStatus", _ -> jda);
+
+        for (int g = 0; g < options.guilds(); g++) {
+            createGuild(GUILD_BASE + g, "Replay Guild " + g);
+        }
+    }
+
+    JDA jda() {
+        return jda;
+    }
+
+    /**
+     * Build the gateway event for a replayed message in a random guild, channel and user.
+     */
+    MessageReceivedEvent event(ReplayMessage replayed, SplittableRandom random) {
+        long messageId = messageIds.incrementAndGet();
+        long userId = USER_BASE + random.nextInt(usersPerGuild * Math.max(1, guilds.size()));
+        User author = users.computeIfAbsent(userId,
+                id -> stubs.stub(User.class, userAnswers(id, "user" + (id - USER_BASE), false)));
+
+        Guild guild = null;
+        MessageChannelUnion channel;
+        if (replayed.kind() == Kind.DIRECT) {
+            channel = directChannels.computeIfAbsent(userId, this::createDirectChannel);
+        } else {
+            guild = guilds.get(random.nextInt(guilds.size()));
+            long channelId = CHANNEL_BASE + (guild.getIdLong() - GUILD_BASE) * channelsPerGuild
+                    + random.nextInt(channelsPerGuild);
+            channel = channelsById.get(channelId);
+        }
+
+        String content = replayed.content().replace("{bot}", "<@" + SELF_ID + ">");
+        if (replayed.kind() == Kind.MENTION && !content.contains("<@" + SELF_ID + ">")) {
+            content = "<@" + SELF_ID + "> " + content;
+        }
+        Message referenced = null;
+        List<MessageEmbed> embeds = List.of();
+        if (replayed.kind() == Kind.REPLY) {
+            referenced = message(messageId - 1, selfUser, null, guild, channel,
+                    "Earlier reply from Pudel.", null, List.of());
+        } else if (replayed.kind() == Kind.FORWARD) {
+            // Forwards arrive as message snapshots; JDA's snapshot type is not an interface,
+            // so they are replayed through the embed fallback ChatbotService also reads
+            embeds = List.of(new EmbedBuilder().setTitle("Forwarded message").setDescription(content).build());
+            content = "";
+        }
+
+        Member member = guild == null ? null : member(guild, author);
+        Message message = message(messageId, author, member, guild, channel, content, referenced, embeds);
+        return new MessageReceivedEvent(jda, messageId, message);
+    }
+
+    // ===== Simulated REST =====
+
+    void queue(String route, Object result, Consumer<Object> success, Consumer<Throwable> failure) {
+        restCalls.computeIfAbsent(route, _ -> new LongAdder()).increment();
+        restInFlight.incrementAndGet();
+        rest.schedule(() -> {
+            restInFlight.decrementAndGet();
+            if (success != null) {
+                try {
+                    success.accept(result);
+                } catch (Throwable t) {
+                    callbackErrors.increment();
+                }
+            }
+        }, restLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    Object complete(String route, Object result) {
+        restCalls.computeIfAbsent(route, _ -> new LongAdder()).increment();
+        LockSupport.parkNanos(restLatencyNanos);
+        return result;
+    }
+
+    int getRestInFlight() {
+        return restInFlight.get();
+    }
+
+    long getCallbackErrors() {
+        return callbackErrors.sum();
+    }
+
+    /**
+     * @return REST calls per route, sorted by route
+     */
+    Map<String, Long> getRestCalls() {
+        Map<String, Long> calls = new TreeMap<>();
+        restCalls.forEach((route, count) -> calls.put(route, count.sum()));
+        return calls;
+    }
+
+    void shutdown() {
+        rest.shutdownNow();
+    }
+
+    // ===== Entities =====
+
+    private void createGuild(long guildId, String name) {
+        Map<String, Answer> answers = new HashMap<>();
+        Guild guild = stubs.stub(Guild.class, answers);
+        Member selfMember = member(guild, selfUser);
+
+        List<TextChannel> textChannels = new ArrayList<>(channelsPerGuild);
+        for (int c = 0; c < channelsPerGuild; c++) {
+            long channelId = CHANNEL_BASE + (guildId - GUILD_BASE) * channelsPerGuild + c;
+            Map<String, Answer> channelAnswers = channelAnswers(channelId, "channel-" + c, ChannelType.TEXT, guild);
+            TextChannel textChannel = stubs.stub(TextChannel.class, channelAnswers);
+            channelAnswers.put("asTextChannel", _ -> textChannel);
+            channelAnswers.put("asGuildMessageChannel", _ -> textChannel);
+            MessageChannelUnion union = stubs.stub(MessageChannelUnion.class, channelAnswers);
+            channelsById.put(channelId, union);
+            textChannelsById.put(channelId, textChannel);
+            textChannels.add(textChannel);
+        }
+
+        answers.put("getIdLong", _ -> guildId);
+        answers.put("getName", _ -> name);
+        answers.put("getJDA", _ -> jda);
+        answers.put("getSelfMember", _ -> selfMember);
+        answers.put("getMemberCount", _ -> usersPerGuild);
+        answers.put("getTextChannels", _ -> textChannels);
+        answers.put("getTextChannelById", args -> textChannelsById.get(snowflake(args[0])));
+        guilds.add(guild);
+        guildsById.put(guildId, guild);
+    }
+
+    private MessageChannelUnion createDirectChannel(long userId) {
+        return stubs.stub(MessageChannelUnion.class,
+                channelAnswers(DM_CHANNEL_BASE + (userId - USER_BASE), "dm", ChannelType.PRIVATE, null));
+    }
+
+    private Map<String, Answer> channelAnswers(long channelId, String name, ChannelType type, Guild guild) {
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getIdLong", _ -> channelId);
+        answers.put("getName", _ -> name);
+        answers.put("getType", _ -> type);
+        answers.put("getJDA", _ -> jda);
+        answers.put("getGuild", _ -> requireGuild(guild));
+        return answers;
+    }
+
+    private Map<String, Answer> userAnswers(long userId, String name, boolean bot) {
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getIdLong", _ -> userId);
+        answers.put("getName", _ -> name);
+        answers.put("getEffectiveName", _ -> name);
+        answers.put("isBot", _ -> bot);
+        answers.put("getJDA", _ -> jda);
+        return answers;
+    }
+
+    private Member member(Guild guild, User user) {
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getIdLong", _ -> user.getIdLong());
+        answers.put("getUser", _ -> user);
+        answers.put("getGuild", _ -> guild);
+        answers.put("getEffectiveName", _ -> user.getName());
+        answers.put("getJDA", _ -> jda);
+        return stubs.stub(Member.class, answers);
+    }
+
+    private Message message(long messageId, User author, Member member, Guild guild, MessageChannelUnion channel,
+                            String content, Message referenced, List<MessageEmbed> embeds) {
+        String selfMention = "<@" + SELF_ID + ">";
+        Mentions mentions = stubs.stub(Mentions.class, Map.of(
+                "isMentioned", args -> args[0] == selfUser && content.contains(selfMention),
+                "getUsers", _ -> content.contains(selfMention) ? List.of(selfUser) : List.of()
+        ));
+
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getIdLong", _ -> messageId);
+        answers.put("getContentRaw", _ -> content);
+        answers.put("getContentDisplay", _ -> content);
+        answers.put("getContentStripped", _ -> content);
+        answers.put("getAuthor", _ -> author);
+        answers.put("getMember", _ -> member);
+        answers.put("isFromGuild", _ -> guild != null);
+        answers.put("isFromType", args -> args[0] == (guild != null ? ChannelType.TEXT : ChannelType.PRIVATE));
+        answers.put("getChannelType", _ -> guild != null ? ChannelType.TEXT : ChannelType.PRIVATE);
+        answers.put("getGuild", _ -> requireGuild(guild));
+        answers.put("getChannel", _ -> channel);
+        answers.put("getJDA", _ -> jda);
+        answers.put("getReferencedMessage", _ -> referenced);
+        answers.put("getMentions", _ -> mentions);
+        answers.put("getEmbeds", _ -> embeds);
+        return stubs.stub(Message.class, answers);
+    }
+
+    private static Guild requireGuild(Guild guild) {
+        if (guild == null) {
+            // Same contract as JDA for messages outside a guild
+            throw new IllegalStateException("This message was not sent in a guild");
+        }
+        return guild;
+    }
+
+    private static long snowflake(Object id) {
+        return id instanceof Number number ? number.longValue() : Long.parseUnsignedLong(id.toString());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import worldstandard.group.pudel.bench.replay.ReplayCorpus.Kind;
+import worldstandard.group.pudel.bench.replay.ReplayCorpus.ReplayMessage;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives replayed events into the listener at a fixed open-loop rate.
+ * <p>
+ * Each shard thread plays the role of one JDA gateway thread and fires its share of the
+ * events on a fixed schedule, whether or not the previous event has finished. When the
+ * pipeline cannot keep up, the gap between the scheduled and the actual send time
+ * ({@code replay.schedule.lag}) grows, and so do the downstream queues, which are sampled
+ * once per second.
+ */
+final class ReplayDriver {
+
+    private final ReplayOptions options;
+    private final ReplayCorpus corpus;
+    private final ReplayDiscord discord;
+    private final EventListener listener;
+    private final MeterRegistry registry;
+    private final OllamaStandIn standIn;
+    private final PrintStream out;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Kind, Timer> eventTimers = new EnumMap<>(Kind.class);
+    private final Timer lagTimer;
+    private final List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Queue depths at one point in time.
+     *
+     * @param seconds seconds since the load started
+     */
+    record Sample(double seconds, long fired, double chatbotPending, double chatbotActive,
+                  int ollamaWaiting, int ollamaRunning, int restInFlight) {
+    }
+
+    ReplayDriver(ReplayOptions options, ReplayCorpus corpus, ReplayDiscord discord, EventListener listener,
+                 MeterRegistry registry, OllamaStandIn standIn, PrintStream out) {
+        this.options = options;
+        this.corpus = corpus;
+        this.discord = discord;
+        this.listener = listener;
+        this.registry = registry;
+        this.standIn = standIn;
+        this.out = out;
+
+        for (Kind kind : Kind.values()) {
+            eventTimers.put(kind, Timer.builder("replay.event")
+                    .description("Time the event thread spends in the listener")
+                    .tag("kind", kind.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(registry));
+        }
+        this.lagTimer = Timer.builder("replay.schedule.lag")
+                .description("Delay between an event's scheduled and actual dispatch")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    ReplayReport run() throws InterruptedException {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replay-sampler").daemon().factory());
+        sampler.scheduleAtFixedRate(() -> sample(start), 1, 1, TimeUnit.SECONDS);
+
+        List<Thread> shards = new ArrayList<>(options.shards());
+        for (int i = 0; i < options.shards(); i++) {
+            int shard = i;
+            shards.add(Thread.ofPlatform().name("replay-shard-" + i).start(() -> runShard(shard, start, end)));
+        }
+        for (Thread shard : shards) {
+            shard.join();
+        }
+        long loadEnd = System.nanoTime();
+        long loadFired = fired.sum();
+
+        // Let queued replies finish so their latency is part of the report
+        long drainDeadline = loadEnd + TimeUnit.SECONDS.toNanos(options.drainSeconds());
+        boolean drained;
+        while (!(drained = isIdle()) && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        long drainEnd = System.nanoTime();
+        sampler.shutdownNow();
+
+        List<Sample> snapshot;
+        synchronized (samples) {
+            snapshot = List.copyOf(samples);
+        }
+        return new ReplayReport(options, corpus, registry, discord, standIn, snapshot,
+                loadFired, errors.sum(), loadEnd - start, drained ? drainEnd - loadEnd : -1);
+    }
+
+    private void runShard(int shard, long start, long end) {
+        SplittableRandom random = new SplittableRandom(options.seed() + shard);
+        long interval = (long) (options.shards() * 1_000_000_000d / options.rate());
+        // Stagger shards so their events interleave instead of arriving in bursts
+        long due = start + interval * shard / options.shards();
+
+        while (due < end) {
+            long now = System.nanoTime();
+            while (now < due) {
+                LockSupport.parkNanos(due - now);
+                now = System.nanoTime();
+            }
+            lagTimer.record(now - due, TimeUnit.NANOSECONDS);
+
+            ReplayMessage replayed = corpus.get(sequence.getAndIncrement());
+            MessageReceivedEvent event = discord.event(replayed, random);
+            long begin = System.nanoTime();
+            try {
+                // Same entry point JDA uses: plugin dispatch, then onMessageReceived
+                listener.onEvent(event);
+            } catch (Exception e) {
+                errors.increment();
+            }
+            eventTimers.get(replayed.kind()).record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            fired.increment();
+            due += interval;
+        }
+    }
+
+    private void sample(long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Sample sample = new Sample(seconds, fired.sum(),
+                gauge("pudel.chatbot.queue.pending"), gauge("pudel.chatbot.queue.active"),
+                standIn != null ? standIn.getWaiting() : 0, standIn != null ? standIn.getRunning() : 0,
+                discord.getRestInFlight());
+        samples.add(sample);
+
+        int second = (int) Math.round(seconds);
+        if (second > 0 && second % Math.max(1, options.reportIntervalSeconds()) == 0) {
+            out.printf("[%4ds] events=%d (%.1f/s) chatbotQueue=%.0f active=%.0f ollamaWaiting=%d running=%d rest=%d%n",
+                    second, sample.fired(), sample.fired() / Math.max(seconds, 1e-9),
+                    sample.chatbotPending(), sample.chatbotActive(),
+                    sample.ollamaWaiting(), sample.ollamaRunning(), sample.restInFlight());
+        }
+    }
+
+    private boolean isIdle() {
+        double pending = gauge("pudel.chatbot.queue.pending");
+        double active = gauge("pudel.chatbot.queue.active");
+        boolean ollamaIdle = standIn == null || (standIn.getWaiting() == 0 && standIn.getRunning() == 0);
+        return !(pending > 0) && !(active > 0) && ollamaIdle && discord.getRestInFlight() == 0;
+    }
+
+    private double gauge(String name) {
+        Gauge gauge = registry.find(name).gauge();
+        return gauge != null ? gauge.value() : Double.NaN;
+    }
+}
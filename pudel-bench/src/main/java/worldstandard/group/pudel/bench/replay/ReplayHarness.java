@@ -0,0 +1,96 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import worldstandard.group.pudel.core.Pudel;
+import worldstandard.group.pudel.core.discord.DiscordEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline load harness: replays synthetic Discord messages through the real listener pipeline.
+ * <p>
+ * Starts the full application context under the {@code replay} profile with a stubbed JDA
+ * ({@link ReplayDiscord}) and, unless {@code --ollama-url} is given, a local Ollama stand-in
+ * ({@link OllamaStandIn}). Postgres is a local, disposable database configured in
+ * {@code application-replay.yml}. Messages from a {@link ReplayCorpus} are then fed to
+ * {@link DiscordEventListener} at a fixed rate, exercising plugin dispatch, command handling,
+ * {@code ChatbotService} and passive tracking exactly as gateway events would.
+ * <p>
+ * Run with {@code mvn -Pbench -pl pudel-bench exec:java -Dexec.args="--rate=50 --duration=60"};
+ * see {@link ReplayOptions#USAGE} for all options.
+ */
+public final class ReplayHarness {
+
+    private ReplayHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayOptions options;
+        try {
+            options = ReplayOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        ReplayCorpus corpus = options.corpus() != null
+                ? ReplayCorpus.load(options.corpus())
+                : ReplayCorpus.generate(options.mix(), options.seed());
+
+        OllamaStandIn standIn = null;
+        String ollamaUrl = options.ollamaUrl();
+        if (ollamaUrl == null) {
+            standIn = OllamaStandIn.start(options);
+            ollamaUrl = standIn.url();
+        }
+
+        ReplayDiscord discord = new ReplayDiscord(options);
+        // Command line properties take precedence over application.yml and its env placeholders
+        List<String> properties = new ArrayList<>();
+        properties.add("--pudel.ollama.base-url=" + ollamaUrl);
+        properties.add("--pudel.chatbot.admission.enabled=" + options.admission());
+        properties.add("--pudel.chatbot.embedding.dimension=" + options.embeddingDimension());
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Pudel.class)
+                .profiles("replay")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("jda", discord.jda()))
+                .run(properties.toArray(String[]::new));
+
+        int exitCode = 0;
+        try {
+            ReplayDriver driver = new ReplayDriver(options, corpus, discord,
+                    context.getBean(DiscordEventListener.class), context.getBean(MeterRegistry.class),
+                    standIn, System.out);
+            driver.run().print(System.out);
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            exitCode = Math.max(exitCode, SpringApplication.exit(context));
+            discord.shutdown();
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+        System.exit(exitCode);
+    }
+}
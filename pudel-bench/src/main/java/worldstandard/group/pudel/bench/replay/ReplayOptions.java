@@ -0,0 +1,145 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import worldstandard.group.pudel.bench.replay.ReplayCorpus.Kind;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options of {@link ReplayHarness}, given as {@code --name=value}.
+ */
+record ReplayOptions(
+        double rate,
+        int durationSeconds,
+        int drainSeconds,
+        int reportIntervalSeconds,
+        int shards,
+        int guilds,
+        int channelsPerGuild,
+        int usersPerGuild,
+        Path corpus,
+        Map<Kind, Integer> mix,
+        long seed,
+        boolean admission,
+        long restLatencyMs,
+        String ollamaUrl,
+        int ollamaParallel,
+        double ollamaTokensPerSecond,
+        double ollamaPrefillTokensPerSecond,
+        int ollamaReplyTokens,
+        long ollamaEmbedMs,
+        int embeddingDimension
+) {
+
+    static final String USAGE = """
+            Usage: ReplayHarness [--name=value ...]
+              --rate=50                 target events/sec across all shards
+              --duration=60             seconds of load
+              --drain=30                max seconds to wait for queued replies afterwards
+              --report-interval=5       seconds between progress lines
+              --shards=1                event threads (JDA dispatches one shard per thread)
+              --guilds=100              synthetic guilds
+              --channels=5              text channels per guild
+              --users=50                users per guild
+              --corpus=<file>           replay recorded messages (kind<TAB>content per line)
+              --mix=command=10,mention=10,reply=5,forward=2,chatter=70,direct=3
+                                        weights for the generated corpus
+              --seed=42                 random seed
+              --admission=true          keep per-guild/per-user chatbot admission enabled
+              --rest-latency-ms=80      simulated Discord REST round trip
+              --ollama-url=<url>        use a real Ollama instead of the built-in stand-in
+              --ollama-parallel=2       stand-in: concurrent generations (OLLAMA_NUM_PARALLEL)
+              --ollama-tps=40           stand-in: generated tokens/sec per request
+              --ollama-prefill-tps=1500 stand-in: prompt tokens/sec per request
+              --ollama-reply-tokens=60  stand-in: tokens per chatbot reply
+              --ollama-embed-ms=15      stand-in: latency per embedding
+              --embedding-dimension=384 stand-in: embedding size (must match pudel.chatbot.embedding.dimension)
+            """;
+
+    static ReplayOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg + "\n" + USAGE);
+            }
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        ReplayOptions options = new ReplayOptions(
+                Double.parseDouble(values.getOrDefault("rate", "50")),
+                Integer.parseInt(values.getOrDefault("duration", "60")),
+                Integer.parseInt(values.getOrDefault("drain", "30")),
+                Integer.parseInt(values.getOrDefault("report-interval", "5")),
+                Integer.parseInt(values.getOrDefault("shards", "1")),
+                Integer.parseInt(values.getOrDefault("guilds", "100")),
+                Integer.parseInt(values.getOrDefault("channels", "5")),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                values.containsKey("corpus") ? Path.of(values.get("corpus")) : null,
+                parseMix(values.getOrDefault("mix", "command=10,mention=10,reply=5,forward=2,chatter=70,direct=3")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Boolean.parseBoolean(values.getOrDefault("admission", "true")),
+                Long.parseLong(values.getOrDefault("rest-latency-ms", "80")),
+                values.get("ollama-url"),
+                Integer.parseInt(values.getOrDefault("ollama-parallel", "2")),
+                Double.parseDouble(values.getOrDefault("ollama-tps", "40")),
+                Double.parseDouble(values.getOrDefault("ollama-prefill-tps", "1500")),
+                Integer.parseInt(values.getOrDefault("ollama-reply-tokens", "60")),
+                Long.parseLong(values.getOrDefault("ollama-embed-ms", "15")),
+                Integer.parseInt(values.getOrDefault("embedding-dimension", "384"))
+        );
+
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option(s): " + values.keySet() + "\n" + USAGE);
+        }
+        if (options.rate <= 0 || options.shards <= 0 || options.guilds <= 0
+                || options.channelsPerGuild <= 0 || options.usersPerGuild <= 0) {
+            throw new IllegalArgumentException("rate, shards, guilds, channels and users must be positive");
+        }
+        return options;
+    }
+
+    private static final Set<String> KNOWN = Set.of(
+            "rate", "duration", "drain", "report-interval", "shards", "guilds", "channels", "users",
+            "corpus", "mix", "seed", "admission", "rest-latency-ms", "ollama-url", "ollama-parallel",
+            "ollama-tps", "ollama-prefill-tps", "ollama-reply-tokens", "ollama-embed-ms", "embedding-dimension");
+
+    private static Map<Kind, Integer> parseMix(String mix) {
+        Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Kind.parse(pair[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no positive weights: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import worldstandard.group.pudel.bench.replay.ReplayDriver.Sample;
+
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Summary of a replay run: sustained throughput, stage latencies and queue growth.
+ * <p>
+ * Stage latencies are read from the same Micrometer timers the bot publishes in production
+ * ({@code pudel.*}), plus the harness's own {@code replay.*} timers.
+ */
+final class ReplayReport {
+
+    private final ReplayOptions options;
+    private final ReplayCorpus corpus;
+    private final MeterRegistry registry;
+    private final ReplayDiscord discord;
+    private final OllamaStandIn standIn;
+    private final List<Sample> samples;
+    private final long events;
+    private final long errors;
+    private final long loadNanos;
+    private final long drainNanos;
+
+    ReplayReport(ReplayOptions options, ReplayCorpus corpus, MeterRegistry registry, ReplayDiscord discord,
+                 OllamaStandIn standIn, List<Sample> samples, long events, long errors,
+                 long loadNanos, long drainNanos) {
+        this.options = options;
+        this.corpus = corpus;
+        this.registry = registry;
+        this.discord = discord;
+        this.standIn = standIn;
+        this.samples = samples;
+        this.events = events;
+        this.errors = errors;
+        this.loadNanos = loadNanos;
+        this.drainNanos = drainNanos;
+    }
+
+    void print(PrintStream out) {
+        double loadSeconds = loadNanos / 1e9;
+
+        out.println();
+        out.println("== Pudel replay ==");
+        out.printf("target:      %.1f events/s for %ds, %d shard(s), %d guilds x %d channels, %d users/guild%n",
+                options.rate(), options.durationSeconds(), options.shards(), options.guilds(),
+                options.channelsPerGuild(), options.usersPerGuild());
+        out.printf("corpus:      %d messages (%s)%n", corpus.size(),
+                options.corpus() != null ? options.corpus() : "generated, mix " + options.mix());
+        out.printf("sustained:   %.1f events/s (%d events in %.1fs, %d listener errors)%n",
+                events / loadSeconds, events, loadSeconds, errors);
+        out.println(drainNanos >= 0
+                ? String.format("drain:       queues empty %.1fs after the load stopped", drainNanos / 1e9)
+                : String.format("drain:       queues NOT empty %ds after the load stopped", options.drainSeconds()));
+
+        out.println();
+        out.println("Queues             peak   end-of-load   growth/s");
+        printQueue(out, "chatbot pending", Sample::chatbotPending, loadSeconds);
+        printQueue(out, "chatbot active", Sample::chatbotActive, loadSeconds);
+        if (standIn != null) {
+            printQueue(out, "ollama waiting", Sample::ollamaWaiting, loadSeconds);
+            printQueue(out, "ollama running", Sample::ollamaRunning, loadSeconds);
+        }
+        printQueue(out, "discord rest", Sample::restInFlight, loadSeconds);
+
+        out.println();
+        out.printf("%-72s %8s %9s %9s %9s %9s%n", "Stage latency (ms)", "count", "mean", "p50", "p99", "max");
+        List<Timer> timers = registry.getMeters().stream()
+                .filter(meter -> meter instanceof Timer)
+                .filter(meter -> meter.getId().getName().startsWith("pudel.")
+                        || meter.getId().getName().startsWith("replay."))
+                .map(meter -> (Timer) meter)
+                .filter(timer -> timer.count() > 0)
+                .sorted(Comparator.comparing(ReplayReport::label))
+                .toList();
+        for (Timer timer : timers) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            out.printf("%-72s %8d %9.2f %9s %9s %9.2f%n", label(timer), snapshot.count(),
+                    snapshot.mean(TimeUnit.MILLISECONDS),
+                    percentile(snapshot, 0.5), percentile(snapshot, 0.99),
+                    snapshot.max(TimeUnit.MILLISECONDS));
+        }
+
+        out.println();
+        out.println("Discord REST calls: " + discord.getRestCalls()
+                + (discord.getCallbackErrors() > 0 ? " (" + discord.getCallbackErrors() + " callback errors)" : ""));
+        if (standIn != null) {
+            out.printf("Ollama stand-in:    %d generations, %d embeddings%n",
+                    standIn.getGenerationCount(), standIn.getEmbeddingCount());
+        }
+    }
+
+    private void printQueue(PrintStream out, String name, ToDoubleFunction<Sample> value, double loadSeconds) {
+        List<Sample> load = samples.stream().filter(sample -> sample.seconds() <= loadSeconds).toList();
+        double peak = samples.stream().mapToDouble(value).filter(v -> !Double.isNaN(v)).max().orElse(Double.NaN);
+        double atEnd = load.isEmpty() ? Double.NaN : value.applyAsDouble(load.getLast());
+        out.printf("  %-16s %6.0f %13.0f %+10.2f%n", name, peak, atEnd, slope(load, value));
+    }
+
+    /**
+     * Least-squares slope of a queue depth over time; positive means the queue kept growing.
+     */
+    private static double slope(List<Sample> samples, ToDoubleFunction<Sample> value) {
+        int n = 0;
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (Sample sample : samples) {
+            double y = value.applyAsDouble(sample);
+            if (Double.isNaN(y)) {
+                continue;
+            }
+            double x = sample.seconds();
+            n++;
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return n < 2 || denominator == 0 ? Double.NaN : (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    private static String percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (Math.abs(value.percentile() - percentile) < 1e-9) {
+                return String.format("%.2f", value.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return "-";
+    }
+
+    private static String label(Meter meter) {
+        List<Tag> tags = meter.getId().getTags();
+        if (tags.isEmpty()) {
+            return meter.getId().getName();
+        }
+        return meter.getId().getName() + tags.stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
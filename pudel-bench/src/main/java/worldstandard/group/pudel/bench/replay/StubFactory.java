@@ -0,0 +1,254 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.bench.replay;
+
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Deep stubs for JDA interfaces, built on {@link Proxy}.
+ * <p>
+ * Methods listed in the answer map are answered explicitly. Interface default methods run
+ * their real implementation, so derived getters such as {@code getId()} follow the stubbed
+ * {@code getIdLong()}. Everything else returns an empty value, or another deep stub when
+ * the return type is an interface. {@link RestAction}s are handed to {@link ReplayDiscord},
+ * which completes them after a simulated REST round trip.
+ */
+final class StubFactory {
+
+    /**
+     * Explicit answer for a stubbed method, matched by name.
+     */
+    @FunctionalInterface
+    interface Answer {
+        Object answer(Object[] args) throws Throwable;
+    }
+
+    private final ReplayDiscord discord;
+
+    StubFactory(ReplayDiscord discord) {
+        this.discord = discord;
+    }
+
+    <T> T stub(Class<T> type, Map<String, Answer> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new StubHandler(type.getSimpleName(), answers, null, null)));
+    }
+
+    private Object restAction(Class<?> type, Type genericType, String route) {
+        Class<?> result = actionResultType(genericType, Map.of());
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new StubHandler(type.getSimpleName(), Map.of(), route, result));
+    }
+
+    private final class StubHandler implements InvocationHandler {
+        private final String name;
+        private final Map<String, Answer> answers;
+        // Non-null for RestAction stubs: the method that created the action, and its result type
+        private final String route;
+        private final Class<?> resultType;
+        private final Map<Method, Object> children = new ConcurrentHashMap<>();
+
+        StubHandler(String name, Map<String, Answer> answers, String route, Class<?> resultType) {
+            this.name = name;
+            this.answers = answers;
+            this.route = route;
+            this.resultType = resultType;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "toString" -> {
+                    if (method.getParameterCount() == 0) {
+                        return "Stub(" + name + ")";
+                    }
+                }
+                case "hashCode" -> {
+                    if (method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                }
+                case "equals" -> {
+                    if (method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                }
+                default -> {
+                }
+            }
+
+            Answer answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.answer(args == null ? new Object[0] : args);
+            }
+            if (route != null) {
+                Object handled = invokeRestAction(proxy, method, args);
+                if (handled != NOT_HANDLED) {
+                    return handled;
+                }
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            return defaultValue(method);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object invokeRestAction(Object proxy, Method method, Object[] args) {
+            Class<?> returnType = method.getReturnType();
+            switch (method.getName()) {
+                case "queue" -> {
+                    if (method.getParameterCount() == 2) {
+                        discord.queue(route, result(), (Consumer<Object>) args[0], (Consumer<Throwable>) args[1]);
+                        return null;
+                    }
+                }
+                case "complete" -> {
+                    if (method.getParameterCount() == 1) {
+                        return discord.complete(route, result());
+                    }
+                }
+                case "submit" -> {
+                    if (method.getParameterCount() == 1) {
+                        CompletableFuture<Object> future = new CompletableFuture<>();
+                        discord.queue(route, result(), future::complete, future::completeExceptionally);
+                        return future;
+                    }
+                }
+                case "getJDA" -> {
+                    return discord.jda();
+                }
+                default -> {
+                }
+            }
+            // Fluent configuration (setContent, setCheck, timeout, ...) returns the action itself
+            if (!method.isDefault() && returnType.isInstance(proxy)) {
+                return proxy;
+            }
+            return NOT_HANDLED;
+        }
+
+        private Object result() {
+            return resultType != null && resultType.isInterface() ? stub(resultType, Map.of()) : null;
+        }
+
+        private Object defaultValue(Method method) {
+            Class<?> type = method.getReturnType();
+            if (type == void.class || type == String.class) {
+                return null;
+            }
+            if (type.isPrimitive()) {
+                return primitiveDefault(type);
+            }
+            if (type == Optional.class) {
+                return Optional.empty();
+            }
+            if (type == List.class || type == Collection.class) {
+                return List.of();
+            }
+            if (type == Set.class) {
+                return Set.of();
+            }
+            if (type == Map.class) {
+                return Map.of();
+            }
+            if (type == CompletableFuture.class) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!type.isInterface()) {
+                return null;
+            }
+            if (RestAction.class.isAssignableFrom(type)) {
+                // A fresh action per call, tagged with the method that created it
+                return restAction(type, method.getGenericReturnType(), method.getName());
+            }
+            return children.computeIfAbsent(method, _ -> stub(type, Map.of()));
+        }
+    }
+
+    private static final Object NOT_HANDLED = new Object();
+
+    private static Object primitiveDefault(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0d;
+    }
+
+    /**
+     * Resolve the {@code T} of {@code RestAction<T>} for an action type such as
+     * {@code MessageCreateAction}, by walking its generic super-interfaces.
+     *
+     * @return the result class, or null if it cannot be resolved
+     */
+    static Class<?> actionResultType(Type type, Map<TypeVariable<?>, Type> bindings) {
+        Class<?> raw;
+        Map<TypeVariable<?>, Type> own = new HashMap<>();
+        if (type instanceof ParameterizedType parameterized) {
+            raw = (Class<?>) parameterized.getRawType();
+            TypeVariable<?>[] variables = raw.getTypeParameters();
+            Type[] arguments = parameterized.getActualTypeArguments();
+            for (int i = 0; i < variables.length; i++) {
+                Type argument = arguments[i];
+                if (argument instanceof TypeVariable<?> variable && bindings.containsKey(variable)) {
+                    argument = bindings.get(variable);
+                }
+                own.put(variables[i], argument);
+            }
+        } else if (type instanceof Class<?> cls) {
+            raw = cls;
+        } else {
+            return null;
+        }
+
+        if (raw == RestAction.class) {
+            Type result = own.get(RestAction.class.getTypeParameters()[0]);
+            if (result instanceof Class<?> cls) {
+                return cls;
+            }
+            if (result instanceof ParameterizedType parameterized) {
+                return (Class<?>) parameterized.getRawType();
+            }
+            return null;
+        }
+        for (Type parent : raw.getGenericInterfaces()) {
+            Class<?> found = actionResultType(parent, own);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
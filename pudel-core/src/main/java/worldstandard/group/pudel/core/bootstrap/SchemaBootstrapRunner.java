@@ -23,7 +23,7 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import worldstandard.group.pudel.core.entity.GuildSettings;
-import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
+import worldstandard.group.pudel.core.service.GuildSettingsCache;
 import worldstandard.group.pudel.core.service.SchemaManagementService;
 
 import java.util.List;
@@ -39,14 +39,14 @@ public class SchemaBootstrapRunner implements CommandLineRunner {
     private static final Logger logger = LoggerFactory.getLogger(SchemaBootstrapRunner.class);
 
     private final JDA jda;
-    private final GuildSettingsRepository guildSettingsRepository;
+    private final GuildSettingsCache guildSettingsCache;
     private final SchemaManagementService schemaManagementService;
 
     public SchemaBootstrapRunner(@Lazy JDA jda,
-                                 GuildSettingsRepository guildSettingsRepository,
+                                 GuildSettingsCache guildSettingsCache,
                                  SchemaManagementService schemaManagementService) {
         this.jda = jda;
-        this.guildSettingsRepository = guildSettingsRepository;
+        this.guildSettingsCache = guildSettingsCache;
         this.schemaManagementService = schemaManagementService;
     }
 
@@ -75,11 +75,11 @@ public class SchemaBootstrapRunner implements CommandLineRunner {
             String guildName = guild.getName();
 
             // Ensure guild settings exist
-            GuildSettings settings = guildSettingsRepository.findByGuildId(guildId)
+            GuildSettings settings = guildSettingsCache.get(guildId)
                     .orElseGet(() -> {
                         GuildSettings newSettings = new GuildSettings(guildId);
                         newSettings.setSchemaCreated(false);
-                        return guildSettingsRepository.save(newSettings);
+                        return guildSettingsCache.save(newSettings);
                     });
 
             if (settings.getSchemaCreated() == null || !settings.getSchemaCreated()) {
@@ -93,7 +93,7 @@ public class SchemaBootstrapRunner implements CommandLineRunner {
 
                     // Update settings to mark schema as created
                     settings.setSchemaCreated(true);
-                    guildSettingsRepository.save(settings);
+                    guildSettingsCache.save(settings);
 
                     schemaCreated++;
                     logger.info("Created schema for guild: {} ({})", guildName, guildId);
@@ -104,7 +104,7 @@ public class SchemaBootstrapRunner implements CommandLineRunner {
             } else if (settings.getSchemaCreated() == null || !settings.getSchemaCreated()) {
                 // Schema exists but not marked in settings - update the flag
                 settings.setSchemaCreated(true);
-                guildSettingsRepository.save(settings);
+                guildSettingsCache.save(settings);
             }
         }
 
@@ -0,0 +1,57 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.bootstrap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
+import worldstandard.group.pudel.core.service.MemoryTextSearchService;
+
+/**
+ * Bootstrap runner that adds full-text search vectors to tenant schemas created before them,
+ * and rebuilds them when the text search language has changed.
+ * Runs on startup after the schema bootstrap.
+ */
+@Component
+@Order(20) // Run after schema bootstrap
+public class TextSearchBackfillRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextSearchBackfillRunner.class);
+
+    private final MemoryConfig memoryConfig;
+    private final MemoryTextSearchService memoryTextSearchService;
+
+    public TextSearchBackfillRunner(MemoryConfig memoryConfig,
+                                    MemoryTextSearchService memoryTextSearchService) {
+        this.memoryConfig = memoryConfig;
+        this.memoryTextSearchService = memoryTextSearchService;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!memoryConfig.getTextSearch().isBackfillOnStartup()) {
+            return;
+        }
+
+        try {
+            memoryTextSearchService.backfillAll();
+        } catch (Exception e) {
+            logger.error("Search vector backfill failed: {}", e.getMessage(), e);
+        }
+    }
+}
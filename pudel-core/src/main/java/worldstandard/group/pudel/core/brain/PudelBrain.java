@@ -14,6 +14,8 @@
  */
 package worldstandard.group.pudel.core.brain;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -21,11 +23,15 @@ import worldstandard.group.pudel.core.brain.memory.MemoryManager;
 import worldstandard.group.pudel.core.brain.personality.PersonalityEngine;
 import worldstandard.group.pudel.core.brain.response.ResponseGenerator;
 import worldstandard.group.pudel.core.service.ChatbotService.PudelPersonality;
+import worldstandard.group.pudel.core.service.SemanticResponseCache;
 import worldstandard.group.pudel.model.PudelModelService;
 import worldstandard.group.pudel.model.analyzer.TextAnalysis;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Pudel's Brain - The central intelligence component.
@@ -45,19 +51,28 @@ public class PudelBrain {
 
     private static final Logger logger = LoggerFactory.getLogger(PudelBrain.class);
 
+    // Intents whose replies may be answered without history and shared through the response cache
+    private static final Set<String> CACHEABLE_INTENTS = Set.of("question", "help", "information");
+
     private final PudelModelService modelService;
     private final MemoryManager memoryManager;
     private final PersonalityEngine personalityEngine;
     private final ResponseGenerator responseGenerator;
+    private final SemanticResponseCache responseCache;
+    private final MeterRegistry meterRegistry;
 
     public PudelBrain(PudelModelService modelService,
                       MemoryManager memoryManager,
                       PersonalityEngine personalityEngine,
-                      ResponseGenerator responseGenerator) {
+                      ResponseGenerator responseGenerator,
+                      SemanticResponseCache responseCache,
+                      MeterRegistry meterRegistry) {
         this.modelService = modelService;
         this.memoryManager = memoryManager;
         this.personalityEngine = personalityEngine;
         this.responseGenerator = responseGenerator;
+        this.responseCache = responseCache;
+        this.meterRegistry = meterRegistry;
         logger.info("Pudel Brain initialized with LangChain4j text analyzer");
     }
 
@@ -74,24 +89,63 @@ public class PudelBrain {
                                          ConversationContext context,
                                          boolean isGuild,
                                          long targetId) {
+        return processMessage(userMessage, context, isGuild, targetId, null);
+    }
+
+    /**
+     * Process a message, passing the LLM's partial output to {@code onPartial} while it streams.
+     *
+     * @param onPartial receives the raw visible text so far, or null to generate without streaming
+     * @see #processMessage(String, ConversationContext, boolean, long)
+     */
+    public BrainResponse processMessage(String userMessage,
+                                         ConversationContext context,
+                                         boolean isGuild,
+                                         long targetId,
+                                         Consumer<String> onPartial) {
         try {
+            // Step 0: Answer repeated questions from the guild's response cache
+            Timer.Sample sample = Timer.start(meterRegistry);
+            // Messages quoting another message are never cached, so they skip the embedding call
+            Optional<SemanticResponseCache.Lookup> cached = isGuild && !quotesOtherMessage(userMessage)
+                    ? responseCache.lookup(targetId, userMessage, context.personality())
+                    : Optional.empty();
+            sample.stop(meterRegistry.timer("pudel.brain.stage", "stage", "cache"));
+            if (cached.isPresent() && cached.get().hit()) {
+                SemanticResponseCache.Entry entry = cached.get().entry();
+                return new BrainResponse(entry.response(), entry.intent(), entry.sentiment(), entry.confidence(), 0);
+            }
+            long started = System.nanoTime();
+
             // Step 1: Analyze message with LangChain4j TextAnalyzer
+            sample = Timer.start(meterRegistry);
             TextAnalysis analysis = modelService.analyzeText(userMessage);
+            sample.stop(meterRegistry.timer("pudel.brain.stage", "stage", "analysis"));
             logger.debug("Text Analysis: intent={}, sentiment={}, language={}",
                     analysis.intent(), analysis.sentiment(), analysis.language());
 
             // Step 2: Retrieve relevant memories based on context
+            sample = Timer.start(meterRegistry);
             List<MemoryManager.MemoryEntry> relevantMemories =
                     memoryManager.retrieveRelevantMemories(userMessage, isGuild, targetId);
+            sample.stop(meterRegistry.timer("pudel.brain.stage", "stage", "memory"));
             logger.debug("Retrieved {} relevant memories for {} {}",
                     relevantMemories.size(), isGuild ? "guild" : "user", targetId);
 
+            // Cached replies are served to everyone in the guild, so a standalone question is answered
+            // without dialogue history; that answer carries no one's conversation and can be shared
+            boolean cacheable = cached.isPresent() && isStandaloneQuestion(analysis);
+            ConversationContext promptContext = cacheable
+                    ? new ConversationContext(List.of(), context.personality(), context.isGuild(),
+                            context.targetId(), context.userId(), context.channelId())
+                    : context;
+
             // Log conversation history size for debugging
-            logger.debug("Conversation history contains {} entries", context.history().size());
+            logger.debug("Conversation history contains {} entries", promptContext.history().size());
 
             // Step 3: Build enriched context with memories
             EnrichedContext enrichedContext = new EnrichedContext(
-                    context,
+                    promptContext,
                     analysis,
                     relevantMemories
             );
@@ -101,11 +155,21 @@ public class PudelBrain {
                     personalityEngine.buildProfile(context.personality());
 
             // Step 5: Generate response based on enriched context and personality
-            String response = responseGenerator.generate(
+            sample = Timer.start(meterRegistry);
+            ResponseGenerator.GeneratedResponse generated = responseGenerator.generateAsync(
                     userMessage,
                     enrichedContext,
-                    profile
-            );
+                    profile,
+                    onPartial
+            ).join();
+            String response = generated.text();
+            sample.stop(meterRegistry.timer("pudel.brain.stage", "stage", "generate"));
+
+            // Only model replies are worth replaying; template fallbacks are cheap and random
+            if (cacheable && generated.fromModel()) {
+                responseCache.put(cached.get(), response, analysis.intent(), analysis.sentiment(),
+                        analysis.confidence(), System.nanoTime() - started);
+            }
 
             // Step 6: Return brain response with metadata
             return new BrainResponse(
@@ -117,6 +181,7 @@ public class PudelBrain {
             );
 
         } catch (Exception e) {
+            meterRegistry.counter("pudel.brain.errors").increment();
             logger.error("Error processing message in brain: {}", e.getMessage(), e);
             return new BrainResponse(
                     personalityEngine.getErrorResponse(context.personality()),
@@ -149,10 +214,13 @@ public class PudelBrain {
                 return;
             }
 
-            // Use async LLM analysis - runs on dedicated thread, won't block event thread
-            // or be interrupted by Discord heartbeat. Falls back to pattern-based if LLM fails.
+            // Use async LLM analysis - batched with other passive messages off the event thread,
+            // so it is not interrupted by Discord heartbeat. Falls back to pattern-based if LLM fails.
+            Timer.Sample sample = Timer.start(meterRegistry);
             modelService.analyzeTextAsync(message)
                     .thenAccept(analysis -> {
+                        sample.stop(meterRegistry.timer("pudel.passive.analysis",
+                                "outcome", analysis.containsInterestingInfo() ? "stored" : "skipped"));
                         // Store as passive context if it contains interesting information
                         if (analysis.containsInterestingInfo()) {
                             try {
@@ -170,6 +238,7 @@ public class PudelBrain {
                         }
                     })
                     .exceptionally(e -> {
+                        sample.stop(meterRegistry.timer("pudel.passive.analysis", "outcome", "error"));
                         logger.debug("Error in async context tracking: {}", e.getMessage());
                         return null;
                     });
@@ -218,6 +287,20 @@ public class PudelBrain {
         return modelService.isAnalyzerLLMAvailable();
     }
 
+    /**
+     * Whether a message is a question, help or information request, which reads the same whoever asks it.
+     */
+    private static boolean isStandaloneQuestion(TextAnalysis analysis) {
+        return analysis.isQuestion() || CACHEABLE_INTENTS.contains(analysis.intent());
+    }
+
+    /**
+     * Whether ChatbotService prefixed the message with a replied-to or forwarded message.
+     */
+    private static boolean quotesOtherMessage(String userMessage) {
+        return userMessage.startsWith("[Replying to:") || userMessage.startsWith("[Forwarded message context:");
+    }
+
     // ===============================
     // Inner Classes / Records
     // ===============================
@@ -241,7 +324,8 @@ public class PudelBrain {
             PudelPersonality personality,
             boolean isGuild,
             long targetId,
-            long userId
+            long userId,
+            long channelId
     ) {}
 
     /**
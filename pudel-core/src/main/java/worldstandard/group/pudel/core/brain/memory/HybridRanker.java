@@ -0,0 +1,106 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.brain.memory;
+
+import worldstandard.group.pudel.core.brain.memory.MemoryManager.MemoryEntry;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Merges the ranked result lists of the keyword and semantic searches with reciprocal rank fusion.
+ * <p>
+ * An entry scores {@code weight / (rrfK + rank)} for every list it appears in, where the weight
+ * depends on where it came from (dialogue, stored memory or passive context), so an entry found by
+ * both searches outranks one found by either alone, whatever scale each search scores on. The score
+ * is then decayed by age: {@code recencyWeight} of it halves every {@code recencyHalfLifeDays}.
+ * <p>
+ * Entries with the same text (ignoring case and whitespace) are one entry, so the same fact stored
+ * twice, or found by both searches, takes one slot. Relevance is scaled so that the best entry has 1.0.
+ */
+final class HybridRanker {
+
+    private HybridRanker() {
+    }
+
+    /**
+     * Fuse ranked lists into one.
+     *
+     * @param rankings   result lists, each ordered best first
+     * @param config     fusion and decay settings
+     * @param maxResults how many entries to keep
+     * @param now        the time ages are measured from
+     * @return the fused entries, most relevant first
+     */
+    static List<MemoryEntry> fuse(List<List<MemoryEntry>> rankings, MemoryConfig.Retrieval config,
+                                  int maxResults, LocalDateTime now) {
+        int k = Math.max(1, config.getRrfK());
+        Map<String, MemoryEntry> entries = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+
+        for (List<MemoryEntry> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                MemoryEntry entry = ranking.get(rank);
+                String key = normalize(entry.content());
+                entries.putIfAbsent(key, entry);
+                scores.merge(key, weight(entry.type(), config) / (k + rank + 1), Double::sum);
+            }
+        }
+
+        double recencyWeight = Math.clamp(config.getRecencyWeight(), 0.0, 1.0);
+        double halfLifeHours = Math.max(1.0, config.getRecencyHalfLifeDays() * 24);
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.size());
+        for (Map.Entry<String, Double> score : scores.entrySet()) {
+            MemoryEntry entry = entries.get(score.getKey());
+            double decay = 1.0;
+            if (entry.timestamp() != null) {
+                long ageHours = Math.max(0, Duration.between(entry.timestamp(), now).toHours());
+                decay = 1 - recencyWeight + recencyWeight * Math.pow(0.5, ageHours / halfLifeHours);
+            }
+            ranked.add(Map.entry(score.getKey(), score.getValue() * decay));
+        }
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        List<MemoryEntry> fused = new ArrayList<>(Math.min(ranked.size(), maxResults));
+        double best = ranked.isEmpty() ? 1.0 : ranked.getFirst().getValue();
+        for (Map.Entry<String, Double> score : ranked) {
+            if (fused.size() >= maxResults) {
+                break;
+            }
+            MemoryEntry entry = entries.get(score.getKey());
+            double relevance = best > 0 ? score.getValue() / best : 0;
+            fused.add(new MemoryEntry(entry.type(), entry.content(), relevance, entry.timestamp()));
+        }
+        return fused;
+    }
+
+    private static double weight(String type, MemoryConfig.Retrieval config) {
+        return switch (type) {
+            case "memory" -> config.getMemoryWeight();
+            case "context" -> config.getContextWeight();
+            default -> config.getDialogueWeight();
+        };
+    }
+
+    private static String normalize(String content) {
+        return content == null ? "" : content.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+}
@@ -14,27 +14,42 @@
  */
 package worldstandard.group.pudel.core.brain.memory;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
 import worldstandard.group.pudel.core.service.GuildDataService;
+import worldstandard.group.pudel.core.service.MemoryEmbeddingService;
+import worldstandard.group.pudel.core.service.MemoryTextSearchService;
+import worldstandard.group.pudel.core.service.MemoryWriteBuffer;
 import worldstandard.group.pudel.core.service.SchemaManagementService;
 import worldstandard.group.pudel.core.service.SubscriptionService;
+import worldstandard.group.pudel.core.service.TenantRowCounter;
 import worldstandard.group.pudel.core.service.UserDataService;
 import worldstandard.group.pudel.model.analyzer.TextAnalysis;
+import worldstandard.group.pudel.model.embedding.OllamaEmbeddingService;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Memory Manager for Pudel's Brain.
  * <p>
  * Manages dialogue history, memories, and context storage with:
  * - Subscription-based capacity limits
- * - Semantic similarity search (using pgvector if available)
+ * - Hybrid retrieval: full-text search and semantic similarity (using pgvector if available)
  * - Passive context tracking
  * - Memory pruning/cleanup
  * <p>
@@ -45,22 +60,62 @@ public class MemoryManager {
 
     private static final Logger logger = LoggerFactory.getLogger(MemoryManager.class);
 
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "a", "an", "is", "are", "was", "were", "be", "been", "being",
+            "have", "has", "had", "do", "does", "did", "will", "would", "could",
+            "should", "can", "may", "might", "must", "shall", "this", "that",
+            "these", "those", "i", "you", "he", "she", "it", "we", "they",
+            "my", "your", "his", "her", "its", "our", "their", "and", "or",
+            "but", "if", "then", "than", "so", "as", "at", "by", "for", "from",
+            "in", "into", "of", "on", "to", "with", "about", "what", "which",
+            "who", "whom", "how", "when", "where", "why"
+    );
+
+    // Matches any keyword, with the search configuration as the first parameter
+    private static final String TS_QUERY = "websearch_to_tsquery(?::regconfig, ?) q";
+    // Cover density rank scaled into [0, 1) by rank / (rank + 1)
+    private static final String RANK = "ts_rank_cd(search_vector, q, 32)";
+
     private final JdbcTemplate jdbcTemplate;
     private final SchemaManagementService schemaManagementService;
     private final SubscriptionService subscriptionService;
     private final GuildDataService guildDataService;
     private final UserDataService userDataService;
+    private final MemoryTextSearchService memoryTextSearchService;
+    private final MemoryEmbeddingService memoryEmbeddingService;
+    private final MemoryWriteBuffer memoryWriteBuffer;
+    private final TenantRowCounter rowCounter;
+    private final OllamaEmbeddingService embeddingService;
+    private final MemoryConfig memoryConfig;
+
+    // Runs the keyword and semantic searches of a retrieval side by side
+    private final ExecutorService retrievalExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pudel-memory-", 0).factory());
+    private final LongAdder lexicalTimeouts = new LongAdder();
+    private final LongAdder semanticTimeouts = new LongAdder();
 
     public MemoryManager(JdbcTemplate jdbcTemplate,
                          SchemaManagementService schemaManagementService,
                          @Lazy SubscriptionService subscriptionService,
                          GuildDataService guildDataService,
-                         UserDataService userDataService) {
+                         UserDataService userDataService,
+                         MemoryTextSearchService memoryTextSearchService,
+                         MemoryEmbeddingService memoryEmbeddingService,
+                         MemoryWriteBuffer memoryWriteBuffer,
+                         TenantRowCounter rowCounter,
+                         OllamaEmbeddingService embeddingService,
+                         MemoryConfig memoryConfig) {
         this.jdbcTemplate = jdbcTemplate;
         this.schemaManagementService = schemaManagementService;
         this.subscriptionService = subscriptionService;
         this.guildDataService = guildDataService;
         this.userDataService = userDataService;
+        this.memoryTextSearchService = memoryTextSearchService;
+        this.memoryEmbeddingService = memoryEmbeddingService;
+        this.memoryWriteBuffer = memoryWriteBuffer;
+        this.rowCounter = rowCounter;
+        this.embeddingService = embeddingService;
+        this.memoryConfig = memoryConfig;
     }
 
     /**
@@ -132,21 +187,16 @@ public class MemoryManager {
                 }
             }
 
-            // Store context
-            String sql = "INSERT INTO " + schemaName + ".passive_context " +
-                    "(user_id, channel_id, content, intent, sentiment, entities, created_at) " +
-                    "VALUES (?, ?, ?, ?, ?, ?::jsonb, ?)";
-
+            // Store context; inserted in a batch by the write buffer
             String entitiesJson = entitiesToJson(analysis.entities());
 
-            jdbcTemplate.update(sql,
+            memoryWriteBuffer.enqueuePassiveContext(schemaName,
                     userId,
                     channelId,
                     message,
                     analysis.intent(),
                     analysis.sentiment(),
-                    entitiesJson,
-                    Timestamp.valueOf(LocalDateTime.now())
+                    entitiesJson
             );
 
             logger.debug("Stored passive context for {} {}", isGuild ? "guild" : "user", targetId);
@@ -158,54 +208,93 @@ public class MemoryManager {
 
     /**
      * Retrieve relevant memories based on message content.
-     * Uses keyword matching and recency.
+     * <p>
+     * Full-text search and vector similarity run concurrently, and their result lists are merged by
+     * {@link HybridRanker}. Retrieval waits at most {@code retrieval.timeoutMillis}; a search that has
+     * not answered by then is left out. Without keywords or embeddings, returns recent dialogue.
      */
     public List<MemoryEntry> retrieveRelevantMemories(String message, boolean isGuild, long targetId) {
-        List<MemoryEntry> memories = new ArrayList<>();
-
         try {
             String schemaName = isGuild
                     ? schemaManagementService.getGuildSchemaName(targetId)
                     : schemaManagementService.getUserSchemaName(targetId);
 
             // Extract keywords from message for search
-            String[] words = message.toLowerCase().split("\\s+");
-            Set<String> keywords = new HashSet<>();
-            for (String word : words) {
-                // Skip common words
-                if (word.length() > 3 && !isStopWord(word)) {
-                    keywords.add(word);
-                }
-            }
+            String query = MemoryTextSearchService.toWebSearchQuery(extractKeywords(message));
+            boolean semantic = isSemanticSearchAvailable();
 
-            if (keywords.isEmpty()) {
+            if (query.isEmpty() && !semantic) {
                 // If no keywords, just get recent memories
                 return getRecentMemories(schemaName, 5);
             }
 
-            // Search dialogue history for keyword matches
-            List<MemoryEntry> dialogueMemories = searchDialogueHistory(schemaName, keywords, 5);
-            memories.addAll(dialogueMemories);
-
-            // Search stored memories
-            List<MemoryEntry> storedMemories = searchStoredMemories(schemaName, keywords, 3);
-            memories.addAll(storedMemories);
-
-            // Search passive context
-            List<MemoryEntry> contextMemories = searchPassiveContext(schemaName, keywords, 3);
-            memories.addAll(contextMemories);
+            MemoryConfig.Retrieval config = memoryConfig.getRetrieval();
+            int depth = Math.max(1, config.getCandidatesPerSource());
+
+            // Each finished search adds its ranked list; what is here at the deadline gets fused
+            Queue<List<MemoryEntry>> rankings = new ConcurrentLinkedQueue<>();
+            Map<String, Future<?>> legs = new LinkedHashMap<>();
+            if (!query.isEmpty()) {
+                legs.put("lexical", retrievalExecutor.submit(() -> {
+                    rankings.add(searchDialogueHistory(schemaName, query, depth));
+                    rankings.add(searchStoredMemories(schemaName, query, depth));
+                    rankings.add(searchPassiveContext(schemaName, query, depth));
+                }));
+            }
+            if (semantic) {
+                legs.put("semantic", retrievalExecutor.submit(() -> searchSimilar(schemaName, message, depth, rankings)));
+            }
+            awaitLegs(legs, config.getTimeoutMillis());
 
-            // Sort by relevance and limit
-            memories.sort((a, b) -> Double.compare(b.relevance(), a.relevance()));
-            if (memories.size() > 10) {
-                memories = memories.subList(0, 10);
+            int maxResults = Math.max(1, memoryConfig.getSemanticSearch().getMaxResults());
+            List<MemoryEntry> memories = HybridRanker.fuse(List.copyOf(rankings), config, maxResults, LocalDateTime.now());
+            if (memories.isEmpty() && query.isEmpty()) {
+                return getRecentMemories(schemaName, 5);
             }
+            return memories;
 
         } catch (Exception e) {
             logger.debug("Error retrieving memories: {}", e.getMessage());
+            return new ArrayList<>();
         }
+    }
 
-        return memories;
+    /**
+     * Wait for the searches until the shared deadline. Searches still running are cancelled
+     * and counted; their lists that already arrived are kept.
+     */
+    private void awaitLegs(Map<String, Future<?>> legs, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeoutMillis));
+        for (Map.Entry<String, Future<?>> leg : legs.entrySet()) {
+            try {
+                leg.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                leg.getValue().cancel(true);
+                (leg.getKey().equals("lexical") ? lexicalTimeouts : semanticTimeouts).increment();
+                logger.debug("Memory {} search missed the {}ms budget", leg.getKey(), timeoutMillis);
+            } catch (ExecutionException e) {
+                logger.debug("Memory {} search failed: {}", leg.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retrievalExecutor.shutdownNow();
+    }
+
+    /**
+     * How often the full-text search missed the retrieval budget.
+     */
+    public long getLexicalTimeoutCount() {
+        return lexicalTimeouts.sum();
+    }
+
+    /**
+     * How often the semantic search missed the retrieval budget.
+     */
+    public long getSemanticTimeoutCount() {
+        return semanticTimeouts.sum();
     }
 
     /**
@@ -248,6 +337,7 @@ public class MemoryManager {
                     ")";
 
             int deleted = jdbcTemplate.update(sql, keepCount);
+            rowCounter.add(schemaName, "dialogue_history", -deleted);
             if (deleted > 0) {
                 logger.info("Pruned {} old dialogue entries for {} {}", deleted, isGuild ? "guild" : "user", targetId);
             }
@@ -266,9 +356,9 @@ public class MemoryManager {
                     ? schemaManagementService.getGuildSchemaName(targetId)
                     : schemaManagementService.getUserSchemaName(targetId);
 
-            long dialogueCount = countRows(schemaName, "dialogue_history");
-            long memoryCount = countRows(schemaName, "memory");
-            long passiveCount = countRows(schemaName, "passive_context");
+            long dialogueCount = rowCounter.get(schemaName, "dialogue_history");
+            long memoryCount = rowCounter.get(schemaName, "memory");
+            long passiveCount = rowCounter.get(schemaName, "passive_context");
 
             long dialogueLimit = isGuild
                     ? subscriptionService.getGuildDialogueLimit(targetId)
@@ -323,28 +413,14 @@ public class MemoryManager {
                     ")";
             jdbcTemplate.execute(sql);
 
-            // Create index on content for searching
-            String indexSql = "CREATE INDEX IF NOT EXISTS idx_" + schemaName.replace("_", "") + "_passive_content " +
-                    "ON " + schemaName + ".passive_context USING gin(to_tsvector('english', content))";
-            jdbcTemplate.execute(indexSql);
+            // Full-text search vector and its index
+            memoryTextSearchService.ensureSearchColumns(schemaName);
 
         } catch (Exception e) {
             logger.debug("Error creating passive_context table: {}", e.getMessage());
         }
     }
 
-    private long countRows(String schemaName, String tableName) {
-        try {
-            Long count = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(*) FROM " + schemaName + "." + tableName,
-                    Long.class
-            );
-            return count != null ? count : 0;
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
     private List<MemoryEntry> getRecentMemories(String schemaName, int limit) {
         List<MemoryEntry> memories = new ArrayList<>();
         try {
@@ -365,32 +441,60 @@ public class MemoryManager {
         return memories;
     }
 
-    private List<MemoryEntry> searchDialogueHistory(String schemaName, Set<String> keywords, int limit) {
+    private boolean isSemanticSearchAvailable() {
+        return memoryConfig.getSemanticSearch().isEnabled() && embeddingService.isAvailable()
+                && memoryEmbeddingService.isPgvectorAvailable();
+    }
+
+    /**
+     * Search dialogue and stored memories by embedding similarity, adding one ranked list each.
+     */
+    private void searchSimilar(String schemaName, String message, int limit, Queue<List<MemoryEntry>> rankings) {
+        if (!memoryEmbeddingService.ensureEmbeddingTables(schemaName)) {
+            return;
+        }
+        float[] embedding = embeddingService.embed(message).orElse(null);
+        if (embedding == null) {
+            return;
+        }
+
+        List<MemoryEntry> dialogue = new ArrayList<>();
+        for (Map<String, Object> row : memoryEmbeddingService.searchSimilarDialogue(schemaName, embedding, limit)) {
+            dialogue.add(new MemoryEntry(
+                    "dialogue",
+                    row.get("user_message") + " -> " + row.get("bot_response"),
+                    ((Number) row.get("similarity")).doubleValue(),
+                    ((Timestamp) row.get("created_at")).toLocalDateTime()
+            ));
+        }
+        rankings.add(dialogue);
+
+        List<MemoryEntry> stored = new ArrayList<>();
+        for (Map<String, Object> row : memoryEmbeddingService.searchSimilarMemories(schemaName, embedding, limit)) {
+            stored.add(new MemoryEntry(
+                    "memory",
+                    row.get("key") + ": " + row.get("value"),
+                    ((Number) row.get("similarity")).doubleValue(),
+                    ((Timestamp) row.get("created_at")).toLocalDateTime()
+            ));
+        }
+        rankings.add(stored);
+    }
+
+    private List<MemoryEntry> searchDialogueHistory(String schemaName, String query, int limit) {
         List<MemoryEntry> memories = new ArrayList<>();
         try {
-            String searchPattern = "%" + String.join("% OR user_message ILIKE %", keywords) + "%";
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT user_message, bot_response, created_at FROM ").append(schemaName).append(".dialogue_history WHERE ");
-
-            List<Object> params = new ArrayList<>();
-            boolean first = true;
-            for (String keyword : keywords) {
-                if (!first) sql.append(" OR ");
-                sql.append("user_message ILIKE ?");
-                params.add("%" + keyword + "%");
-                first = false;
-            }
-            sql.append(" ORDER BY created_at DESC LIMIT ?");
-            params.add(limit);
+            String sql = "SELECT user_message, bot_response, created_at, " + RANK + " AS rank " +
+                    "FROM " + schemaName + ".dialogue_history, " + TS_QUERY +
+                    " WHERE search_vector @@ q ORDER BY rank DESC, created_at DESC LIMIT ?";
 
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql.toString(), params.toArray());
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql,
+                    memoryTextSearchService.getLanguage(), query, limit);
             for (Map<String, Object> row : rows) {
-                String content = (String) row.get("user_message");
-                double relevance = calculateRelevance(content, keywords);
                 memories.add(new MemoryEntry(
                         "dialogue",
-                        content + " -> " + row.get("bot_response"),
-                        relevance,
+                        row.get("user_message") + " -> " + row.get("bot_response"),
+                        ((Number) row.get("rank")).doubleValue(),
                         ((Timestamp) row.get("created_at")).toLocalDateTime()
                 ));
             }
@@ -400,32 +504,20 @@ public class MemoryManager {
         return memories;
     }
 
-    private List<MemoryEntry> searchStoredMemories(String schemaName, Set<String> keywords, int limit) {
+    private List<MemoryEntry> searchStoredMemories(String schemaName, String query, int limit) {
         List<MemoryEntry> memories = new ArrayList<>();
         try {
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT key, value, created_at FROM ").append(schemaName).append(".memory WHERE ");
-
-            List<Object> params = new ArrayList<>();
-            boolean first = true;
-            for (String keyword : keywords) {
-                if (!first) sql.append(" OR ");
-                sql.append("key ILIKE ? OR value ILIKE ?");
-                params.add("%" + keyword + "%");
-                params.add("%" + keyword + "%");
-                first = false;
-            }
-            sql.append(" ORDER BY created_at DESC LIMIT ?");
-            params.add(limit);
+            String sql = "SELECT key, value, created_at, " + RANK + " AS rank " +
+                    "FROM " + schemaName + ".memory, " + TS_QUERY +
+                    " WHERE search_vector @@ q ORDER BY rank DESC, created_at DESC LIMIT ?";
 
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql.toString(), params.toArray());
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql,
+                    memoryTextSearchService.getLanguage(), query, limit);
             for (Map<String, Object> row : rows) {
-                String content = row.get("key") + ": " + row.get("value");
-                double relevance = calculateRelevance(content, keywords);
                 memories.add(new MemoryEntry(
                         "memory",
-                        content,
-                        relevance,
+                        row.get("key") + ": " + row.get("value"),
+                        ((Number) row.get("rank")).doubleValue(),
                         ((Timestamp) row.get("created_at")).toLocalDateTime()
                 ));
             }
@@ -435,35 +527,24 @@ public class MemoryManager {
         return memories;
     }
 
-    private List<MemoryEntry> searchPassiveContext(String schemaName, Set<String> keywords, int limit) {
+    private List<MemoryEntry> searchPassiveContext(String schemaName, String query, int limit) {
         List<MemoryEntry> memories = new ArrayList<>();
         try {
             if (!tableExists(schemaName, "passive_context")) {
                 return memories;
             }
 
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT content, created_at FROM ").append(schemaName).append(".passive_context WHERE ");
-
-            List<Object> params = new ArrayList<>();
-            boolean first = true;
-            for (String keyword : keywords) {
-                if (!first) sql.append(" OR ");
-                sql.append("content ILIKE ?");
-                params.add("%" + keyword + "%");
-                first = false;
-            }
-            sql.append(" ORDER BY created_at DESC LIMIT ?");
-            params.add(limit);
+            String sql = "SELECT content, created_at, " + RANK + " AS rank " +
+                    "FROM " + schemaName + ".passive_context, " + TS_QUERY +
+                    " WHERE search_vector @@ q ORDER BY rank DESC, created_at DESC LIMIT ?";
 
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql.toString(), params.toArray());
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql,
+                    memoryTextSearchService.getLanguage(), query, limit);
             for (Map<String, Object> row : rows) {
-                String content = (String) row.get("content");
-                double relevance = calculateRelevance(content, keywords) * 0.8; // Lower weight for passive context
                 memories.add(new MemoryEntry(
                         "context",
-                        content,
-                        relevance,
+                        (String) row.get("content"),
+                        ((Number) row.get("rank")).doubleValue(),
                         ((Timestamp) row.get("created_at")).toLocalDateTime()
                 ));
             }
@@ -473,31 +554,23 @@ public class MemoryManager {
         return memories;
     }
 
-    private double calculateRelevance(String content, Set<String> keywords) {
-        if (content == null || content.isEmpty()) return 0.0;
-
-        String lower = content.toLowerCase();
-        int matches = 0;
-        for (String keyword : keywords) {
-            if (lower.contains(keyword)) {
-                matches++;
+    /**
+     * Extract search keywords from a message: lowercase words longer than three
+     * characters that are not stop words.
+     *
+     * @param message the message
+     * @return the distinct keywords
+     */
+    public static Set<String> extractKeywords(String message) {
+        String[] words = message.toLowerCase().split("\\s+");
+        Set<String> keywords = new HashSet<>();
+        for (String word : words) {
+            // Skip common words
+            if (word.length() > 3 && !STOP_WORDS.contains(word)) {
+                keywords.add(word);
             }
         }
-        return (double) matches / keywords.size();
-    }
-
-    private boolean isStopWord(String word) {
-        Set<String> stopWords = Set.of(
-                "the", "a", "an", "is", "are", "was", "were", "be", "been", "being",
-                "have", "has", "had", "do", "does", "did", "will", "would", "could",
-                "should", "can", "may", "might", "must", "shall", "this", "that",
-                "these", "those", "i", "you", "he", "she", "it", "we", "they",
-                "my", "your", "his", "her", "its", "our", "their", "and", "or",
-                "but", "if", "then", "than", "so", "as", "at", "by", "for", "from",
-                "in", "into", "of", "on", "to", "with", "about", "what", "which",
-                "who", "whom", "how", "when", "where", "why"
-        );
-        return stopWords.contains(word.toLowerCase());
+        return keywords;
     }
 
     private String entitiesToJson(Map<String, List<String>> entities) {
@@ -14,6 +14,8 @@
  */
 package worldstandard.group.pudel.core.brain.response;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
@@ -28,6 +30,8 @@ import worldstandard.group.pudel.model.PudelModelService.*;
 import worldstandard.group.pudel.model.analyzer.TextAnalysis;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Response Generator for Pudel's Brain.
@@ -46,12 +50,27 @@ public class ResponseGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(ResponseGenerator.class);
 
+    // History turns sent to the LLM; the window may grow to twice this before it moves
+    private static final int HISTORY_TURNS = 5;
+    private static final int MAX_HISTORY_ANCHORS = 10_000;
+
     private final PersonalityEngine personalityEngine;
     private final PudelModelService modelService;
+    private final MeterRegistry meterRegistry;
 
     // Response templates by intent (fallback mode)
     private final Map<String, List<String>> intentTemplates = new HashMap<>();
 
+    // key = channel ("g:guildId:channelId" or "u:userId:channelId"), value = dialogue ID of the
+    // oldest turn sent last time, so the history window only moves in steps
+    private final Map<String, Long> historyAnchors = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_HISTORY_ANCHORS;
+                }
+            });
+
     // Contextual connectors
     private final List<String> memoryConnectors = Arrays.asList(
             "I remember that ",
@@ -62,9 +81,11 @@ public class ResponseGenerator {
     );
 
     public ResponseGenerator(PersonalityEngine personalityEngine,
-                             @Lazy PudelModelService modelService) {
+                             @Lazy PudelModelService modelService,
+                             MeterRegistry meterRegistry) {
         this.personalityEngine = personalityEngine;
         this.modelService = modelService;
+        this.meterRegistry = meterRegistry;
         initializeTemplates();
     }
 
@@ -155,98 +176,166 @@ public class ResponseGenerator {
      * Tries Ollama LLM first, falls back to template-based responses.
      */
     public String generate(String userMessage, EnrichedContext context, PersonalityProfile profile) {
-        try {
-            // Try Ollama LLM first for intelligent responses
-            if (modelService != null && modelService.isAvailable()) {
-                String ollamaResponse = tryOllamaGeneration(userMessage, context, profile);
-                if (ollamaResponse != null) {
-                    // Format response for Discord output
-                    String formattedResponse = modelService.formatResponseForDiscord(ollamaResponse);
-                    logger.debug("Generated response via Ollama LLM");
-                    return formattedResponse;
-                }
-            }
+        return generate(userMessage, context, profile, null);
+    }
 
-            // Fallback to template-based response generation
-            logger.debug("Using template-based response generation");
-            return generateTemplateResponse(userMessage, context, profile);
+    /**
+     * Generate a response, passing the LLM's partial output to {@code onPartial} while it streams.
+     * The returned response is always the final, Discord-formatted text.
+     */
+    public String generate(String userMessage, EnrichedContext context, PersonalityProfile profile,
+                           Consumer<String> onPartial) {
+        return generateAsync(userMessage, context, profile, onPartial).join().text();
+    }
 
+    /**
+     * Generate a response without blocking while the LLM works.
+     * Completes with the Discord-formatted LLM response, or a template response if the LLM
+     * is unavailable or fails.
+     */
+    public CompletableFuture<GeneratedResponse> generateAsync(String userMessage, EnrichedContext context,
+                                                   PersonalityProfile profile, Consumer<String> onPartial) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<String> llmResponse;
+        try {
+            // Try Ollama LLM first for intelligent responses
+            llmResponse = modelService != null && modelService.isAvailable()
+                    ? modelService.generateResponseAsync(buildGenerationRequest(userMessage, context), onPartial)
+                            .thenApply(response -> response.success() ? response.response() : null)
+                    : CompletableFuture.completedFuture(null);
         } catch (Exception e) {
-            logger.error("Error generating response: {}", e.getMessage(), e);
-            return personalityEngine.getErrorResponse(context.getPersonality());
+            logger.debug("Ollama generation failed, falling back to templates: {}", e.getMessage());
+            llmResponse = CompletableFuture.completedFuture(null);
         }
+
+        return llmResponse
+                .exceptionally(e -> {
+                    logger.debug("Ollama generation failed, falling back to templates: {}", e.getMessage());
+                    return null;
+                })
+                .thenApply(ollamaResponse -> {
+                    String source = "template";
+                    try {
+                        if (ollamaResponse != null) {
+                            // Format response for Discord output
+                            String formattedResponse = modelService.formatResponseForDiscord(ollamaResponse);
+                            logger.debug("Generated response via Ollama LLM");
+                            source = "llm";
+                            return new GeneratedResponse(formattedResponse, true);
+                        }
+
+                        // Fallback to template-based response generation
+                        logger.debug("Using template-based response generation");
+                        return new GeneratedResponse(generateTemplateResponse(userMessage, context, profile), false);
+
+                    } catch (Exception e) {
+                        source = "error";
+                        logger.error("Error generating response: {}", e.getMessage(), e);
+                        return new GeneratedResponse(personalityEngine.getErrorResponse(context.getPersonality()), false);
+                    } finally {
+                        sample.stop(meterRegistry.timer("pudel.response.generate", "source", source));
+                    }
+                });
     }
 
     /**
-     * Try generating response via Ollama LLM.
+     * Build the LLM generation request from the enriched context.
      */
-    private String tryOllamaGeneration(String userMessage, EnrichedContext context, PersonalityProfile profile) {
-        try {
-            PudelPersonality personality = context.getPersonality();
-
-            // Build personality traits with all natural behavior fields
-            PersonalityTraits traits = new PersonalityTraits(
-                    personality.nickname(),
-                    personality.biography(),
-                    personality.personality(),
-                    personality.preferences(),
-                    personality.dialogueStyle(),
-                    personality.language(),
-                    personality.responseLength(),
-                    personality.formality(),
-                    personality.emoteUsage(),
-                    personality.quirks(),
-                    personality.topicsInterest(),
-                    personality.topicsAvoid()
-            );
+    private GenerationRequest buildGenerationRequest(String userMessage, EnrichedContext context) {
+        PudelPersonality personality = context.getPersonality();
 
-            // Build conversation history from context
-            // Note: History comes in DESC order (most recent first), we need chronological order
-            List<Map<String, Object>> historyList = new ArrayList<>(context.getHistory());
-            Collections.reverse(historyList); // Reverse to chronological order
-
-            List<ConversationTurn> conversationHistory = historyList.stream()
-                    .filter(h -> h.containsKey("user_message") && h.containsKey("bot_response"))
-                    .map(h -> new ConversationTurn(
-                            (String) h.get("user_message"),
-                            (String) h.get("bot_response")
-                    ))
-                    .limit(5) // Limit context to last 5 turns
-                    .toList();
-
-            // Build memory context from relevant memories
-            List<MemoryContext> memoryContext = context.relevantMemories().stream()
-                    .map(m -> new MemoryContext(
-                            m.content(),
-                            m.type(),
-                            m.timestamp() != null ? m.timestamp().toString() : null,
-                            m.relevance()
-                    ))
-                    .limit(5)
-                    .toList();
-
-            // Build generation request
-            GenerationRequest request = GenerationRequest.builder()
-                    .userMessage(userMessage)
-                    .personality(traits)
-                    .conversationHistory(conversationHistory)
-                    .relevantMemories(memoryContext)
-                    .intent(context.textAnalysis().intent())
-                    .sentiment(context.textAnalysis().sentiment())
-                    .build();
-
-            // Call model service
-            GenerationResponse response = modelService.generateResponse(request);
-
-            if (response.success() && response.response() != null) {
-                return response.response();
+        // Build personality traits with all natural behavior fields
+        PersonalityTraits traits = new PersonalityTraits(
+                personality.nickname(),
+                personality.biography(),
+                personality.personality(),
+                personality.preferences(),
+                personality.dialogueStyle(),
+                personality.language(),
+                personality.responseLength(),
+                personality.formality(),
+                personality.emoteUsage(),
+                personality.quirks(),
+                personality.topicsInterest(),
+                personality.topicsAvoid()
+        );
+
+        // Build conversation history from context
+        // Note: History comes in DESC order (most recent first), we need chronological order
+        List<Map<String, Object>> historyList = new ArrayList<>(context.getHistory());
+        Collections.reverse(historyList); // Reverse to chronological order
+
+        List<Map<String, Object>> turns = historyList.stream()
+                .filter(h -> h.containsKey("user_message") && h.containsKey("bot_response"))
+                .toList();
+        List<ConversationTurn> conversationHistory = selectHistoryWindow(turns, context).stream()
+                .map(h -> new ConversationTurn(
+                        (String) h.get("user_message"),
+                        (String) h.get("bot_response")
+                ))
+                .toList();
+
+        // Build memory context from relevant memories
+        List<MemoryContext> memoryContext = context.relevantMemories().stream()
+                .map(m -> new MemoryContext(
+                        m.content(),
+                        m.type(),
+                        m.timestamp() != null ? m.timestamp().toString() : null,
+                        m.relevance()
+                ))
+                .limit(5)
+                .toList();
+
+        // Build generation request
+        return GenerationRequest.builder()
+                .userMessage(userMessage)
+                .personality(traits)
+                .conversationHistory(conversationHistory)
+                .relevantMemories(memoryContext)
+                .intent(context.textAnalysis().intent())
+                .sentiment(context.textAnalysis().sentiment())
+                .build();
+    }
+
+    /**
+     * Pick the history turns for the prompt.
+     * <p>
+     * A window that slid by one turn per message would change the prompt right after the system
+     * prompt every time, defeating Ollama's prompt cache. Instead the window keeps its oldest turn
+     * and grows until it holds twice {@link #HISTORY_TURNS}, then jumps forward to the latest
+     * {@link #HISTORY_TURNS}. Between jumps each prompt extends the previous one.
+     *
+     * @param turns complete turns in chronological order
+     */
+    private List<Map<String, Object>> selectHistoryWindow(List<Map<String, Object>> turns, EnrichedContext context) {
+        if (turns.isEmpty()) {
+            return turns;
+        }
+        String key = (context.baseContext().isGuild() ? "g:" : "u:")
+                + context.baseContext().targetId() + ":" + context.baseContext().channelId();
+
+        int start = Math.max(0, turns.size() - HISTORY_TURNS);
+        Long anchor = historyAnchors.get(key);
+        if (anchor != null) {
+            for (int i = 0; i < turns.size(); i++) {
+                if (anchor.equals(dialogueId(turns.get(i)))) {
+                    if (turns.size() - i <= 2 * HISTORY_TURNS) {
+                        start = i;
+                    }
+                    break;
+                }
             }
+        }
 
-        } catch (Exception e) {
-            logger.debug("Ollama generation failed, falling back to templates: {}", e.getMessage());
+        Long first = dialogueId(turns.get(start));
+        if (first != null) {
+            historyAnchors.put(key, first);
         }
+        return turns.subList(start, turns.size());
+    }
 
-        return null;
+    private static Long dialogueId(Map<String, Object> turn) {
+        return turn.get("id") instanceof Number id ? id.longValue() : null;
     }
 
     /**
@@ -594,5 +683,10 @@ public class ResponseGenerator {
     private String getRandomMemoryConnector() {
         return memoryConnectors.get(new Random().nextInt(memoryConnectors.size()));
     }
-}
 
+    /**
+     * A generated reply and whether it came from the LLM rather than a template or error fallback.
+     */
+    public record GeneratedResponse(String text, boolean fromModel) {
+    }
+}
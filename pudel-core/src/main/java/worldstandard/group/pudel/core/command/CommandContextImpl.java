@@ -31,12 +31,25 @@ public class CommandContextImpl implements CommandContext {
     private final String command;
     private final String[] args;
     private final String argsString;
+    private final ParsedCommand parsed;
 
     public CommandContextImpl(MessageReceivedEvent event, String command, String[] args, String argsString) {
         this.event = event;
         this.command = command;
         this.args = args;
         this.argsString = argsString;
+        this.parsed = null;
+    }
+
+    /**
+     * Create a context whose arguments are split only when a handler reads them.
+     */
+    public CommandContextImpl(MessageReceivedEvent event, ParsedCommand parsed) {
+        this.event = event;
+        this.command = parsed.getCommand();
+        this.args = null;
+        this.argsString = null;
+        this.parsed = parsed;
     }
 
     @Override
@@ -76,12 +89,12 @@ public class CommandContextImpl implements CommandContext {
 
     @Override
     public String[] getArgs() {
-        return args;
+        return parsed != null ? parsed.getArgs() : args;
     }
 
     @Override
     public String getArgsString() {
-        return argsString;
+        return parsed != null ? parsed.getArgsString() : argsString;
     }
 
     @Override
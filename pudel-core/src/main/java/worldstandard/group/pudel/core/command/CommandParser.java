@@ -0,0 +1,123 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.command;
+
+/**
+ * Single-pass command tokenizer for raw message content.
+ * <p>
+ * Matches the guild prefix or a leading bot mention ({@code <@id>} / {@code <@!id>})
+ * in place, then resolves the command name through {@link CommandRegistry}'s trie.
+ * Messages that are not commands are rejected without allocating.
+ */
+public final class CommandParser {
+
+    private CommandParser() {
+    }
+
+    /**
+     * Parse a message.
+     *
+     * @param content  the raw message content
+     * @param prefix   the guild command prefix
+     * @param selfId   the bot's user ID
+     * @param registry the command registry
+     * @return the resolved command, {@link ParsedCommand#UNKNOWN} if the prefix matched an
+     *         unregistered command, or null if the message is not a command
+     */
+    public static ParsedCommand parse(String content, String prefix, long selfId, CommandRegistry registry) {
+        int end = content.length();
+        int pos = 0;
+        while (pos < end && isSpace(content.charAt(pos))) {
+            pos++;
+        }
+        while (end > pos && isSpace(content.charAt(end - 1))) {
+            end--;
+        }
+        if (pos >= end) {
+            return null;
+        }
+
+        boolean prefixed = content.startsWith(prefix, pos);
+        if (prefixed) {
+            pos += prefix.length();
+        } else {
+            pos = matchMention(content, pos, end, selfId);
+            if (pos < 0) {
+                return null;
+            }
+        }
+
+        while (pos < end && isSpace(content.charAt(pos))) {
+            pos++;
+        }
+        int nameStart = pos;
+        while (pos < end && !isSpace(content.charAt(pos))) {
+            pos++;
+        }
+        int nameEnd = pos;
+        while (pos < end && isSpace(content.charAt(pos))) {
+            pos++;
+        }
+
+        CommandTrie.Node node = nameStart < nameEnd ? registry.resolve(content, nameStart, nameEnd) : null;
+        if (node == null) {
+            // A prefixed message is always consumed; an unknown command after a mention is chat
+            return prefixed ? ParsedCommand.UNKNOWN : null;
+        }
+        return new ParsedCommand(content, pos, end, node.name, node.handler);
+    }
+
+    /**
+     * Match {@code <@selfId>} or {@code <@!selfId>} followed by whitespace.
+     *
+     * @return the index after the mention, or -1 if it does not match
+     */
+    private static int matchMention(String content, int pos, int end, long selfId) {
+        if (pos + 3 >= end || content.charAt(pos) != '<' || content.charAt(pos + 1) != '@') {
+            return -1;
+        }
+        pos += 2;
+        if (content.charAt(pos) == '!') {
+            pos++;
+        }
+
+        long id = 0;
+        int digits = 0;
+        while (pos < end) {
+            char c = content.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (++digits > 20) {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+            pos++;
+        }
+
+        if (digits == 0 || id != selfId || pos + 1 >= end || content.charAt(pos) != '>'
+                || !isSpace(content.charAt(pos + 1))) {
+            return -1;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Whitespace test matching {@link String#trim()}.
+     */
+    static boolean isSpace(char c) {
+        return c <= ' ';
+    }
+}
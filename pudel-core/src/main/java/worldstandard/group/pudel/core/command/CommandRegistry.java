@@ -29,6 +29,9 @@ public class CommandRegistry {
 
     private final Map<String, TextCommandHandler> commands = new ConcurrentHashMap<>();
 
+    // Rebuilt on every change; read without locking on the message hot path
+    private volatile CommandTrie trie = CommandTrie.EMPTY;
+
     /**
      * Register a command handler.
      * @param commandName the command name (case-insensitive)
@@ -39,6 +42,7 @@ public class CommandRegistry {
             throw new IllegalArgumentException("Command name and handler cannot be null");
         }
         commands.put(commandName.toLowerCase(), handler);
+        rebuildTrie();
     }
 
     /**
@@ -48,6 +52,7 @@ public class CommandRegistry {
     public void unregisterCommand(String commandName) {
         if (commandName != null) {
             commands.remove(commandName.toLowerCase());
+            rebuildTrie();
         }
     }
 
@@ -63,6 +68,17 @@ public class CommandRegistry {
         return commands.get(commandName.toLowerCase());
     }
 
+    /**
+     * Resolve a command from a range of raw text without allocating.
+     * @param content the text containing the command name
+     * @param start start index (inclusive)
+     * @param end end index (exclusive)
+     * @return the matching trie node (canonical name and handler), or null if none
+     */
+    CommandTrie.Node resolve(CharSequence content, int start, int end) {
+        return trie.find(content, start, end);
+    }
+
     /**
      * Check if a command is registered.
      * @param commandName the command name
@@ -90,5 +106,9 @@ public class CommandRegistry {
     public int getCommandCount() {
         return commands.size();
     }
+
+    private synchronized void rebuildTrie() {
+        trie = CommandTrie.build(commands);
+    }
 }
 
@@ -0,0 +1,98 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.command;
+
+import worldstandard.group.pudel.api.command.TextCommandHandler;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable case-insensitive trie of command names.
+ * <p>
+ * Resolves a command directly from a range of the raw message content, so dispatch
+ * never has to substring or lowercase the input. Rebuilt by {@link CommandRegistry}
+ * whenever a command is registered or removed.
+ */
+final class CommandTrie {
+
+    static final CommandTrie EMPTY = new CommandTrie(new Node());
+
+    private final Node root;
+
+    private CommandTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Build a trie from lowercase command names.
+     */
+    static CommandTrie build(Map<String, TextCommandHandler> commands) {
+        Node root = new Node();
+        for (Map.Entry<String, TextCommandHandler> entry : commands.entrySet()) {
+            Node node = root;
+            String name = entry.getKey();
+            for (int i = 0; i < name.length(); i++) {
+                node = node.childOrCreate(name.charAt(i));
+            }
+            node.name = name;
+            node.handler = entry.getValue();
+        }
+        return new CommandTrie(root);
+    }
+
+    /**
+     * Find the node for {@code content[start, end)}, ignoring case.
+     *
+     * @return the terminal node, or null if no command matches exactly
+     */
+    Node find(CharSequence content, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++) {
+            node = node.child(Character.toLowerCase(content.charAt(i)));
+        }
+        return node != null && node.handler != null ? node : null;
+    }
+
+    static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        String name;
+        TextCommandHandler handler;
+
+        Node child(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            Node created = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = created;
+            return created;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.command;
+
+import worldstandard.group.pudel.api.command.TextCommandHandler;
+
+/**
+ * A command resolved by {@link CommandParser}.
+ * <p>
+ * Holds offsets into the raw message instead of copies; the argument string and the
+ * argument array are only materialized if a handler asks for them.
+ */
+public final class ParsedCommand {
+
+    /**
+     * Returned when the prefix matched but no registered command follows it.
+     */
+    public static final ParsedCommand UNKNOWN = new ParsedCommand("", 0, 0, null, null);
+
+    private static final String[] NO_ARGS = new String[0];
+
+    private final String content;
+    private final int argsStart;
+    private final int argsEnd;
+    private final String command;
+    private final TextCommandHandler handler;
+
+    private String argsString;
+    private String[] args;
+
+    ParsedCommand(String content, int argsStart, int argsEnd, String command, TextCommandHandler handler) {
+        this.content = content;
+        this.argsStart = argsStart;
+        this.argsEnd = argsEnd;
+        this.command = command;
+        this.handler = handler;
+    }
+
+    /**
+     * @return true if a registered command was resolved
+     */
+    public boolean isResolved() {
+        return handler != null;
+    }
+
+    /**
+     * @return the canonical (lowercase) command name
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    public TextCommandHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return the trimmed text after the command name
+     */
+    public String getArgsString() {
+        if (argsString == null) {
+            argsString = argsStart >= argsEnd ? "" : content.substring(argsStart, argsEnd);
+        }
+        return argsString;
+    }
+
+    /**
+     * @return the whitespace-separated arguments
+     */
+    public String[] getArgs() {
+        if (args == null) {
+            args = split(content, argsStart, argsEnd);
+        }
+        return args;
+    }
+
+    private static String[] split(String content, int start, int end) {
+        if (start >= end) {
+            return NO_ARGS;
+        }
+
+        int count = 0;
+        boolean inToken = false;
+        for (int i = start; i < end; i++) {
+            boolean space = CommandParser.isSpace(content.charAt(i));
+            if (!space && !inToken) {
+                count++;
+            }
+            inToken = !space;
+        }
+
+        String[] result = new String[count];
+        int index = 0;
+        int tokenStart = -1;
+        for (int i = start; i <= end; i++) {
+            boolean space = i == end || CommandParser.isSpace(content.charAt(i));
+            if (space) {
+                if (tokenStart >= 0) {
+                    result[index++] = content.substring(tokenStart, i);
+                    tokenStart = -1;
+                }
+            } else if (tokenStart < 0) {
+                tokenStart = i;
+            }
+        }
+        return result;
+    }
+}
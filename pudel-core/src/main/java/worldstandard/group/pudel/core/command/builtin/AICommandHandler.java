@@ -26,6 +26,7 @@ import worldstandard.group.pudel.api.command.TextCommandHandler;
 import worldstandard.group.pudel.core.command.CommandContextImpl;
 import worldstandard.group.pudel.core.entity.GuildSettings;
 import worldstandard.group.pudel.core.service.GuildInitializationService;
+import worldstandard.group.pudel.core.service.SemanticResponseCache;
 
 import java.awt.Color;
 import java.util.Arrays;
@@ -42,6 +43,7 @@ import java.util.concurrent.TimeUnit;
  * Usage:
  * - !ai - Show status and settings overview
  * - !ai on/off - Enable/disable AI
+ * - !ai cache on/off - Enable/disable the response cache
  * - !ai setup - Start interactive personality wizard
  * - !ai biography/personality/preferences/etc - Configure individual settings
  * - !ai agent/tables/memories - View agent data
@@ -53,6 +55,7 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
 
     private final GuildInitializationService guildInitializationService;
     private final worldstandard.group.pudel.model.agent.AgentDataExecutor agentDataExecutor;
+    private final SemanticResponseCache responseCache;
 
     // Track active wizard sessions: guildId_userId -> WizardSession
     private final Map<String, WizardSession> activeWizards = new ConcurrentHashMap<>();
@@ -62,9 +65,11 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
     );
 
     public AICommandHandler(GuildInitializationService guildInitializationService,
-                            worldstandard.group.pudel.model.agent.AgentDataExecutor agentDataExecutor) {
+                            worldstandard.group.pudel.model.agent.AgentDataExecutor agentDataExecutor,
+                            SemanticResponseCache responseCache) {
         this.guildInitializationService = guildInitializationService;
         this.agentDataExecutor = agentDataExecutor;
+        this.responseCache = responseCache;
     }
 
     @Override
@@ -95,6 +100,7 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
             case "on", "enable" -> enableAI(context, settings);
             case "off", "disable" -> disableAI(context, settings);
             case "setup", "wizard" -> startWizard(context, settings);
+            case "cache" -> handleResponseCache(context, settings);
             case "biography", "bio" -> handleBiography(context, settings);
             case "personality" -> handlePersonality(context, settings);
             case "preferences", "prefs" -> handlePreferences(context, settings);
@@ -122,6 +128,7 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
         String responseLength = settings.getResponseLength() != null ? settings.getResponseLength() : "medium";
         String formality = settings.getFormality() != null ? settings.getFormality() : "balanced";
         String emoteUsage = settings.getEmoteUsage() != null ? settings.getEmoteUsage() : "moderate";
+        boolean cacheEnabled = Boolean.TRUE.equals(settings.getResponseCacheEnabled());
 
         EmbedBuilder embed = new EmbedBuilder()
                 .setTitle("🤖 " + nickname + "'s AI Configuration")
@@ -132,6 +139,7 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
                 .addField("Response Length", responseLength, true)
                 .addField("Formality", formality, true)
                 .addField("Emote Usage", emoteUsage, true)
+                .addField("Response Cache", cacheEnabled ? "✅ Enabled" : "❌ Disabled", true)
                 .addField("Biography", truncate(settings.getBiography(), 200, "Not set"), false)
                 .addField("Personality", truncate(settings.getPersonality(), 200, "Not set"), false)
                 .addField("Preferences", truncate(settings.getPreferences(), 200, "Not set"), false)
@@ -162,6 +170,7 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
                 .setDescription("Configure Pudel's AI personality and behavior.")
                 .addField("Toggle AI", "`!ai on` / `!ai off` - Enable or disable AI brain", false)
                 .addField("Setup Wizard", "`!ai setup` - Interactive personality configuration wizard", false)
+                .addField("Response Cache", "`!ai cache on` / `!ai cache off` - Reuse replies to repeated questions", false)
                 .addField("Individual Settings", """
                         `!ai biography <text>` - Set backstory
                         `!ai personality <text>` - Set character traits
@@ -228,6 +237,42 @@ public class AICommandHandler extends ListenerAdapter implements TextCommandHand
         context.getChannel().sendMessageEmbeds(embed.build()).queue();
     }
 
+    private void handleResponseCache(CommandContext context, GuildSettings settings) {
+        String[] args = context.getArgs();
+        boolean enabled = Boolean.TRUE.equals(settings.getResponseCacheEnabled());
+
+        if (args.length < 2) {
+            context.getChannel().sendMessage("🗃️ Response cache is **" + (enabled ? "enabled" : "disabled") + "**.\n" +
+                    "Use `!ai cache on` or `!ai cache off` to change it.").queue();
+            return;
+        }
+
+        switch (args[1].toLowerCase()) {
+            case "on", "enable" -> enabled = true;
+            case "off", "disable" -> enabled = false;
+            default -> {
+                context.getChannel().sendMessage("❌ Usage: `!ai cache <on|off>`").queue();
+                return;
+            }
+        }
+
+        settings.setResponseCacheEnabled(enabled);
+        guildInitializationService.updateGuildSettings(context.getGuild().getId(), settings);
+        responseCache.invalidateGuild(context.getGuild().getIdLong());
+
+        EmbedBuilder embed = new EmbedBuilder()
+                .setTitle("🗃️ Response Cache " + (enabled ? "Enabled" : "Disabled"))
+                .setColor(enabled ? new Color(67, 181, 129) : new Color(240, 71, 71))
+                .setDescription(enabled
+                        ? """
+                        Questions that mean the same as a recent one will get the same reply, without generating a new one.
+                        
+                        Cached replies are dropped when my personality or memories change."""
+                        : "Every question will get a freshly generated reply.");
+
+        context.getChannel().sendMessageEmbeds(embed.build()).queue();
+    }
+
     // ==================== WIZARD FUNCTIONALITY ====================
 
     private void startWizard(CommandContext context, GuildSettings settings) {
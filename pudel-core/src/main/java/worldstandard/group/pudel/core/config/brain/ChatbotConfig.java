@@ -30,6 +30,10 @@ public class ChatbotConfig {
     private int contextSize = 10;
     private PassiveTracking passiveTracking = new PassiveTracking();
     private Embedding embedding = new Embedding();
+    private Execution execution = new Execution();
+    private Admission admission = new Admission();
+    private Streaming streaming = new Streaming();
+    private ResponseCache responseCache = new ResponseCache();
 
     public Triggers getTriggers() {
         return triggers;
@@ -63,6 +67,38 @@ public class ChatbotConfig {
         this.embedding = embedding;
     }
 
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public void setExecution(Execution execution) {
+        this.execution = execution;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+
+    public Streaming getStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(Streaming streaming) {
+        this.streaming = streaming;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
     /**
      * Chatbot trigger configuration.
      */
@@ -122,6 +158,11 @@ public class ChatbotConfig {
         private int dimension = 384;
         private int ivfProbes = 10;
         private int ivfLists = 100;
+        private int batchSize = 32;
+        private long flushIntervalMs = 2000;
+        private int maxPending = 2048;
+        private int backfillRowsPerRun = 256;
+        private int backfillIntervalSeconds = 300;
 
         public boolean isEnabled() {
             return enabled;
@@ -154,6 +195,46 @@ public class ChatbotConfig {
         public void setIvfLists(int ivfLists) {
             this.ivfLists = ivfLists;
         }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+
+        public int getBackfillRowsPerRun() {
+            return backfillRowsPerRun;
+        }
+
+        public void setBackfillRowsPerRun(int backfillRowsPerRun) {
+            this.backfillRowsPerRun = backfillRowsPerRun;
+        }
+
+        public int getBackfillIntervalSeconds() {
+            return backfillIntervalSeconds;
+        }
+
+        public void setBackfillIntervalSeconds(int backfillIntervalSeconds) {
+            this.backfillIntervalSeconds = backfillIntervalSeconds;
+        }
     }
 
     /**
@@ -197,5 +278,159 @@ public class ChatbotConfig {
             this.trackDatesMentions = trackDatesMentions;
         }
     }
-}
 
+    /**
+     * Chatbot execution stage configuration.
+     * Controls how many replies are generated at once and how many may wait.
+     */
+    public static class Execution {
+        private int maxConcurrent = 4;
+        private int queueCapacity = 256;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Chatbot admission control configuration.
+     * Request rates come from the subscription tier; these settings control how rejections are handled.
+     */
+    public static class Admission {
+        private boolean enabled = true;
+        private String rejectReaction = "⏳";
+        private int tierCacheSeconds = 300;
+        private int idleBucketSeconds = 600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getRejectReaction() {
+            return rejectReaction;
+        }
+
+        public void setRejectReaction(String rejectReaction) {
+            this.rejectReaction = rejectReaction;
+        }
+
+        public int getTierCacheSeconds() {
+            return tierCacheSeconds;
+        }
+
+        public void setTierCacheSeconds(int tierCacheSeconds) {
+            this.tierCacheSeconds = tierCacheSeconds;
+        }
+
+        public int getIdleBucketSeconds() {
+            return idleBucketSeconds;
+        }
+
+        public void setIdleBucketSeconds(int idleBucketSeconds) {
+            this.idleBucketSeconds = idleBucketSeconds;
+        }
+    }
+
+    /**
+     * Progressive reply configuration.
+     * Applies when {@code pudel.ollama.streaming} is on; the reply is posted once the first
+     * sentence is ready and then edited as tokens arrive.
+     */
+    public static class Streaming {
+        private boolean enabled = true;
+        private long editIntervalMs = 1200;
+        private int firstMessageMinChars = 40;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getEditIntervalMs() {
+            return editIntervalMs;
+        }
+
+        public void setEditIntervalMs(long editIntervalMs) {
+            this.editIntervalMs = editIntervalMs;
+        }
+
+        public int getFirstMessageMinChars() {
+            return firstMessageMinChars;
+        }
+
+        public void setFirstMessageMinChars(int firstMessageMinChars) {
+            this.firstMessageMinChars = firstMessageMinChars;
+        }
+    }
+
+    /**
+     * Semantic response cache configuration.
+     * Guilds opt in with {@code !ai cache on}; this switch turns the cache off for every guild.
+     */
+    public static class ResponseCache {
+        private boolean enabled = true;
+        private double similarityThreshold = 0.95;
+        private int ttlSeconds = 3600;
+        private int maxEntriesPerGuild = 200;
+        private int maxGuilds = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public int getMaxEntriesPerGuild() {
+            return maxEntriesPerGuild;
+        }
+
+        public void setMaxEntriesPerGuild(int maxEntriesPerGuild) {
+            this.maxEntriesPerGuild = maxEntriesPerGuild;
+        }
+
+        public int getMaxGuilds() {
+            return maxGuilds;
+        }
+
+        public void setMaxGuilds(int maxGuilds) {
+            this.maxGuilds = maxGuilds;
+        }
+    }
+}
@@ -18,13 +18,18 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
  * Configuration properties for memory management.
- * Controls auto-cleanup and semantic search behavior.
+ * Controls auto-cleanup, semantic search, full-text search, how their results are ranked,
+ * how new rows are written and how tenant row counts are kept.
  */
 @ConfigurationProperties(prefix = "pudel.memory")
 public class MemoryConfig {
 
     private AutoCleanup autoCleanup = new AutoCleanup();
     private SemanticSearch semanticSearch = new SemanticSearch();
+    private TextSearch textSearch = new TextSearch();
+    private Retrieval retrieval = new Retrieval();
+    private WriteBehind writeBehind = new WriteBehind();
+    private RowCounts rowCounts = new RowCounts();
 
     public AutoCleanup getAutoCleanup() {
         return autoCleanup;
@@ -42,6 +47,38 @@ public class MemoryConfig {
         this.semanticSearch = semanticSearch;
     }
 
+    public TextSearch getTextSearch() {
+        return textSearch;
+    }
+
+    public void setTextSearch(TextSearch textSearch) {
+        this.textSearch = textSearch;
+    }
+
+    public Retrieval getRetrieval() {
+        return retrieval;
+    }
+
+    public void setRetrieval(Retrieval retrieval) {
+        this.retrieval = retrieval;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public RowCounts getRowCounts() {
+        return rowCounts;
+    }
+
+    public void setRowCounts(RowCounts rowCounts) {
+        this.rowCounts = rowCounts;
+    }
+
     /**
      * Auto-cleanup configuration for memory management.
      */
@@ -107,5 +144,172 @@ public class MemoryConfig {
             this.maxResults = maxResults;
         }
     }
-}
 
+    /**
+     * Full-text search configuration for memory retrieval.
+     */
+    public static class TextSearch {
+        private String language = "english";
+        private boolean backfillOnStartup = true;
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public void setLanguage(String language) {
+            this.language = language;
+        }
+
+        public boolean isBackfillOnStartup() {
+            return backfillOnStartup;
+        }
+
+        public void setBackfillOnStartup(boolean backfillOnStartup) {
+            this.backfillOnStartup = backfillOnStartup;
+        }
+    }
+
+    /**
+     * Hybrid retrieval configuration: how keyword and semantic results are fused and ranked.
+     */
+    public static class Retrieval {
+        private long timeoutMillis = 500;
+        private int candidatesPerSource = 10;
+        private int rrfK = 60;
+        private double recencyWeight = 0.3;
+        private double recencyHalfLifeDays = 30;
+        private double dialogueWeight = 1.0;
+        private double memoryWeight = 1.0;
+        private double contextWeight = 0.8;
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public int getCandidatesPerSource() {
+            return candidatesPerSource;
+        }
+
+        public void setCandidatesPerSource(int candidatesPerSource) {
+            this.candidatesPerSource = candidatesPerSource;
+        }
+
+        public int getRrfK() {
+            return rrfK;
+        }
+
+        public void setRrfK(int rrfK) {
+            this.rrfK = rrfK;
+        }
+
+        public double getRecencyWeight() {
+            return recencyWeight;
+        }
+
+        public void setRecencyWeight(double recencyWeight) {
+            this.recencyWeight = recencyWeight;
+        }
+
+        public double getRecencyHalfLifeDays() {
+            return recencyHalfLifeDays;
+        }
+
+        public void setRecencyHalfLifeDays(double recencyHalfLifeDays) {
+            this.recencyHalfLifeDays = recencyHalfLifeDays;
+        }
+
+        public double getDialogueWeight() {
+            return dialogueWeight;
+        }
+
+        public void setDialogueWeight(double dialogueWeight) {
+            this.dialogueWeight = dialogueWeight;
+        }
+
+        public double getMemoryWeight() {
+            return memoryWeight;
+        }
+
+        public void setMemoryWeight(double memoryWeight) {
+            this.memoryWeight = memoryWeight;
+        }
+
+        public double getContextWeight() {
+            return contextWeight;
+        }
+
+        public void setContextWeight(double contextWeight) {
+            this.contextWeight = contextWeight;
+        }
+    }
+
+    /**
+     * Write-behind batching of dialogue and passive context inserts.
+     */
+    public static class WriteBehind {
+        private boolean enabled = true;
+        private int batchSize = 100;
+        private long flushIntervalMs = 500;
+        private int maxPending = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    /**
+     * Row counts of the tenant tables used for subscription capacity checks.
+     */
+    public static class RowCounts {
+        private long reconcileSeconds = 300;
+        private int maxEntries = 20000;
+
+        public long getReconcileSeconds() {
+            return reconcileSeconds;
+        }
+
+        public void setReconcileSeconds(long reconcileSeconds) {
+            this.reconcileSeconds = reconcileSeconds;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+}
@@ -135,6 +135,8 @@ public class SubscriptionTierConfig {
     public static class TierLimits {
         private long dialogueLimit = 1000;
         private long memoryLimit = 100;
+        private int chatbotRequestsPerMinute = 10;
+        private int chatbotBurst = 5;
 
         public long getDialogueLimit() {
             return dialogueLimit;
@@ -152,6 +154,22 @@ public class SubscriptionTierConfig {
             this.memoryLimit = memoryLimit;
         }
 
+        public int getChatbotRequestsPerMinute() {
+            return chatbotRequestsPerMinute;
+        }
+
+        public void setChatbotRequestsPerMinute(int chatbotRequestsPerMinute) {
+            this.chatbotRequestsPerMinute = chatbotRequestsPerMinute;
+        }
+
+        public int getChatbotBurst() {
+            return chatbotBurst;
+        }
+
+        public void setChatbotBurst(int chatbotBurst) {
+            this.chatbotBurst = chatbotBurst;
+        }
+
         /**
          * Check if limit is unlimited (-1 means unlimited).
          */
@@ -159,6 +177,7 @@ public class SubscriptionTierConfig {
             return switch (limitType) {
                 case "dialogue" -> dialogueLimit == -1;
                 case "memory" -> memoryLimit == -1;
+                case "chatbot" -> chatbotRequestsPerMinute == -1;
                 default -> false;
             };
         }
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import worldstandard.group.pudel.core.command.builtin.AICommandHandler;
 import worldstandard.group.pudel.core.command.builtin.SettingsCommandHandler;
 import worldstandard.group.pudel.core.discord.DiscordEventListener;
@@ -52,7 +53,12 @@ public class JDAConfiguration {
     @Value("${pudel.audio.enabled:true}")
     private boolean audioEnabled;
 
+    /**
+     * Connect to the Discord gateway. Skipped under the {@code replay} profile, where the
+     * load harness in pudel-bench registers a stubbed JDA instead.
+     */
     @Bean
+    @Profile("!replay")
     public JDA jda(DiscordBotProperties properties, DiscordEventListener eventListener,
                    ReactionNavigationListener reactionNavigationListener,
                    AICommandHandler aiCommandHandler,
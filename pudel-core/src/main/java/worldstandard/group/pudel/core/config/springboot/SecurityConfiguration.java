@@ -93,6 +93,11 @@ public class SecurityConfiguration {
                             );
                         })
 
+                        // Metrics
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").access((authentication, context) ->
+                                new AuthorizationDecision(isLocalhost(context.getRequest())))
+
                         // User-authenticated
                         .requestMatchers(
                                 "/api/auth/user/**",
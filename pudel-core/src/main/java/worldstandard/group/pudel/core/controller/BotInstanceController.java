@@ -115,6 +115,9 @@ public class BotInstanceController {
         if (settings.getAiEnabled() != null) {
             existing.setAiEnabled(settings.getAiEnabled());
         }
+        if (settings.getResponseCacheEnabled() != null) {
+            existing.setResponseCacheEnabled(settings.getResponseCacheEnabled());
+        }
 
         guildInitializationService.updateGuildSettings(guildId, existing);
         return ResponseEntity.ok(existing);
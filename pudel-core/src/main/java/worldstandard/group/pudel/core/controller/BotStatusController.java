@@ -20,6 +20,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import worldstandard.group.pudel.core.service.ChatbotAdmissionService;
+import worldstandard.group.pudel.core.service.ChatbotExecutor;
+import worldstandard.group.pudel.core.service.CommandLogBatcher;
+import worldstandard.group.pudel.core.service.CommandExecutionService;
+import worldstandard.group.pudel.core.service.GuildSettingsCache;
+import worldstandard.group.pudel.core.service.MemoryEmbeddingWriter;
+import worldstandard.group.pudel.core.service.MemoryWriteBuffer;
+import worldstandard.group.pudel.core.service.SemanticResponseCache;
+import worldstandard.group.pudel.core.service.TenantRowCounter;
+import worldstandard.group.pudel.model.analyzer.TextAnalyzerService;
 
 import java.time.OffsetDateTime;
 import java.util.HashMap;
@@ -35,10 +45,40 @@ public class BotStatusController {
     private static final Logger log = LoggerFactory.getLogger(BotStatusController.class);
 
     private final JDA jda;
+    private final GuildSettingsCache guildSettingsCache;
+    private final ChatbotExecutor chatbotExecutor;
+    private final CommandExecutionService commandExecutionService;
+    private final CommandLogBatcher commandLogBatcher;
+    private final ChatbotAdmissionService chatbotAdmissionService;
+    private final SemanticResponseCache responseCache;
+    private final TextAnalyzerService textAnalyzerService;
+    private final MemoryEmbeddingWriter memoryEmbeddingWriter;
+    private final MemoryWriteBuffer memoryWriteBuffer;
+    private final TenantRowCounter tenantRowCounter;
     private final long startup = System.currentTimeMillis();
 
-    public BotStatusController(JDA jda) {
+    public BotStatusController(JDA jda,
+                               GuildSettingsCache guildSettingsCache,
+                               ChatbotExecutor chatbotExecutor,
+                               CommandExecutionService commandExecutionService,
+                               CommandLogBatcher commandLogBatcher,
+                               ChatbotAdmissionService chatbotAdmissionService,
+                               SemanticResponseCache responseCache,
+                               TextAnalyzerService textAnalyzerService,
+                               MemoryEmbeddingWriter memoryEmbeddingWriter,
+                               MemoryWriteBuffer memoryWriteBuffer,
+                               TenantRowCounter tenantRowCounter) {
         this.jda = jda;
+        this.guildSettingsCache = guildSettingsCache;
+        this.chatbotExecutor = chatbotExecutor;
+        this.commandExecutionService = commandExecutionService;
+        this.commandLogBatcher = commandLogBatcher;
+        this.chatbotAdmissionService = chatbotAdmissionService;
+        this.responseCache = responseCache;
+        this.textAnalyzerService = textAnalyzerService;
+        this.memoryEmbeddingWriter = memoryEmbeddingWriter;
+        this.memoryWriteBuffer = memoryWriteBuffer;
+        this.tenantRowCounter = tenantRowCounter;
     }
 
     /**
@@ -115,6 +155,18 @@ public class BotStatusController {
             stats.put("averageGatewayPing", jda.getGatewayPing());
             stats.put("restPingMs", jda.getRestPing().complete());
 
+            // Caches
+            stats.put("guildSettingsCache", guildSettingsCache.getStats());
+            stats.put("chatbotExecutor", chatbotExecutor.getStats());
+            stats.put("cooldowns", commandExecutionService.getCooldownStats());
+            stats.put("commandLog", commandLogBatcher.getStats());
+            stats.put("chatbotAdmission", chatbotAdmissionService.getStats());
+            stats.put("responseCache", responseCache.getStats());
+            stats.put("analysisCache", textAnalyzerService.getCacheStats());
+            stats.put("memoryEmbeddings", memoryEmbeddingWriter.getStats());
+            stats.put("memoryWrites", memoryWriteBuffer.getStats());
+            stats.put("tenantRowCounts", tenantRowCounter.getStats());
+
             // Time
             stats.put("uptime", calculateUptime());
             stats.put("timestamp", OffsetDateTime.now().toString());
@@ -14,6 +14,8 @@
  */
 package worldstandard.group.pudel.core.discord;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
 import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
@@ -26,8 +28,9 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import worldstandard.group.pudel.api.command.TextCommandHandler;
 import worldstandard.group.pudel.core.command.CommandContextImpl;
+import worldstandard.group.pudel.core.command.CommandParser;
 import worldstandard.group.pudel.core.command.CommandRegistry;
-import worldstandard.group.pudel.core.entity.GuildSettings;
+import worldstandard.group.pudel.core.command.ParsedCommand;
 import worldstandard.group.pudel.core.event.PluginEventManager;
 import worldstandard.group.pudel.core.service.ChatbotService;
 import worldstandard.group.pudel.core.service.CommandExecutionService;
@@ -42,23 +45,31 @@ public class DiscordEventListener extends ListenerAdapter {
 
     private static final Logger logger = LoggerFactory.getLogger(DiscordEventListener.class);
 
+    // Values of the "path" tag on message metrics
+    private static final String PATH_COMMAND = "command";
+    private static final String PATH_CHATBOT = "chatbot";
+    private static final String PATH_PASSIVE = "passive";
+    private static final String PATH_IGNORED = "ignored";
+
     private final CommandRegistry commandRegistry;
     private final GuildInitializationService guildInitializationService;
     private final CommandExecutionService commandExecutionService;
     private final PluginEventManager pluginEventManager;
     private final ChatbotService chatbotService;
-    private static final String DEFAULT_PREFIX = "!";
+    private final MeterRegistry meterRegistry;
 
     public DiscordEventListener(CommandRegistry commandRegistry,
                                GuildInitializationService guildInitializationService,
                                @Lazy CommandExecutionService commandExecutionService,
                                PluginEventManager pluginEventManager,
-                               @Lazy ChatbotService chatbotService) {
+                               @Lazy ChatbotService chatbotService,
+                               MeterRegistry meterRegistry) {
         this.commandRegistry = commandRegistry;
         this.guildInitializationService = guildInitializationService;
         this.commandExecutionService = commandExecutionService;
         this.pluginEventManager = pluginEventManager;
         this.chatbotService = chatbotService;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -85,7 +96,7 @@ public class DiscordEventListener extends ListenerAdapter {
     public void onGuildLeave(GuildLeaveEvent event) {
         logger.info("Bot left guild: {} ({})", event.getGuild().getName(), event.getGuild().getId());
         guildInitializationService.cleanupGuild(event.getGuild().getId());
-        commandExecutionService.cleanupGuildCooldowns(event.getGuild().getId());
+        commandExecutionService.cleanupGuildCooldowns(event.getGuild().getIdLong());
     }
 
     @Override
@@ -95,202 +106,141 @@ public class DiscordEventListener extends ListenerAdapter {
             return;
         }
 
-        String messageContent = event.getMessage().getContentRaw().trim();
-        String selfId = event.getJDA().getSelfUser().getId();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String path = PATH_IGNORED;
+        String outcome = "success";
+        try {
+            path = dispatchMessage(event);
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("pudel.message.dispatch", "path", path, "outcome", outcome));
+        }
+    }
 
-        // Determine the command prefix
-        String prefix = DEFAULT_PREFIX;
-        GuildSettings settings = null;
+    /**
+     * Route a message to a command, the chatbot, or passive tracking.
+     *
+     * @return the path taken, used as a metric tag
+     */
+    private String dispatchMessage(MessageReceivedEvent event) {
+        // Resolve the precompiled dispatch snapshot (prefix, ignored channels, disabled commands)
+        GuildDispatchSnapshot snapshot = GuildDispatchSnapshot.DEFAULT;
         if (event.isFromGuild()) {
-            settings = guildInitializationService.getOrCreateGuildSettings(event.getGuild().getId());
-            prefix = settings.getPrefix() != null ? settings.getPrefix() : DEFAULT_PREFIX;
+            snapshot = guildInitializationService.getDispatchSnapshot(event.getGuild().getId());
+            long channelId = event.getChannel().getIdLong();
 
             // Check if channel is in ignored list
-            if (isChannelIgnored(event.getChannel().getId(), settings)) {
-                return; // Completely ignore this channel
+            if (snapshot.isChannelIgnored(channelId)) {
+                return PATH_IGNORED; // Completely ignore this channel
             }
 
             // Check if bot should only respond in specific channel
-            if (settings.getBotChannel() != null &&
-                !event.getChannel().getId().equals(settings.getBotChannel())) {
+            if (snapshot.hasBotChannel() && !snapshot.isBotChannel(channelId)) {
                 // Still allow chatbot if directly mentioned even in other channels
-                if (!chatbotService.shouldRespondAsChatbot(event, selfId)) {
-                    return;
+                if (!chatbotService.shouldRespondAsChatbot(event, event.getJDA().getSelfUser().getId())) {
+                    return PATH_IGNORED;
                 }
             }
         }
 
-        // Check if message starts with prefix (command mode)
-        if (messageContent.startsWith(prefix)) {
-            handleCommand(event, messageContent, prefix, settings);
-            return;
-        }
-
-        // Check if message starts with @mention (alternative command mode)
-        String mentionPrefix = "<@" + selfId + "> ";
-        String mentionPrefixAlt = "<@!" + selfId + "> ";
-        if (messageContent.startsWith(mentionPrefix) || messageContent.startsWith(mentionPrefixAlt)) {
-            String withoutMention = messageContent.startsWith(mentionPrefix)
-                    ? messageContent.substring(mentionPrefix.length()).trim()
-                    : messageContent.substring(mentionPrefixAlt.length()).trim();
-            if (!withoutMention.isEmpty()) {
-                // Check if this looks like a command
-                String[] parts = withoutMention.split("\\s+", 2);
-                String potentialCommand = parts[0].toLowerCase();
-                if (commandRegistry.hasCommand(potentialCommand)) {
-                    handleCommand(event, prefix + withoutMention, prefix, settings);
-                    return;
-                }
+        // Prefix or leading @mention (alternative command mode), parsed in a single pass
+        ParsedCommand parsed = CommandParser.parse(event.getMessage().getContentRaw(), snapshot.getPrefix(),
+                event.getJDA().getSelfUser().getIdLong(), commandRegistry);
+        if (parsed != null) {
+            if (parsed.isResolved()) {
+                handleCommand(event, parsed, snapshot);
+                return PATH_COMMAND;
             }
+            // Silently ignore unknown prefixed commands
+            return PATH_IGNORED;
         }
 
-        // Check AI enabled status for guild
-        boolean aiEnabled = true;
-        if (event.isFromGuild() && settings != null) {
-            aiEnabled = settings.getAiEnabled() != null ? settings.getAiEnabled() : true;
-        }
-
-        if (!aiEnabled) {
+        if (!snapshot.isAiEnabled()) {
             // AI is disabled - no chatbot responses, only @mention commands (already handled above)
-            return;
+            return PATH_IGNORED;
         }
 
         // Check if this should trigger chatbot response
-        if (chatbotService.shouldRespondAsChatbot(event, selfId)) {
+        if (chatbotService.shouldRespondAsChatbot(event, event.getJDA().getSelfUser().getId())) {
             chatbotService.handleChatbotMessage(event);
+            return PATH_CHATBOT;
         } else {
             // Track passive context for memory building (doesn't trigger a response)
             chatbotService.trackPassiveContext(event);
+            return PATH_PASSIVE;
         }
     }
 
-    /**
-     * Check if a channel is in the ignored list.
-     */
-    private boolean isChannelIgnored(String channelId, GuildSettings settings) {
-        if (settings == null || settings.getIgnoredChannels() == null || settings.getIgnoredChannels().isEmpty()) {
-            return false;
-        }
-        String[] ignored = settings.getIgnoredChannels().split(",");
-        for (String ignoredId : ignored) {
-            if (ignoredId.trim().equals(channelId)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Handle command execution.
      */
-    private void handleCommand(MessageReceivedEvent event, String messageContent, String prefix, GuildSettings settings) {
-        // Remove prefix and parse command
-        String withoutPrefix = messageContent.substring(prefix.length()).trim();
-
-        if (withoutPrefix.isEmpty()) {
-            return;
-        }
-
-        // Split into command and arguments
-        String[] parts = withoutPrefix.split("\\s+", 2);
-        String command = parts[0].toLowerCase();
-        String argsString = parts.length > 1 ? parts[1] : "";
-        String[] args = argsString.isEmpty() ? new String[0] : argsString.split("\\s+");
-
-        // Dispatch to command handler
-        TextCommandHandler handler = commandRegistry.getCommand(command);
-        if (handler == null) {
-            // Silently ignore unknown commands
-            return;
-        }
+    private void handleCommand(MessageReceivedEvent event, ParsedCommand parsed, GuildDispatchSnapshot snapshot) {
+        String command = parsed.getCommand();
+        TextCommandHandler handler = parsed.getHandler();
 
         // Check if command is disabled for this guild
-        if (event.isFromGuild()) {
-            GuildSettings guildSettings = settings != null ? settings :
-                    guildInitializationService.getOrCreateGuildSettings(event.getGuild().getId());
-            if (isCommandDisabled(command, guildSettings)) {
-                event.getChannel().sendMessage("❌ The command `" + command + "` is disabled on this server.").queue();
-                return;
-            }
+        if (event.isFromGuild() && snapshot.isCommandDisabled(command)) {
+            event.getChannel().sendMessage("❌ The command `" + command + "` is disabled on this server.").queue();
+            return;
         }
 
         // Check cooldown (skip for DM and for staff in guilds)
-        if (event.isFromGuild()) {
-            GuildSettings guildSettings = settings != null ? settings :
-                    guildInitializationService.getOrCreateGuildSettings(event.getGuild().getId());
-            Float cooldownSecs = guildSettings.getCooldown();
-
-            if (cooldownSecs != null && cooldownSecs > 0) {
-                // Check if user can bypass cooldown (has MANAGE_GUILD permission)
-                if (!commandExecutionService.canBypassCooldown(event.getGuild(), event.getMember())) {
-                    float remainingCooldown = commandExecutionService.getRemainingCooldown(
-                            event.getGuild().getId(), event.getAuthor().getId());
-                    if (remainingCooldown > 0) {
-                        event.getChannel().sendMessage(
-                                String.format("⏳ Please wait %.2f second(s) before using another command.", remainingCooldown)
-                        ).queue();
-                        return;
-                    }
+        float cooldownSecs = snapshot.getCooldown();
+        if (event.isFromGuild() && cooldownSecs > 0) {
+            // Check if user can bypass cooldown (has MANAGE_GUILD permission)
+            if (!commandExecutionService.canBypassCooldown(event.getGuild(), event.getMember())) {
+                float remainingCooldown = commandExecutionService.getRemainingCooldown(
+                        event.getGuild().getIdLong(), event.getAuthor().getIdLong());
+                if (remainingCooldown > 0) {
+                    event.getChannel().sendMessage(
+                            String.format("⏳ Please wait %.2f second(s) before using another command.", remainingCooldown)
+                    ).queue();
+                    return;
                 }
             }
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
         try {
-            CommandContextImpl context = new CommandContextImpl(event, command, args, argsString);
+            CommandContextImpl context = new CommandContextImpl(event, parsed);
             handler.handle(context);
 
             // Apply settings after successful command execution
             if (event.isFromGuild()) {
-                GuildSettings guildSettings = settings != null ? settings :
-                        guildInitializationService.getOrCreateGuildSettings(event.getGuild().getId());
-
                 // Apply verbosity (handle message deletion)
                 commandExecutionService.handleVerbosity(event.getMessage(), event.getGuild().getId(),
-                        guildSettings.getVerbosity());
+                        snapshot.getVerbosity());
 
                 // Log command
-                commandExecutionService.sendCommandLog(event.getGuild(), command, argsString,
+                commandExecutionService.sendCommandLog(event.getGuild(), command, parsed.getArgsString(),
                         event.getAuthor().getId(), event.getAuthor().getName(),
                         event.getChannel(), true);
 
                 // Apply cooldown
-                Float cooldownSecs = guildSettings.getCooldown();
-                if (cooldownSecs != null && cooldownSecs > 0 && !commandExecutionService.canBypassCooldown(event.getGuild(), event.getMember())) {
-                    commandExecutionService.applyCooldown(event.getGuild().getId(),
-                            event.getAuthor().getId(), cooldownSecs);
+                if (cooldownSecs > 0 && !commandExecutionService.canBypassCooldown(event.getGuild(), event.getMember())) {
+                    commandExecutionService.applyCooldown(event.getGuild().getIdLong(),
+                            event.getAuthor().getIdLong(), cooldownSecs);
                 }
             }
         } catch (Exception e) {
+            outcome = "error";
             logger.error("Error executing command '{}': {}", command, e.getMessage(), e);
             try {
                 event.getChannel().sendMessage("❌ An error occurred while executing the command.").queue();
                 // Log failed command
                 if (event.isFromGuild()) {
-                    commandExecutionService.sendCommandLog(event.getGuild(), command, argsString,
+                    commandExecutionService.sendCommandLog(event.getGuild(), command, parsed.getArgsString(),
                             event.getAuthor().getId(), event.getAuthor().getName(),
                             event.getChannel(), false);
                 }
             } catch (Exception sendError) {
                 logger.error("Failed to send error message: {}", sendError.getMessage());
             }
+        } finally {
+            sample.stop(meterRegistry.timer("pudel.command.execution", "command", command, "outcome", outcome));
         }
     }
-
-    /**
-     * Check if a command is disabled for a guild.
-     */
-    private boolean isCommandDisabled(String command, GuildSettings settings) {
-        if (settings == null || settings.getDisabledCommands() == null || settings.getDisabledCommands().isEmpty()) {
-            return false;
-        }
-
-        String[] disabled = settings.getDisabledCommands().toLowerCase().split(",");
-        for (String disabledCmd : disabled) {
-            if (disabledCmd.trim().equals(command.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
-
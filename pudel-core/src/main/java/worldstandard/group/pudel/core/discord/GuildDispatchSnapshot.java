@@ -0,0 +1,174 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.discord;
+
+import worldstandard.group.pudel.core.entity.GuildSettings;
+import worldstandard.group.pudel.core.util.LongHashSet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable, precompiled view of the guild settings needed to dispatch a message.
+ * <p>
+ * Built once whenever {@link GuildSettings} is loaded or saved, so the comma-separated
+ * {@code ignored_channels} and {@code disabled_commands} columns are parsed on write
+ * instead of on every message.
+ */
+public final class GuildDispatchSnapshot {
+
+    public static final String DEFAULT_PREFIX = "!";
+
+    /**
+     * Snapshot used for direct messages and guilds without settings.
+     */
+    public static final GuildDispatchSnapshot DEFAULT = new GuildDispatchSnapshot(
+            DEFAULT_PREFIX, LongHashSet.empty(), 0L, Set.of(), true, 3, 0f);
+
+    private final String prefix;
+    private final LongHashSet ignoredChannels;
+    private final long botChannel;
+    private final Set<String> disabledCommands;
+    private final boolean aiEnabled;
+    private final int verbosity;
+    private final float cooldown;
+
+    private GuildDispatchSnapshot(String prefix, LongHashSet ignoredChannels, long botChannel,
+                                  Set<String> disabledCommands, boolean aiEnabled,
+                                  int verbosity, float cooldown) {
+        this.prefix = prefix;
+        this.ignoredChannels = ignoredChannels;
+        this.botChannel = botChannel;
+        this.disabledCommands = disabledCommands;
+        this.aiEnabled = aiEnabled;
+        this.verbosity = verbosity;
+        this.cooldown = cooldown;
+    }
+
+    /**
+     * Compile a snapshot from guild settings.
+     *
+     * @param settings the guild settings, may be null
+     * @return the snapshot
+     */
+    public static GuildDispatchSnapshot from(GuildSettings settings) {
+        if (settings == null) {
+            return DEFAULT;
+        }
+        return new GuildDispatchSnapshot(
+                settings.getPrefix() != null && !settings.getPrefix().isEmpty() ? settings.getPrefix() : DEFAULT_PREFIX,
+                parseIds(settings.getIgnoredChannels()),
+                parseId(settings.getBotChannel()),
+                parseCommands(settings.getDisabledCommands()),
+                settings.getAiEnabled() == null || settings.getAiEnabled(),
+                settings.getVerbosity() != null ? settings.getVerbosity() : 3,
+                settings.getCooldown() != null ? settings.getCooldown() : 0f
+        );
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Check if a channel is in the ignored list.
+     */
+    public boolean isChannelIgnored(long channelId) {
+        return ignoredChannels.contains(channelId);
+    }
+
+    /**
+     * @return true if the bot is restricted to a single channel
+     */
+    public boolean hasBotChannel() {
+        return botChannel != 0L;
+    }
+
+    public boolean isBotChannel(long channelId) {
+        return botChannel == channelId;
+    }
+
+    /**
+     * Check if a command is disabled.
+     *
+     * @param command the lowercase command name
+     */
+    public boolean isCommandDisabled(String command) {
+        return !disabledCommands.isEmpty() && disabledCommands.contains(command);
+    }
+
+    public boolean isAiEnabled() {
+        return aiEnabled;
+    }
+
+    public int getVerbosity() {
+        return verbosity;
+    }
+
+    public float getCooldown() {
+        return cooldown;
+    }
+
+    public int getIgnoredChannelCount() {
+        return ignoredChannels.size();
+    }
+
+    private static LongHashSet parseIds(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return LongHashSet.empty();
+        }
+        String[] parts = csv.split(",");
+        long[] ids = new long[parts.length];
+        int count = 0;
+        for (String part : parts) {
+            long id = parseId(part);
+            if (id != 0L) {
+                ids[count++] = id;
+            }
+        }
+        return LongHashSet.of(count == ids.length ? ids : Arrays.copyOf(ids, count));
+    }
+
+    private static long parseId(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseUnsignedLong(trimmed);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static Set<String> parseCommands(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return Set.of();
+        }
+        Set<String> commands = new HashSet<>();
+        for (String part : csv.split(",")) {
+            String command = part.trim().toLowerCase(Locale.ROOT);
+            if (!command.isEmpty()) {
+                commands.add(command);
+            }
+        }
+        return Set.copyOf(commands);
+    }
+}
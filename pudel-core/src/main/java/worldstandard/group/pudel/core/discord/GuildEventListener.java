@@ -137,7 +137,7 @@ public class GuildEventListener extends ListenerAdapter {
             guildInitializationService.cleanupGuild(guildId);
 
             // Clean up cooldown data for all members in this guild
-            commandExecutionService.cleanupGuildCooldowns(guildId);
+            commandExecutionService.cleanupGuildCooldowns(event.getGuild().getIdLong());
 
             // Remove guild record (optional - can be kept for analytics)
             // guildRepository.deleteById(guildId);
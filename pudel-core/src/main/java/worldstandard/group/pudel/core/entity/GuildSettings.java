@@ -90,6 +90,9 @@ public class GuildSettings {
     @Column(name = "ai_enabled")
     private Boolean aiEnabled = true;
 
+    @Column(name = "response_cache_enabled")
+    private Boolean responseCacheEnabled = false;
+
     @Column(name = "ignored_channels", columnDefinition = "TEXT")
     private String ignoredChannels;
 
@@ -112,6 +115,39 @@ public class GuildSettings {
         this.updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * Copy constructor, for handing out settings that can be changed without touching the original.
+     */
+    public GuildSettings(GuildSettings other) {
+        this.id = other.id;
+        this.guildId = other.guildId;
+        this.prefix = other.prefix;
+        this.verbosity = other.verbosity;
+        this.cooldown = other.cooldown;
+        this.logChannel = other.logChannel;
+        this.botChannel = other.botChannel;
+        this.biography = other.biography;
+        this.personality = other.personality;
+        this.preferences = other.preferences;
+        this.dialogueStyle = other.dialogueStyle;
+        this.nickname = other.nickname;
+        this.language = other.language;
+        this.responseLength = other.responseLength;
+        this.formality = other.formality;
+        this.emoteUsage = other.emoteUsage;
+        this.quirks = other.quirks;
+        this.topicsInterest = other.topicsInterest;
+        this.topicsAvoid = other.topicsAvoid;
+        this.systemPromptPrefix = other.systemPromptPrefix;
+        this.disabledCommands = other.disabledCommands;
+        this.aiEnabled = other.aiEnabled;
+        this.responseCacheEnabled = other.responseCacheEnabled;
+        this.ignoredChannels = other.ignoredChannels;
+        this.schemaCreated = other.schemaCreated;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -289,6 +325,14 @@ public class GuildSettings {
         this.aiEnabled = aiEnabled;
     }
 
+    public Boolean getResponseCacheEnabled() {
+        return responseCacheEnabled;
+    }
+
+    public void setResponseCacheEnabled(Boolean responseCacheEnabled) {
+        this.responseCacheEnabled = responseCacheEnabled;
+    }
+
     public String getIgnoredChannels() {
         return ignoredChannels;
     }
@@ -46,10 +46,15 @@ public class AgentDataExecutorImpl implements AgentDataExecutor {
 
     private final JdbcTemplate jdbcTemplate;
     private final SchemaManagementService schemaManagementService;
+    private final SemanticResponseCache responseCache;
+    private final TenantRowCounter rowCounter;
 
-    public AgentDataExecutorImpl(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService) {
+    public AgentDataExecutorImpl(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService,
+                                 SemanticResponseCache responseCache, TenantRowCounter rowCounter) {
         this.jdbcTemplate = jdbcTemplate;
         this.schemaManagementService = schemaManagementService;
+        this.responseCache = responseCache;
+        this.rowCounter = rowCounter;
     }
 
     // ===========================================
@@ -280,9 +285,17 @@ public class AgentDataExecutorImpl implements AgentDataExecutor {
         try {
             String sql = "INSERT INTO " + schemaName + ".memory (key, value, category, created_by, created_at, updated_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ?";
+                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ? " +
+                    "RETURNING (xmax = 0) AS inserted";
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-            jdbcTemplate.update(sql, key, value, category, createdBy, now, now, value, category, now);
+            Boolean inserted = jdbcTemplate.queryForObject(sql, Boolean.class,
+                    key, value, category, createdBy, now, now, value, category, now);
+            if (Boolean.TRUE.equals(inserted)) {
+                rowCounter.add(schemaName, "memory", 1);
+            }
+            if (isGuild) {
+                responseCache.invalidateGuild(targetId);
+            }
 
         } catch (Exception e) {
             logger.error("Error storing memory in {}: {}", schemaName, e.getMessage());
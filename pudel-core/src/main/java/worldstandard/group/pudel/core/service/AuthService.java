@@ -27,7 +27,6 @@ import worldstandard.group.pudel.core.entity.GuildSettings;
 import worldstandard.group.pudel.core.entity.User;
 import worldstandard.group.pudel.core.entity.UserGuild;
 import worldstandard.group.pudel.core.repository.GuildRepository;
-import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
 import worldstandard.group.pudel.core.repository.UserRepository;
 import worldstandard.group.pudel.core.repository.UserGuildRepository;
 
@@ -44,7 +43,7 @@ public class AuthService extends BaseService {
     private final DiscordAPIService discordAPIService;
     private final UserRepository userRepository;
     private final GuildRepository guildRepository;
-    private final GuildSettingsRepository guildSettingsRepository;
+    private final GuildSettingsCache guildSettingsCache;
     private final UserGuildRepository userGuildRepository;
     private final JwtUtil jwtUtil;
 
@@ -52,14 +51,14 @@ public class AuthService extends BaseService {
                       DiscordAPIService discordAPIService,
                       UserRepository userRepository,
                       GuildRepository guildRepository,
-                      GuildSettingsRepository guildSettingsRepository,
+                      GuildSettingsCache guildSettingsCache,
                       UserGuildRepository userGuildRepository,
                       JwtUtil jwtUtil) {
         super(jda);
         this.discordAPIService = discordAPIService;
         this.userRepository = userRepository;
         this.guildRepository = guildRepository;
-        this.guildSettingsRepository = guildSettingsRepository;
+        this.guildSettingsCache = guildSettingsCache;
         this.userGuildRepository = userGuildRepository;
         this.jwtUtil = jwtUtil;
     }
@@ -303,7 +302,7 @@ public class AuthService extends BaseService {
                 guildInfo.put("ownerId", guild.getOwnerId());
 
                 // Get guild settings if they exist
-                Optional<GuildSettings> settingsOpt = guildSettingsRepository.findByGuildId(guildId);
+                Optional<GuildSettings> settingsOpt = guildSettingsCache.get(guildId);
                 settingsOpt.ifPresent(guildSettings -> guildInfo.put("settings", guildSettings));
 
                 return guildInfo;
@@ -321,9 +320,9 @@ public class AuthService extends BaseService {
      */
     public void createDefaultGuildSettings(String guildId) {
         try {
-            if (guildSettingsRepository.findByGuildId(guildId).isEmpty()) {
+            if (guildSettingsCache.get(guildId).isEmpty()) {
                 GuildSettings settings = new GuildSettings(guildId);
-                guildSettingsRepository.save(settings);
+                guildSettingsCache.save(settings);
                 log.info("Created default settings for guild: {}", guildId);
             }
         } catch (Exception e) {
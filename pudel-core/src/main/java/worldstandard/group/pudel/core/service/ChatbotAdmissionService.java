@@ -0,0 +1,294 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
+import worldstandard.group.pudel.core.config.database.SubscriptionTierConfig;
+import worldstandard.group.pudel.core.config.database.SubscriptionTierConfig.TierDefinition;
+import worldstandard.group.pudel.core.config.database.SubscriptionTierConfig.TierLimits;
+import worldstandard.group.pudel.core.entity.Subscription;
+import worldstandard.group.pudel.core.entity.Subscription.SubscriptionType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket admission control for chatbot replies.
+ * <p>
+ * Every reply has to take a token from the user's bucket and from the guild's bucket.
+ * Refill rate and burst size come from the subscription tier
+ * ({@link TierLimits#getChatbotRequestsPerMinute()}, {@link TierLimits#getChatbotBurst()}).
+ * Resolved tiers are cached so that the message path does not query subscriptions per message.
+ * A tier that is not cached, or has expired, is loaded in the background; until it arrives the
+ * request is checked against the previous limits, or the default tier's, so the JDA event thread
+ * never waits for the database.
+ */
+@Service
+public class ChatbotAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatbotAdmissionService.class);
+
+    /**
+     * Result of an admission check.
+     */
+    public enum Decision {
+        /** The request may proceed. */
+        ADMITTED,
+        /** Rejected; this is the first rejection since the bucket last admitted, so notify the user. */
+        REJECTED,
+        /** Rejected again; the user has already been notified. */
+        REJECTED_SILENT
+    }
+
+    private final ChatbotConfig chatbotConfig;
+    private final SubscriptionTierConfig tierConfig;
+    private final SubscriptionService subscriptionService;
+
+    private final ConcurrentHashMap<Long, TokenBucket> guildBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CachedLimits> guildLimits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CachedLimits> userLimits = new ConcurrentHashMap<>();
+
+    // Targets whose tier is being loaded, as "GUILD:id" or "USER:id"
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService tierLoader =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pudel-admission-tier-", 0).factory());
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedByUser = new LongAdder();
+    private final LongAdder rejectedByGuild = new LongAdder();
+
+    public ChatbotAdmissionService(ChatbotConfig chatbotConfig,
+                                   SubscriptionTierConfig tierConfig,
+                                   @Lazy SubscriptionService subscriptionService) {
+        this.chatbotConfig = chatbotConfig;
+        this.tierConfig = tierConfig;
+        this.subscriptionService = subscriptionService;
+    }
+
+    /**
+     * Try to admit a chatbot request.
+     *
+     * @param guildId the guild ID, or 0 for direct messages
+     * @param userId  the user ID
+     * @return the admission decision
+     */
+    public Decision tryAdmit(long guildId, long userId) {
+        if (!chatbotConfig.getAdmission().isEnabled()) {
+            return Decision.ADMITTED;
+        }
+        long now = System.nanoTime();
+
+        TierLimits user = resolveLimits(userLimits, userId, SubscriptionType.USER, now);
+        TokenBucket userBucket = isLimited(user) ? userBuckets.computeIfAbsent(userId, _ -> new TokenBucket()) : null;
+        if (userBucket != null && !userBucket.tryAcquire(user, now)) {
+            rejectedByUser.increment();
+            return userBucket.markNotified() ? Decision.REJECTED : Decision.REJECTED_SILENT;
+        }
+
+        if (guildId != 0) {
+            TierLimits guild = resolveLimits(guildLimits, guildId, SubscriptionType.GUILD, now);
+            TokenBucket guildBucket = isLimited(guild) ? guildBuckets.computeIfAbsent(guildId, _ -> new TokenBucket()) : null;
+            if (guildBucket != null && !guildBucket.tryAcquire(guild, now)) {
+                // The user's token was not spent
+                if (userBucket != null) {
+                    userBucket.refund();
+                }
+                rejectedByGuild.increment();
+                return guildBucket.markNotified() ? Decision.REJECTED : Decision.REJECTED_SILENT;
+            }
+        }
+
+        admitted.increment();
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * Drop cached tier limits for a guild or user, e.g. after a subscription change.
+     *
+     * @param targetId the guild or user ID
+     * @param type     the subscription type
+     */
+    public void invalidate(long targetId, SubscriptionType type) {
+        if (type == SubscriptionType.GUILD) {
+            guildLimits.remove(targetId);
+        } else {
+            userLimits.remove(targetId);
+        }
+    }
+
+    /**
+     * Remove idle buckets and expired tier cache entries.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.SECONDS.toNanos(chatbotConfig.getAdmission().getIdleBucketSeconds());
+        guildBuckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        userBuckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        guildLimits.values().removeIf(cached -> cached.expiresAt - now <= 0);
+        userLimits.values().removeIf(cached -> cached.expiresAt - now <= 0);
+    }
+
+    /**
+     * Get admission statistics.
+     *
+     * @return map of admitted and rejected counts and tracked buckets
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("admitted", admitted.sum());
+        stats.put("rejectedByUser", rejectedByUser.sum());
+        stats.put("rejectedByGuild", rejectedByGuild.sum());
+        stats.put("guildBuckets", guildBuckets.size());
+        stats.put("userBuckets", userBuckets.size());
+        return stats;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedByUser.sum() + rejectedByGuild.sum();
+    }
+
+    private static boolean isLimited(TierLimits limits) {
+        return limits != null && limits.getChatbotRequestsPerMinute() >= 0;
+    }
+
+    /**
+     * Get the cached limits of a guild or user, starting a background load when they are missing
+     * or expired. Meanwhile the expired limits, or the default tier's, apply.
+     */
+    private TierLimits resolveLimits(ConcurrentHashMap<Long, CachedLimits> cache, long targetId,
+                                     SubscriptionType type, long now) {
+        CachedLimits cached = cache.get(targetId);
+        if (cached != null && cached.expiresAt - now > 0) {
+            return cached.limits;
+        }
+
+        String key = type + ":" + targetId;
+        if (loading.add(key)) {
+            try {
+                tierLoader.execute(() -> {
+                    try {
+                        loadLimits(cache, targetId, type);
+                    } finally {
+                        loading.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                loading.remove(key);
+            }
+        }
+        return cached != null ? cached.limits : limitsOf(tierConfig.getDefaultTier(), type);
+    }
+
+    private void loadLimits(ConcurrentHashMap<Long, CachedLimits> cache, long targetId, SubscriptionType type) {
+        String tierName = tierConfig.getDefaultTier();
+        try {
+            String id = String.valueOf(targetId);
+            Optional<Subscription> subscription = type == SubscriptionType.GUILD
+                    ? subscriptionService.getGuildSubscription(id)
+                    : subscriptionService.getUserSubscription(id);
+            // Expired subscriptions fall back to the default tier
+            if (subscription.isPresent() && subscription.get().isActive()) {
+                tierName = subscription.get().getTierName();
+            }
+        } catch (Exception e) {
+            logger.debug("Could not resolve {} subscription for {}: {}", type, targetId, e.getMessage());
+        }
+
+        long ttl = TimeUnit.SECONDS.toNanos(chatbotConfig.getAdmission().getTierCacheSeconds());
+        cache.put(targetId, new CachedLimits(limitsOf(tierName, type), System.nanoTime() + ttl));
+    }
+
+    private TierLimits limitsOf(String tierName, SubscriptionType type) {
+        TierDefinition tier = tierConfig.getTier(tierName);
+        return tier == null ? null : (type == SubscriptionType.GUILD ? tier.getGuild() : tier.getUser());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tierLoader.shutdownNow();
+    }
+
+    private record CachedLimits(TierLimits limits, long expiresAt) {
+    }
+
+    /**
+     * Token bucket refilled continuously at the tier's per-minute rate.
+     */
+    private static final class TokenBucket {
+        private double tokens = -1;
+        private long lastRefill;
+        private boolean notified;
+        private volatile long lastUsed;
+
+        synchronized boolean tryAcquire(TierLimits limits, long now) {
+            double capacity = Math.max(1, limits.getChatbotBurst());
+            double perNano = limits.getChatbotRequestsPerMinute() / (double) TimeUnit.MINUTES.toNanos(1);
+
+            if (tokens < 0) {
+                tokens = capacity;
+            } else {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * perNano);
+            }
+            lastRefill = now;
+            lastUsed = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                notified = false;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void refund() {
+            tokens += 1;
+        }
+
+        /**
+         * @return true if this is the first rejection since the last admitted request
+         */
+        synchronized boolean markNotified() {
+            if (notified) {
+                return false;
+            }
+            notified = true;
+            return true;
+        }
+
+        boolean isIdle(long now, long idleNanos) {
+            return now - lastUsed > idleNanos;
+        }
+    }
+}
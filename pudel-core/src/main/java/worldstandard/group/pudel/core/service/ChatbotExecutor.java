@@ -0,0 +1,206 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution stage for chatbot replies.
+ * <p>
+ * Reply generation blocks on the LLM for seconds, so it must never run on JDA's event
+ * thread. Tasks run on virtual threads and are serialized per key (the channel ID), so
+ * replies in one channel keep their order while other channels proceed independently.
+ * A global semaphore caps how many replies generate at once, and a bounded queue rejects
+ * new work instead of letting the backlog grow without limit.
+ */
+@Component
+public class ChatbotExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatbotExecutor.class);
+
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pudel-chatbot-", 0).factory());
+
+    // key = channel ID, value = pending tasks; a present lane means a drainer is active for that key
+    private final ConcurrentHashMap<Long, ArrayDeque<Runnable>> lanes = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+    private final int queueCapacity;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ChatbotExecutor(ChatbotConfig chatbotConfig) {
+        ChatbotConfig.Execution config = chatbotConfig.getExecution();
+        this.permits = new Semaphore(Math.max(1, config.getMaxConcurrent()), true);
+        this.queueCapacity = Math.max(1, config.getQueueCapacity());
+        logger.info("Chatbot executor initialized (maxConcurrent={}, queueCapacity={})",
+                permits.availablePermits(), queueCapacity);
+    }
+
+    /**
+     * Submit a task to run after all earlier tasks with the same key.
+     *
+     * @param key  the ordering key (channel ID)
+     * @param task the task
+     * @return true if accepted, false if the queue is full or the executor is shut down
+     */
+    public boolean submit(long key, Runnable task) {
+        if (executor.isShutdown()) {
+            rejected.increment();
+            return false;
+        }
+        if (pending.incrementAndGet() > queueCapacity) {
+            pending.decrementAndGet();
+            rejected.increment();
+            logger.warn("Chatbot queue full ({} pending), rejecting task for key {}", queueCapacity, key);
+            return false;
+        }
+        submitted.increment();
+
+        boolean[] startDrainer = new boolean[1];
+        lanes.compute(key, (_, lane) -> {
+            if (lane == null) {
+                lane = new ArrayDeque<>();
+                startDrainer[0] = true;
+            }
+            lane.add(task);
+            return lane;
+        });
+
+        if (startDrainer[0]) {
+            executor.execute(() -> drain(key));
+        }
+        return true;
+    }
+
+    /**
+     * Run every queued task for a key in order, then release the lane.
+     */
+    private void drain(long key) {
+        Runnable task = poll(key);
+        while (task != null) {
+            run(task);
+            task = poll(key);
+        }
+    }
+
+    /**
+     * Take the next task for a key. The lane is removed only once it is empty after the
+     * previous task finished, so a later submit always starts a fresh drainer.
+     */
+    private Runnable poll(long key) {
+        Runnable[] next = new Runnable[1];
+        lanes.computeIfPresent(key, (_, lane) -> {
+            next[0] = lane.poll();
+            return next[0] == null ? null : lane;
+        });
+        return next[0];
+    }
+
+    /**
+     * Run one task. Never throws: a task that escaped with an {@link Error} would otherwise end the
+     * drainer and leave its lane registered, and that channel would never be served again.
+     */
+    private void run(Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            // Only this task is dropped; the flag is not kept, so the lane's later tasks can still run
+            pending.decrementAndGet();
+            failed.increment();
+            logger.warn("Chatbot task interrupted while waiting for a slot");
+            return;
+        }
+
+        active.incrementAndGet();
+        try {
+            task.run();
+            completed.increment();
+        } catch (Throwable e) {
+            failed.increment();
+            logger.error("Chatbot task failed: {}", e.getMessage(), e);
+        } finally {
+            active.decrementAndGet();
+            pending.decrementAndGet();
+            permits.release();
+            // Do not let an interrupt aimed at this task fail the next one in the lane
+            Thread.interrupted();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get executor statistics.
+     *
+     * @return map of queue depth, concurrency and task counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.get());
+        stats.put("active", active.get());
+        stats.put("activeChannels", lanes.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Chatbot executor shutting down ({} pending)", pending.get());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -14,7 +14,10 @@
  */
 package worldstandard.group.pudel.core.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +37,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Service for handling chatbot interactions.
@@ -49,6 +54,9 @@ public class ChatbotService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatbotService.class);
 
+    // Replaces a partially streamed reply when generating the rest of it failed
+    private static final String REPLY_FAILED_TEXT = "Sorry, something went wrong while I was replying. Please try again.";
+
     // Cache for tracking forwarded messages - key is "userId:channelId"
     // When a user forwards a message, we store the forward content here temporarily
     // If the user sends a follow-up message within FORWARD_CONTEXT_TIMEOUT_MS, we include this context
@@ -64,6 +72,10 @@ public class ChatbotService {
     private final DiscordMessageParser messageParser;
     private final PudelAgentService agentService;
     private final AgentDataExecutor agentDataExecutor;
+    private final ChatbotExecutor chatbotExecutor;
+    private final ChatbotAdmissionService admissionService;
+    private final StreamingReplyService streamingReplyService;
+    private final MeterRegistry meterRegistry;
 
     public ChatbotService(ChatbotConfig chatbotConfig,
                           GuildDataService guildDataService,
@@ -73,7 +85,11 @@ public class ChatbotService {
                           @Lazy PudelBrain pudelBrain,
                           DiscordMessageParser messageParser,
                           @Lazy PudelAgentService agentService,
-                          @Lazy AgentDataExecutor agentDataExecutor) {
+                          @Lazy AgentDataExecutor agentDataExecutor,
+                          ChatbotExecutor chatbotExecutor,
+                          ChatbotAdmissionService admissionService,
+                          StreamingReplyService streamingReplyService,
+                          MeterRegistry meterRegistry) {
         this.chatbotConfig = chatbotConfig;
         this.guildDataService = guildDataService;
         this.userDataService = userDataService;
@@ -83,6 +99,10 @@ public class ChatbotService {
         this.messageParser = messageParser;
         this.agentService = agentService;
         this.agentDataExecutor = agentDataExecutor;
+        this.chatbotExecutor = chatbotExecutor;
+        this.admissionService = admissionService;
+        this.streamingReplyService = streamingReplyService;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -228,7 +248,8 @@ public class ChatbotService {
                     personality,
                     true,
                     guildId,
-                    userId
+                    userId,
+                    channelId
             );
         } else {
             long userId = event.getAuthor().getIdLong();
@@ -242,7 +263,8 @@ public class ChatbotService {
                     personality,
                     false,
                     0L,
-                    userId
+                    userId,
+                    event.getChannel().getIdLong()
             );
         }
     }
@@ -290,6 +312,14 @@ public class ChatbotService {
      * Routes to Agent mode when data management intent is detected.
      */
     public String generateResponse(String userMessage, ConversationContext context) {
+        return generateResponse(userMessage, context, null);
+    }
+
+    /**
+     * Generate a chatbot response, passing the LLM's partial output to {@code onPartial} while it streams.
+     * Agent mode and fallback responses are not streamed.
+     */
+    public String generateResponse(String userMessage, ConversationContext context, Consumer<String> onPartial) {
         if (pudelBrain == null) {
             // Fallback if brain is not available
             return generateFallbackResponse(userMessage, context);
@@ -308,7 +338,8 @@ public class ChatbotService {
                     context.personality(),
                     context.isGuild(),
                     context.isGuild() ? context.guildId() : context.userId(),
-                    context.userId()
+                    context.userId(),
+                    context.channelId()
             );
 
             // Process with brain
@@ -316,7 +347,8 @@ public class ChatbotService {
                     userMessage,
                     brainContext,
                     context.isGuild(),
-                    context.isGuild() ? context.guildId() : context.userId()
+                    context.isGuild() ? context.guildId() : context.userId(),
+                    onPartial
             );
 
             logger.debug("Brain response: intent={}, sentiment={}, memoriesUsed={}, confidence={}",
@@ -393,7 +425,8 @@ public class ChatbotService {
                         context.personality(),
                         context.isGuild(),
                         targetId,
-                        context.userId()
+                        context.userId(),
+                        context.channelId()
                 );
                 PudelBrain.BrainResponse brainResponse = pudelBrain.processMessage(
                         userMessage, brainContext, context.isGuild(), targetId);
@@ -430,8 +463,53 @@ public class ChatbotService {
 
     /**
      * Handle a chatbot interaction.
+     * Generation is handed off to {@link ChatbotExecutor} so the JDA event thread never
+     * waits on the LLM; replies within a channel are still produced in order.
      */
     public void handleChatbotMessage(MessageReceivedEvent event) {
+        long guildId = event.isFromGuild() ? event.getGuild().getIdLong() : 0L;
+        ChatbotAdmissionService.Decision decision = admissionService.tryAdmit(guildId, event.getAuthor().getIdLong());
+        if (decision != ChatbotAdmissionService.Decision.ADMITTED) {
+            logger.debug("Chatbot rate limit reached for user {} in guild {}", event.getAuthor().getId(), guildId);
+            if (decision == ChatbotAdmissionService.Decision.REJECTED) {
+                sendRejectReaction(event);
+            }
+            return;
+        }
+
+        long receivedNanos = System.nanoTime();
+        long channelId = event.getChannel().getIdLong();
+        if (!chatbotExecutor.submit(channelId, () -> processChatbotMessage(event, receivedNanos))) {
+            logger.warn("Chatbot busy, dropped message {} in channel {}",
+                    event.getMessageId(), channelId);
+            sendRejectReaction(event);
+        }
+    }
+
+    /**
+     * React to a message that will not get a reply. Much cheaper than generating one.
+     */
+    private void sendRejectReaction(MessageReceivedEvent event) {
+        String reaction = chatbotConfig.getAdmission().getRejectReaction();
+        if (reaction == null || reaction.isBlank()) {
+            return;
+        }
+        event.getMessage().addReaction(Emoji.fromUnicode(reaction)).queue(
+                null,
+                error -> logger.debug("Could not add reject reaction: {}", error.getMessage())
+        );
+    }
+
+    /**
+     * Generate and send a chatbot reply. Runs on the chatbot execution stage.
+     *
+     * @param receivedNanos {@link System#nanoTime()} when the message was admitted, for end-to-end latency
+     */
+    private void processChatbotMessage(MessageReceivedEvent event, long receivedNanos) {
+        meterRegistry.timer("pudel.chatbot.queue.wait").record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+        Timer.Sample replySample = Timer.start(meterRegistry);
+        String outcome = "sent";
+        StreamingReplyService.Reply streamingReply = null;
         try {
             String userMessage = event.getMessage().getContentRaw();
             String userId = event.getAuthor().getId();
@@ -467,6 +545,7 @@ public class ChatbotService {
                 logger.debug("Stored forward context silently for user {} in channel {} - waiting for follow-up mention",
                         userId, channelId);
                 // Don't respond - just wait for user to mention Pudel with their actual question
+                outcome = "forward_only";
                 return;
             }
 
@@ -488,10 +567,15 @@ public class ChatbotService {
             final String cleanMessage = processedMessage.isEmpty() ? "" : processedMessage;
 
             // Get conversation context
+            Timer.Sample stageSample = Timer.start(meterRegistry);
             ConversationContext context = getConversationContext(event);
+            stageSample.stop(meterRegistry.timer("pudel.chatbot.stage", "stage", "context"));
 
-            // Generate response
-            String response = generateResponse(cleanMessage, context);
+            // Generate response, showing it progressively when the model streams
+            streamingReply = streamingReplyService.open(event.getChannel(), receivedNanos);
+            stageSample = Timer.start(meterRegistry);
+            String response = generateResponse(cleanMessage, context, streamingReply);
+            stageSample.stop(meterRegistry.timer("pudel.chatbot.stage", "stage", "generate"));
 
             // Validate response is not empty before sending
             if (response == null || response.isBlank()) {
@@ -507,24 +591,50 @@ public class ChatbotService {
             final long userIdLong = event.getAuthor().getIdLong();
             final long channelIdLong = event.getChannel().getIdLong();
 
-            // Send response
-            event.getChannel().sendMessage(finalResponse).queue(
-                    _ -> {
-                        // Store the dialogue using brain if available
-                        if (pudelBrain != null) {
-                            pudelBrain.storeDialogue(cleanMessage, finalResponse, "chat",
-                                    userIdLong, channelIdLong, isGuild, targetId);
-                        } else {
-                            // Fallback storage
-                            storeDialogue(event, cleanMessage, finalResponse, "chat");
-                        }
-                        logger.debug("Chatbot response sent and stored");
-                    },
-                    error -> logger.error("Failed to send chatbot response: {}", error.getMessage())
-            );
+            // Send response (or finish the progressive one)
+            Timer.Sample sendSample = Timer.start(meterRegistry);
+            Consumer<Message> onSent = _ -> {
+                sendSample.stop(meterRegistry.timer("pudel.discord.send", "outcome", "success"));
+                meterRegistry.timer("pudel.chatbot.end_to_end")
+                        .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+
+                // Store the dialogue using brain if available
+                if (pudelBrain != null) {
+                    pudelBrain.storeDialogue(cleanMessage, finalResponse, "chat",
+                            userIdLong, channelIdLong, isGuild, targetId);
+                } else {
+                    // Fallback storage
+                    storeDialogue(event, cleanMessage, finalResponse, "chat");
+                }
+                logger.debug("Chatbot response sent and stored");
+            };
+            Consumer<Throwable> onSendFailed = error -> {
+                sendSample.stop(meterRegistry.timer("pudel.discord.send", "outcome", "error"));
+                logger.error("Failed to send chatbot response: {}", error.getMessage());
+            };
+
+            if (streamingReply != null) {
+                streamingReply.complete(finalResponse, onSent, onSendFailed);
+            } else {
+                event.getChannel().sendMessage(finalResponse).queue(
+                        message -> {
+                            meterRegistry.timer("pudel.chatbot.first_visible", "mode", "whole")
+                                    .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+                            onSent.accept(message);
+                        },
+                        onSendFailed
+                );
+            }
 
         } catch (Exception e) {
+            outcome = "error";
             logger.error("Error handling chatbot message: {}", e.getMessage(), e);
+            if (streamingReply != null) {
+                // Do not leave a cut-off partial reply in the channel
+                streamingReply.abort(REPLY_FAILED_TEXT);
+            }
+        } finally {
+            replySample.stop(meterRegistry.timer("pudel.chatbot.reply", "outcome", outcome));
         }
     }
 
@@ -715,7 +825,8 @@ public class ChatbotService {
             PudelPersonality personality,
             boolean isGuild,
             long guildId,
-            long userId
+            long userId,
+            long channelId
     ) {}
 
     /**
@@ -14,21 +14,24 @@
  */
 package worldstandard.group.pudel.core.service;
 
-import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import worldstandard.group.pudel.core.entity.GuildSettings;
-import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
 
-import java.awt.*;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,17 +42,30 @@ public class CommandExecutionService extends BaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(CommandExecutionService.class);
 
-    private final GuildSettingsRepository guildSettingsRepository;
+    private final GuildSettingsCache guildSettingsCache;
+    private final CommandLogBatcher commandLogBatcher;
 
-    // Track user cooldowns: key = "guildId:userId", value = cooldown end time in milliseconds
-    private final ConcurrentHashMap<String, Float> userCooldowns = new ConcurrentHashMap<>();
+    // Cooldown wheel: 250ms ticks x 1024 slots (~4 min per revolution), at most 2M tracked users
+    private static final long COOLDOWN_TICK_MS = 250;
+    private static final int COOLDOWN_WHEEL_SLOTS = 1024;
+    private static final int COOLDOWN_MAX_ENTRIES = 2_000_000;
+
+    // Track user cooldowns by (guildId, userId), expiring through a timer wheel
+    private final CooldownStore cooldownStore = new CooldownStore(
+            TimeUnit.MILLISECONDS.toNanos(COOLDOWN_TICK_MS), COOLDOWN_WHEEL_SLOTS, COOLDOWN_MAX_ENTRIES);
+    private final ScheduledExecutorService cooldownSweeper = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-cooldown-sweeper").daemon().factory());
 
     // Track message IDs to delete: key = "guildId:userId:messageId", value = true
     private final ConcurrentHashMap<String, Message> messagesToManage = new ConcurrentHashMap<>();
 
-    public CommandExecutionService(JDA jda, GuildSettingsRepository guildSettingsRepository) {
+    public CommandExecutionService(JDA jda, GuildSettingsCache guildSettingsCache,
+                                   CommandLogBatcher commandLogBatcher) {
         super(jda);
-        this.guildSettingsRepository = guildSettingsRepository;
+        this.guildSettingsCache = guildSettingsCache;
+        this.commandLogBatcher = commandLogBatcher;
+        cooldownSweeper.scheduleAtFixedRate(cooldownStore::advance,
+                COOLDOWN_TICK_MS, COOLDOWN_TICK_MS, TimeUnit.MILLISECONDS);
     }
 
 
@@ -60,21 +76,9 @@ public class CommandExecutionService extends BaseService {
      * @param userId  the user ID
      * @return remaining cooldown time in seconds, or 0 if no cooldown
      */
-    public float getRemainingCooldown(String guildId, String userId) {
-        String key = guildId + ":" + userId;
-        Float cooldownEndTime = userCooldowns.get(key);
-
-        if (cooldownEndTime == null) {
-            return 0;
-        }
-
-        float remainingMs = cooldownEndTime - System.currentTimeMillis();
-        if (remainingMs <= 0) {
-            userCooldowns.remove(key);
-            return 0;
-        }
-
-        return remainingMs / 1000; // Round up to seconds
+    public float getRemainingCooldown(long guildId, long userId) {
+        long remainingNanos = cooldownStore.remainingNanos(guildId, userId);
+        return remainingNanos / 1_000_000_000f;
     }
 
     /**
@@ -84,14 +88,14 @@ public class CommandExecutionService extends BaseService {
      * @param userId       the user ID
      * @param cooldownSecs cooldown duration in seconds
      */
-    public void applyCooldown(String guildId, String userId, Float cooldownSecs) {
+    public void applyCooldown(long guildId, long userId, float cooldownSecs) {
         if (cooldownSecs <= 0) {
             return;
         }
 
-        String key = guildId + ":" + userId;
-        float cooldownEndTime = System.currentTimeMillis() + (cooldownSecs * 1000);
-        userCooldowns.put(key, cooldownEndTime);
+        if (!cooldownStore.apply(guildId, userId, (long) (cooldownSecs * 1_000_000_000d))) {
+            logger.warn("Cooldown store full, not tracking cooldown for user {} in guild {}", userId, guildId);
+        }
     }
 
     /**
@@ -120,7 +124,7 @@ public class CommandExecutionService extends BaseService {
      * @param success  whether the command succeeded
      */
     public void logCommand(String guildId, String command, String args, String userId, String userName, boolean success) {
-        GuildSettings settings = guildSettingsRepository.findByGuildId(guildId).orElse(null);
+        GuildSettings settings = guildSettingsCache.get(guildId).orElse(null);
         if (settings == null || settings.getLogChannel() == null) {
             return;
         }
@@ -186,7 +190,7 @@ public class CommandExecutionService extends BaseService {
      */
     public void sendCommandLog(Guild guild, String command, String argsStr, String userId, String userName,
                                MessageChannel commandChannel, boolean success) {
-        GuildSettings settings = guildSettingsRepository.findByGuildId(guild.getId()).orElse(null);
+        GuildSettings settings = guildSettingsCache.get(guild.getId()).orElse(null);
         if (settings == null || settings.getLogChannel() == null) {
             return;
         }
@@ -199,17 +203,9 @@ public class CommandExecutionService extends BaseService {
                 return;
             }
 
-            EmbedBuilder embed = new EmbedBuilder()
-                    .setTitle("Command Executed", null)
-                    .setColor(success ? Color.GREEN : Color.RED)
-                    .addField("Command", "`" + command + "`", true)
-                    .addField("User", "<@" + userId + "> (" + userName + ")", true)
-                    .addField("Arguments", argsStr.isEmpty() ? "None" : "`" + argsStr + "`", false)
-                    .addField("Channel", commandChannel.getAsMention(), true)
-                    .addField("Status", success ? "✅ Success" : "❌ Failed", true)
-                    .setTimestamp(java.time.Instant.now());
-
-            logChannel.sendMessageEmbeds(embed.build()).queue();
+            // Delivered in batches; one log message can carry several commands
+            commandLogBatcher.enqueue(logChannel.getIdLong(), new CommandLogBatcher.CommandLogRecord(
+                    command, argsStr, userId, userName, commandChannel.getAsMention(), success, Instant.now()));
         } catch (Exception e) {
             logger.error("Error sending command log: {}", e.getMessage());
         }
@@ -220,8 +216,32 @@ public class CommandExecutionService extends BaseService {
      *
      * @param guildId the guild ID
      */
-    public void cleanupGuildCooldowns(String guildId) {
-        userCooldowns.keySet().removeIf(key -> key.startsWith(guildId + ":"));
+    public void cleanupGuildCooldowns(long guildId) {
+        int removed = cooldownStore.clearGuild(guildId);
+        logger.debug("Cleared {} cooldown(s) for guild {}", removed, guildId);
+    }
+
+    CooldownStore getCooldownStore() {
+        return cooldownStore;
+    }
+
+    /**
+     * Get cooldown store statistics.
+     *
+     * @return map of tracked, expired and overflow counts
+     */
+    public Map<String, Object> getCooldownStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tracked", cooldownStore.size());
+        stats.put("guilds", cooldownStore.getGuildCount());
+        stats.put("expired", cooldownStore.getExpiredCount());
+        stats.put("overflow", cooldownStore.getOverflowCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cooldownSweeper.shutdownNow();
     }
 }
 
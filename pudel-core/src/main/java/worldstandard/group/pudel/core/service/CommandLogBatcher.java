@@ -0,0 +1,348 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers command audit records per log channel and delivers them in batches.
+ * <p>
+ * Each message carries up to {@link Message#MAX_EMBED_COUNT} embeds. When more records are
+ * waiting than fit, the overflow is merged into a single summary embed of up to
+ * {@value #MAX_SUMMARY_LINES} lines, so a busy guild costs one REST call per interval instead of
+ * one per command. Records that fit in neither stay queued for the next message, and the summary
+ * says how many follow. On shutdown the remaining records are sent and waited for.
+ */
+@Component
+public class CommandLogBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandLogBatcher.class);
+
+    private static final long FLUSH_INTERVAL_MS = 2_000;
+    private static final int MAX_BUFFERED_PER_CHANNEL = 200;
+    private static final int MAX_SUMMARY_LINES = 20;
+    private static final int MAX_ARGS_LENGTH = 200;
+    // Records one message can carry: full embeds plus the summary embed's lines
+    private static final int MAX_RECORDS_PER_MESSAGE = Message.MAX_EMBED_COUNT - 1 + MAX_SUMMARY_LINES;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+    private final JDA jda;
+
+    // key = log channel ID, value = pending records (guarded by the deque itself)
+    private final ConcurrentHashMap<Long, ArrayDeque<CommandLogRecord>> buffers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-command-log").daemon().factory());
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+
+    public CommandLogBatcher(@Lazy JDA jda) {
+        this.jda = jda;
+        flusher.scheduleWithFixedDelay(this::flushAll, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a command audit record for its log channel.
+     *
+     * @param logChannelId the log channel ID
+     * @param record       the record
+     */
+    public void enqueue(long logChannelId, CommandLogRecord record) {
+        boolean full;
+        while (true) {
+            ArrayDeque<CommandLogRecord> buffer = buffers.computeIfAbsent(logChannelId, _ -> new ArrayDeque<>());
+            synchronized (buffer) {
+                // An emptied buffer is removed under its lock; add to the one in the map
+                if (buffers.get(logChannelId) != buffer) {
+                    continue;
+                }
+                if (buffer.size() >= MAX_BUFFERED_PER_CHANNEL) {
+                    buffer.pollFirst();
+                    dropped.increment();
+                }
+                buffer.addLast(record);
+                full = buffer.size() >= Message.MAX_EMBED_COUNT;
+            }
+            break;
+        }
+        enqueued.increment();
+
+        // A full batch does not need to wait for the next tick
+        if (full) {
+            try {
+                flusher.execute(() -> flush(logChannelId, false));
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush delivers it
+                logger.debug("Command log flush not scheduled: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void flushAll() {
+        flushAll(false);
+    }
+
+    private void flushAll(boolean blocking) {
+        for (Long channelId : buffers.keySet()) {
+            flush(channelId, blocking);
+        }
+    }
+
+    /**
+     * Send a channel's records, one message at a time, until its buffer is empty.
+     *
+     * @param blocking wait for each message to be sent, for shutdown
+     */
+    private void flush(long logChannelId, boolean blocking) {
+        ArrayDeque<CommandLogRecord> buffer = buffers.get(logChannelId);
+        if (buffer == null) {
+            return;
+        }
+
+        while (true) {
+            List<CommandLogRecord> batch = new ArrayList<>(MAX_RECORDS_PER_MESSAGE);
+            synchronized (buffer) {
+                if (buffer.isEmpty()) {
+                    buffers.remove(logChannelId, buffer);
+                    return;
+                }
+                while (batch.size() < MAX_RECORDS_PER_MESSAGE && !buffer.isEmpty()) {
+                    batch.add(buffer.pollFirst());
+                }
+            }
+
+            // Records of the batch that are lost if sending fails
+            int sending = batch.size();
+            try {
+                TextChannel channel = jda.getTextChannelById(logChannelId);
+                if (channel == null) {
+                    dropped.add(batch.size());
+                    logger.warn("Log channel {} not found, dropping {} command log(s)", logChannelId, batch.size());
+                    continue;
+                }
+
+                int[] consumed = new int[1];
+                List<MessageEmbed> embeds = buildEmbeds(batch, buffer, consumed);
+                if (consumed[0] < batch.size()) {
+                    // Did not fit in this message; they go first in the next one
+                    synchronized (buffer) {
+                        for (int i = batch.size() - 1; i >= consumed[0]; i--) {
+                            buffer.addFirst(batch.get(i));
+                        }
+                    }
+                }
+                sending = consumed[0];
+                int inMessage = sending;
+                if (blocking) {
+                    channel.sendMessageEmbeds(embeds).timeout(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS).complete();
+                    messagesSent.increment();
+                } else {
+                    channel.sendMessageEmbeds(embeds).queue(
+                            _ -> messagesSent.increment(),
+                            error -> {
+                                dropped.add(inMessage);
+                                logger.warn("Failed to send command logs to {}: {}", logChannelId, error.getMessage());
+                            }
+                    );
+                }
+            } catch (Exception e) {
+                // Records put back are tried again on the next flush
+                dropped.add(sending);
+                logger.error("Error sending command logs: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Build up to {@link Message#MAX_EMBED_COUNT} embeds within Discord's total embed size,
+     * merging records left over into a trailing summary embed.
+     *
+     * @param buffer   the channel's buffer, for the count of records after this message
+     * @param consumed set to how many records of the batch the embeds cover
+     */
+    private List<MessageEmbed> buildEmbeds(List<CommandLogRecord> batch, ArrayDeque<CommandLogRecord> buffer,
+                                           int[] consumed) {
+        List<MessageEmbed> embeds = new ArrayList<>(Message.MAX_EMBED_COUNT);
+        // Reserve room for the summary embed in case it is needed
+        int budget = MessageEmbed.EMBED_MAX_LENGTH_BOT - 1_500;
+        int index = 0;
+
+        while (index < batch.size()) {
+            boolean last = index == batch.size() - 1;
+            int slotsLeft = Message.MAX_EMBED_COUNT - embeds.size();
+            if (slotsLeft <= 1 && !last) {
+                break;
+            }
+            MessageEmbed embed = buildRecordEmbed(batch.get(index));
+            if (embed.getLength() > budget && !embeds.isEmpty()) {
+                break;
+            }
+            budget -= embed.getLength();
+            embeds.add(embed);
+            index++;
+        }
+        delivered.add(index);
+        consumed[0] = index;
+
+        if (index < batch.size()) {
+            int summarized = Math.min(batch.size() - index, MAX_SUMMARY_LINES);
+            int following = batch.size() - index - summarized;
+            synchronized (buffer) {
+                following += buffer.size();
+            }
+            embeds.add(buildSummaryEmbed(batch.subList(index, index + summarized), following));
+            consumed[0] += summarized;
+        }
+        return embeds;
+    }
+
+    private MessageEmbed buildRecordEmbed(CommandLogRecord record) {
+        String args = record.args();
+        if (args.length() > MAX_ARGS_LENGTH) {
+            args = args.substring(0, MAX_ARGS_LENGTH) + "…";
+        }
+        return new EmbedBuilder()
+                .setTitle("Command Executed", null)
+                .setColor(record.success() ? Color.GREEN : Color.RED)
+                .addField("Command", "`" + record.command() + "`", true)
+                .addField("User", "<@" + record.userId() + "> (" + record.userName() + ")", true)
+                .addField("Arguments", args.isEmpty() ? "None" : "`" + args + "`", false)
+                .addField("Channel", record.channelMention(), true)
+                .addField("Status", record.success() ? "✅ Success" : "❌ Failed", true)
+                .setTimestamp(record.timestamp())
+                .build();
+    }
+
+    /**
+     * @param rest      the records to list, at most {@value #MAX_SUMMARY_LINES}
+     * @param following records still queued, which follow in later messages
+     */
+    private MessageEmbed buildSummaryEmbed(List<CommandLogRecord> rest, int following) {
+        StringBuilder lines = new StringBuilder();
+        for (CommandLogRecord record : rest) {
+            lines.append(record.success() ? "✅ " : "❌ ")
+                    .append('`').append(record.command()).append("` by <@").append(record.userId())
+                    .append("> in ").append(record.channelMention())
+                    .append(" <t:").append(record.timestamp().getEpochSecond()).append(":T>\n");
+        }
+        if (following > 0) {
+            lines.append("+").append(following).append(" more");
+        }
+        merged.add(rest.size());
+
+        return new EmbedBuilder()
+                .setTitle("Commands Executed (" + rest.size() + " more)", null)
+                .setColor(Color.GRAY)
+                .setDescription(lines.toString())
+                .setTimestamp(Instant.now())
+                .build();
+    }
+
+    public int getPendingCount() {
+        int pending = 0;
+        for (ArrayDeque<CommandLogRecord> buffer : buffers.values()) {
+            synchronized (buffer) {
+                pending += buffer.size();
+            }
+        }
+        return pending;
+    }
+
+    public long getMergedCount() {
+        return merged.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getMessagesSentCount() {
+        return messagesSent.sum();
+    }
+
+    /**
+     * Get batching statistics.
+     *
+     * @return map of record and message counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", getPendingCount());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("merged", merged.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("messagesSent", messagesSent.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Deliver whatever is buffered before JDA goes away, waiting for each message;
+        // queued sends would be cancelled when JDA shuts down
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                flusher.shutdownNow();
+            }
+            flushAll(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("Error flushing command logs on shutdown: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A single command audit record.
+     */
+    public record CommandLogRecord(
+            String command,
+            String args,
+            String userId,
+            String userName,
+            String channelMention,
+            boolean success,
+            Instant timestamp
+    ) {}
+}
@@ -0,0 +1,224 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import worldstandard.group.pudel.core.util.LongLongHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command cooldown store keyed by the (guildId, userId) pair.
+ * <p>
+ * Deadlines are {@link System#nanoTime()} values held in primitive per-guild maps, so
+ * there is no string key building and no float precision loss. Each guild has its own
+ * map, which makes leaving a guild O(entries of that guild). Expired entries are removed
+ * by a hashed timer wheel advanced from {@link #advance()}, and the total number of
+ * tracked entries is capped at {@code maxEntries}.
+ */
+public class CooldownStore {
+
+    private final ConcurrentHashMap<Long, LongLongHashMap> guilds = new ConcurrentHashMap<>();
+
+    private final long origin = System.nanoTime();
+    private final long tickNanos;
+    private final int maxEntries;
+
+    // Timer wheel: slot = deadline tick & mask. Guarded by synchronized (wheel).
+    private final List<List<Expiry>> wheel;
+    private final int mask;
+    private long lastTick;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    /**
+     * @param tickNanos  wheel resolution in nanoseconds
+     * @param wheelSize  number of wheel slots (rounded up to a power of two)
+     * @param maxEntries hard cap on tracked cooldowns
+     */
+    public CooldownStore(long tickNanos, int wheelSize, int maxEntries) {
+        int slots = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.maxEntries = maxEntries;
+        this.mask = slots - 1;
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Get the remaining cooldown for a user.
+     *
+     * @return remaining nanoseconds, or 0 if not on cooldown
+     */
+    public long remainingNanos(long guildId, long userId) {
+        LongLongHashMap users = guilds.get(guildId);
+        if (users == null) {
+            return 0;
+        }
+        long deadline;
+        synchronized (users) {
+            deadline = users.get(userId, 0L);
+        }
+        if (deadline == 0L) {
+            return 0;
+        }
+        long remaining = deadline - System.nanoTime();
+        return Math.max(0, remaining);
+    }
+
+    /**
+     * Start or restart a cooldown.
+     *
+     * @return false if the store is full and the cooldown was not recorded
+     */
+    public boolean apply(long guildId, long userId, long durationNanos) {
+        if (durationNanos <= 0) {
+            return true;
+        }
+        long deadline = System.nanoTime() + durationNanos;
+        // 0 marks "absent" in the map
+        if (deadline == 0L) {
+            deadline = 1L;
+        }
+
+        boolean[] added = new boolean[1];
+        boolean[] full = new boolean[1];
+        long finalDeadline = deadline;
+        guilds.compute(guildId, (_, users) -> {
+            if (users == null) {
+                users = new LongLongHashMap();
+            }
+            synchronized (users) {
+                if (!users.containsKey(userId)) {
+                    if (size.get() >= maxEntries) {
+                        full[0] = true;
+                        return users.isEmpty() ? null : users;
+                    }
+                    size.incrementAndGet();
+                    added[0] = true;
+                }
+                users.put(userId, finalDeadline);
+            }
+            return users;
+        });
+
+        if (full[0]) {
+            overflow.increment();
+            return false;
+        }
+        schedule(new Expiry(guildId, userId, deadline));
+        return true;
+    }
+
+    /**
+     * Drop every cooldown for a guild.
+     *
+     * @return the number of entries removed
+     */
+    public int clearGuild(long guildId) {
+        LongLongHashMap users = guilds.remove(guildId);
+        if (users == null) {
+            return 0;
+        }
+        int removed;
+        synchronized (users) {
+            removed = users.size();
+        }
+        size.addAndGet(-removed);
+        return removed;
+    }
+
+    /**
+     * Expire every entry whose deadline has passed. Called periodically, at least once per tick.
+     */
+    public void advance() {
+        long now = System.nanoTime();
+        long nowTick = (now - origin) / tickNanos;
+        List<Expiry> due = new ArrayList<>();
+
+        synchronized (wheel) {
+            // Never sweep more than one full revolution; every slot is visited by then
+            long from = Math.max(lastTick + 1, nowTick - mask);
+            for (long tick = from; tick <= nowTick; tick++) {
+                List<Expiry> slot = wheel.get((int) (tick & mask));
+                if (slot.isEmpty()) {
+                    continue;
+                }
+                // Entries more than one revolution out stay for a later round
+                slot.removeIf(expiry -> {
+                    if (expiry.deadline - now <= 0) {
+                        due.add(expiry);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            lastTick = Math.max(lastTick, nowTick);
+        }
+
+        for (Expiry expiry : due) {
+            expire(expiry);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getGuildCount() {
+        return guilds.size();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflow.sum();
+    }
+
+    private void schedule(Expiry expiry) {
+        long tick = (expiry.deadline - origin + tickNanos - 1) / tickNanos;
+        synchronized (wheel) {
+            if (tick <= lastTick) {
+                tick = lastTick + 1;
+            }
+            wheel.get((int) (tick & mask)).add(expiry);
+        }
+    }
+
+    private void expire(Expiry expiry) {
+        guilds.computeIfPresent(expiry.guildId, (_, users) -> {
+            synchronized (users) {
+                // Only remove if the cooldown was not restarted since this entry was scheduled
+                if (users.remove(expiry.userId, expiry.deadline)) {
+                    size.decrementAndGet();
+                    expired.increment();
+                }
+                return users.isEmpty() ? null : users;
+            }
+        });
+    }
+
+    private record Expiry(long guildId, long userId, long deadline) {
+    }
+}
@@ -39,10 +39,20 @@ public class GuildDataService {
 
     private final JdbcTemplate jdbcTemplate;
     private final SchemaManagementService schemaManagementService;
-
-    public GuildDataService(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService) {
+    private final SemanticResponseCache responseCache;
+    private final MemoryEmbeddingWriter embeddingWriter;
+    private final MemoryWriteBuffer writeBuffer;
+    private final TenantRowCounter rowCounter;
+
+    public GuildDataService(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService,
+                            SemanticResponseCache responseCache, MemoryEmbeddingWriter embeddingWriter,
+                            MemoryWriteBuffer writeBuffer, TenantRowCounter rowCounter) {
         this.jdbcTemplate = jdbcTemplate;
         this.schemaManagementService = schemaManagementService;
+        this.responseCache = responseCache;
+        this.embeddingWriter = embeddingWriter;
+        this.writeBuffer = writeBuffer;
+        this.rowCounter = rowCounter;
     }
 
     // ===========================================
@@ -57,11 +67,8 @@ public class GuildDataService {
         String schemaName = schemaManagementService.getGuildSchemaName(guildId);
 
         try {
-            String sql = "INSERT INTO " + schemaName + ".dialogue_history " +
-                    "(user_id, channel_id, user_message, bot_response, intent, created_at) " +
-                    "VALUES (?, ?, ?, ?, ?, ?)";
-            jdbcTemplate.update(sql, userId, channelId, userMessage, botResponse, intent,
-                    Timestamp.valueOf(LocalDateTime.now()));
+            // Inserted in a batch by the write buffer, which also queues the row for embedding
+            writeBuffer.enqueueGuildDialogue(schemaName, userId, channelId, userMessage, botResponse, intent);
             logger.debug("Stored dialogue for guild {} user {}", guildId, userId);
         } catch (Exception e) {
             logger.error("Error storing dialogue for guild {}: {}", guildId, e.getMessage());
@@ -76,6 +83,7 @@ public class GuildDataService {
         String schemaName = schemaManagementService.getGuildSchemaName(guildId);
 
         try {
+            writeBuffer.awaitFlushed(schemaName);
             String sql = "SELECT * FROM " + schemaName + ".dialogue_history " +
                     "WHERE user_id = ? ORDER BY created_at DESC LIMIT ?";
             return jdbcTemplate.queryForList(sql, userId, limit);
@@ -92,6 +100,7 @@ public class GuildDataService {
         String schemaName = schemaManagementService.getGuildSchemaName(guildId);
 
         try {
+            writeBuffer.awaitFlushed(schemaName);
             String sql = "SELECT * FROM " + schemaName + ".dialogue_history " +
                     "WHERE channel_id = ? ORDER BY created_at DESC LIMIT ?";
             return jdbcTemplate.queryForList(sql, channelId, limit);
@@ -114,9 +123,16 @@ public class GuildDataService {
         try {
             String sql = "INSERT INTO " + schemaName + ".memory (key, value, category, created_by, created_at, updated_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ?";
+                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ? " +
+                    "RETURNING id, (xmax = 0) AS inserted";
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-            jdbcTemplate.update(sql, key, value, category, createdBy, now, now, value, category, now);
+            Map<String, Object> row = jdbcTemplate.queryForMap(sql,
+                    key, value, category, createdBy, now, now, value, category, now);
+            if (Boolean.TRUE.equals(row.get("inserted"))) {
+                rowCounter.add(schemaName, "memory", 1);
+            }
+            embeddingWriter.enqueueMemory(schemaName, ((Number) row.get("id")).longValue(), key, value);
+            responseCache.invalidateGuild(guildId);
             logger.debug("Stored memory '{}' for guild {}", key, guildId);
         } catch (Exception e) {
             logger.error("Error storing memory for guild {}: {}", guildId, e.getMessage());
@@ -163,6 +179,10 @@ public class GuildDataService {
         try {
             String sql = "DELETE FROM " + schemaName + ".memory WHERE key = ?";
             int deleted = jdbcTemplate.update(sql, key);
+            if (deleted > 0) {
+                rowCounter.add(schemaName, "memory", -deleted);
+                responseCache.invalidateGuild(guildId);
+            }
             return deleted > 0;
         } catch (Exception e) {
             logger.error("Error deleting memory for guild {}: {}", guildId, e.getMessage());
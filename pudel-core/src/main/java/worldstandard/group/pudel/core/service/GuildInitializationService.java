@@ -19,9 +19,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import worldstandard.group.pudel.core.discord.GuildDispatchSnapshot;
 import worldstandard.group.pudel.core.entity.GuildSettings;
-import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
 
 /**
  * Service for guild initialization and lifecycle management.
@@ -34,12 +35,12 @@ public class GuildInitializationService {
 
     private static final Logger logger = LoggerFactory.getLogger(GuildInitializationService.class);
 
-    private final GuildSettingsRepository guildSettingsRepository;
+    private final GuildSettingsCache guildSettingsCache;
     private final SchemaManagementService schemaManagementService;
 
-    public GuildInitializationService(GuildSettingsRepository guildSettingsRepository,
+    public GuildInitializationService(GuildSettingsCache guildSettingsCache,
                                       @Lazy SchemaManagementService schemaManagementService) {
-        this.guildSettingsRepository = guildSettingsRepository;
+        this.guildSettingsCache = guildSettingsCache;
         this.schemaManagementService = schemaManagementService;
     }
 
@@ -56,13 +57,13 @@ public class GuildInitializationService {
         logger.info("Initializing guild: {} ({})", guildName, guildId);
 
         // Check if guild settings already exist
-        boolean settingsExist = guildSettingsRepository.findByGuildId(guildId).isPresent();
+        boolean settingsExist = guildSettingsCache.get(guildId).isPresent();
 
         if (!settingsExist) {
             // Create guild settings
             GuildSettings settings = new GuildSettings(guildId);
             settings.setSchemaCreated(false);
-            guildSettingsRepository.save(settings);
+            guildSettingsCache.save(settings);
             logger.info("Created guild settings for: {} ({})", guildName, guildId);
         }
 
@@ -72,9 +73,9 @@ public class GuildInitializationService {
                 schemaManagementService.createGuildSchema(guildIdLong);
 
                 // Update settings to mark schema as created
-                guildSettingsRepository.findByGuildId(guildId).ifPresent(settings -> {
+                guildSettingsCache.get(guildId).ifPresent(settings -> {
                     settings.setSchemaCreated(true);
-                    guildSettingsRepository.save(settings);
+                    guildSettingsCache.save(settings);
                 });
 
                 logger.info("Created database schema for guild: {} ({})", guildName, guildId);
@@ -96,8 +97,7 @@ public class GuildInitializationService {
     public void cleanupGuild(String guildId) {
         logger.info("Cleaning up guild: {}", guildId);
 
-        guildSettingsRepository.findByGuildId(guildId)
-                .ifPresent(guildSettingsRepository::delete);
+        guildSettingsCache.delete(guildId);
 
         // Note: We intentionally do NOT drop the guild schema on leave
         // to preserve data in case the bot is re-added later.
@@ -113,15 +113,24 @@ public class GuildInitializationService {
 
     /**
      * Get or create guild settings.
+     * Served from {@link GuildSettingsCache}; runs without a transaction so a cache hit
+     * does not check out a database connection.
      * @param guildId the Discord guild ID
      * @return guild settings
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public GuildSettings getOrCreateGuildSettings(String guildId) {
-        return guildSettingsRepository.findByGuildId(guildId)
-                .orElseGet(() -> {
-                    GuildSettings settings = new GuildSettings(guildId);
-                    return guildSettingsRepository.save(settings);
-                });
+        return guildSettingsCache.getOrCreate(guildId);
+    }
+
+    /**
+     * Get the precompiled dispatch snapshot for a guild, creating settings if needed.
+     * @param guildId the Discord guild ID
+     * @return dispatch snapshot
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public GuildDispatchSnapshot getDispatchSnapshot(String guildId) {
+        return guildSettingsCache.getSnapshot(guildId);
     }
 
     /**
@@ -129,8 +138,9 @@ public class GuildInitializationService {
      * @param guildId the Discord guild ID
      * @return guild settings or null
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public GuildSettings getGuildSettings(String guildId) {
-        return guildSettingsRepository.findByGuildId(guildId).orElse(null);
+        return guildSettingsCache.get(guildId).orElse(null);
     }
 
     /**
@@ -141,7 +151,7 @@ public class GuildInitializationService {
      */
     public GuildSettings updateGuildSettings(String guildId, GuildSettings settings) {
         settings.setGuildId(guildId);
-        return guildSettingsRepository.save(settings);
+        return guildSettingsCache.save(settings);
     }
 }
 
@@ -0,0 +1,245 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import worldstandard.group.pudel.core.discord.GuildDispatchSnapshot;
+import worldstandard.group.pudel.core.entity.GuildSettings;
+import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-local write-through cache for {@link GuildSettings}.
+ * <p>
+ * Every guild message looks up its guild settings, so reads are served from memory
+ * and only fall back to the database on a miss. All writes must go through
+ * {@link #save(GuildSettings)} or {@link #delete(String)} so the cached copy never
+ * diverges from the database row. Callers get their own copy of the settings, so changes
+ * they make are only seen by others once {@link #save(GuildSettings)} succeeds. Inside a
+ * transaction the cache changes when it commits, and a rollback drops the entry.
+ * <p>
+ * A read that loads from the database only installs its result if the guild was not
+ * invalidated or saved meanwhile, so a slow read cannot bring back settings that were replaced.
+ * <p>
+ * Each entry also carries a {@link GuildDispatchSnapshot} compiled at load/save time,
+ * so message dispatch never re-parses the settings columns.
+ */
+@Component
+public class GuildSettingsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuildSettingsCache.class);
+
+    private final GuildSettingsRepository guildSettingsRepository;
+
+    // key = guildId, value = last saved/loaded settings and their dispatch snapshot
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    // key = guildId, value = bumped on every save and invalidation; a load that saw an older value is not cached
+    private final ConcurrentHashMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public GuildSettingsCache(GuildSettingsRepository guildSettingsRepository) {
+        this.guildSettingsRepository = guildSettingsRepository;
+    }
+
+    /**
+     * Get guild settings, loading them from the database on a cache miss.
+     *
+     * @param guildId the Discord guild ID
+     * @return the settings, or empty if the guild has none
+     */
+    public Optional<GuildSettings> get(String guildId) {
+        return Optional.ofNullable(getEntry(guildId)).map(entry -> new GuildSettings(entry.settings()));
+    }
+
+    /**
+     * Get the dispatch snapshot for a guild, creating default settings if none exist.
+     *
+     * @param guildId the Discord guild ID
+     * @return the snapshot
+     */
+    public GuildDispatchSnapshot getSnapshot(String guildId) {
+        Entry entry = getEntry(guildId);
+        if (entry == null) {
+            return GuildDispatchSnapshot.from(save(new GuildSettings(guildId)));
+        }
+        return entry.snapshot();
+    }
+
+    /**
+     * Get guild settings, creating and persisting defaults if none exist.
+     *
+     * @param guildId the Discord guild ID
+     * @return the settings
+     */
+    public GuildSettings getOrCreate(String guildId) {
+        return get(guildId).orElseGet(() -> save(new GuildSettings(guildId)));
+    }
+
+    /**
+     * Persist guild settings and refresh the cached copy, after the surrounding transaction commits.
+     *
+     * @param settings the settings to save
+     * @return the saved settings
+     */
+    public GuildSettings save(GuildSettings settings) {
+        GuildSettings saved;
+        try {
+            saved = guildSettingsRepository.save(settings);
+        } catch (RuntimeException e) {
+            // The row may or may not have changed; read it again next time
+            invalidate(settings.getGuildId());
+            throw e;
+        }
+        // Cache a private copy; the caller keeps the instance it passed in
+        GuildSettings cached = new GuildSettings(saved);
+        Entry entry = new Entry(cached, GuildDispatchSnapshot.from(cached));
+        afterCommit(cached.getGuildId(), () -> {
+            versions.merge(cached.getGuildId(), 1L, Long::sum);
+            cache.put(cached.getGuildId(), entry);
+        });
+        return saved;
+    }
+
+    /**
+     * Delete guild settings from the database and the cache.
+     *
+     * @param guildId the Discord guild ID
+     */
+    public void delete(String guildId) {
+        guildSettingsRepository.findByGuildId(guildId)
+                .ifPresent(guildSettingsRepository::delete);
+        invalidate(guildId);
+        // A read before the commit still sees the row; drop what it cached
+        afterCommit(guildId, () -> invalidate(guildId));
+    }
+
+    /**
+     * Drop the cached copy so the next read goes to the database.
+     *
+     * @param guildId the Discord guild ID
+     */
+    public void invalidate(String guildId) {
+        versions.merge(guildId, 1L, Long::sum);
+        if (cache.remove(guildId) != null) {
+            evictions.increment();
+            logger.debug("Evicted cached settings for guild {}", guildId);
+        }
+    }
+
+    /**
+     * Drop every cached entry.
+     */
+    public void invalidateAll() {
+        versions.replaceAll((_, version) -> version + 1);
+        int size = cache.size();
+        cache.clear();
+        evictions.add(size);
+    }
+
+    /**
+     * Run a cache update when the surrounding transaction commits, or now without one.
+     * A rolled back transaction drops the guild's entry instead.
+     */
+    private void afterCommit(String guildId, Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    invalidate(guildId);
+                }
+            }
+        });
+    }
+
+    private Entry getEntry(String guildId) {
+        Entry cached = cache.get(guildId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        long version = versions.getOrDefault(guildId, 0L);
+        GuildSettings loaded = guildSettingsRepository.findByGuildId(guildId).orElse(null);
+        if (loaded == null) {
+            return null;
+        }
+        // A concurrent write-through is never overwritten by an older read, and a read that raced
+        // with a save or invalidation is returned but not cached
+        Entry entry = new Entry(loaded, GuildDispatchSnapshot.from(loaded));
+        Entry current = cache.compute(guildId, (_, existing) -> existing != null ? existing
+                : versions.getOrDefault(guildId, 0L) == version ? entry : null);
+        return current != null ? current : entry;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Get cache statistics.
+     *
+     * @return map of hit/miss/eviction counters and current size
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = getHitCount();
+        long missCount = getMissCount();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", getEvictionCount());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    private record Entry(GuildSettings settings, GuildDispatchSnapshot snapshot) {
+    }
+}
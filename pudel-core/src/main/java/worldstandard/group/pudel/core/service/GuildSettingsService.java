@@ -19,7 +19,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import net.dv8tion.jda.api.JDA;
 import worldstandard.group.pudel.core.entity.GuildSettings;
-import worldstandard.group.pudel.core.repository.GuildSettingsRepository;
 
 import java.util.Optional;
 
@@ -30,29 +29,25 @@ import java.util.Optional;
 public class GuildSettingsService extends BaseService {
     private static final Logger log = LoggerFactory.getLogger(GuildSettingsService.class);
 
-    private final GuildSettingsRepository guildSettingsRepository;
+    private final GuildSettingsCache guildSettingsCache;
 
-    public GuildSettingsService(JDA jda, GuildSettingsRepository guildSettingsRepository) {
+    public GuildSettingsService(JDA jda, GuildSettingsCache guildSettingsCache) {
         super(jda);
-        this.guildSettingsRepository = guildSettingsRepository;
+        this.guildSettingsCache = guildSettingsCache;
     }
 
     /**
      * Get guild settings by guild ID.
      */
     public Optional<GuildSettings> getGuildSettings(String guildId) {
-        return guildSettingsRepository.findByGuildId(guildId);
+        return guildSettingsCache.get(guildId);
     }
 
     /**
      * Get or create default guild settings.
      */
     public GuildSettings getOrCreateGuildSettings(String guildId) {
-        return guildSettingsRepository.findByGuildId(guildId)
-                .orElseGet(() -> {
-                    GuildSettings settings = new GuildSettings(guildId);
-                    return guildSettingsRepository.save(settings);
-                });
+        return guildSettingsCache.getOrCreate(guildId);
     }
 
     /**
@@ -90,7 +85,7 @@ public class GuildSettingsService extends BaseService {
                 settings.setDialogueStyle(updatedSettings.getDialogueStyle());
             }
 
-            GuildSettings saved = guildSettingsRepository.save(settings);
+            GuildSettings saved = guildSettingsCache.save(settings);
             log.info("Updated settings for guild: {}", guildId);
             return saved;
         } catch (Exception e) {
@@ -126,8 +121,7 @@ public class GuildSettingsService extends BaseService {
      */
     public void deleteGuildSettings(String guildId) {
         try {
-            guildSettingsRepository.findByGuildId(guildId)
-                    .ifPresent(guildSettingsRepository::delete);
+            guildSettingsCache.delete(guildId);
             log.info("Deleted settings for guild: {}", guildId);
         } catch (Exception e) {
             log.error("Error deleting guild settings", e);
@@ -24,8 +24,13 @@ import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
 import worldstandard.group.pudel.core.config.brain.MemoryConfig;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing vector embeddings and semantic memory search.
@@ -44,18 +49,24 @@ public class MemoryEmbeddingService {
     private final ChatbotConfig chatbotConfig;
     private final MemoryConfig memoryConfig;
     private final SchemaManagementService schemaManagementService;
+    private final TenantRowCounter rowCounter;
 
     // Flag to track if pgvector is available
     private Boolean pgvectorAvailable = null;
 
+    // Schemas whose embedding tables this process has created or checked
+    private final Set<String> readySchemas = ConcurrentHashMap.newKeySet();
+
     public MemoryEmbeddingService(JdbcTemplate jdbcTemplate,
                                    ChatbotConfig chatbotConfig,
                                    MemoryConfig memoryConfig,
-                                   SchemaManagementService schemaManagementService) {
+                                   SchemaManagementService schemaManagementService,
+                                   TenantRowCounter rowCounter) {
         this.jdbcTemplate = jdbcTemplate;
         this.chatbotConfig = chatbotConfig;
         this.memoryConfig = memoryConfig;
         this.schemaManagementService = schemaManagementService;
+        this.rowCounter = rowCounter;
     }
 
     /**
@@ -88,55 +99,30 @@ public class MemoryEmbeddingService {
      * Create embedding tables in a guild schema.
      */
     public void createGuildEmbeddingTables(long guildId) {
-        if (!chatbotConfig.getEmbedding().isEnabled() || !isPgvectorAvailable()) {
-            return;
-        }
-
-        String schemaName = schemaManagementService.getGuildSchemaName(guildId);
-        int dimension = chatbotConfig.getEmbedding().getDimension();
-
-        try {
-            // Create memory embeddings table
-            String memoryEmbeddingsTable = String.format("""
-                CREATE TABLE IF NOT EXISTS %s.memory_embeddings (
-                    id BIGSERIAL PRIMARY KEY,
-                    memory_id BIGINT REFERENCES %s.memory(id) ON DELETE CASCADE,
-                    embedding vector(%d) NOT NULL,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-                """, schemaName, schemaName, dimension);
-            jdbcTemplate.execute(memoryEmbeddingsTable);
-
-            // Create dialogue embeddings table
-            String dialogueEmbeddingsTable = String.format("""
-                CREATE TABLE IF NOT EXISTS %s.dialogue_embeddings (
-                    id BIGSERIAL PRIMARY KEY,
-                    dialogue_id BIGINT REFERENCES %s.dialogue_history(id) ON DELETE CASCADE,
-                    embedding vector(%d) NOT NULL,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-                """, schemaName, schemaName, dimension);
-            jdbcTemplate.execute(dialogueEmbeddingsTable);
-
-            // Create IVFFlat indexes
-            createIvfFlatIndex(schemaName, "memory_embeddings", "embedding", dimension);
-            createIvfFlatIndex(schemaName, "dialogue_embeddings", "embedding", dimension);
-
-            logger.info("Created embedding tables for guild schema: {}", schemaName);
-        } catch (Exception e) {
-            logger.error("Error creating embedding tables for guild {}: {}", guildId, e.getMessage());
-        }
+        ensureEmbeddingTables(schemaManagementService.getGuildSchemaName(guildId));
     }
 
     /**
      * Create embedding tables in a user schema.
      */
     public void createUserEmbeddingTables(long userId) {
+        ensureEmbeddingTables(schemaManagementService.getUserSchemaName(userId));
+    }
+
+    /**
+     * Create the embedding tables of a schema if this process has not done so yet.
+     *
+     * @param schemaName the guild or user schema
+     * @return whether the tables exist
+     */
+    public boolean ensureEmbeddingTables(String schemaName) {
         if (!chatbotConfig.getEmbedding().isEnabled() || !isPgvectorAvailable()) {
-            return;
+            return false;
+        }
+        if (readySchemas.contains(schemaName)) {
+            return true;
         }
 
-        String schemaName = schemaManagementService.getUserSchemaName(userId);
         int dimension = chatbotConfig.getEmbedding().getDimension();
 
         try {
@@ -162,13 +148,22 @@ public class MemoryEmbeddingService {
                 """, schemaName, schemaName, dimension);
             jdbcTemplate.execute(dialogueEmbeddingsTable);
 
+            // One vector per row, so that re-embedding an updated memory replaces its vector
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_memory_embeddings_memory ON " +
+                    schemaName + ".memory_embeddings(memory_id)");
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_dialogue_embeddings_dialogue ON " +
+                    schemaName + ".dialogue_embeddings(dialogue_id)");
+
             // Create IVFFlat indexes
             createIvfFlatIndex(schemaName, "memory_embeddings", "embedding", dimension);
             createIvfFlatIndex(schemaName, "dialogue_embeddings", "embedding", dimension);
 
-            logger.info("Created embedding tables for user schema: {}", schemaName);
+            readySchemas.add(schemaName);
+            logger.info("Created embedding tables for schema: {}", schemaName);
+            return true;
         } catch (Exception e) {
-            logger.error("Error creating embedding tables for user {}: {}", userId, e.getMessage());
+            logger.error("Error creating embedding tables for schema {}: {}", schemaName, e.getMessage());
+            return false;
         }
     }
 
@@ -209,41 +204,125 @@ public class MemoryEmbeddingService {
      * Store an embedding for a memory entry.
      */
     public void storeMemoryEmbedding(String schemaName, long memoryId, float[] embedding) {
-        if (!isPgvectorAvailable()) return;
-
-        try {
-            String vectorString = vectorToString(embedding);
-            jdbcTemplate.update(
-                    String.format("INSERT INTO %s.memory_embeddings (memory_id, embedding) VALUES (?, ?::vector)", schemaName),
-                    memoryId, vectorString
-            );
-        } catch (Exception e) {
-            logger.error("Error storing memory embedding: {}", e.getMessage());
-        }
+        storeMemoryEmbeddings(schemaName, List.of(memoryId), List.of(embedding));
     }
 
     /**
      * Store an embedding for a dialogue entry.
      */
     public void storeDialogueEmbedding(String schemaName, long dialogueId, float[] embedding) {
-        if (!isPgvectorAvailable()) return;
+        storeDialogueEmbeddings(schemaName, List.of(dialogueId), List.of(embedding));
+    }
+
+    /**
+     * Store the embeddings of several memory entries in one batch, replacing existing ones.
+     *
+     * @return how many were stored
+     */
+    public int storeMemoryEmbeddings(String schemaName, List<Long> memoryIds, List<float[]> embeddings) {
+        return storeEmbeddings(schemaName, "memory_embeddings", "memory_id", memoryIds, embeddings);
+    }
+
+    /**
+     * Store the embeddings of several dialogue entries in one batch, replacing existing ones.
+     *
+     * @return how many were stored
+     */
+    public int storeDialogueEmbeddings(String schemaName, List<Long> dialogueIds, List<float[]> embeddings) {
+        return storeEmbeddings(schemaName, "dialogue_embeddings", "dialogue_id", dialogueIds, embeddings);
+    }
+
+    private int storeEmbeddings(String schemaName, String tableName, String idColumn,
+                                List<Long> ids, List<float[]> embeddings) {
+        if (!ensureEmbeddingTables(schemaName) || ids.isEmpty()) {
+            return 0;
+        }
 
         try {
-            String vectorString = vectorToString(embedding);
-            jdbcTemplate.update(
-                    String.format("INSERT INTO %s.dialogue_embeddings (dialogue_id, embedding) VALUES (?, ?::vector)", schemaName),
-                    dialogueId, vectorString
-            );
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                rows.add(new Object[]{ids.get(i), vectorToString(embeddings.get(i))});
+            }
+            jdbcTemplate.batchUpdate(String.format("""
+                INSERT INTO %s.%s (%s, embedding) VALUES (?, ?::vector)
+                ON CONFLICT (%s) DO UPDATE SET embedding = EXCLUDED.embedding, created_at = CURRENT_TIMESTAMP
+                """, schemaName, tableName, idColumn, idColumn), rows);
+            return rows.size();
         } catch (Exception e) {
-            logger.error("Error storing dialogue embedding: {}", e.getMessage());
+            logger.error("Error storing {} in {}: {}", tableName, schemaName, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Find memory entries with text to embed that have no embedding yet, newest first.
+     *
+     * @param excludeIds rows to leave out, e.g. ones that keep failing to embed
+     * @return rows with {@code id} and {@code text}
+     */
+    public List<Map<String, Object>> findMemoriesWithoutEmbedding(String schemaName, int limit,
+                                                                  Collection<Long> excludeIds) {
+        if (!ensureEmbeddingTables(schemaName)) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(String.format("""
+                SELECT m.id, m.key || ': ' || m.value AS text
+                FROM %s.memory m
+                LEFT JOIN %s.memory_embeddings me ON me.memory_id = m.id
+                WHERE me.id IS NULL AND btrim(m.key || m.value, E' \\t\\r\\n') <> '' %s
+                ORDER BY m.id DESC
+                LIMIT ?
+                """, schemaName, schemaName, excludeClause("m.id", excludeIds)), limit);
+    }
+
+    /**
+     * Find dialogue entries with a user message to embed that have no embedding yet, newest first.
+     *
+     * @param excludeIds rows to leave out, e.g. ones that keep failing to embed
+     * @return rows with {@code id} and {@code text}
+     */
+    public List<Map<String, Object>> findDialogueWithoutEmbedding(String schemaName, int limit,
+                                                                  Collection<Long> excludeIds) {
+        if (!ensureEmbeddingTables(schemaName)) {
+            return List.of();
         }
+        return jdbcTemplate.queryForList(String.format("""
+                SELECT d.id, d.user_message AS text
+                FROM %s.dialogue_history d
+                LEFT JOIN %s.dialogue_embeddings de ON de.dialogue_id = d.id
+                WHERE de.id IS NULL AND btrim(d.user_message, E' \\t\\r\\n') <> '' %s
+                ORDER BY d.id DESC
+                LIMIT ?
+                """, schemaName, schemaName, excludeClause("d.id", excludeIds)), limit);
+    }
+
+    private static String excludeClause(String column, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return "";
+        }
+        StringJoiner list = new StringJoiner(",", "AND " + column + " NOT IN (", ")");
+        for (Long id : ids) {
+            list.add(Long.toString(id));
+        }
+        return list.toString();
+    }
+
+    /**
+     * List the guild and user schemas.
+     */
+    public List<String> listTenantSchemas() {
+        return jdbcTemplate.queryForList(
+                "SELECT schema_name FROM information_schema.schemata " +
+                "WHERE schema_name LIKE 'guild\\_%' OR schema_name LIKE 'user\\_%'",
+                String.class
+        );
     }
 
     /**
      * Search for similar memories using vector similarity.
      */
     public List<Map<String, Object>> searchSimilarMemories(String schemaName, float[] queryEmbedding, int limit) {
-        if (!isPgvectorAvailable()) {
+        if (!isPgvectorAvailable() || queryEmbedding.length != chatbotConfig.getEmbedding().getDimension()) {
             return List.of();
         }
 
@@ -252,8 +331,8 @@ public class MemoryEmbeddingService {
             int probes = chatbotConfig.getEmbedding().getIvfProbes();
             double minSimilarity = memoryConfig.getSemanticSearch().getMinSimilarity();
 
-            // Set probes for this query
-            jdbcTemplate.execute(String.format("SET ivfflat.probes = %d", probes));
+            // Set probes for this query; LOCAL keeps it off the pooled connection
+            jdbcTemplate.execute(String.format("SET LOCAL ivfflat.probes = %d", probes));
 
             String sql = String.format("""
                 SELECT m.*, 1 - (me.embedding <=> ?::vector) as similarity
@@ -275,7 +354,7 @@ public class MemoryEmbeddingService {
      * Search for similar dialogue entries using vector similarity.
      */
     public List<Map<String, Object>> searchSimilarDialogue(String schemaName, float[] queryEmbedding, int limit) {
-        if (!isPgvectorAvailable()) {
+        if (!isPgvectorAvailable() || queryEmbedding.length != chatbotConfig.getEmbedding().getDimension()) {
             return List.of();
         }
 
@@ -284,7 +363,7 @@ public class MemoryEmbeddingService {
             int probes = chatbotConfig.getEmbedding().getIvfProbes();
             double minSimilarity = memoryConfig.getSemanticSearch().getMinSimilarity();
 
-            jdbcTemplate.execute(String.format("SET ivfflat.probes = %d", probes));
+            jdbcTemplate.execute(String.format("SET LOCAL ivfflat.probes = %d", probes));
 
             String sql = String.format("""
                 SELECT d.*, 1 - (de.embedding <=> ?::vector) as similarity
@@ -378,6 +457,7 @@ public class MemoryEmbeddingService {
                 """, schemaName, schemaName, keepCount);
 
             int deleted = jdbcTemplate.update(deleteSql, cutoffDate);
+            rowCounter.add(schemaName, "dialogue_history", -deleted);
 
             if (deleted > 0) {
                 logger.info("Cleaned up {} old dialogue entries from {}", deleted, schemaName);
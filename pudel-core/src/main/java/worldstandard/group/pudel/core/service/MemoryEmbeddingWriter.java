@@ -0,0 +1,458 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
+import worldstandard.group.pudel.model.embedding.OllamaEmbeddingService;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler.Priority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embeds dialogue and memory rows in the background and stores the vectors for semantic search.
+ * <p>
+ * Writers enqueue a row after inserting it. Every {@code flushIntervalMs}, or as soon as
+ * {@code batchSize} rows are waiting, one batch is embedded with a single
+ * {@link OllamaEmbeddingService} request and its vectors are inserted with one JDBC batch per table.
+ * The queue holds at most {@code maxPending} rows and drops the oldest beyond that; rows that
+ * were dropped, or written while Ollama was down, are picked up later by the backfill, which
+ * looks for rows without a vector every {@code backfillIntervalSeconds}.
+ * <p>
+ * Embedding requests run at {@link Priority#PASSIVE} priority, behind replies and analysis. When a
+ * batch request fails while Ollama is up, its rows are embedded one by one so that a single bad
+ * text does not fail the rest; a row that fails {@value #MAX_ATTEMPTS} times is no longer retried
+ * by the backfill until restart.
+ */
+@Component
+public class MemoryEmbeddingWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryEmbeddingWriter.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    // Bounds the failure bookkeeping; rows beyond it are retried like before
+    private static final int MAX_TRACKED_ROWS = 10_000;
+
+    private final ChatbotConfig chatbotConfig;
+    private final MemoryEmbeddingService memoryEmbeddingService;
+    private final OllamaEmbeddingService embeddingService;
+
+    // Guarded by itself
+    private final ArrayDeque<PendingEmbedding> pending = new ArrayDeque<>();
+
+    // Schemas the backfill found complete; rows written since then come through the queue,
+    // and a schema is looked at again when one of its rows is dropped or fails
+    private final Set<String> backfilledSchemas = ConcurrentHashMap.newKeySet();
+
+    // Failed attempts per row, and rows given up on, keyed by kind and schema; the backfill skips those
+    private final ConcurrentHashMap<RowKey, Integer> failures = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Long>> skipped = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-embedding-writer").daemon().factory());
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder backfilled = new LongAdder();
+    private final LongAdder givenUp = new LongAdder();
+
+    private volatile boolean dimensionMismatchLogged;
+
+    public MemoryEmbeddingWriter(ChatbotConfig chatbotConfig,
+                                 MemoryEmbeddingService memoryEmbeddingService,
+                                 OllamaEmbeddingService embeddingService) {
+        this.chatbotConfig = chatbotConfig;
+        this.memoryEmbeddingService = memoryEmbeddingService;
+        this.embeddingService = embeddingService;
+
+        ChatbotConfig.Embedding config = chatbotConfig.getEmbedding();
+        long interval = Math.max(100, config.getFlushIntervalMs());
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+        long backfillInterval = Math.max(10, config.getBackfillIntervalSeconds());
+        flusher.scheduleWithFixedDelay(this::backfill, backfillInterval, backfillInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue a dialogue row for embedding.
+     *
+     * @param schemaName  the guild or user schema
+     * @param dialogueId  the dialogue_history row ID
+     * @param userMessage the user's message, which is what later questions are compared with
+     */
+    public void enqueueDialogue(String schemaName, long dialogueId, String userMessage) {
+        enqueue(new PendingEmbedding(schemaName, Kind.DIALOGUE, dialogueId, userMessage));
+    }
+
+    /**
+     * Queue a memory row for embedding. An updated memory replaces its previous vector.
+     *
+     * @param schemaName the guild or user schema
+     * @param memoryId   the memory row ID
+     * @param key        the memory key
+     * @param value      the memory value
+     */
+    public void enqueueMemory(String schemaName, long memoryId, String key, String value) {
+        enqueue(new PendingEmbedding(schemaName, Kind.MEMORY, memoryId, key + ": " + value));
+    }
+
+    private void enqueue(PendingEmbedding item) {
+        if (!isEnabled()) {
+            return;
+        }
+        // The vector references the row, so wait until the row is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addPending(item);
+                }
+            });
+        } else {
+            addPending(item);
+        }
+    }
+
+    /**
+     * @return false if the row has no text to embed
+     */
+    private boolean addPending(PendingEmbedding item) {
+        // Blank texts are not embedded and would break the batch's order
+        if (item.text() == null || item.text().isBlank()) {
+            return false;
+        }
+        int maxPending = Math.max(1, chatbotConfig.getEmbedding().getMaxPending());
+        boolean full;
+        synchronized (pending) {
+            if (pending.size() >= maxPending) {
+                PendingEmbedding oldest = pending.pollFirst();
+                backfilledSchemas.remove(oldest.schemaName());
+                dropped.increment();
+            }
+            pending.addLast(item);
+            full = pending.size() >= batchSize();
+        }
+        enqueued.increment();
+
+        // A full batch does not need to wait for the next tick
+        if (full) {
+            flusher.execute(this::flushBatch);
+        }
+        return true;
+    }
+
+    private void flushAll() {
+        try {
+            while (flushBatch()) {
+                // Keep going while whole batches are waiting
+            }
+        } catch (Exception e) {
+            logger.error("Error flushing embeddings: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Embed and store one batch.
+     *
+     * @return whether a full batch went out and more may be waiting
+     */
+    private boolean flushBatch() {
+        // Leave rows queued while Ollama is down; they are embedded once it is back
+        if (!embeddingService.isAvailable()) {
+            return false;
+        }
+        int batchSize = batchSize();
+        List<PendingEmbedding> batch = new ArrayList<>(batchSize);
+        synchronized (pending) {
+            while (batch.size() < batchSize && !pending.isEmpty()) {
+                batch.add(pending.pollFirst());
+            }
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        List<float[]> vectors = embed(batch);
+        // Vectors come back in input order, but only all of them map back to their rows
+        if (vectors.size() != batch.size()) {
+            if (batch.size() > 1 && embeddingService.isAvailable()) {
+                // Ollama is up, so a text in the batch may be what failed; find it row by row
+                embedEach(batch);
+                return batch.size() == batchSize;
+            }
+            failed.add(batch.size());
+            batch.forEach(item -> backfilledSchemas.remove(item.schemaName()));
+            if (batch.size() == 1 && embeddingService.isAvailable()) {
+                recordFailure(batch.getFirst());
+            }
+            logger.debug("Could not embed {} row(s); the backfill will retry them", batch.size());
+            return false;
+        }
+        if (!hasConfiguredDimension(vectors.getFirst())) {
+            failed.add(batch.size());
+            batch.forEach(item -> backfilledSchemas.remove(item.schemaName()));
+            return false;
+        }
+
+        storeAll(batch, vectors);
+        return batch.size() == batchSize;
+    }
+
+    private List<float[]> embed(List<PendingEmbedding> batch) {
+        try {
+            return embeddingService.embedBatch(batch.stream().map(PendingEmbedding::text).toList(), Priority.PASSIVE);
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Embed and store the rows of a failed batch one at a time.
+     */
+    private void embedEach(List<PendingEmbedding> batch) {
+        for (PendingEmbedding item : batch) {
+            List<float[]> vectors = embed(List.of(item));
+            if (vectors.size() == 1 && hasConfiguredDimension(vectors.getFirst())) {
+                storeAll(List.of(item), vectors);
+                continue;
+            }
+            failed.increment();
+            backfilledSchemas.remove(item.schemaName());
+            // Only the row is to blame while Ollama answers the others
+            if (vectors.isEmpty() && embeddingService.isAvailable()) {
+                recordFailure(item);
+            }
+        }
+    }
+
+    /**
+     * Count a failed attempt for a row, and give up on it after {@link #MAX_ATTEMPTS}.
+     */
+    private void recordFailure(PendingEmbedding item) {
+        RowKey key = new RowKey(item.schemaName(), item.kind(), item.rowId());
+        if (!failures.containsKey(key) && failures.size() >= MAX_TRACKED_ROWS) {
+            return;
+        }
+        if (failures.merge(key, 1, Integer::sum) >= MAX_ATTEMPTS) {
+            failures.remove(key);
+            skipped.computeIfAbsent(item.kind() + ":" + item.schemaName(), _ -> ConcurrentHashMap.newKeySet())
+                    .add(item.rowId());
+            givenUp.increment();
+            logger.warn("Giving up on embedding {} row {} in {} after {} attempts",
+                    item.kind(), item.rowId(), item.schemaName(), MAX_ATTEMPTS);
+        }
+    }
+
+    private Set<Long> skippedIds(String schemaName, Kind kind) {
+        return skipped.getOrDefault(kind + ":" + schemaName, Set.of());
+    }
+
+    private void storeAll(List<PendingEmbedding> batch, List<float[]> vectors) {
+        // One JDBC batch per schema and table
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEmbedding item = batch.get(i);
+            groups.computeIfAbsent(item.kind() + ":" + item.schemaName(), _ -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> group : groups.values()) {
+            PendingEmbedding first = batch.get(group.getFirst());
+            List<Long> ids = new ArrayList<>(group.size());
+            List<float[]> embeddings = new ArrayList<>(group.size());
+            for (int index : group) {
+                ids.add(batch.get(index).rowId());
+                embeddings.add(vectors.get(index));
+            }
+            int count = store(first.schemaName(), first.kind(), ids, embeddings);
+            stored.add(count);
+            if (count < group.size()) {
+                failed.add(group.size() - count);
+                backfilledSchemas.remove(first.schemaName());
+            }
+            if (count > 0) {
+                for (int index : group) {
+                    failures.remove(new RowKey(first.schemaName(), first.kind(), batch.get(index).rowId()));
+                }
+            }
+        }
+    }
+
+    private int store(String schemaName, Kind kind, List<Long> ids, List<float[]> embeddings) {
+        try {
+            // Tables are created in their own transaction, before any insert can fail
+            if (!memoryEmbeddingService.ensureEmbeddingTables(schemaName)) {
+                return 0;
+            }
+            return kind == Kind.DIALOGUE
+                    ? memoryEmbeddingService.storeDialogueEmbeddings(schemaName, ids, embeddings)
+                    : memoryEmbeddingService.storeMemoryEmbeddings(schemaName, ids, embeddings);
+        } catch (Exception e) {
+            logger.debug("Error storing {} embeddings for {}: {}", kind, schemaName, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Queue rows that have no vector yet, at most {@code backfillRowsPerRun} per run and only
+     * while the queue is otherwise idle, so that live writes always go first.
+     */
+    private void backfill() {
+        if (!isEnabled() || !embeddingService.isAvailable()) {
+            return;
+        }
+        synchronized (pending) {
+            if (!pending.isEmpty()) {
+                return;
+            }
+        }
+
+        int budget = Math.max(0, chatbotConfig.getEmbedding().getBackfillRowsPerRun());
+        try {
+            for (String schemaName : memoryEmbeddingService.listTenantSchemas()) {
+                if (budget <= 0) {
+                    break;
+                }
+                if (backfilledSchemas.contains(schemaName)) {
+                    continue;
+                }
+                int found = 0;
+                for (Map<String, Object> row : memoryEmbeddingService.findDialogueWithoutEmbedding(
+                        schemaName, budget, skippedIds(schemaName, Kind.DIALOGUE))) {
+                    if (addBackfilled(schemaName, Kind.DIALOGUE, row)) {
+                        found++;
+                    }
+                }
+                if (found < budget) {
+                    for (Map<String, Object> row : memoryEmbeddingService.findMemoriesWithoutEmbedding(
+                            schemaName, budget - found, skippedIds(schemaName, Kind.MEMORY))) {
+                        if (addBackfilled(schemaName, Kind.MEMORY, row)) {
+                            found++;
+                        }
+                    }
+                }
+                if (found == 0) {
+                    backfilledSchemas.add(schemaName);
+                }
+                budget -= found;
+                backfilled.add(found);
+            }
+        } catch (Exception e) {
+            logger.debug("Embedding backfill stopped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a row found by the backfill. A row with nothing to embed is skipped from then on,
+     * so it cannot hold a place in every later run.
+     */
+    private boolean addBackfilled(String schemaName, Kind kind, Map<String, Object> row) {
+        long rowId = ((Number) row.get("id")).longValue();
+        if (addPending(new PendingEmbedding(schemaName, kind, rowId, (String) row.get("text")))) {
+            return true;
+        }
+        skipped.computeIfAbsent(kind + ":" + schemaName, _ -> ConcurrentHashMap.newKeySet()).add(rowId);
+        return false;
+    }
+
+    private boolean hasConfiguredDimension(float[] vector) {
+        int dimension = chatbotConfig.getEmbedding().getDimension();
+        if (vector.length == dimension) {
+            return true;
+        }
+        if (!dimensionMismatchLogged) {
+            dimensionMismatchLogged = true;
+            logger.warn("Embedding model returns {} dimensions but pudel.chatbot.embedding.dimension is {}; " +
+                    "memory embeddings are not stored until they match", vector.length, dimension);
+        }
+        return false;
+    }
+
+    private boolean isEnabled() {
+        return chatbotConfig.getEmbedding().isEnabled() && memoryEmbeddingService.isPgvectorAvailable();
+    }
+
+    private int batchSize() {
+        return Math.max(1, chatbotConfig.getEmbedding().getBatchSize());
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getStoredCount() {
+        return stored.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get embedding writer statistics.
+     *
+     * @return map of queue and row counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", getPendingCount());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("stored", stored.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("backfilled", backfilled.sum());
+        stats.put("backfilledSchemas", backfilledSchemas.size());
+        stats.put("givenUp", givenUp.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Whatever is left is found again by the backfill after restart
+        flusher.shutdownNow();
+    }
+
+    private enum Kind {
+        DIALOGUE,
+        MEMORY
+    }
+
+    private record PendingEmbedding(String schemaName, Kind kind, long rowId, String text) {
+    }
+
+    private record RowKey(String schemaName, Kind kind, long rowId) {
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Postgres full-text search over the tenant memory tables.
+ * <p>
+ * {@code dialogue_history}, {@code memory} and {@code passive_context} each get a generated
+ * {@code search_vector} column built with the configured text search configuration
+ * ({@code pudel.memory.text-search.language}) and a GIN index on it, so that memory retrieval
+ * is an index lookup instead of a sequential scan. The configuration is baked into the generated
+ * column; when it changes, {@link #backfillAll()} rebuilds the columns on the next startup.
+ */
+@Service
+public class MemoryTextSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryTextSearchService.class);
+
+    private static final String FALLBACK_LANGUAGE = "simple";
+    private static final Pattern CONFIG_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    /**
+     * Tables with a search vector and how each builds it. Weight A marks the text a memory is
+     * about (the user's message, the memory key), weight B the rest.
+     */
+    private static final List<SearchTable> TABLES = List.of(
+            new SearchTable("dialogue_history", "idx_dialogue_search",
+                    "setweight(to_tsvector('%1$s', coalesce(user_message, '')), 'A') || " +
+                    "setweight(to_tsvector('%1$s', coalesce(bot_response, '')), 'B')"),
+            new SearchTable("memory", "idx_memory_search",
+                    "setweight(to_tsvector('%1$s', coalesce(key, '')), 'A') || " +
+                    "setweight(to_tsvector('%1$s', coalesce(value, '')), 'B')"),
+            new SearchTable("passive_context", "idx_passive_search",
+                    "to_tsvector('%1$s', coalesce(content, ''))")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemoryConfig memoryConfig;
+
+    private volatile String language;
+
+    public MemoryTextSearchService(JdbcTemplate jdbcTemplate, MemoryConfig memoryConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.memoryConfig = memoryConfig;
+    }
+
+    /**
+     * The text search configuration used for the search vectors and queries.
+     * Falls back to {@code simple} when the configured one is not installed in the database.
+     *
+     * @return the configuration name, safe to inline into SQL
+     */
+    public String getLanguage() {
+        String resolved = language;
+        if (resolved == null) {
+            String configured = memoryConfig.getTextSearch().getLanguage();
+            resolved = resolveLanguage(configured);
+            if (resolved == null) {
+                return configured.trim().toLowerCase(Locale.ROOT);
+            }
+            language = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Build a {@code websearch_to_tsquery} input that matches any of the keywords.
+     *
+     * @param keywords the search keywords
+     * @return the query text, or an empty string if no keyword is left
+     */
+    public static String toWebSearchQuery(Collection<String> keywords) {
+        StringJoiner query = new StringJoiner(" or ");
+        for (String keyword : keywords) {
+            // Quotes and a leading minus are operators in websearch syntax
+            String term = keyword.replace("\"", "").replaceFirst("^-+", "").trim();
+            if (!term.isEmpty()) {
+                query.add(term);
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * Add or rebuild the search vector columns and their indexes in a tenant schema.
+     * Tables that do not exist yet are skipped.
+     *
+     * @param schemaName the guild or user schema
+     * @return how many tables were changed
+     */
+    public int ensureSearchColumns(String schemaName) {
+        String config = getLanguage();
+        int changed = 0;
+        for (SearchTable table : TABLES) {
+            try {
+                if (ensureSearchColumn(schemaName, table, config)) {
+                    changed++;
+                }
+            } catch (Exception e) {
+                logger.error("Error adding search vector to {}.{}: {}", schemaName, table.name(), e.getMessage());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Bring the search vectors of every existing tenant schema up to date.
+     * Schemas that are already current only cost a catalog lookup.
+     */
+    public void backfillAll() {
+        List<String> schemas = jdbcTemplate.queryForList(
+                "SELECT schema_name FROM information_schema.schemata " +
+                "WHERE schema_name LIKE 'guild\\_%' OR schema_name LIKE 'user\\_%'",
+                String.class
+        );
+
+        logger.info("Checking {} tenant schemas for '{}' search vectors...", schemas.size(), getLanguage());
+        int schemasChanged = 0;
+        for (String schemaName : schemas) {
+            if (ensureSearchColumns(schemaName) > 0) {
+                schemasChanged++;
+            }
+        }
+        logger.info("Search vector backfill complete. Updated {} of {} schemas.", schemasChanged, schemas.size());
+    }
+
+    private boolean ensureSearchColumn(String schemaName, SearchTable table, String config) {
+        List<String> columns = jdbcTemplate.queryForList(
+                "SELECT coalesce(generation_expression, '') FROM information_schema.columns " +
+                "WHERE table_schema = ? AND table_name = ? AND column_name = 'search_vector'",
+                String.class,
+                schemaName, table.name()
+        );
+        if (columns.isEmpty() && !tableExists(schemaName, table.name())) {
+            return false;
+        }
+
+        boolean current = !columns.isEmpty() && columns.getFirst().contains("'" + config + "'::regconfig");
+        if (!current) {
+            if (!columns.isEmpty()) {
+                // Built with another configuration; dropping the column drops its index too
+                jdbcTemplate.execute("ALTER TABLE " + schemaName + "." + table.name() + " DROP COLUMN search_vector");
+            }
+            // Computes the vector for every existing row
+            jdbcTemplate.execute("ALTER TABLE " + schemaName + "." + table.name() +
+                    " ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (" +
+                    table.expression().formatted(config) + ") STORED");
+            logger.info("Added '{}' search vector to {}.{}", config, schemaName, table.name());
+        }
+
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table.indexName() + " ON " +
+                schemaName + "." + table.name() + " USING gin(search_vector)");
+
+        if (table.name().equals("passive_context")) {
+            // Expression index from before the search vector; no query could use it
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + schemaName + ".idx_" + schemaName.replace("_", "") +
+                    "_passive_content");
+        }
+        return !current;
+    }
+
+    private boolean tableExists(String schemaName, String tableName) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = ? AND table_name = ?",
+                Integer.class,
+                schemaName, tableName
+        );
+        return count != null && count > 0;
+    }
+
+    /**
+     * @return the configuration name, {@code simple} if it is not installed, or null if the lookup failed
+     */
+    private String resolveLanguage(String configured) {
+        String name = configured == null ? "" : configured.trim().toLowerCase(Locale.ROOT);
+        if (CONFIG_NAME.matcher(name).matches()) {
+            try {
+                Integer count = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM pg_ts_config WHERE cfgname = ?",
+                        Integer.class,
+                        name
+                );
+                if (count != null && count > 0) {
+                    return name;
+                }
+            } catch (Exception e) {
+                // Not cached, so the next call looks again
+                logger.warn("Could not look up text search configuration '{}': {}", name, e.getMessage());
+                return null;
+            }
+        }
+        logger.warn("Unknown text search configuration '{}', using '{}'", configured, FALLBACK_LANGUAGE);
+        return FALLBACK_LANGUAGE;
+    }
+
+    private record SearchTable(String name, String indexName, String expression) {
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind buffer for dialogue and passive context inserts.
+ * <p>
+ * Rows are queued per tenant table and written with one multi-row {@code INSERT} every
+ * {@code flushIntervalMs}, or as soon as a table has {@code batchSize} rows waiting, so that the
+ * JDA callback which stores a reply does not wait for the database. Reads of recent dialogue call
+ * {@link #awaitFlushed(String)} first, so a conversation always sees its previous exchange.
+ * When more than {@code maxPending} rows are waiting, callers wait for their table to be written
+ * instead of rows being dropped. Whatever is queued at shutdown is written before the data source closes.
+ * Queued rows are reported to {@link TenantRowCounter}, so capacity checks count them before they are written.
+ */
+@Component
+public class MemoryWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryWriteBuffer.class);
+
+    private static final long READ_FLUSH_TIMEOUT_MS = 2_000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+    private static final List<String> GUILD_DIALOGUE_COLUMNS =
+            List.of("user_id", "channel_id", "user_message", "bot_response", "intent", "created_at");
+    private static final List<String> USER_DIALOGUE_COLUMNS =
+            List.of("user_message", "bot_response", "intent", "created_at");
+    private static final List<String> PASSIVE_CONTEXT_COLUMNS =
+            List.of("user_id", "channel_id", "content", "intent", "sentiment", "entities", "created_at");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemoryEmbeddingWriter embeddingWriter;
+    private final MemoryConfig memoryConfig;
+    private final MeterRegistry meterRegistry;
+    private final TenantRowCounter rowCounter;
+
+    // key = target table, value = pending rows (guarded by the deque itself)
+    private final ConcurrentHashMap<Target, ArrayDeque<Object[]>> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-memory-writer").daemon().factory());
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private volatile boolean closed;
+
+    public MemoryWriteBuffer(JdbcTemplate jdbcTemplate,
+                             MemoryEmbeddingWriter embeddingWriter,
+                             MemoryConfig memoryConfig,
+                             MeterRegistry meterRegistry,
+                             TenantRowCounter rowCounter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingWriter = embeddingWriter;
+        this.memoryConfig = memoryConfig;
+        this.meterRegistry = meterRegistry;
+        this.rowCounter = rowCounter;
+
+        long interval = Math.max(50, memoryConfig.getWriteBehind().getFlushIntervalMs());
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a dialogue exchange for a guild schema.
+     */
+    public void enqueueGuildDialogue(String schemaName, long userId, long channelId,
+                                     String userMessage, String botResponse, String intent) {
+        enqueue(new Target(schemaName, "dialogue_history", GUILD_DIALOGUE_COLUMNS),
+                new Object[]{userId, channelId, userMessage, botResponse, intent, now()});
+    }
+
+    /**
+     * Queue a dialogue exchange for a user (DM) schema.
+     */
+    public void enqueueUserDialogue(String schemaName, String userMessage, String botResponse, String intent) {
+        enqueue(new Target(schemaName, "dialogue_history", USER_DIALOGUE_COLUMNS),
+                new Object[]{userMessage, botResponse, intent, now()});
+    }
+
+    /**
+     * Queue an observed message for the passive context table.
+     *
+     * @param entitiesJson the extracted entities as a JSON object
+     */
+    public void enqueuePassiveContext(String schemaName, long userId, long channelId, String content,
+                                      String intent, String sentiment, String entitiesJson) {
+        enqueue(new Target(schemaName, "passive_context", PASSIVE_CONTEXT_COLUMNS),
+                new Object[]{userId, channelId, content, intent, sentiment, entitiesJson, now()});
+    }
+
+    /**
+     * Write the dialogue still queued for a schema, waiting up to two seconds.
+     * Returns at once when nothing is queued.
+     *
+     * @param schemaName the guild or user schema
+     */
+    public void awaitFlushed(String schemaName) {
+        List<Target> targets = new ArrayList<>();
+        for (Map.Entry<Target, ArrayDeque<Object[]>> entry : buffers.entrySet()) {
+            Target target = entry.getKey();
+            if (target.schemaName().equals(schemaName) && target.table().equals("dialogue_history")
+                    && !isEmpty(entry.getValue())) {
+                targets.add(target);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        try {
+            // On the writer thread, outside the reader's transaction, in order with the other flushes
+            flusher.submit(() -> targets.forEach(this::flush)).get(READ_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.debug("Dialogue for {} not flushed before read: {}", schemaName, e.getMessage());
+        }
+    }
+
+    private void enqueue(Target target, Object[] row) {
+        MemoryConfig.WriteBehind config = memoryConfig.getWriteBehind();
+        if (!config.isEnabled() || closed) {
+            write(target, Collections.singletonList(row));
+            return;
+        }
+
+        // Counted before it is queued, so a flush can never take it off first
+        rowCounter.addQueued(target.schemaName(), target.table(), 1);
+        boolean full;
+        while (true) {
+            ArrayDeque<Object[]> buffer = buffers.computeIfAbsent(target, _ -> new ArrayDeque<>());
+            synchronized (buffer) {
+                // An emptied buffer is removed under its lock; add to the one in the map
+                if (buffers.get(target) != buffer) {
+                    continue;
+                }
+                buffer.addLast(row);
+                full = buffer.size() >= Math.max(1, config.getBatchSize());
+            }
+            break;
+        }
+        enqueued.increment();
+
+        if (pendingCount.incrementAndGet() > Math.max(1, config.getMaxPending())) {
+            // The database is falling behind; slow the caller down instead of dropping rows
+            throttled.increment();
+            try {
+                flusher.submit(() -> flush(target)).get();
+            } catch (Exception e) {
+                logger.debug("Waiting for the memory writer failed: {}", e.getMessage());
+            }
+        } else if (full) {
+            // A full batch does not need to wait for the next tick
+            flusher.execute(() -> flush(target));
+        }
+    }
+
+    private void flushAll() {
+        for (Target target : buffers.keySet()) {
+            flush(target);
+        }
+    }
+
+    private void flush(Target target) {
+        ArrayDeque<Object[]> buffer = buffers.get(target);
+        if (buffer == null) {
+            return;
+        }
+
+        int batchSize = Math.max(1, memoryConfig.getWriteBehind().getBatchSize());
+        while (true) {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            synchronized (buffer) {
+                if (buffer.isEmpty()) {
+                    buffers.remove(target, buffer);
+                    return;
+                }
+                while (batch.size() < batchSize && !buffer.isEmpty()) {
+                    batch.add(buffer.pollFirst());
+                }
+            }
+            pendingCount.addAndGet(-batch.size());
+            try {
+                write(target, batch);
+            } finally {
+                // Written rows are counted by insert() by now
+                rowCounter.addQueued(target.schemaName(), target.table(), -batch.size());
+            }
+        }
+    }
+
+    /**
+     * Insert a batch with one statement, falling back to one statement per row
+     * so that a bad row only loses itself.
+     */
+    private void write(Target target, List<Object[]> batch) {
+        long start = System.nanoTime();
+        try {
+            insert(target, batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            logger.warn("Batch insert of {} row(s) into {}.{} failed, retrying one by one: {}",
+                    batch.size(), target.schemaName(), target.table(), e.getMessage());
+            for (Object[] row : batch) {
+                try {
+                    insert(target, Collections.singletonList(row));
+                    written.increment();
+                } catch (Exception rowError) {
+                    failed.increment();
+                    logger.error("Error storing {} row in {}: {}", target.table(), target.schemaName(),
+                            rowError.getMessage());
+                }
+            }
+        }
+        batches.increment();
+        meterRegistry.timer("pudel.memory.write.flush", "table", target.table())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("pudel.memory.write.batch", "table", target.table()).record(batch.size());
+    }
+
+    private void insert(Target target, List<Object[]> rows) {
+        List<String> columns = target.columns();
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(target.schemaName()).append('.').append(target.table())
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        String placeholders = columns.stream()
+                .map(column -> column.equals("entities") ? "?::jsonb" : "?")
+                .collect(Collectors.joining(", ", "(", ")"));
+        sql.append(String.join(", ", Collections.nCopies(rows.size(), placeholders)));
+
+        Object[] args = new Object[rows.size() * columns.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, args, i * columns.size(), columns.size());
+        }
+
+        if (target.table().equals("dialogue_history")) {
+            // New dialogue rows are embedded for semantic search
+            sql.append(" RETURNING id, user_message");
+            jdbcTemplate.query(sql.toString(),
+                    rs -> embeddingWriter.enqueueDialogue(target.schemaName(), rs.getLong(1), rs.getString(2)),
+                    args);
+        } else {
+            jdbcTemplate.update(sql.toString(), args);
+        }
+        rowCounter.add(target.schemaName(), target.table(), rows.size());
+    }
+
+    private static boolean isEmpty(ArrayDeque<Object[]> buffer) {
+        synchronized (buffer) {
+            return buffer.isEmpty();
+        }
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    public int getPendingCount() {
+        return Math.max(0, pendingCount.get());
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Get write buffer statistics.
+     *
+     * @return map of row and batch counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", getPendingCount());
+        stats.put("tables", buffers.size());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("throttled", throttled.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Rows queued from now on are written by their caller
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Memory writer did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Write whatever is still buffered before the data source goes away
+        try {
+            flushAll();
+        } catch (Exception e) {
+            logger.error("Error flushing memory writes on shutdown: {}", e.getMessage());
+        }
+        if (getPendingCount() > 0) {
+            logger.warn("{} memory row(s) were not written before shutdown", getPendingCount());
+        }
+    }
+
+    private record Target(String schemaName, String table, List<String> columns) {
+    }
+}
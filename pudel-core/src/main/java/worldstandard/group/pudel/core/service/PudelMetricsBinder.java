@@ -0,0 +1,174 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.brain.memory.MemoryManager;
+
+/**
+ * Publishes the counters behind {@code /api/bot/stats} as Micrometer meters.
+ * <p>
+ * The counters keep living in their components; this binder only reads them at scrape time.
+ */
+@Component
+public class PudelMetricsBinder implements MeterBinder {
+
+    private final GuildSettingsCache guildSettingsCache;
+    private final ChatbotExecutor chatbotExecutor;
+    private final ChatbotAdmissionService chatbotAdmissionService;
+    private final CommandExecutionService commandExecutionService;
+    private final CommandLogBatcher commandLogBatcher;
+    private final SemanticResponseCache responseCache;
+    private final MemoryEmbeddingWriter memoryEmbeddingWriter;
+    private final MemoryManager memoryManager;
+    private final MemoryWriteBuffer memoryWriteBuffer;
+    private final TenantRowCounter tenantRowCounter;
+
+    public PudelMetricsBinder(GuildSettingsCache guildSettingsCache,
+                              ChatbotExecutor chatbotExecutor,
+                              ChatbotAdmissionService chatbotAdmissionService,
+                              CommandExecutionService commandExecutionService,
+                              CommandLogBatcher commandLogBatcher,
+                              SemanticResponseCache responseCache,
+                              MemoryEmbeddingWriter memoryEmbeddingWriter,
+                              MemoryManager memoryManager,
+                              MemoryWriteBuffer memoryWriteBuffer,
+                              TenantRowCounter tenantRowCounter) {
+        this.guildSettingsCache = guildSettingsCache;
+        this.chatbotExecutor = chatbotExecutor;
+        this.chatbotAdmissionService = chatbotAdmissionService;
+        this.commandExecutionService = commandExecutionService;
+        this.commandLogBatcher = commandLogBatcher;
+        this.responseCache = responseCache;
+        this.memoryEmbeddingWriter = memoryEmbeddingWriter;
+        this.memoryManager = memoryManager;
+        this.memoryWriteBuffer = memoryWriteBuffer;
+        this.tenantRowCounter = tenantRowCounter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Guild settings cache
+        Gauge.builder("pudel.settings.cache.size", guildSettingsCache, GuildSettingsCache::size)
+                .register(registry);
+        FunctionCounter.builder("pudel.settings.cache.requests", guildSettingsCache, GuildSettingsCache::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pudel.settings.cache.requests", guildSettingsCache, GuildSettingsCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pudel.settings.cache.evictions", guildSettingsCache, GuildSettingsCache::getEvictionCount)
+                .register(registry);
+
+        // Chatbot execution stage and admission control
+        Gauge.builder("pudel.chatbot.queue.pending", chatbotExecutor, ChatbotExecutor::getPendingCount)
+                .register(registry);
+        Gauge.builder("pudel.chatbot.queue.active", chatbotExecutor, ChatbotExecutor::getActiveCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.queue.rejected", chatbotExecutor, ChatbotExecutor::getRejectedCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.admission", chatbotAdmissionService,
+                        ChatbotAdmissionService::getAdmittedCount)
+                .tag("result", "admitted")
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.admission", chatbotAdmissionService,
+                        ChatbotAdmissionService::getRejectedCount)
+                .tag("result", "rejected")
+                .register(registry);
+
+        // Semantic response cache
+        Gauge.builder("pudel.chatbot.response_cache.size", responseCache, SemanticResponseCache::size)
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.response_cache.requests", responseCache,
+                        SemanticResponseCache::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.response_cache.requests", responseCache,
+                        SemanticResponseCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pudel.chatbot.response_cache.saved", responseCache,
+                        SemanticResponseCache::getSavedSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+
+        // Memory embedding writer
+        Gauge.builder("pudel.memory.embedding.pending", memoryEmbeddingWriter, MemoryEmbeddingWriter::getPendingCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.embedding.rows", memoryEmbeddingWriter,
+                        MemoryEmbeddingWriter::getStoredCount)
+                .tag("result", "stored")
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.embedding.rows", memoryEmbeddingWriter,
+                        MemoryEmbeddingWriter::getFailedCount)
+                .tag("result", "failed")
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.embedding.rows", memoryEmbeddingWriter,
+                        MemoryEmbeddingWriter::getDroppedCount)
+                .tag("result", "dropped")
+                .register(registry);
+
+        // Memory retrieval searches that missed the latency budget
+        FunctionCounter.builder("pudel.memory.retrieval.timeouts", memoryManager,
+                        MemoryManager::getLexicalTimeoutCount)
+                .tag("leg", "lexical")
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.retrieval.timeouts", memoryManager,
+                        MemoryManager::getSemanticTimeoutCount)
+                .tag("leg", "semantic")
+                .register(registry);
+
+        // Memory write buffer; flush latency and batch sizes are recorded by the buffer itself
+        Gauge.builder("pudel.memory.write.pending", memoryWriteBuffer, MemoryWriteBuffer::getPendingCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.write.rows", memoryWriteBuffer, MemoryWriteBuffer::getWrittenCount)
+                .tag("result", "written")
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.write.rows", memoryWriteBuffer, MemoryWriteBuffer::getFailedCount)
+                .tag("result", "failed")
+                .register(registry);
+
+        // Tenant row counts behind capacity checks
+        FunctionCounter.builder("pudel.memory.row_counts.requests", tenantRowCounter, TenantRowCounter::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pudel.memory.row_counts.requests", tenantRowCounter, TenantRowCounter::getLoadCount)
+                .tag("result", "load")
+                .register(registry);
+
+        // Command cooldowns
+        CooldownStore cooldownStore = commandExecutionService.getCooldownStore();
+        Gauge.builder("pudel.cooldowns.tracked", cooldownStore, CooldownStore::size)
+                .register(registry);
+        FunctionCounter.builder("pudel.cooldowns.expired", cooldownStore, CooldownStore::getExpiredCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.cooldowns.overflow", cooldownStore, CooldownStore::getOverflowCount)
+                .register(registry);
+
+        // Command audit log delivery
+        Gauge.builder("pudel.command.log.pending", commandLogBatcher, CommandLogBatcher::getPendingCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.command.log.merged", commandLogBatcher, CommandLogBatcher::getMergedCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.command.log.dropped", commandLogBatcher, CommandLogBatcher::getDroppedCount)
+                .register(registry);
+        FunctionCounter.builder("pudel.command.log.messages", commandLogBatcher, CommandLogBatcher::getMessagesSentCount)
+                .register(registry);
+    }
+}
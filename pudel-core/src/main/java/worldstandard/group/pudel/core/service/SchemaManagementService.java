@@ -32,9 +32,14 @@ public class SchemaManagementService {
     private static final Logger logger = LoggerFactory.getLogger(SchemaManagementService.class);
 
     private final JdbcTemplate jdbcTemplate;
+    private final MemoryTextSearchService memoryTextSearchService;
+    private final TenantRowCounter rowCounter;
 
-    public SchemaManagementService(JdbcTemplate jdbcTemplate) {
+    public SchemaManagementService(JdbcTemplate jdbcTemplate, MemoryTextSearchService memoryTextSearchService,
+                                   TenantRowCounter rowCounter) {
         this.jdbcTemplate = jdbcTemplate;
+        this.memoryTextSearchService = memoryTextSearchService;
+        this.rowCounter = rowCounter;
     }
 
     // ===========================================
@@ -118,6 +123,9 @@ public class SchemaManagementService {
             jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_memory_key ON " + schemaName + ".memory(key)");
             jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_memory_category ON " + schemaName + ".memory(category)");
 
+            // Full-text search vectors for memory retrieval
+            memoryTextSearchService.ensureSearchColumns(schemaName);
+
             logger.info("Created tables for guild schema: {}", schemaName);
 
         } catch (Exception e) {
@@ -134,6 +142,7 @@ public class SchemaManagementService {
 
         try {
             jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schemaName + " CASCADE");
+            rowCounter.invalidateSchema(schemaName);
             logger.info("Dropped schema for guild {}: {}", guildId, schemaName);
         } catch (Exception e) {
             logger.error("Error dropping schema for guild {}: {}", guildId, e.getMessage(), e);
@@ -258,6 +267,9 @@ public class SchemaManagementService {
             jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_dialogue_created ON " + schemaName + ".dialogue_history(created_at)");
             jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_memory_key ON " + schemaName + ".memory(key)");
 
+            // Full-text search vectors for memory retrieval
+            memoryTextSearchService.ensureSearchColumns(schemaName);
+
             logger.info("Created tables for user schema: {}", schemaName);
 
         } catch (Exception e) {
@@ -274,6 +286,7 @@ public class SchemaManagementService {
 
         try {
             jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schemaName + " CASCADE");
+            rowCounter.invalidateSchema(schemaName);
             logger.info("Dropped schema for user {}: {}", userId, schemaName);
         } catch (Exception e) {
             logger.error("Error dropping schema for user {}: {}", userId, e.getMessage(), e);
@@ -316,38 +329,17 @@ public class SchemaManagementService {
 
     /**
      * Get the row count for a table in a guild schema.
-     * Used for subscription capacity checking.
+     * Used for subscription capacity checking; served from {@link TenantRowCounter}.
      */
     public long getGuildTableRowCount(long guildId, String tableName) {
-        String schemaName = getGuildSchemaName(guildId);
-        try {
-            Long count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM " + schemaName + "." + tableName,
-                Long.class
-            );
-            return count != null ? count : 0;
-        } catch (Exception e) {
-            logger.debug("Error getting row count for {}.{}: {}", schemaName, tableName, e.getMessage());
-            return 0;
-        }
+        return rowCounter.get(getGuildSchemaName(guildId), tableName);
     }
 
     /**
      * Get the row count for a table in a user schema.
-     * Used for subscription capacity checking.
+     * Used for subscription capacity checking; served from {@link TenantRowCounter}.
      */
     public long getUserTableRowCount(long userId, String tableName) {
-        String schemaName = getUserSchemaName(userId);
-        try {
-            Long count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM " + schemaName + "." + tableName,
-                Long.class
-            );
-            return count != null ? count : 0;
-        } catch (Exception e) {
-            logger.debug("Error getting row count for {}.{}: {}", schemaName, tableName, e.getMessage());
-            return 0;
-        }
+        return rowCounter.get(getUserSchemaName(userId), tableName);
     }
 }
-
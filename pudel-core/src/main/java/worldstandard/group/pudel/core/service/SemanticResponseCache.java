@@ -0,0 +1,338 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
+import worldstandard.group.pudel.core.entity.GuildSettings;
+import worldstandard.group.pudel.core.service.ChatbotService.PudelPersonality;
+import worldstandard.group.pudel.model.embedding.OllamaEmbeddingService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-guild cache of generated replies, looked up by the meaning of the question.
+ * <p>
+ * Each question is embedded with {@link OllamaEmbeddingService}; a later question whose embedding
+ * is at least {@code similarity-threshold} similar to a cached one, within {@code ttl-seconds}, is
+ * answered with the cached reply and skips analysis, memory retrieval and generation.
+ * Guilds opt in with {@link GuildSettings#getResponseCacheEnabled()}.
+ * <p>
+ * Entries are shared by everyone in the guild, so they must not carry anyone's conversation:
+ * callers only {@link #put} replies generated without dialogue history (see {@code PudelBrain}).
+ * <p>
+ * A guild's entries are dropped when its personality changes (entries remember the personality
+ * they were generated with) and when its memory table is written ({@link #invalidateGuild(long)}).
+ * A reply still being generated when that happens is not cached.
+ */
+@Service
+public class SemanticResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+    private final ChatbotConfig chatbotConfig;
+    private final OllamaEmbeddingService embeddingService;
+    private final GuildSettingsCache guildSettingsCache;
+
+    // key = guild ID; access-ordered so that the least recently asked guild is dropped first
+    private final Map<Long, GuildEntries> guilds;
+
+    // key = guild ID, value = how often it was invalidated; a lookup that saw an older value is not cached
+    private final ConcurrentHashMap<Long, Long> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    public SemanticResponseCache(ChatbotConfig chatbotConfig,
+                                 OllamaEmbeddingService embeddingService,
+                                 GuildSettingsCache guildSettingsCache) {
+        this.chatbotConfig = chatbotConfig;
+        this.embeddingService = embeddingService;
+        this.guildSettingsCache = guildSettingsCache;
+        int maxGuilds = Math.max(1, chatbotConfig.getResponseCache().getMaxGuilds());
+        this.guilds = Collections.synchronizedMap(new LinkedHashMap<Long, GuildEntries>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, GuildEntries> eldest) {
+                return size() > maxGuilds;
+            }
+        });
+    }
+
+    /**
+     * Whether replies in a guild go through the cache.
+     *
+     * @param guildId the guild ID
+     */
+    public boolean isEnabled(long guildId) {
+        if (!chatbotConfig.getResponseCache().isEnabled() || !embeddingService.isAvailable()) {
+            return false;
+        }
+        return guildSettingsCache.get(String.valueOf(guildId))
+                .map(GuildSettings::getResponseCacheEnabled)
+                .orElse(false);
+    }
+
+    /**
+     * Embed a question and look it up in the guild's cache.
+     * Returns empty if the guild has not opted in or the question could not be embedded.
+     *
+     * @param guildId     the guild ID
+     * @param question    the user's message
+     * @param personality the personality the reply would be generated with
+     * @return the lookup; pass it to {@link #put} after generating on a miss
+     */
+    public Optional<Lookup> lookup(long guildId, String question, PudelPersonality personality) {
+        if (!isEnabled(guildId)) {
+            return Optional.empty();
+        }
+        // Read before the cache, so an invalidation during generation is always noticed by put()
+        long generation = generations.getOrDefault(guildId, 0L);
+        float[] embedding;
+        try {
+            embedding = embeddingService.embed(question).orElse(null);
+        } catch (Exception e) {
+            logger.debug("Could not embed question for response cache: {}", e.getMessage());
+            embedding = null;
+        }
+        if (embedding == null) {
+            return Optional.empty();
+        }
+
+        Entry hit = null;
+        GuildEntries entries = guilds.get(guildId);
+        if (entries != null) {
+            hit = entries.find(embedding, personality, System.nanoTime());
+        }
+
+        if (hit == null) {
+            misses.increment();
+            return Optional.of(new Lookup(guildId, embedding, personality, generation, null));
+        }
+        hits.increment();
+        savedNanos.add(hit.generationNanos());
+        logger.debug("Response cache hit for guild {}", guildId);
+        return Optional.of(new Lookup(guildId, embedding, personality, generation, hit));
+    }
+
+    /**
+     * Cache a reply generated after a miss. The reply is served to other users, so it must have been
+     * generated without anyone's dialogue history.
+     *
+     * @param lookup          the miss returned by {@link #lookup}
+     * @param response        the reply
+     * @param intent          the detected intent, stored with the dialogue on later hits
+     * @param sentiment       the detected sentiment
+     * @param confidence      the analysis confidence
+     * @param generationNanos how long producing the reply took, counted as saved on every hit
+     */
+    public void put(Lookup lookup, String response, String intent, String sentiment, double confidence,
+                    long generationNanos) {
+        if (lookup.hit() || response == null || response.isBlank()) {
+            return;
+        }
+        ChatbotConfig.ResponseCache config = chatbotConfig.getResponseCache();
+        Entry entry = new Entry(lookup.embedding(), response, intent, sentiment, confidence,
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getTtlSeconds()), generationNanos);
+        boolean[] added = {false};
+        // Under the guild's map lock, so invalidateGuild cannot run between the check and the add
+        guilds.compute(lookup.guildId(), (_, entries) -> {
+            if (generations.getOrDefault(lookup.guildId(), 0L) != lookup.generation()) {
+                // The guild was invalidated while the reply was being generated
+                return entries;
+            }
+            GuildEntries target = entries != null ? entries : new GuildEntries();
+            target.add(entry, lookup.personality(), Math.max(1, config.getMaxEntriesPerGuild()));
+            added[0] = true;
+            return target;
+        });
+        if (added[0]) {
+            stored.increment();
+        }
+    }
+
+    /**
+     * Drop every cached reply of a guild, e.g. after its memory table changed.
+     *
+     * @param guildId the guild ID
+     */
+    public void invalidateGuild(long guildId) {
+        generations.merge(guildId, 1L, Long::sum);
+        if (guilds.remove(guildId) != null) {
+            invalidations.increment();
+            logger.debug("Response cache invalidated for guild {}", guildId);
+        }
+    }
+
+    /**
+     * Remove expired entries and guilds left without entries.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        List<Long> empty = new ArrayList<>();
+        synchronized (guilds) {
+            for (Map.Entry<Long, GuildEntries> guild : guilds.entrySet()) {
+                if (guild.getValue().removeExpired(now)) {
+                    empty.add(guild.getKey());
+                }
+            }
+        }
+        for (Long guildId : empty) {
+            guilds.computeIfPresent(guildId, (_, entries) -> entries.isEmpty() ? null : entries);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Generation time skipped by cache hits, in seconds.
+     */
+    public double getSavedSeconds() {
+        return savedNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    public int size() {
+        int size = 0;
+        synchronized (guilds) {
+            for (GuildEntries entries : guilds.values()) {
+                size += entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get response cache statistics.
+     *
+     * @return map of hit, miss and size counters, the hit ratio and the saved generation time
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("savedSeconds", getSavedSeconds());
+        stats.put("stored", stored.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("guilds", guilds.size());
+        stats.put("entries", size());
+        return stats;
+    }
+
+    /**
+     * Result of {@link #lookup}: the question's embedding and, on a hit, the cached reply.
+     */
+    public record Lookup(long guildId, float[] embedding, PudelPersonality personality, long generation,
+                         Entry entry) {
+        public boolean hit() {
+            return entry != null;
+        }
+    }
+
+    /**
+     * A cached reply with the analysis it was generated from.
+     */
+    public record Entry(float[] embedding, String response, String intent, String sentiment, double confidence,
+                        long expiresAt, long generationNanos) {
+    }
+
+    /**
+     * Cached replies of one guild, oldest first, all generated with the same personality.
+     */
+    private final class GuildEntries {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private PudelPersonality personality;
+
+        synchronized Entry find(float[] embedding, PudelPersonality current, long now) {
+            if (!Objects.equals(personality, current)) {
+                clear(current);
+                return null;
+            }
+            double threshold = chatbotConfig.getResponseCache().getSimilarityThreshold();
+            Entry best = null;
+            double bestSimilarity = threshold;
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.expiresAt() - now <= 0) {
+                    it.remove();
+                    continue;
+                }
+                double similarity = embeddingService.cosineSimilarity(embedding, entry.embedding());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+            return best;
+        }
+
+        synchronized void add(Entry entry, PudelPersonality current, int maxEntries) {
+            if (!Objects.equals(personality, current)) {
+                clear(current);
+            }
+            while (entries.size() >= maxEntries) {
+                entries.pollFirst();
+            }
+            entries.addLast(entry);
+        }
+
+        synchronized boolean removeExpired(long now) {
+            entries.removeIf(entry -> entry.expiresAt() - now <= 0);
+            return entries.isEmpty();
+        }
+
+        synchronized boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void clear(PudelPersonality current) {
+            if (!entries.isEmpty()) {
+                invalidations.increment();
+            }
+            entries.clear();
+            personality = current;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import worldstandard.group.pudel.core.config.brain.ChatbotConfig;
+import worldstandard.group.pudel.model.PudelModelService;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Shows chatbot replies while the model is still generating them.
+ * <p>
+ * A {@link Reply} collects partial output from the model. Once the first sentence is ready it is
+ * posted as a message, which is then edited at most once per
+ * {@link ChatbotConfig.Streaming#getEditIntervalMs()} until the reply is finished. Only one send or
+ * edit is in flight per reply, so edits never arrive out of order, and the final text always
+ * replaces whatever partial text was shown. A reply that fails part-way is {@link Reply#abort aborted},
+ * which replaces the partial text with a short notice instead of leaving it cut off.
+ */
+@Component
+public class StreamingReplyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingReplyService.class);
+
+    // Partial text is cut short of the message limit to leave room for the suffix
+    private static final int PARTIAL_MAX_LENGTH = Message.MAX_CONTENT_LENGTH - 10;
+    private static final String PARTIAL_SUFFIX = " …";
+
+    private final ChatbotConfig chatbotConfig;
+    private final PudelModelService modelService;
+    private final MeterRegistry meterRegistry;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-reply-stream").daemon().factory());
+
+    public StreamingReplyService(ChatbotConfig chatbotConfig,
+                                 @Lazy PudelModelService modelService,
+                                 MeterRegistry meterRegistry) {
+        this.chatbotConfig = chatbotConfig;
+        this.modelService = modelService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Start a progressive reply in a channel.
+     *
+     * @param channel       the channel to reply in
+     * @param receivedNanos {@link System#nanoTime()} when the user's message was admitted
+     * @return the reply, or null if progressive replies are disabled
+     */
+    public Reply open(MessageChannel channel, long receivedNanos) {
+        if (!chatbotConfig.getStreaming().isEnabled()) {
+            return null;
+        }
+        return new Reply(channel, receivedNanos);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * One progressive reply. Accepts partial text from any thread.
+     */
+    public final class Reply implements Consumer<String> {
+
+        private final MessageChannel channel;
+        private final long receivedNanos;
+
+        // All fields below are guarded by this
+        private String latest;
+        private String shown;
+        private Message message;
+        private boolean requestInFlight;
+        private boolean failed;
+        private boolean aborted;
+        private long lastRequestNanos;
+        private ScheduledFuture<?> pendingFlush;
+
+        private String finalText;
+        private Consumer<Message> onSuccess;
+        private Consumer<Throwable> onFailure;
+
+        private Reply(MessageChannel channel, long receivedNanos) {
+            this.channel = channel;
+            this.receivedNanos = receivedNanos;
+        }
+
+        /**
+         * Receive the visible text generated so far.
+         */
+        @Override
+        public synchronized void accept(String partial) {
+            if (finalText != null || failed || partial == null || partial.isBlank()) {
+                return;
+            }
+            latest = partial;
+            scheduleFlush();
+        }
+
+        /**
+         * Show the final reply: edit the posted message, or send it as a new one if nothing was posted.
+         *
+         * @param text      the final, Discord-formatted reply
+         * @param onSuccess called with the message once the final text is visible
+         * @param onFailure called if the final text could not be delivered
+         */
+        public synchronized void complete(String text, Consumer<Message> onSuccess, Consumer<Throwable> onFailure) {
+            this.finalText = text;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            // Otherwise the in-flight request delivers the final text when it completes
+            if (!requestInFlight) {
+                deliverFinal();
+            }
+        }
+
+        /**
+         * Give up on the reply after generation failed. Partial text already posted is replaced with
+         * {@code text}; if nothing was posted, nothing is sent. Has no effect once {@link #complete} was called.
+         *
+         * @param text the notice shown in place of the partial reply
+         */
+        public synchronized void abort(String text) {
+            if (finalText != null) {
+                return;
+            }
+            aborted = true;
+            complete(text, _ -> {
+            }, error -> logger.debug("Could not replace aborted streaming reply: {}", error.getMessage()));
+        }
+
+        private void scheduleFlush() {
+            if (pendingFlush != null || requestInFlight) {
+                return;
+            }
+            long intervalNanos = TimeUnit.MILLISECONDS.toNanos(chatbotConfig.getStreaming().getEditIntervalMs());
+            long delay = message == null ? 0 : Math.max(0, lastRequestNanos + intervalNanos - System.nanoTime());
+            pendingFlush = scheduler.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void flush() {
+            pendingFlush = null;
+            if (finalText != null || failed || requestInFlight || latest == null || latest.equals(shown)) {
+                return;
+            }
+            if (message == null && !isReadyToPost(latest)) {
+                // Wait for more text; the next partial schedules another flush
+                return;
+            }
+
+            String text = modelService.formatResponseForDiscord(latest, PARTIAL_MAX_LENGTH) + PARTIAL_SUFFIX;
+            shown = latest;
+            requestInFlight = true;
+            lastRequestNanos = System.nanoTime();
+
+            if (message == null) {
+                channel.sendMessage(text).queue(this::onPosted, this::onPostFailed);
+            } else {
+                message.editMessage(text).queue(
+                        _ -> onEdited("success"),
+                        error -> {
+                            logger.debug("Could not edit streaming reply: {}", error.getMessage());
+                            onEdited("error");
+                        });
+            }
+        }
+
+        private synchronized void onPosted(Message posted) {
+            meterRegistry.timer("pudel.chatbot.first_visible", "mode", "stream")
+                    .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+            message = posted;
+            requestInFlight = false;
+            afterRequest();
+        }
+
+        private synchronized void onPostFailed(Throwable error) {
+            logger.debug("Could not post streaming reply: {}", error.getMessage());
+            // Stop streaming; the final text is sent as a new message
+            failed = true;
+            requestInFlight = false;
+            afterRequest();
+        }
+
+        private synchronized void onEdited(String outcome) {
+            meterRegistry.counter("pudel.chatbot.stream.edits", "outcome", outcome).increment();
+            requestInFlight = false;
+            afterRequest();
+        }
+
+        private void afterRequest() {
+            if (finalText != null) {
+                deliverFinal();
+            } else if (!failed && latest != null && !latest.equals(shown)) {
+                scheduleFlush();
+            }
+        }
+
+        private void deliverFinal() {
+            if (message != null) {
+                message.editMessage(finalText).queue(onSuccess, onFailure);
+                return;
+            }
+            if (aborted) {
+                // Nothing was shown, so there is nothing to replace
+                return;
+            }
+            long startNanos = receivedNanos;
+            channel.sendMessage(finalText).queue(
+                    sent -> {
+                        meterRegistry.timer("pudel.chatbot.first_visible", "mode", "whole")
+                                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        onSuccess.accept(sent);
+                    },
+                    onFailure
+            );
+        }
+
+        /**
+         * Post once the first sentence is complete, or once there is enough text to be worth showing.
+         */
+        private boolean isReadyToPost(String text) {
+            if (text.length() >= chatbotConfig.getStreaming().getFirstMessageMinChars()) {
+                return true;
+            }
+            return text.contains(". ") || text.contains("! ") || text.contains("? ") || text.contains("\n");
+        }
+    }
+}
@@ -16,6 +16,7 @@ package worldstandard.group.pudel.core.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import worldstandard.group.pudel.core.config.database.SubscriptionTierConfig;
@@ -43,13 +44,16 @@ public class SubscriptionService {
     private final SubscriptionRepository subscriptionRepository;
     private final SchemaManagementService schemaManagementService;
     private final SubscriptionTierConfig tierConfig;
+    private final ChatbotAdmissionService chatbotAdmissionService;
 
     public SubscriptionService(SubscriptionRepository subscriptionRepository,
                                SchemaManagementService schemaManagementService,
-                               SubscriptionTierConfig tierConfig) {
+                               SubscriptionTierConfig tierConfig,
+                               @Lazy ChatbotAdmissionService chatbotAdmissionService) {
         this.subscriptionRepository = subscriptionRepository;
         this.schemaManagementService = schemaManagementService;
         this.tierConfig = tierConfig;
+        this.chatbotAdmissionService = chatbotAdmissionService;
     }
 
     /**
@@ -129,7 +133,10 @@ public class SubscriptionService {
 
         subscription.setTierName(newTierName);
         applyConfigLimits(subscription);
-        return subscriptionRepository.save(subscription);
+        Subscription saved = subscriptionRepository.save(subscription);
+        // New chatbot rate limits apply from the next message
+        chatbotAdmissionService.invalidate(Long.parseLong(targetId), type);
+        return saved;
     }
 
     /**
@@ -0,0 +1,207 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import worldstandard.group.pudel.core.config.brain.MemoryConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-local row counts of the tenant tables, for subscription capacity checks.
+ * <p>
+ * A table is counted with {@code COUNT(*)} the first time it is asked for; after that, writers
+ * report the rows they insert and delete with {@link #add(String, String, long)}, so a capacity
+ * check is a map lookup. Writes that do not report (a rolled back transaction, manual SQL) can
+ * make a count drift, so each count is taken again from the database after
+ * {@code rowCounts.reconcileSeconds}.
+ * <p>
+ * Rows queued by {@link MemoryWriteBuffer} but not written yet are reported with
+ * {@link #addQueued(String, String, long)} and included in {@link #get(String, String)}, so a burst of
+ * buffered writes cannot go past a capacity limit before the next flush.
+ */
+@Component
+public class TenantRowCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantRowCounter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemoryConfig memoryConfig;
+
+    // key = "schema.table"
+    private final ConcurrentHashMap<String, Count> counts = new ConcurrentHashMap<>();
+    // key = "schema.table", value = rows queued for the table but not written yet
+    private final ConcurrentHashMap<String, Long> queued = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TenantRowCounter(JdbcTemplate jdbcTemplate, MemoryConfig memoryConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.memoryConfig = memoryConfig;
+    }
+
+    /**
+     * Get the row count of a tenant table, including rows queued for it.
+     *
+     * @param schemaName the guild or user schema
+     * @param tableName  the table
+     * @return the row count, or only the queued rows if the table cannot be counted
+     */
+    public long get(String schemaName, String tableName) {
+        String key = schemaName + "." + tableName;
+        return stored(key) + queued.getOrDefault(key, 0L);
+    }
+
+    private long stored(String key) {
+        Count count = counts.get(key);
+        long maxAge = TimeUnit.SECONDS.toNanos(Math.max(1, memoryConfig.getRowCounts().getReconcileSeconds()));
+        if (count != null && System.nanoTime() - count.loadedAt() < maxAge) {
+            hits.increment();
+            return count.rows().get();
+        }
+
+        try {
+            Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + key, Long.class);
+            long loaded = rows != null ? rows : 0;
+            makeRoom();
+            counts.put(key, new Count(new AtomicLong(loaded), System.nanoTime()));
+            loads.increment();
+            return loaded;
+        } catch (Exception e) {
+            // Not cached, so the next check counts again
+            logger.debug("Error getting row count for {}: {}", key, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Report rows inserted into ({@code delta > 0}) or deleted from ({@code delta < 0}) a tenant table.
+     * Inside a transaction the count changes when it commits. Tables not counted yet are ignored.
+     *
+     * @param schemaName the guild or user schema
+     * @param tableName  the table
+     * @param delta      the change in rows
+     */
+    public void add(String schemaName, String tableName, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        String key = schemaName + "." + tableName;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(key, delta);
+                }
+            });
+        } else {
+            apply(key, delta);
+        }
+    }
+
+    /**
+     * Report rows queued for ({@code delta > 0}) or taken off the queue of ({@code delta < 0}) a tenant
+     * table. Take rows off after they were written and reported with {@link #add}, so they are never
+     * missing from the count in between.
+     *
+     * @param schemaName the guild or user schema
+     * @param tableName  the table
+     * @param delta      the change in queued rows
+     */
+    public void addQueued(String schemaName, String tableName, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        queued.compute(schemaName + "." + tableName, (_, rows) -> {
+            long next = (rows != null ? rows : 0) + delta;
+            return next > 0 ? next : null;
+        });
+    }
+
+    /**
+     * Forget the counts of a schema, e.g. after it was dropped.
+     *
+     * @param schemaName the guild or user schema
+     */
+    public void invalidateSchema(String schemaName) {
+        counts.keySet().removeIf(key -> key.startsWith(schemaName + "."));
+    }
+
+    private void apply(String key, long delta) {
+        Count count = counts.get(key);
+        if (count != null) {
+            count.rows().updateAndGet(rows -> Math.max(0, rows + delta));
+        }
+    }
+
+    /**
+     * Drop the oldest count when the map is full. Only runs on a load, so the scan is rare.
+     */
+    private void makeRoom() {
+        int maxEntries = Math.max(1, memoryConfig.getRowCounts().getMaxEntries());
+        while (counts.size() >= maxEntries) {
+            String oldest = null;
+            long oldestLoadedAt = 0;
+            for (Map.Entry<String, Count> entry : counts.entrySet()) {
+                if (oldest == null || entry.getValue().loadedAt() - oldestLoadedAt < 0) {
+                    oldest = entry.getKey();
+                    oldestLoadedAt = entry.getValue().loadedAt();
+                }
+            }
+            if (oldest == null || counts.remove(oldest) == null) {
+                return;
+            }
+            evictions.increment();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Get row counter statistics.
+     *
+     * @return map of size and lookup counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", counts.size());
+        stats.put("queuedTables", queued.size());
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private record Count(AtomicLong rows, long loadedAt) {
+    }
+}
@@ -39,10 +39,18 @@ public class UserDataService {
 
     private final JdbcTemplate jdbcTemplate;
     private final SchemaManagementService schemaManagementService;
+    private final MemoryEmbeddingWriter embeddingWriter;
+    private final MemoryWriteBuffer writeBuffer;
+    private final TenantRowCounter rowCounter;
 
-    public UserDataService(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService) {
+    public UserDataService(JdbcTemplate jdbcTemplate, SchemaManagementService schemaManagementService,
+                           MemoryEmbeddingWriter embeddingWriter, MemoryWriteBuffer writeBuffer,
+                           TenantRowCounter rowCounter) {
         this.jdbcTemplate = jdbcTemplate;
         this.schemaManagementService = schemaManagementService;
+        this.embeddingWriter = embeddingWriter;
+        this.writeBuffer = writeBuffer;
+        this.rowCounter = rowCounter;
     }
 
     /**
@@ -132,11 +140,8 @@ public class UserDataService {
         String schemaName = schemaManagementService.getUserSchemaName(userId);
 
         try {
-            String sql = "INSERT INTO " + schemaName + ".dialogue_history " +
-                    "(user_message, bot_response, intent, created_at) " +
-                    "VALUES (?, ?, ?, ?)";
-            jdbcTemplate.update(sql, userMessage, botResponse, intent,
-                    Timestamp.valueOf(LocalDateTime.now()));
+            // Inserted in a batch by the write buffer, which also queues the row for embedding
+            writeBuffer.enqueueUserDialogue(schemaName, userMessage, botResponse, intent);
             logger.debug("Stored DM dialogue for user {}", userId);
         } catch (Exception e) {
             logger.error("Error storing DM dialogue for user {}: {}", userId, e.getMessage());
@@ -150,6 +155,7 @@ public class UserDataService {
         String schemaName = schemaManagementService.getUserSchemaName(userId);
 
         try {
+            writeBuffer.awaitFlushed(schemaName);
             String sql = "SELECT * FROM " + schemaName + ".dialogue_history " +
                     "ORDER BY created_at DESC LIMIT ?";
             return jdbcTemplate.queryForList(sql, limit);
@@ -173,9 +179,14 @@ public class UserDataService {
         try {
             String sql = "INSERT INTO " + schemaName + ".memory (key, value, category, created_at, updated_at) " +
                     "VALUES (?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ?";
+                    "ON CONFLICT (key) DO UPDATE SET value = ?, category = ?, updated_at = ? " +
+                    "RETURNING id, (xmax = 0) AS inserted";
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-            jdbcTemplate.update(sql, key, value, category, now, now, value, category, now);
+            Map<String, Object> row = jdbcTemplate.queryForMap(sql, key, value, category, now, now, value, category, now);
+            if (Boolean.TRUE.equals(row.get("inserted"))) {
+                rowCounter.add(schemaName, "memory", 1);
+            }
+            embeddingWriter.enqueueMemory(schemaName, ((Number) row.get("id")).longValue(), key, value);
             logger.debug("Stored memory '{}' for user {}", key, userId);
         } catch (Exception e) {
             logger.error("Error storing memory for user {}: {}", userId, e.getMessage());
@@ -222,6 +233,7 @@ public class UserDataService {
         try {
             String sql = "DELETE FROM " + schemaName + ".memory WHERE key = ?";
             int deleted = jdbcTemplate.update(sql, key);
+            rowCounter.add(schemaName, "memory", -deleted);
             return deleted > 0;
         } catch (Exception e) {
             logger.error("Error deleting memory for user {}: {}", userId, e.getMessage());
@@ -0,0 +1,123 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open-addressing set of primitive longs.
+ * <p>
+ * Intended for Discord snowflake IDs, which are never 0, so 0 is used as the empty-slot
+ * marker. Lookups do not box and do not allocate.
+ */
+public final class LongHashSet {
+
+    private static final LongHashSet EMPTY = new LongHashSet(new long[0]);
+
+    private final long[] table;
+    private final int mask;
+    private final int size;
+
+    private LongHashSet(long[] values) {
+        // Keep load factor at or below 0.5 so probe chains stay short
+        int capacity = Integer.highestOneBit(Math.max(2, values.length) * 2 - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+
+        int count = 0;
+        for (long value : values) {
+            if (value != 0 && insert(value)) {
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * Create a set from the given values. Zero values are ignored.
+     *
+     * @param values the values
+     * @return the set
+     */
+    public static LongHashSet of(long... values) {
+        return values.length == 0 ? EMPTY : new LongHashSet(values);
+    }
+
+    /**
+     * @return the shared empty set
+     */
+    public static LongHashSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Check if the set contains a value.
+     *
+     * @param value the value
+     * @return true if present
+     */
+    public boolean contains(long value) {
+        if (size == 0 || value == 0) {
+            return false;
+        }
+        int index = mix(value) & mask;
+        while (true) {
+            long slot = table[index];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the values in table order
+     */
+    public long[] toArray() {
+        return Arrays.stream(table).filter(v -> v != 0).toArray();
+    }
+
+    private boolean insert(long value) {
+        int index = mix(value) & mask;
+        while (true) {
+            long slot = table[index];
+            if (slot == value) {
+                return false;
+            }
+            if (slot == 0) {
+                table[index] = value;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int mix(long value) {
+        // Snowflakes share their high timestamp bits, so spread the low bits before masking
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.core.util;
+
+/**
+ * Mutable open-addressing map from primitive long keys to primitive long values.
+ * <p>
+ * Keys are Discord snowflake IDs, so 0 is reserved as the empty-slot marker.
+ * Not thread-safe; callers synchronize externally.
+ */
+public final class LongLongHashMap {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    public LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1);
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Get the value for a key.
+     *
+     * @param key          the key (non-zero)
+     * @param defaultValue value returned when the key is absent
+     * @return the value or defaultValue
+     */
+    public long get(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Put a value.
+     *
+     * @param key   the key (non-zero)
+     * @param value the value
+     */
+    public void put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int index = mix(key) & mask;
+        while (true) {
+            long slot = keys[index];
+            if (slot == key) {
+                values[index] = value;
+                return;
+            }
+            if (slot == 0) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size * 2 > keys.length) {
+                    resize(keys.length << 1);
+                }
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Remove a key only if it currently maps to the given value.
+     *
+     * @return true if removed
+     */
+    public boolean remove(long key, long expectedValue) {
+        int index = indexOf(key);
+        if (index < 0 || values[index] != expectedValue) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(long key) {
+        if (key == 0 || size == 0) {
+            return -1;
+        }
+        int index = mix(key) & mask;
+        while (true) {
+            long slot = keys[index];
+            if (slot == key) {
+                return index;
+            }
+            if (slot == 0) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void removeAt(int index) {
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int ideal = mix(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model;
+
+import worldstandard.group.pudel.model.PudelModelService.ConversationTurn;
+import worldstandard.group.pudel.model.PudelModelService.MemoryContext;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.ollama.OllamaDto.ChatMessage;
+import worldstandard.group.pudel.model.ollama.PromptTokens;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Fits the parts of a chat prompt into the model's context window.
+ * <p>
+ * The prompt may use {@code contextWindow} less {@code maxTokens} for the reply and
+ * {@code headroomPercent}. The system prompt and the user message always go in (a user message
+ * longer than half the budget is cut short). Of what is left, memories get up to
+ * {@code memoryPercent}, most relevant first, and history gets the rest.
+ * Items that do not fit are dropped, so the lowest-relevance memories and the oldest turns go first;
+ * a single item longer than {@code maxItemPercent} of its section is cut short instead of
+ * crowding out the others.
+ * <p>
+ * History arrives as the prefix-stable window chosen by the caller. Turns are only dropped from its
+ * start, and each turn is cut against a share that does not change from message to message, so a
+ * turn already sent is sent the same way again and the prompt prefix stays reusable. While the
+ * window is over budget its start moves with the drops; the caller's next window step ends that.
+ * <p>
+ * Token counts come from {@link PromptTokens}, so the budget is approximate; the headroom absorbs the error.
+ */
+final class ContextBudgeter {
+
+    // Memories sent at most, whatever the budget
+    static final int MAX_MEMORIES = 5;
+
+    static final String MEMORY_HEADER = "Relevant context from past conversations:\n";
+
+    private final OllamaConfig config;
+
+    ContextBudgeter(OllamaConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Choose what goes into the prompt.
+     *
+     * @param systemPrompt the compiled system prompt
+     * @param userMessage  the current message
+     * @param history      history turns in chronological order, or null
+     * @param memories     relevant memories, or null
+     * @return the parts to send, with the estimated tokens saved against sending everything
+     */
+    Plan plan(String systemPrompt, String userMessage, List<ConversationTurn> history, List<MemoryContext> memories) {
+        List<ConversationTurn> turns = history != null ? history : List.of();
+        List<MemoryContext> candidates = memories != null
+                ? memories.subList(0, Math.min(memories.size(), MAX_MEMORIES))
+                : List.of();
+
+        int systemTokens = PromptTokens.estimate(ChatMessage.system(systemPrompt));
+        int fullTokens = systemTokens
+                + PromptTokens.estimate(ChatMessage.user(userMessage))
+                + historyTokens(turns)
+                + memoryTokens(candidates);
+
+        OllamaConfig.ContextBudget budget = config.getContextBudget();
+        if (!budget.isEnabled()) {
+            return new Plan(userMessage, turns, candidates, fullTokens, 0, 0, 0);
+        }
+
+        int window = config.getContextWindow() * (100 - clampPercent(budget.getHeadroomPercent())) / 100;
+        int promptBudget = Math.max(window / 4, window - config.getMaxTokens());
+
+        String message = PromptTokens.truncate(userMessage, promptBudget / 2);
+        int remaining = promptBudget - systemTokens - PromptTokens.estimate(ChatMessage.user(message));
+
+        // Memories, most relevant first, within their share
+        int memoryBudget = Math.max(0, remaining) * clampPercent(budget.getMemoryPercent()) / 100;
+        List<MemoryContext> keptMemories = fitMemories(candidates, memoryBudget, budget.getMaxItemPercent());
+        int usedByMemories = memoryTokens(keptMemories);
+
+        // History, dropped from the start of the window, in whatever is left. Turns are cut against the
+        // history share of the budget without this message, which stays the same across turns
+        int historyBudget = Math.max(0, remaining - usedByMemories);
+        int historyShare = Math.max(0, promptBudget - systemTokens) * (100 - clampPercent(budget.getMemoryPercent())) / 100;
+        List<ConversationTurn> keptTurns = fitHistory(turns, historyBudget, historyShare, budget.getMaxItemPercent());
+
+        int promptTokens = systemTokens
+                + PromptTokens.estimate(ChatMessage.user(message))
+                + historyTokens(keptTurns)
+                + usedByMemories;
+        return new Plan(message, keptTurns, keptMemories, promptTokens,
+                Math.max(0, fullTokens - promptTokens),
+                turns.size() - keptTurns.size(),
+                candidates.size() - keptMemories.size());
+    }
+
+    private static List<MemoryContext> fitMemories(List<MemoryContext> candidates, int budget, int maxItemPercent) {
+        if (candidates.isEmpty() || budget <= 0) {
+            return List.of();
+        }
+        int itemCap = Math.max(1, budget * clampPercent(maxItemPercent) / 100);
+        List<Integer> byRelevance = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            byRelevance.add(i);
+        }
+        byRelevance.sort(Comparator.comparingDouble((Integer i) -> candidates.get(i).relevance()).reversed());
+
+        // The header is paid once, with the first memory
+        int used = PromptTokens.estimate(ChatMessage.system(MEMORY_HEADER));
+        MemoryContext[] kept = new MemoryContext[candidates.size()];
+        for (int i : byRelevance) {
+            MemoryContext memory = candidates.get(i);
+            MemoryContext clipped = new MemoryContext(PromptTokens.truncate(memory.content(), itemCap),
+                    memory.type(), memory.timestamp(), memory.relevance());
+            int cost = memoryLineTokens(clipped);
+            if (used + cost > budget) {
+                continue;
+            }
+            used += cost;
+            kept[i] = clipped;
+        }
+
+        // Keep the caller's order
+        List<MemoryContext> result = new ArrayList<>();
+        for (MemoryContext memory : kept) {
+            if (memory != null) {
+                result.add(memory);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop turns from the start of the window until the rest fits.
+     *
+     * @param share the stable history share that single turns are cut against
+     */
+    private static List<ConversationTurn> fitHistory(List<ConversationTurn> turns, int budget, int share,
+                                                     int maxItemPercent) {
+        if (turns.isEmpty() || budget <= 0) {
+            return List.of();
+        }
+        int itemCap = Math.max(1, share * clampPercent(maxItemPercent) / 100);
+        List<ConversationTurn> clipped = new ArrayList<>(turns.size());
+        int used = 0;
+        for (ConversationTurn turn : turns) {
+            ConversationTurn cut = new ConversationTurn(PromptTokens.truncate(turn.userMessage(), itemCap),
+                    PromptTokens.truncate(turn.assistantResponse(), itemCap));
+            clipped.add(cut);
+            used += turnTokens(cut);
+        }
+        int start = 0;
+        while (start < clipped.size() && used > budget) {
+            used -= turnTokens(clipped.get(start));
+            start++;
+        }
+        return clipped.subList(start, clipped.size());
+    }
+
+    private static int historyTokens(List<ConversationTurn> turns) {
+        int tokens = 0;
+        for (ConversationTurn turn : turns) {
+            tokens += turnTokens(turn);
+        }
+        return tokens;
+    }
+
+    private static int turnTokens(ConversationTurn turn) {
+        return PromptTokens.estimate(ChatMessage.user(turn.userMessage()))
+                + PromptTokens.estimate(ChatMessage.assistant(turn.assistantResponse()));
+    }
+
+    private static int memoryTokens(List<MemoryContext> memories) {
+        if (memories.isEmpty()) {
+            return 0;
+        }
+        int tokens = PromptTokens.estimate(ChatMessage.system(MEMORY_HEADER));
+        for (MemoryContext memory : memories) {
+            tokens += memoryLineTokens(memory);
+        }
+        return tokens;
+    }
+
+    /**
+     * Tokens of one "- content (timestamp)" line of the memory context.
+     */
+    private static int memoryLineTokens(MemoryContext memory) {
+        return PromptTokens.estimate(memory.content()) + PromptTokens.estimate(memory.timestamp()) + 2;
+    }
+
+    private static int clampPercent(int percent) {
+        return Math.clamp(percent, 0, 100);
+    }
+
+    /**
+     * What goes into one prompt.
+     *
+     * @param userMessage     the user message, possibly cut short
+     * @param history         the history turns kept, in chronological order
+     * @param memories        the memories kept, in the caller's order
+     * @param promptTokens    estimated tokens of the prompt
+     * @param savedTokens     estimated tokens dropped or cut against sending everything
+     * @param droppedTurns    history turns left out
+     * @param droppedMemories memories left out
+     */
+    record Plan(String userMessage,
+                List<ConversationTurn> history,
+                List<MemoryContext> memories,
+                int promptTokens,
+                int savedTokens,
+                int droppedTurns,
+                int droppedMemories) {
+    }
+}
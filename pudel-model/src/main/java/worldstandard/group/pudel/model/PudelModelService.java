@@ -14,9 +14,12 @@
  */
 package worldstandard.group.pudel.model;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 import worldstandard.group.pudel.model.analyzer.TextAnalysis;
 import worldstandard.group.pudel.model.analyzer.TextAnalyzerService;
 import worldstandard.group.pudel.model.config.OllamaConfig;
@@ -26,6 +29,9 @@ import worldstandard.group.pudel.model.ollama.OllamaClient;
 import worldstandard.group.pudel.model.ollama.OllamaDto.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Main service for Pudel's brain model.
@@ -46,22 +52,39 @@ public class PudelModelService {
 
     private static final Logger logger = LoggerFactory.getLogger(PudelModelService.class);
 
+    private static final int SYSTEM_PROMPT_CACHE_SIZE = 1024;
+
     private final OllamaClient ollamaClient;
     private final OllamaEmbeddingService embeddingService;
     private final OllamaConfig ollamaConfig;
     private final TextAnalyzerService textAnalyzerService;
     private final DiscordSyntaxProcessor syntaxProcessor;
+    private final MeterRegistry meterRegistry;
+    private final ContextBudgeter contextBudgeter;
+
+    // Compiled system prompts keyed by personality content (records compare by value), so an
+    // edited personality misses and compiles a new prompt; superseded ones age out of the LRU
+    private final Map<PersonalityTraits, String> systemPrompts = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PersonalityTraits, String> eldest) {
+                    return size() > SYSTEM_PROMPT_CACHE_SIZE;
+                }
+            });
 
     public PudelModelService(OllamaClient ollamaClient,
                              OllamaEmbeddingService embeddingService,
                              OllamaConfig ollamaConfig,
                              TextAnalyzerService textAnalyzerService,
-                             DiscordSyntaxProcessor syntaxProcessor) {
+                             DiscordSyntaxProcessor syntaxProcessor,
+                             MeterRegistry meterRegistry) {
         this.ollamaClient = ollamaClient;
         this.embeddingService = embeddingService;
         this.ollamaConfig = ollamaConfig;
         this.textAnalyzerService = textAnalyzerService;
         this.syntaxProcessor = syntaxProcessor;
+        this.meterRegistry = meterRegistry;
+        this.contextBudgeter = new ContextBudgeter(ollamaConfig);
     }
 
     /**
@@ -71,71 +94,161 @@ public class PudelModelService {
      * @return Generated response or fallback
      */
     public GenerationResponse generateResponse(GenerationRequest request) {
+        return generateResponse(request, null);
+    }
+
+    /**
+     * Generate a chatbot response, passing partial output to {@code onPartial} while it streams.
+     * <p>
+     * Partial text is raw model output; format it with {@link #formatResponseForDiscord(String, int)}
+     * before showing it. Without streaming enabled this behaves like {@link #generateResponse(GenerationRequest)}.
+     *
+     * @param request   The generation request with all context
+     * @param onPartial Receives the visible text so far, or null to disable streaming
+     * @return Generated response or fallback
+     */
+    public GenerationResponse generateResponse(GenerationRequest request, Consumer<String> onPartial) {
+        return generateResponseAsync(request, onPartial).join();
+    }
+
+    /**
+     * Generate a chatbot response without blocking.
+     * The future always completes with a response; on failure it is the fallback response.
+     *
+     * @param request   The generation request with all context
+     * @param onPartial Receives the visible text so far, or null to disable streaming
+     * @return Generated response or fallback
+     */
+    public CompletableFuture<GenerationResponse> generateResponseAsync(GenerationRequest request,
+                                                                       Consumer<String> onPartial) {
         long startTime = System.currentTimeMillis();
 
         // Build the conversation messages
         List<ChatMessage> messages = buildConversation(request);
 
-        // Try Ollama first
-        if (ollamaClient.isAvailable()) {
-            Optional<String> response = ollamaClient.chat(messages);
-            if (response.isPresent()) {
-                long duration = System.currentTimeMillis() - startTime;
-                logger.debug("Generated response via Ollama in {}ms", duration);
-
-                return new GenerationResponse(
-                        response.get().trim(),
-                        "ollama",
-                        duration,
-                        true,
-                        null
-                );
-            }
-        }
+        // Try Ollama first; an empty result means unavailable or failed
+        return ollamaClient.chatReactive(messages, onPartial)
+                .map(response -> {
+                    long duration = System.currentTimeMillis() - startTime;
+                    logger.debug("Generated response via Ollama in {}ms", duration);
+                    recordGeneration("ollama", duration);
+
+                    return new GenerationResponse(
+                            response.trim(),
+                            "ollama",
+                            duration,
+                            true,
+                            null
+                    );
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    // Fallback: return empty (let pudel-core use template-based response)
+                    logger.debug("Ollama not available, falling back to template response");
+                    long duration = System.currentTimeMillis() - startTime;
+                    recordGeneration("fallback", duration);
+                    return new GenerationResponse(
+                            null,
+                            "fallback",
+                            duration,
+                            false,
+                            "Ollama not available"
+                    );
+                }))
+                .toFuture();
+    }
 
-        // Fallback: return empty (let pudel-core use template-based response)
-        logger.debug("Ollama not available, falling back to template response");
-        return new GenerationResponse(
-                null,
-                "fallback",
-                System.currentTimeMillis() - startTime,
-                false,
-                "Ollama not available"
-        );
+    /**
+     * Record total generation time including Ollama retries, tagged by model and source.
+     */
+    private void recordGeneration(String source, long durationMs) {
+        meterRegistry.timer("pudel.model.generate", "model", ollamaConfig.getModel(), "source", source)
+                .record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Build the conversation messages for Ollama chat API.
+     * <p>
+     * Messages run from most to least stable: the personality's system prompt, then the
+     * conversation history, then this turn's memory context and user message. Consecutive turns in
+     * a channel therefore share a byte-identical prefix, which Ollama serves from its prompt cache
+     * instead of prefilling it again.
+     * <p>
+     * Memories and history are fitted into the context window by the {@link ContextBudgeter}.
      */
     private List<ChatMessage> buildConversation(GenerationRequest request) {
         List<ChatMessage> messages = new ArrayList<>();
 
-        // 1. System prompt with personality
-        String systemPrompt = buildSystemPrompt(request.personality());
+        // 1. System prompt with personality (static per personality)
+        String systemPrompt = systemPrompt(request.personality());
         messages.add(ChatMessage.system(systemPrompt));
 
-        // 2. Add relevant memories as context
-        if (request.relevantMemories() != null && !request.relevantMemories().isEmpty()) {
-            String memoryContext = buildMemoryContext(request.relevantMemories());
-            messages.add(ChatMessage.system("Relevant context from past conversations:\n" + memoryContext));
+        ContextBudgeter.Plan plan = contextBudgeter.plan(systemPrompt, request.userMessage(),
+                request.conversationHistory(), request.relevantMemories());
+        recordBudget(plan);
+
+        // 2. Add conversation history (append-only between turns)
+        for (ConversationTurn turn : plan.history()) {
+            messages.add(ChatMessage.user(turn.userMessage()));
+            messages.add(ChatMessage.assistant(turn.assistantResponse()));
         }
 
-        // 3. Add conversation history
-        if (request.conversationHistory() != null) {
-            for (ConversationTurn turn : request.conversationHistory()) {
-                messages.add(ChatMessage.user(turn.userMessage()));
-                messages.add(ChatMessage.assistant(turn.assistantResponse()));
-            }
+        // 3. Add relevant memories as context (changes every turn, so it goes after the history)
+        if (!plan.memories().isEmpty()) {
+            String memoryContext = buildMemoryContext(plan.memories());
+            messages.add(ChatMessage.system(ContextBudgeter.MEMORY_HEADER + memoryContext));
         }
 
         // 4. Add current user message
-        messages.add(ChatMessage.user(request.userMessage()));
+        messages.add(ChatMessage.user(plan.userMessage()));
 
         return messages;
     }
 
+    /**
+     * Record the prompt size and what the budget left out.
+     */
+    private void recordBudget(ContextBudgeter.Plan plan) {
+        String model = ollamaConfig.getModel();
+        DistributionSummary.builder("pudel.model.prompt.tokens")
+                .tag("model", model)
+                .register(meterRegistry)
+                .record(plan.promptTokens());
+        DistributionSummary.builder("pudel.model.prompt.saved")
+                .tag("model", model)
+                .register(meterRegistry)
+                .record(plan.savedTokens());
+        if (plan.droppedTurns() > 0) {
+            meterRegistry.counter("pudel.model.prompt.dropped", "model", model, "item", "turn")
+                    .increment(plan.droppedTurns());
+        }
+        if (plan.droppedMemories() > 0) {
+            meterRegistry.counter("pudel.model.prompt.dropped", "model", model, "item", "memory")
+                    .increment(plan.droppedMemories());
+        }
+        if (plan.savedTokens() > 0) {
+            logger.debug("Prompt budget: ~{} tokens, saved ~{} ({} turn(s) and {} memory(ies) dropped)",
+                    plan.promptTokens(), plan.savedTokens(), plan.droppedTurns(), plan.droppedMemories());
+        }
+    }
+
+    /**
+     * Get the compiled system prompt for a personality, building it on first use.
+     */
+    private String systemPrompt(PersonalityTraits personality) {
+        String cached = systemPrompts.get(personality);
+        if (cached != null) {
+            meterRegistry.counter("pudel.model.system_prompt.cache", "result", "hit").increment();
+            return cached;
+        }
+        meterRegistry.counter("pudel.model.system_prompt.cache", "result", "miss").increment();
+        String prompt = buildSystemPrompt(personality);
+        systemPrompts.put(personality, prompt);
+        return prompt;
+    }
+
     /**
      * Build the system prompt with personality traits.
+     * The result must depend only on the personality and static configuration; it is cached.
      */
     private String buildSystemPrompt(PersonalityTraits personality) {
         StringBuilder prompt = new StringBuilder();
@@ -262,7 +375,7 @@ public class PudelModelService {
 
         int count = 0;
         for (MemoryContext memory : memories) {
-            if (count >= 5) break; // Limit to 5 most relevant memories
+            if (count >= ContextBudgeter.MAX_MEMORIES) break; // Limit to 5 most relevant memories
 
             context.append("- ").append(memory.content());
             if (memory.timestamp() != null) {
@@ -343,6 +456,16 @@ public class PudelModelService {
         return embeddingService.embedBatch(texts);
     }
 
+    /**
+     * Generate an embedding without blocking.
+     *
+     * @param text Text to embed
+     * @return the embedding vector, or empty if it could not be generated
+     */
+    public CompletableFuture<Optional<float[]>> generateEmbeddingAsync(String text) {
+        return embeddingService.embedReactive(text).map(Optional::of).defaultIfEmpty(Optional.empty()).toFuture();
+    }
+
     /**
      * Calculate similarity between two texts using embeddings.
      */
@@ -23,11 +23,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import worldstandard.group.pudel.model.PudelModelService.PersonalityTraits;
 import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.routing.OllamaEndpoint;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler.Priority;
 
 import jakarta.annotation.PostConstruct;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -47,15 +52,20 @@ public class PudelAgentService {
     private static final Logger logger = LoggerFactory.getLogger(PudelAgentService.class);
 
     private final OllamaConfig ollamaConfig;
+    private final LlmScheduler scheduler;
+    private final OllamaEndpointPool pool;
 
-    private OllamaChatModel chatModel;
+    // One client per endpoint, built on first use
+    private final Map<OllamaEndpoint, OllamaChatModel> chatModels = new ConcurrentHashMap<>();
     private boolean agentAvailable = false;
 
     // Cache for per-session chat memories (key: "guildId:userId" or "user:userId")
     private final Map<String, ChatMemory> sessionMemories = new ConcurrentHashMap<>();
 
-    public PudelAgentService(OllamaConfig ollamaConfig) {
+    public PudelAgentService(OllamaConfig ollamaConfig, LlmScheduler scheduler, OllamaEndpointPool pool) {
         this.ollamaConfig = ollamaConfig;
+        this.scheduler = scheduler;
+        this.pool = pool;
     }
 
     @PostConstruct
@@ -66,12 +76,11 @@ public class PudelAgentService {
         }
 
         try {
-            this.chatModel = OllamaChatModel.builder()
-                    .baseUrl(ollamaConfig.getBaseUrl())
-                    .modelName(ollamaConfig.getModel())
-                    .timeout(Duration.ofSeconds(ollamaConfig.getTimeoutSeconds()))
-                    .temperature(0.7)
-                    .build();
+            for (OllamaEndpoint endpoint : pool.getEndpoints()) {
+                if (endpoint.serves(ollamaConfig.getModel())) {
+                    modelFor(endpoint);
+                }
+            }
 
             // Test connection - OllamaChatModel doesn't have simple generate, it needs a list of messages
             // Just mark as available if build succeeds
@@ -107,7 +116,12 @@ public class PudelAgentService {
         if (!agentAvailable) {
             return new AgentResponse(null, false, "Agent not available", List.of());
         }
+        // Fail fast while Ollama is down; the caller falls back to plain chat or templates
+        if (!pool.isAvailable(ollamaConfig.getModel())) {
+            return new AgentResponse(null, false, "Ollama circuit is open", List.of());
+        }
 
+        OllamaEndpointPool.Lease lease = null;
         try {
             // Create tools for this context
             PudelAgentTools tools = new PudelAgentTools(dataExecutor, targetId, isGuild, requestingUserId);
@@ -117,13 +131,6 @@ public class PudelAgentService {
             ChatMemory memory = sessionMemories.computeIfAbsent(sessionKey,
                     k -> MessageWindowChatMemory.withMaxMessages(20));
 
-            // Create the AI service with tools
-            PudelAssistant assistant = AiServices.builder(PudelAssistant.class)
-                    .chatModel(chatModel)
-                    .chatMemory(memory)
-                    .tools(tools)
-                    .build();
-
             // Build system message with personality
             String systemPrompt = buildAgentSystemPrompt(personality, isGuild);
 
@@ -141,12 +148,33 @@ public class PudelAgentService {
                 }
             }
 
-            // Execute agent
-            String response = assistant.chat(systemPrompt + contextBuilder, userMessage);
+            // Execute agent. The slot and the endpoint are held for the whole run, including tool calls
+            // between model turns. A failed run is not retried elsewhere, since its tools may have run
+            String response;
+            try (LlmScheduler.Permit _ = scheduler.acquire(Priority.AGENT, ollamaConfig.getModel())) {
+                Optional<OllamaEndpointPool.Lease> acquired = pool.acquire(ollamaConfig.getModel(), "agent");
+                if (acquired.isEmpty()) {
+                    return new AgentResponse(null, false, "Ollama circuit is open", List.of());
+                }
+                lease = acquired.get();
+
+                // Create the AI service with tools
+                PudelAssistant assistant = AiServices.builder(PudelAssistant.class)
+                        .chatModel(modelFor(lease.endpoint()))
+                        .chatMemory(memory)
+                        .tools(tools)
+                        .build();
+                response = assistant.chat(systemPrompt + contextBuilder, userMessage);
+            }
+            // Tool calls make run time meaningless as a health signal, so only errors count
+            lease.onSuccessIgnoringDuration();
 
             return new AgentResponse(response, true, null, List.of());
 
         } catch (Exception e) {
+            if (lease != null) {
+                lease.onError(e);
+            }
             logger.error("Error in agent processing: {}", e.getMessage(), e);
             return new AgentResponse(null, false, e.getMessage(), List.of());
         }
@@ -245,10 +273,19 @@ public class PudelAgentService {
     }
 
     /**
-     * Check if agent is available.
+     * Check if agent is available, i.e. initialized and some endpoint serving the model has a circuit that is not open.
      */
     public boolean isAvailable() {
-        return agentAvailable;
+        return agentAvailable && pool.isAvailable(ollamaConfig.getModel());
+    }
+
+    private OllamaChatModel modelFor(OllamaEndpoint endpoint) {
+        return chatModels.computeIfAbsent(endpoint, _ -> OllamaChatModel.builder()
+                .baseUrl(endpoint.getUrl())
+                .modelName(ollamaConfig.getModel())
+                .timeout(Duration.ofSeconds(ollamaConfig.getTimeoutSeconds()))
+                .temperature(0.7)
+                .build());
     }
 
     // ===========================================
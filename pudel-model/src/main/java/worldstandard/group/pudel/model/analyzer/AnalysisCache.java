@@ -0,0 +1,209 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.analyzer;
+
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache of model analysis replies.
+ * <p>
+ * Keys are a SHA-256 of the text after Discord syntax preprocessing, lower-cased, so "good morning
+ * <@123>" and "Good morning <@456>" share an entry. Values are the model's raw reply; callers
+ * parse it against their own message, so entities and pattern flags stay per message.
+ * <p>
+ * Entries expire after {@code analysis-cache.ttl-seconds} and the least recently used ones are evicted
+ * past {@code analysis-cache.max-entries}. Loads are single-flight: concurrent misses on one key share
+ * the first caller's model call.
+ */
+final class AnalysisCache {
+
+    private final OllamaConfig.AnalysisCache config;
+    private final DiscordSyntaxProcessor syntaxProcessor;
+
+    private final Map<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    AnalysisCache(OllamaConfig.AnalysisCache config, DiscordSyntaxProcessor syntaxProcessor) {
+        this.config = config;
+        this.syntaxProcessor = syntaxProcessor;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > Math.max(1, config.getMaxEntries())) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Cache key of a message.
+     */
+    String key(String text) {
+        String normalized = syntaxProcessor.preprocessForEmbedding(text).toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get a cached reply, counting a hit if there is one.
+     *
+     * @return the reply, or null if there is none or it expired
+     */
+    String lookup(String key) {
+        String cached = cached(key);
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    private String cached(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.response();
+    }
+
+    /**
+     * Get a reply from the cache, from a load already in flight for the key, or by starting a load.
+     * A null reply (no endpoint, unparsable) is handed to the callers waiting on it but not cached.
+     *
+     * @param loader starts the model call; only the first caller's is used
+     * @return the reply, or null if the load produced none
+     */
+    CompletableFuture<String> getOrLoad(String key, Supplier<CompletableFuture<String>> loader) {
+        String cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> promise = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = loading.putIfAbsent(key, promise);
+        if (inFlight != null) {
+            shared.increment();
+            return inFlight;
+        }
+        misses.increment();
+
+        // Started outside the map so that a loader completing at once cannot re-enter it
+        CompletableFuture<String> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((response, error) -> {
+            if (error == null && response != null) {
+                put(key, response);
+            }
+            loading.remove(key, promise);
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(response);
+            }
+        });
+        return promise;
+    }
+
+    void put(String key, String response) {
+        if (response == null) {
+            return;
+        }
+        long ttl = TimeUnit.SECONDS.toNanos(Math.max(1, config.getTtlSeconds()));
+        entries.put(key, new Entry(response, System.nanoTime() + ttl));
+    }
+
+    /**
+     * Drop expired entries.
+     */
+    void evictExpired() {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getSharedCount() {
+        return shared.sum();
+    }
+
+    Map<String, Object> getStats() {
+        long hitCount = hits.sum() + shared.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("shared", shared.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("loading", loading.size());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+
+    private record Entry(String response, long expiresAt) {
+    }
+}
@@ -15,16 +15,28 @@
 package worldstandard.group.pudel.model.analyzer;
 
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.embedding.DiscordSyntaxProcessor;
+import worldstandard.group.pudel.model.health.OllamaHealthMonitor;
+import worldstandard.group.pudel.model.routing.OllamaEndpoint;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler.Priority;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,24 +52,49 @@ import java.util.regex.Pattern;
  * - Keyword extraction
  * <p>
  * Uses Ollama for intelligent analysis when available,
- * falls back to pattern-based analysis otherwise.
+ * falls back to pattern-based analysis otherwise (including while every endpoint's circuit is open).
+ * <p>
+ * Passive analysis is micro-batched: messages are collected for up to
+ * {@code analysis-batch.max-delay-millis} and analyzed {@code analysis-batch.max-size} at a time in
+ * one numbered multi-message prompt, so a busy guild costs one model call per batch instead of one per message.
+ * <p>
+ * Model replies are cached by normalized text ({@link AnalysisCache}), and concurrent analyses of the
+ * same text share one model call.
  */
 @Service
 public class TextAnalyzerService {
 
     private static final Logger logger = LoggerFactory.getLogger(TextAnalyzerService.class);
 
+    // Values of the "path" tag on analysis metrics
+    private static final String PATH_CHATBOT = "chatbot";
+    private static final String PATH_PASSIVE = "passive";
+
     private final OllamaConfig ollamaConfig;
-    private OllamaChatModel analysisModel;
+    private final MeterRegistry meterRegistry;
+    private final LlmScheduler scheduler;
+    private final OllamaEndpointPool pool;
+    private final AnalysisCache analysisCache;
+    // One client per endpoint, built on first use
+    private final ConcurrentHashMap<OllamaEndpoint, OllamaChatModel> analysisModels = new ConcurrentHashMap<>();
+    private String analysisModelName = "none";
     private volatile boolean modelAvailable = false;
 
-    // Dedicated executor for LLM calls - isolated from JDA event threads
-    // This prevents Discord heartbeat interruptions from killing LLM requests
-    private final ExecutorService llmExecutor = Executors.newFixedThreadPool(2, r -> {
-        Thread t = new Thread(r, "TextAnalyzer-LLM");
-        t.setDaemon(true);
-        return t;
-    });
+    // Runs async analysis off JDA event threads. Model calls themselves are queued and
+    // bounded by LlmScheduler, so this only needs a cheap thread per waiting request
+    private final ExecutorService llmExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("TextAnalyzer-LLM-", 0).factory());
+
+    // Passive messages waiting for a batch (guarded by itself), and the thread that sends batches
+    private final ArrayDeque<PendingAnalysis> pendingBatch = new ArrayDeque<>();
+    private final ScheduledExecutorService batchFlusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-analysis-batch").daemon().factory());
+
+    // One "[n]" header per message block in a batched reply
+    private static final Pattern BATCH_BLOCK = Pattern.compile("(?m)^\\s*\\[(\\d+)]");
+    // "[n]" markers and line breaks in message text, neutralized before it goes into a batch prompt
+    private static final Pattern BATCH_MARKER = Pattern.compile("\\[\\s*(\\d+)\\s*]");
+    private static final Pattern LINE_BREAKS = Pattern.compile("\\s*\\R\\s*");
 
     // Discord entity patterns
     private static final Pattern USER_MENTION = Pattern.compile("<@!?(\\d+)>");
@@ -98,34 +135,54 @@ public class TextAnalyzerService {
             "bug", "crash", "fix", "wtf", ":(", "bruh"
     );
 
-    public TextAnalyzerService(OllamaConfig ollamaConfig) {
+    public TextAnalyzerService(OllamaConfig ollamaConfig, MeterRegistry meterRegistry, LlmScheduler scheduler,
+                               OllamaEndpointPool pool, DiscordSyntaxProcessor syntaxProcessor) {
         this.ollamaConfig = ollamaConfig;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = scheduler;
+        this.pool = pool;
+        this.analysisCache = new AnalysisCache(ollamaConfig.getAnalysisCache(), syntaxProcessor);
+
+        Gauge.builder("pudel.analysis.batch.pending", this, TextAnalyzerService::getPendingBatchCount)
+                .register(meterRegistry);
+        Gauge.builder("pudel.analysis.cache.size", analysisCache, AnalysisCache::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("pudel.analysis.cache.requests", analysisCache, AnalysisCache::getHitCount)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("pudel.analysis.cache.requests", analysisCache, AnalysisCache::getSharedCount)
+                .tag("result", "shared")
+                .register(meterRegistry);
+        FunctionCounter.builder("pudel.analysis.cache.requests", analysisCache, AnalysisCache::getMissCount)
+                .tag("result", "miss")
+                .register(meterRegistry);
     }
 
     @PostConstruct
     public void initialize() {
+        batchFlusher.scheduleWithFixedDelay(analysisCache::evictExpired, 60, 60, TimeUnit.SECONDS);
+
         try {
             if (ollamaConfig.isEnabled()) {
                 // Use a smaller, faster model for analysis if available
-                String analysisModelName = ollamaConfig.getAnalysisModel() != null
+                analysisModelName = ollamaConfig.getAnalysisModel() != null
                         ? ollamaConfig.getAnalysisModel()
                         : ollamaConfig.getModel();
 
-                this.analysisModel = OllamaChatModel.builder()
-                        .baseUrl(ollamaConfig.getBaseUrl())
-                        .modelName(analysisModelName)
-                        .timeout(Duration.ofSeconds(300)) // Quick timeout for analysis
-                        .temperature(0.1) // Low temperature for consistent analysis
-                        .build();
-
-                // Test connection
+                // Test connection. If the servers themselves are down, the circuit breakers gate
+                // analysis until one is back instead of disabling it for good
+                if (!pool.isAvailable(analysisModelName)) {
+                    modelAvailable = true;
+                    logger.warn("Ollama is not reachable yet; text analyzer will use {} once it is", analysisModelName);
+                    return;
+                }
                 try {
-                    String testResponse = analysisModel.chat("test");
+                    String testResponse = pool.call(analysisModelName, "analysis", endpoint -> modelFor(endpoint).chat("test"));
                     modelAvailable = testResponse != null && !testResponse.isEmpty();
                     logger.info("LangChain4j text analyzer initialized with model: {}", analysisModelName);
                 } catch (Exception e) {
+                    modelAvailable = OllamaHealthMonitor.isBackendFailure(e);
                     logger.warn("LangChain4j analysis model not available, using pattern-based fallback: {}", e.getMessage());
-                    modelAvailable = false;
                 }
             }
         } catch (Exception e) {
@@ -136,6 +193,17 @@ public class TextAnalyzerService {
 
     @PreDestroy
     public void shutdown() {
+        batchFlusher.shutdownNow();
+        // Nothing will send the waiting messages now
+        List<PendingAnalysis> waiting;
+        synchronized (pendingBatch) {
+            waiting = new ArrayList<>(pendingBatch);
+            pendingBatch.clear();
+        }
+        for (PendingAnalysis pending : waiting) {
+            pending.response().complete(null);
+        }
+
         llmExecutor.shutdown();
         try {
             if (!llmExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -172,7 +240,10 @@ public class TextAnalyzerService {
      * @return A CompletableFuture that completes with the analysis result
      */
     public CompletableFuture<TextAnalysis> analyzeAsync(String text) {
-        return CompletableFuture.supplyAsync(() -> analyze(text, false), llmExecutor)
+        if (ollamaConfig.getAnalysisBatch().isEnabled()) {
+            return analyzeBatched(text);
+        }
+        return CompletableFuture.supplyAsync(() -> analyze(text, false, PATH_PASSIVE), llmExecutor)
                 .exceptionally(e -> {
                     logger.debug("Async analysis failed, returning pattern-based result: {}", e.getMessage());
                     return analyze(text, true);
@@ -186,6 +257,13 @@ public class TextAnalyzerService {
      * @param skipLLM If true, skip LLM analysis and use only fast pattern-based analysis
      */
     public TextAnalysis analyze(String text, boolean skipLLM) {
+        return analyze(text, skipLLM, PATH_CHATBOT);
+    }
+
+    /**
+     * @param path the pipeline path for metrics ("chatbot" or "passive")
+     */
+    private TextAnalysis analyze(String text, boolean skipLLM, String path) {
         if (text == null || text.isBlank()) {
             return TextAnalysis.empty();
         }
@@ -202,7 +280,7 @@ public class TextAnalyzerService {
         // Try LLM analysis for intent/sentiment (if available, not skipped, and message is substantial)
         if (!skipLLM && modelAvailable && text.length() > 10 && !isCommand) {
             try {
-                return analyzeWithLLM(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
+                return analyzeWithLLM(text, path, entities, isQuestion, isCommand, isGreeting, isFarewell);
             } catch (Exception e) {
                 logger.debug("LLM analysis failed, using fallback: {}", e.getMessage());
             }
@@ -214,9 +292,11 @@ public class TextAnalyzerService {
 
     /**
      * Analyze using Ollama via LangChain4j.
-     * Runs on a dedicated executor to avoid JDA heartbeat interruptions.
+     * The call is queued in the {@link LlmScheduler} behind interactive replies and runs on its
+     * worker threads, so JDA heartbeat interruptions of the caller do not kill it.
      */
     private TextAnalysis analyzeWithLLM(String text,
+                                         String path,
                                          Map<String, List<String>> entities,
                                          boolean isQuestion,
                                          boolean isCommand,
@@ -224,12 +304,35 @@ public class TextAnalyzerService {
                                          boolean isFarewell) {
 
         String prompt = buildAnalysisPrompt(text);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+
+        String cacheKey = analysisCache.isEnabled() ? analysisCache.key(text) : null;
+        String cached = cacheKey != null ? analysisCache.lookup(cacheKey) : null;
+        if (cached != null) {
+            sample.stop(meterRegistry.timer("pudel.analysis.llm",
+                    "path", path, "model", analysisModelName, "outcome", "cached"));
+            return parseAnalysisResponse(cached, entities, isQuestion, isCommand, isGreeting, isFarewell);
+        }
+
+        // Fail fast while Ollama is down instead of queueing behind timeouts
+        if (!pool.isAvailable(analysisModelName)) {
+            sample.stop(meterRegistry.timer("pudel.analysis.llm",
+                    "path", path, "model", analysisModelName, "outcome", "circuit_open"));
+            return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
+        }
 
         try {
-            // Run LLM call on dedicated executor to protect from JDA heartbeat interruptions
-            Future<String> futureResult = CompletableFuture
-                    .supplyAsync(() -> analysisModel.chat(prompt), llmExecutor)
+            // Passive analysis yields to everything else; reply-path analysis only to replies and agents
+            Priority priority = PATH_PASSIVE.equals(path) ? Priority.PASSIVE : Priority.ANALYSIS;
+            // The endpoint is chosen when the call leaves the queue, by the load at that moment.
+            // Concurrent analyses of the same text wait on the first one's call
+            Supplier<CompletableFuture<String>> load = () -> scheduler
+                    .submit(priority, analysisModelName, () -> callModel(prompt))
                     .orTimeout(300, TimeUnit.SECONDS);
+            CompletableFuture<String> futureResult = cacheKey != null
+                    ? analysisCache.getOrLoad(cacheKey, load)
+                    : load.get();
 
             // Wait for result with timeout - if JDA interrupts us, the LLM call continues
             String result;
@@ -237,24 +340,303 @@ public class TextAnalyzerService {
                 result = futureResult.get(300, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 // JDA heartbeat interrupted us, but LLM call continues in background
-                // Return pattern-based result for now, LLM result will be lost
+                // Return pattern-based result for now; the LLM result only fills the cache
+                outcome = "interrupted";
                 logger.debug("LLM analysis interrupted by heartbeat, using pattern fallback");
                 Thread.currentThread().interrupt(); // Restore interrupt flag
                 return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
             } catch (TimeoutException e) {
+                outcome = "timeout";
                 logger.debug("LLM analysis timed out");
-                futureResult.cancel(false);
+                if (cacheKey == null) {
+                    futureResult.cancel(false);
+                }
                 return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
             } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    outcome = "rejected";
+                    logger.debug("LLM analysis queue full, using pattern fallback");
+                    return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
+                }
+                outcome = "error";
                 logger.debug("LLM analysis execution error: {}", e.getCause().getMessage());
                 return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
             }
 
+            if (result == null) {
+                return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
+            }
             return parseAnalysisResponse(result, entities, isQuestion, isCommand, isGreeting, isFarewell);
         } catch (Exception e) {
+            outcome = "error";
             logger.debug("LLM analysis error: {}", e.getMessage());
             return analyzeWithPatterns(text, entities, isQuestion, isCommand, isGreeting, isFarewell);
+        } finally {
+            sample.stop(meterRegistry.timer("pudel.analysis.llm",
+                    "path", path, "model", analysisModelName, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Queue a passive message for the next batch. Messages the model would not analyze
+     * on their own are answered by patterns right away.
+     */
+    private CompletableFuture<TextAnalysis> analyzeBatched(String text) {
+        if (text == null || text.isBlank()) {
+            return CompletableFuture.completedFuture(TextAnalysis.empty());
         }
+        PendingAnalysis pending = new PendingAnalysis(text, extractDiscordEntities(text),
+                QUESTION_PATTERN.matcher(text).find(), COMMAND_PATTERN.matcher(text).matches(),
+                GREETING_PATTERN.matcher(text).find(), FAREWELL_PATTERN.matcher(text).find(),
+                new CompletableFuture<>());
+        if (!modelAvailable || text.length() <= 10 || pending.isCommand()) {
+            return CompletableFuture.completedFuture(patternAnalysis(pending));
+        }
+
+        String cacheKey = analysisCache.isEnabled() ? analysisCache.key(text) : null;
+        String cached = cacheKey != null ? analysisCache.lookup(cacheKey) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(toAnalysis(cached, pending));
+        }
+        if (!pool.isAvailable(analysisModelName)) {
+            recordBatchOutcome(1, "circuit_open");
+            return CompletableFuture.completedFuture(patternAnalysis(pending));
+        }
+
+        // An identical message already waiting or in flight answers this one too
+        CompletableFuture<String> response = cacheKey != null
+                ? analysisCache.getOrLoad(cacheKey, () -> enqueueBatched(pending))
+                : enqueueBatched(pending);
+        return response.handle((reply, _) -> toAnalysis(reply, pending));
+    }
+
+    /**
+     * Add a message to the batch buffer and make sure a flush is coming.
+     *
+     * @return the message's block of the batched reply, or null if it got none
+     */
+    private CompletableFuture<String> enqueueBatched(PendingAnalysis pending) {
+        OllamaConfig.AnalysisBatch batch = ollamaConfig.getAnalysisBatch();
+        int size;
+        synchronized (pendingBatch) {
+            if (pendingBatch.size() >= Math.max(1, batch.getMaxPending())) {
+                size = -1;
+            } else {
+                pendingBatch.addLast(pending);
+                size = pendingBatch.size();
+            }
+        }
+        if (size < 0) {
+            recordBatchOutcome(1, "rejected");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            if (size == 1) {
+                // The first message of a batch starts its clock
+                batchFlusher.schedule(this::flushBatches, Math.max(0, batch.getMaxDelayMillis()), TimeUnit.MILLISECONDS);
+            }
+            if (size % Math.max(1, batch.getMaxSize()) == 0) {
+                // A full batch does not need to wait
+                batchFlusher.execute(this::flushBatches);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down; shutdown() answers whatever is still queued
+        }
+        return pending.response();
+    }
+
+    /**
+     * Send everything waiting, {@code max-size} messages per model call.
+     */
+    private void flushBatches() {
+        int maxSize = Math.max(1, ollamaConfig.getAnalysisBatch().getMaxSize());
+        while (true) {
+            List<PendingAnalysis> batch = new ArrayList<>(maxSize);
+            synchronized (pendingBatch) {
+                while (batch.size() < maxSize && !pendingBatch.isEmpty()) {
+                    batch.add(pendingBatch.pollFirst());
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            sendBatch(batch);
+        }
+    }
+
+    /**
+     * Analyze a batch in one passive-priority model call and complete each message's future
+     * with its block of the reply, or null for messages the reply does not cover.
+     */
+    private void sendBatch(List<PendingAnalysis> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        DistributionSummary.builder("pudel.analysis.batch.size")
+                .tag("model", analysisModelName)
+                .register(meterRegistry)
+                .record(batch.size());
+
+        String prompt = buildBatchPrompt(batch);
+        scheduler.submit(Priority.PASSIVE, analysisModelName, () -> callModel(prompt))
+                .orTimeout(300, TimeUnit.SECONDS)
+                .whenComplete((response, error) -> {
+                    String outcome;
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        outcome = cause instanceof RejectedExecutionException ? "rejected"
+                                : cause instanceof TimeoutException ? "timeout" : "error";
+                        logger.debug("Batched LLM analysis of {} message(s) failed, using pattern fallback: {}",
+                                batch.size(), cause.getMessage());
+                    } else {
+                        outcome = response != null ? "success" : "circuit_open";
+                    }
+                    sample.stop(meterRegistry.timer("pudel.analysis.llm",
+                            "path", PATH_PASSIVE, "model", analysisModelName, "outcome", outcome));
+
+                    Map<Integer, String> blocks = response != null ? splitBatchResponse(response) : Map.of();
+                    int parsed = 0;
+                    for (int i = 0; i < batch.size(); i++) {
+                        String block = blocks.get(i + 1);
+                        if (block != null && block.contains("INTENT:")) {
+                            parsed++;
+                            batch.get(i).response().complete(block.strip());
+                        } else {
+                            batch.get(i).response().complete(null);
+                        }
+                    }
+                    if (response != null && parsed < batch.size()) {
+                        recordBatchOutcome(batch.size() - parsed, "unparsed");
+                    }
+                });
+    }
+
+    /**
+     * Build one prompt that analyzes every message of a batch, asking for a numbered block each.
+     */
+    private String buildBatchPrompt(List<PendingAnalysis> batch) {
+        StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            messages.append('[').append(i + 1).append("] \"")
+                    .append(sanitizeForBatch(batch.get(i).text()))
+                    .append("\"\n");
+        }
+        return """
+                Analyze each numbered Discord message briefly. For every message, reply with its number
+                on its own line followed by this exact format, and nothing else:
+                [n]
+                INTENT: greeting|farewell|question|help|thanks|chat|information|command
+                SENTIMENT: positive|neutral|negative
+                LANGUAGE: eng|tha|jpn|other
+                KEYWORDS: word1,word2,word3
+
+                Messages:
+                %s""".formatted(messages);
+    }
+
+    /**
+     * Keep a message on its own line of the batch prompt: line breaks are collapsed, {@code [n]}
+     * markers become {@code (n)} and double quotes become single ones, so one message cannot
+     * start another message's block or answer in its place.
+     */
+    private static String sanitizeForBatch(String text) {
+        String clipped = text.length() > 200 ? text.substring(0, 200) : text;
+        String flat = LINE_BREAKS.matcher(clipped).replaceAll(" ");
+        return BATCH_MARKER.matcher(flat).replaceAll("($1)").replace('"', '\'');
+    }
+
+    /**
+     * Split a batched reply into its numbered blocks.
+     *
+     * @return block text keyed by message number
+     */
+    private static Map<Integer, String> splitBatchResponse(String response) {
+        Map<Integer, String> blocks = new HashMap<>();
+        Matcher matcher = BATCH_BLOCK.matcher(response);
+        int number = -1;
+        int start = 0;
+        while (matcher.find()) {
+            if (number > 0) {
+                blocks.putIfAbsent(number, response.substring(start, matcher.start()));
+            }
+            number = Integer.parseInt(matcher.group(1));
+            start = matcher.end();
+        }
+        if (number > 0) {
+            blocks.putIfAbsent(number, response.substring(start));
+        }
+        return blocks;
+    }
+
+    /**
+     * Analysis of a message from its reply block, or by patterns if there is none.
+     */
+    private TextAnalysis toAnalysis(String reply, PendingAnalysis pending) {
+        if (reply == null) {
+            return patternAnalysis(pending);
+        }
+        return parseAnalysisResponse(reply, pending.entities(),
+                pending.isQuestion(), pending.isCommand(), pending.isGreeting(), pending.isFarewell());
+    }
+
+    private TextAnalysis patternAnalysis(PendingAnalysis pending) {
+        return analyzeWithPatterns(pending.text(), pending.entities(),
+                pending.isQuestion(), pending.isCommand(), pending.isGreeting(), pending.isFarewell());
+    }
+
+    /**
+     * Count passive messages that did not get a model analysis from batching, by reason.
+     */
+    private void recordBatchOutcome(int messages, String outcome) {
+        meterRegistry.counter("pudel.analysis.batch.fallback", "model", analysisModelName, "outcome", outcome)
+                .increment(messages);
+    }
+
+    /**
+     * Get analysis cache statistics.
+     *
+     * @return map of cache size, hit, miss and shared-load counts and the hit rate
+     */
+    public Map<String, Object> getCacheStats() {
+        return analysisCache.getStats();
+    }
+
+    /**
+     * Get the number of passive messages waiting for a batch.
+     */
+    public int getPendingBatchCount() {
+        synchronized (pendingBatch) {
+            return pendingBatch.size();
+        }
+    }
+
+    /**
+     * A passive message waiting for its batch, with what patterns already found.
+     */
+    private record PendingAnalysis(String text,
+                                   Map<String, List<String>> entities,
+                                   boolean isQuestion,
+                                   boolean isCommand,
+                                   boolean isGreeting,
+                                   boolean isFarewell,
+                                   CompletableFuture<String> response) {
+    }
+
+    /**
+     * Call the analysis model on an endpoint from the pool, failing over to another endpoint if it fails.
+     *
+     * @return the model's reply, or null if no endpoint can take the call
+     */
+    private String callModel(String prompt) {
+        return pool.call(analysisModelName, "analysis", endpoint -> modelFor(endpoint).chat(prompt));
+    }
+
+    private OllamaChatModel modelFor(OllamaEndpoint endpoint) {
+        return analysisModels.computeIfAbsent(endpoint, _ -> OllamaChatModel.builder()
+                .baseUrl(endpoint.getUrl())
+                .modelName(analysisModelName)
+                .timeout(Duration.ofSeconds(300)) // Quick timeout for analysis
+                .temperature(0.1) // Low temperature for consistent analysis
+                .build());
     }
 
     /**
@@ -508,10 +890,11 @@ public class TextAnalyzerService {
     }
 
     /**
-     * Check if the analyzer is using LLM-powered analysis.
+     * Check if the analyzer is using LLM-powered analysis, i.e. the model works and some endpoint
+     * serving it has a circuit that is not open.
      */
     public boolean isLLMAvailable() {
-        return modelAvailable;
+        return modelAvailable && pool.isAvailable(analysisModelName);
     }
 }
 
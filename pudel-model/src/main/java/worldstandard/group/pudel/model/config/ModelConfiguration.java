@@ -15,7 +15,6 @@
 package worldstandard.group.pudel.model.config;
 
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -25,22 +24,23 @@ import java.time.Duration;
 
 /**
  * Spring configuration for the pudel-model module.
- * Sets up WebClient for Ollama HTTP calls.
+ * Sets up WebClients for Ollama HTTP calls, one per endpoint.
  */
 @Configuration
 @EnableConfigurationProperties({OllamaConfig.class})
 public class ModelConfiguration {
 
     /**
-     * WebClient configured for Ollama API calls.
+     * WebClient configured for Ollama API calls to one endpoint.
+     *
+     * @param baseUrl the endpoint's base URL
      */
-    @Bean("ollamaWebClient")
-    public WebClient ollamaWebClient(OllamaConfig config) {
+    public static WebClient ollamaWebClient(String baseUrl, OllamaConfig config) {
         HttpClient httpClient = HttpClient.create()
                 .responseTimeout(Duration.ofSeconds(config.getTimeoutSeconds()));
 
         return WebClient.builder()
-                .baseUrl(config.getBaseUrl())
+                .baseUrl(baseUrl)
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024)) // 16MB
                 .build();
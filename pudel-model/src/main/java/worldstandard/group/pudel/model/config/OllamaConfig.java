@@ -16,6 +16,11 @@ package worldstandard.group.pudel.model.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration properties for Ollama local LLM.
  * <p>
@@ -32,10 +37,20 @@ public class OllamaConfig {
     private boolean enabled = true;
 
     /**
-     * Ollama server base URL.
+     * Ollama server base URL. Used as the only endpoint when {@link #endpoints} is empty.
      */
     private String baseUrl = "http://localhost:11434";
 
+    /**
+     * Ollama servers to spread requests over, each with the models it serves and a weight.
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    /**
+     * Routing of requests across {@link #endpoints}.
+     */
+    private Routing routing = new Routing();
+
     /**
      * Model to use for chat generation.
      * Recommended: phi-3-mini, gemma-2b, llama3.2 (2-4GB VRAM)
@@ -89,13 +104,18 @@ public class OllamaConfig {
      */
     private int contextWindow = 4096;
 
+    /**
+     * How the context window is shared between system prompt, memories, history and the user message.
+     */
+    private ContextBudget contextBudget = new ContextBudget();
+
     /**
      * Number of retries on failure.
      */
     private int retryCount = 2;
 
     /**
-     * Enable streaming responses (for typing indicator).
+     * Stream chat tokens to callers that accept partial output (progressive Discord replies).
      */
     private boolean streaming = false;
 
@@ -126,6 +146,34 @@ public class OllamaConfig {
      */
     private boolean embeddingPreprocessDiscord = true;
 
+    // ================================
+    // Request Scheduling
+    // ================================
+
+    /**
+     * Priority scheduling of chat, agent and analysis requests.
+     */
+    private Scheduler scheduler = new Scheduler();
+
+    /**
+     * Batching of passive message analysis into multi-message prompts.
+     */
+    private AnalysisBatch analysisBatch = new AnalysisBatch();
+
+    /**
+     * Cache of model analysis replies, keyed by normalized message text.
+     */
+    private AnalysisCache analysisCache = new AnalysisCache();
+
+    // ================================
+    // Backend Health
+    // ================================
+
+    /**
+     * Circuit breaker and background health probes for the Ollama server.
+     */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
     // Getters and Setters
 
     public boolean isEnabled() {
@@ -144,6 +192,34 @@ public class OllamaConfig {
         this.baseUrl = baseUrl;
     }
 
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * The configured endpoints, or a single endpoint serving every model at {@link #baseUrl}.
+     */
+    public List<Endpoint> resolveEndpoints() {
+        if (endpoints == null || endpoints.isEmpty()) {
+            Endpoint single = new Endpoint();
+            single.setUrl(baseUrl);
+            return List.of(single);
+        }
+        return endpoints;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+
     public String getModel() {
         return model;
     }
@@ -216,6 +292,14 @@ public class OllamaConfig {
         this.contextWindow = contextWindow;
     }
 
+    public ContextBudget getContextBudget() {
+        return contextBudget;
+    }
+
+    public void setContextBudget(ContextBudget contextBudget) {
+        this.contextBudget = contextBudget;
+    }
+
     public int getRetryCount() {
         return retryCount;
     }
@@ -263,5 +347,489 @@ public class OllamaConfig {
     public void setEmbeddingPreprocessDiscord(boolean embeddingPreprocessDiscord) {
         this.embeddingPreprocessDiscord = embeddingPreprocessDiscord;
     }
-}
 
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public AnalysisBatch getAnalysisBatch() {
+        return analysisBatch;
+    }
+
+    public void setAnalysisBatch(AnalysisBatch analysisBatch) {
+        this.analysisBatch = analysisBatch;
+    }
+
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * One Ollama server.
+     */
+    public static class Endpoint {
+
+        /**
+         * Server base URL.
+         */
+        private String url;
+
+        /**
+         * Models this server serves. Empty means every model.
+         */
+        private List<String> models = new ArrayList<>();
+
+        /**
+         * Relative capacity; a server of weight 2 is given twice the outstanding requests of weight 1.
+         */
+        private int weight = 1;
+
+        /**
+         * Whether this server serves a model.
+         */
+        public boolean serves(String model) {
+            return models == null || models.isEmpty() || model == null || models.contains(model);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public List<String> getModels() {
+            return models;
+        }
+
+        public void setModels(List<String> models) {
+            this.models = models;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Endpoint routing configuration.
+     * Requests go to the serving endpoint with the fewest outstanding requests per unit of weight,
+     * preferring endpoints that already have the model loaded.
+     */
+    public static class Routing {
+
+        /**
+         * Outstanding requests an endpoint with the model loaded may carry beyond a cold endpoint
+         * before the cold endpoint is chosen and has to load the model.
+         */
+        private int affinityBonus = 2;
+
+        /**
+         * A model counts as loaded on an endpoint for this long after the endpoint last served it,
+         * unless a health probe saw it in {@code /api/ps}. Match keep-alive-duration.
+         */
+        private int warmSeconds = 300;
+
+        public int getAffinityBonus() {
+            return affinityBonus;
+        }
+
+        public void setAffinityBonus(int affinityBonus) {
+            this.affinityBonus = affinityBonus;
+        }
+
+        public int getWarmSeconds() {
+            return warmSeconds;
+        }
+
+        public void setWarmSeconds(int warmSeconds) {
+            this.warmSeconds = warmSeconds;
+        }
+    }
+
+    /**
+     * Token budget for chat prompts.
+     */
+    public static class ContextBudget {
+
+        /**
+         * Fit chat prompts into {@code context-window}, less {@code max-tokens} for the reply.
+         * When disabled, every history turn and memory is sent as is.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Share of the window kept free because token counts are estimated, not tokenized.
+         */
+        private int headroomPercent = 10;
+
+        /**
+         * Share of the space left after the system prompt and user message that memories may use.
+         * History gets the rest, including whatever memories leave unused.
+         */
+        private int memoryPercent = 25;
+
+        /**
+         * Longest a single history message or memory may be, as a share of its section's budget.
+         * Longer ones are cut short instead of crowding out other turns.
+         */
+        private int maxItemPercent = 25;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getHeadroomPercent() {
+            return headroomPercent;
+        }
+
+        public void setHeadroomPercent(int headroomPercent) {
+            this.headroomPercent = headroomPercent;
+        }
+
+        public int getMemoryPercent() {
+            return memoryPercent;
+        }
+
+        public void setMemoryPercent(int memoryPercent) {
+            this.memoryPercent = memoryPercent;
+        }
+
+        public int getMaxItemPercent() {
+            return maxItemPercent;
+        }
+
+        public void setMaxItemPercent(int maxItemPercent) {
+            this.maxItemPercent = maxItemPercent;
+        }
+    }
+
+    /**
+     * Passive analysis batching. Messages that did not address the bot are collected for up to
+     * {@link #maxDelayMillis} and analyzed {@link #maxSize} at a time in one model call.
+     */
+    public static class AnalysisBatch {
+
+        /**
+         * Batch passive analysis. When disabled, every message is its own model call.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Messages per model call.
+         */
+        private int maxSize = 8;
+
+        /**
+         * Longest a message waits for its batch to fill before the batch is sent anyway.
+         */
+        private int maxDelayMillis = 500;
+
+        /**
+         * Messages waiting for a batch at most; more fall back to pattern-based analysis.
+         */
+        private int maxPending = 512;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxDelayMillis() {
+            return maxDelayMillis;
+        }
+
+        public void setMaxDelayMillis(int maxDelayMillis) {
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    /**
+     * Analysis reply cache. Repeated phrases ("lol", "good morning everyone") are analyzed by the
+     * model once per {@link #ttlSeconds}.
+     */
+    public static class AnalysisCache {
+
+        /**
+         * Cache analysis replies and share concurrent analyses of the same text.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Cached texts at most; the least recently used are evicted.
+         */
+        private int maxEntries = 10_000;
+
+        /**
+         * How long a cached analysis is used.
+         */
+        private int ttlSeconds = 3600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    /**
+     * LLM request scheduler configuration.
+     * Requests beyond a model's parallel limit wait in a priority queue.
+     */
+    public static class Scheduler {
+
+        /**
+         * Concurrent requests per model on each endpoint serving it. Match Ollama's OLLAMA_NUM_PARALLEL.
+         */
+        private int maxParallel = 1;
+
+        /**
+         * Per-model overrides of {@link #maxParallel}, keyed by model name.
+         */
+        private Map<String, Integer> modelParallel = new HashMap<>();
+
+        /**
+         * Each priority step is worth this many seconds of waiting, so old low-priority
+         * requests eventually run ahead of new higher-priority ones. Interactive requests do not
+         * age and are never overtaken.
+         */
+        private int agingSeconds = 15;
+
+        /**
+         * Maximum waiting passive analysis requests per model; more are rejected.
+         */
+        private int passiveQueueCapacity = 128;
+
+        public int getMaxParallel() {
+            return maxParallel;
+        }
+
+        public void setMaxParallel(int maxParallel) {
+            this.maxParallel = maxParallel;
+        }
+
+        public Map<String, Integer> getModelParallel() {
+            return modelParallel;
+        }
+
+        public void setModelParallel(Map<String, Integer> modelParallel) {
+            this.modelParallel = modelParallel;
+        }
+
+        public int getAgingSeconds() {
+            return agingSeconds;
+        }
+
+        public void setAgingSeconds(int agingSeconds) {
+            this.agingSeconds = agingSeconds;
+        }
+
+        public int getPassiveQueueCapacity() {
+            return passiveQueueCapacity;
+        }
+
+        public void setPassiveQueueCapacity(int passiveQueueCapacity) {
+            this.passiveQueueCapacity = passiveQueueCapacity;
+        }
+    }
+
+    /**
+     * Circuit breaker configuration.
+     * The breaker opens when too many recent calls fail or are slow, fails calls fast while open,
+     * and lets trial calls through (half-open) once the server answers probes again.
+     */
+    public static class CircuitBreaker {
+
+        /**
+         * Enable the circuit breaker. When disabled, calls are always attempted.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of most recent calls considered.
+         */
+        private int windowSize = 20;
+
+        /**
+         * Calls older than this many seconds drop out of the window.
+         */
+        private int windowSeconds = 60;
+
+        /**
+         * Calls needed in the window before the rates are evaluated.
+         */
+        private int minimumCalls = 5;
+
+        /**
+         * Open when this percentage of calls in the window failed.
+         */
+        private int failureRatePercent = 50;
+
+        /**
+         * A successful call taking longer than this counts as slow.
+         */
+        private int slowCallSeconds = 30;
+
+        /**
+         * Open when this percentage of calls in the window was slow.
+         */
+        private int slowCallRatePercent = 80;
+
+        /**
+         * Seconds to fail fast before letting trial calls through, unless a probe succeeds earlier.
+         */
+        private int openSeconds = 30;
+
+        /**
+         * Trial calls allowed while half-open; all must succeed to close again.
+         */
+        private int halfOpenCalls = 1;
+
+        /**
+         * Seconds between background health probes.
+         */
+        private int probeIntervalSeconds = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getFailureRatePercent() {
+            return failureRatePercent;
+        }
+
+        public void setFailureRatePercent(int failureRatePercent) {
+            this.failureRatePercent = failureRatePercent;
+        }
+
+        public int getSlowCallSeconds() {
+            return slowCallSeconds;
+        }
+
+        public void setSlowCallSeconds(int slowCallSeconds) {
+            this.slowCallSeconds = slowCallSeconds;
+        }
+
+        public int getSlowCallRatePercent() {
+            return slowCallRatePercent;
+        }
+
+        public void setSlowCallRatePercent(int slowCallRatePercent) {
+            this.slowCallRatePercent = slowCallRatePercent;
+        }
+
+        public int getOpenSeconds() {
+            return openSeconds;
+        }
+
+        public void setOpenSeconds(int openSeconds) {
+            this.openSeconds = openSeconds;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        public int getProbeIntervalSeconds() {
+            return probeIntervalSeconds;
+        }
+
+        public void setProbeIntervalSeconds(int probeIntervalSeconds) {
+            this.probeIntervalSeconds = probeIntervalSeconds;
+        }
+    }
+}
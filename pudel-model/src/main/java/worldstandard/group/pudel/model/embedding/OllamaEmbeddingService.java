@@ -16,16 +16,17 @@ package worldstandard.group.pudel.model.embedding;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Mono;
 import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.health.CircuitBreaker;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler.Priority;
 
 import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Embedding service using Ollama's embedding API.
@@ -38,17 +39,23 @@ import java.util.concurrent.TimeUnit;
  * - Uses same Ollama server as LLM (no separate model loading)
  * - Supports various embedding models (nomic-embed-text, mxbai-embed-large, etc.)
  * - LRU cache for frequently embedded texts
- * - Batch processing support
+ * - Batch processing support (one request per batch)
+ * - Non-blocking {@link Mono} API, with blocking conveniences on top
  * - Discord syntax preprocessing
+ * - Routed over the {@link OllamaEndpointPool} like chat, failing over between endpoints
+ * - Shares the endpoints' {@link CircuitBreaker}s; initializes late if Ollama was down at startup
+ * - Holds an {@link LlmScheduler} slot on the embedding model per request: analysis priority on the
+ *   reply path, passive priority for background batches
  */
 @Service
 public class OllamaEmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(OllamaEmbeddingService.class);
 
-    private final WebClient webClient;
     private final OllamaConfig config;
     private final DiscordSyntaxProcessor syntaxProcessor;
+    private final OllamaEndpointPool pool;
+    private final LlmScheduler scheduler;
     private volatile boolean initialized = false;
     private volatile int embeddingDimension = 0;
 
@@ -56,12 +63,14 @@ public class OllamaEmbeddingService {
     private final Map<String, float[]> embeddingCache;
     private static final int DEFAULT_CACHE_SIZE = 1000;
 
-    public OllamaEmbeddingService(@Qualifier("ollamaWebClient") WebClient webClient,
-                                   OllamaConfig config,
-                                   DiscordSyntaxProcessor syntaxProcessor) {
-        this.webClient = webClient;
+    public OllamaEmbeddingService(OllamaConfig config,
+                                   DiscordSyntaxProcessor syntaxProcessor,
+                                   OllamaEndpointPool pool,
+                                   LlmScheduler scheduler) {
         this.config = config;
         this.syntaxProcessor = syntaxProcessor;
+        this.pool = pool;
+        this.scheduler = scheduler;
 
         // Initialize LRU cache
         this.embeddingCache = Collections.synchronizedMap(
@@ -84,6 +93,26 @@ public class OllamaEmbeddingService {
             return;
         }
 
+        // Retry once Ollama comes back if it is down now
+        pool.addListener(state -> {
+            if (state != CircuitBreaker.State.OPEN && !initialized) {
+                Thread.ofVirtual().name("pudel-embedding-init").start(this::verifyModel);
+            }
+        });
+        if (!pool.isAvailable(config.getEmbeddingModel())) {
+            logger.warn("Ollama is not reachable yet; embedding service will initialize once it is");
+            return;
+        }
+        verifyModel();
+    }
+
+    /**
+     * Embed a test text to verify that the model is available and learn its dimension.
+     */
+    private synchronized void verifyModel() {
+        if (initialized) {
+            return;
+        }
         try {
             // Test embedding generation to verify model is available
             Optional<float[]> testEmbed = embedDirect("test");
@@ -103,10 +132,12 @@ public class OllamaEmbeddingService {
     }
 
     /**
-     * Check if the service is ready to generate embeddings.
+     * Check if the service is ready to generate embeddings and some endpoint serving the embedding
+     * model has a circuit that is not open.
      */
     public boolean isAvailable() {
-        return initialized && config.isEnabled() && config.isEmbeddingEnabled();
+        return initialized && config.isEnabled() && config.isEmbeddingEnabled()
+                && pool.isAvailable(config.getEmbeddingModel());
     }
 
     /**
@@ -117,8 +148,18 @@ public class OllamaEmbeddingService {
      * @return Embedding vector
      */
     public Optional<float[]> embed(String text) {
+        return Optional.ofNullable(embedReactive(text).toFuture().join());
+    }
+
+    /**
+     * Generate embedding for a single text without blocking.
+     *
+     * @param text The text to embed
+     * @return the embedding vector, or empty if it could not be generated
+     */
+    public Mono<float[]> embedReactive(String text) {
         if (!isAvailable() || text == null || text.isBlank()) {
-            return Optional.empty();
+            return Mono.empty();
         }
 
         // Preprocess Discord syntax for cleaner embeddings
@@ -126,63 +167,143 @@ public class OllamaEmbeddingService {
 
         // Check cache first
         String cacheKey = processed.toLowerCase().trim();
-        if (embeddingCache.containsKey(cacheKey)) {
-            return Optional.of(embeddingCache.get(cacheKey));
+        float[] cached = embeddingCache.get(cacheKey);
+        if (cached != null) {
+            return Mono.just(cached);
         }
 
-        Optional<float[]> result = embedDirect(processed);
-
         // Cache the result
-        result.ifPresent(embedding -> embeddingCache.put(cacheKey, embedding));
-
-        return result;
+        return requestEmbeddings(List.of(processed), Priority.ANALYSIS)
+                .mapNotNull(embeddings -> embeddings.isEmpty() ? null : embeddings.getFirst())
+                .doOnNext(embedding -> embeddingCache.put(cacheKey, embedding));
     }
 
     /**
      * Generate embedding directly without preprocessing.
      */
     private Optional<float[]> embedDirect(String text) {
-        try {
-            EmbedRequest request = new EmbedRequest(config.getEmbeddingModel(), text);
-
-            CompletableFuture<EmbedResponse> future = webClient.post()
-                    .uri("/api/embed")
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(EmbedResponse.class)
-                    .subscribeOn(Schedulers.boundedElastic())
-                    .toFuture();
-
-            EmbedResponse response = future.get(30, TimeUnit.SECONDS);
-
-            if (response != null && response.embeddings() != null && !response.embeddings().isEmpty()) {
-                List<Double> embeddingList = response.embeddings().getFirst();
-                float[] embedding = new float[embeddingList.size()];
-                for (int i = 0; i < embeddingList.size(); i++) {
-                    embedding[i] = embeddingList.get(i).floatValue();
-                }
-                return Optional.of(embedding);
-            }
-        } catch (Exception e) {
-            logger.debug("Error generating embedding: {}", e.getMessage());
-        }
+        return requestEmbeddings(List.of(text), Priority.ANALYSIS)
+                .blockOptional()
+                .filter(embeddings -> !embeddings.isEmpty())
+                .map(List::getFirst);
+    }
 
-        return Optional.empty();
+    /**
+     * Call /api/embed with one or more inputs, holding a scheduler slot on the embedding model.
+     * Ollama returns one vector per input, in order. Completes empty right away while every
+     * endpoint's circuit is open, and when a passive request is rejected by a full queue.
+     */
+    private Mono<List<float[]>> requestEmbeddings(List<String> inputs, Priority priority) {
+        String model = config.getEmbeddingModel();
+        return Mono.defer(() -> {
+                    // Fail fast instead of queueing while every endpoint's circuit is open
+                    if (!pool.isAvailable(model)) {
+                        return Mono.<EmbedResponse>empty();
+                    }
+                    return Mono.usingWhen(
+                            Mono.fromFuture(() -> scheduler.reserve(priority, model)),
+                            _ -> pool.callReactive(model, "embed", endpoint -> endpoint.getWebClient().post()
+                                    .uri("/api/embed")
+                                    .bodyValue(new EmbedRequest(model, inputs))
+                                    .retrieve()
+                                    .bodyToMono(EmbedResponse.class)
+                                    .timeout(Duration.ofSeconds(30))),
+                            permit -> Mono.fromRunnable(permit::close));
+                })
+                .<List<float[]>>mapNotNull(response -> {
+                    if (response.embeddings() == null || response.embeddings().size() != inputs.size()) {
+                        return null;
+                    }
+                    List<float[]> vectors = new ArrayList<>(inputs.size());
+                    for (List<Double> embeddingList : response.embeddings()) {
+                        float[] embedding = new float[embeddingList.size()];
+                        for (int i = 0; i < embeddingList.size(); i++) {
+                            embedding[i] = embeddingList.get(i).floatValue();
+                        }
+                        vectors.add(embedding);
+                    }
+                    return vectors;
+                })
+                .onErrorResume(e -> {
+                    logger.debug("Error generating embedding: {}", e.getMessage());
+                    return Mono.empty();
+                });
     }
 
     /**
      * Generate embeddings for multiple texts (batch processing).
      */
     public List<float[]> embedBatch(List<String> texts) {
+        return embedBatch(texts, Priority.ANALYSIS);
+    }
+
+    /**
+     * Generate embeddings for multiple texts, scheduled at the given priority.
+     *
+     * @param texts    The texts to embed
+     * @param priority the scheduler priority; {@link Priority#PASSIVE} for background work
+     * @return embeddings for the texts that could be embedded, in input order
+     */
+    public List<float[]> embedBatch(List<String> texts, Priority priority) {
+        return embedBatchReactive(texts, priority).toFuture().join();
+    }
+
+    /**
+     * Generate embeddings for multiple texts without blocking.
+     * Uncached texts are sent to Ollama in a single request.
+     *
+     * @param texts The texts to embed
+     * @return embeddings for the texts that could be embedded, in input order
+     */
+    public Mono<List<float[]>> embedBatchReactive(List<String> texts) {
+        return embedBatchReactive(texts, Priority.ANALYSIS);
+    }
+
+    /**
+     * Generate embeddings for multiple texts without blocking, scheduled at the given priority.
+     *
+     * @param texts    The texts to embed
+     * @param priority the scheduler priority
+     * @return embeddings for the texts that could be embedded, in input order
+     */
+    public Mono<List<float[]>> embedBatchReactive(List<String> texts, Priority priority) {
         if (!isAvailable() || texts == null || texts.isEmpty()) {
-            return Collections.emptyList();
+            return Mono.just(Collections.emptyList());
         }
 
-        List<float[]> results = new ArrayList<>();
+        List<String> keys = new ArrayList<>(texts.size());
+        List<float[]> results = new ArrayList<>(texts.size());
+        List<String> missing = new ArrayList<>();
+        List<Integer> missingSlots = new ArrayList<>();
         for (String text : texts) {
-            embed(text).ifPresent(results::add);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            String processed = syntaxProcessor.preprocessForEmbedding(text);
+            String cacheKey = processed.toLowerCase().trim();
+            float[] cached = embeddingCache.get(cacheKey);
+            if (cached == null) {
+                missing.add(processed);
+                missingSlots.add(results.size());
+            }
+            keys.add(cacheKey);
+            results.add(cached);
         }
-        return results;
+
+        if (missing.isEmpty()) {
+            return Mono.just(results);
+        }
+        return requestEmbeddings(missing, priority)
+                .map(vectors -> {
+                    for (int i = 0; i < vectors.size(); i++) {
+                        int slot = missingSlots.get(i);
+                        results.set(slot, vectors.get(i));
+                        embeddingCache.put(keys.get(slot), vectors.get(i));
+                    }
+                    return results;
+                })
+                .defaultIfEmpty(results)
+                .map(list -> list.stream().filter(Objects::nonNull).toList());
     }
 
     /**
@@ -265,7 +386,7 @@ public class OllamaEmbeddingService {
      */
     public record EmbedRequest(
             String model,
-            String input
+            List<String> input
     ) {}
 
     /**
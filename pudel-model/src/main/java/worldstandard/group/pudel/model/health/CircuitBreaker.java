@@ -0,0 +1,365 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.health;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Circuit breaker for one LLM backend.
+ * <p>
+ * While {@link State#CLOSED}, the outcome of every call goes into a rolling window of the last
+ * {@code window-size} calls (dropping calls older than {@code window-seconds}). When the failure
+ * rate or the slow-call rate in the window crosses its threshold, or a health probe fails, the
+ * breaker opens. While {@link State#OPEN}, calls are refused immediately so that callers fall back
+ * without waiting out timeouts and retries. After {@code open-seconds}, or as soon as a probe
+ * succeeds, the breaker goes {@link State#HALF_OPEN} and lets {@code half-open-calls} trial calls
+ * through: if they all succeed it closes, otherwise it opens again.
+ * <p>
+ * Every call that was let through by {@link #tryAcquire(String)} must be reported exactly once, via
+ * {@link #onSuccess(long)}, {@link #onFailure(Throwable)} or {@link #onIgnored()}.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * Breaker states. The ordinal is exported as the state gauge.
+     */
+    public enum State {
+        /** Calls go through and are recorded. */
+        CLOSED,
+        /** A limited number of trial calls go through. */
+        HALF_OPEN,
+        /** Calls are refused. */
+        OPEN;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Thrown into reactive pipelines when a call is refused because the breaker is open.
+     */
+    public static class OpenException extends RejectedExecutionException {
+        public OpenException(String backend) {
+            super("Circuit for " + backend + " is open");
+        }
+    }
+
+    private final String name;
+    private final OllamaConfig.CircuitBreaker config;
+    private final MeterRegistry meterRegistry;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+    // Rolling window, guarded by this
+    private final long[] callTimes;
+    private final byte[] callFlags;
+    private int nextSlot;
+    private int recorded;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    public CircuitBreaker(String name, OllamaConfig.CircuitBreaker config, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        int windowSize = Math.max(1, config.getWindowSize());
+        this.callTimes = new long[windowSize];
+        this.callFlags = new byte[windowSize];
+
+        Gauge.builder("pudel.ollama.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .tag("backend", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ask to make a call. Refused calls are counted per caller.
+     *
+     * @param caller the calling component, used as a metric tag
+     * @return true if the call may proceed and must then be reported
+     */
+    public boolean tryAcquire(String caller) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        Transition transition;
+        boolean permitted;
+        synchronized (this) {
+            transition = expireOpen(System.nanoTime());
+            permitted = switch (state) {
+                case CLOSED -> true;
+                case HALF_OPEN -> {
+                    if (trialsInFlight < Math.max(1, config.getHalfOpenCalls())) {
+                        trialsInFlight++;
+                        yield true;
+                    }
+                    yield false;
+                }
+                case OPEN -> false;
+            };
+        }
+        publish(transition);
+
+        if (!permitted) {
+            meterRegistry.counter("pudel.ollama.circuit.rejected", "backend", name, "caller", caller).increment();
+        }
+        return permitted;
+    }
+
+    /**
+     * Whether a call would currently be let through, without taking a trial slot.
+     */
+    public boolean isCallPermitted() {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        synchronized (this) {
+            return state != State.OPEN || openExpired(System.nanoTime());
+        }
+    }
+
+    /**
+     * Report a successful call.
+     *
+     * @param durationNanos how long the call took; calls over {@code slow-call-seconds} count as slow
+     */
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos > TimeUnit.SECONDS.toNanos(config.getSlowCallSeconds()));
+    }
+
+    /**
+     * Report a successful call whose duration says nothing about backend health,
+     * such as an agent run that waits on tools between model turns.
+     */
+    public void onSuccess() {
+        record(false, false);
+    }
+
+    /**
+     * Report a call that failed because of the backend (connection failure, timeout, server error).
+     *
+     * @param failure the error, logged at debug level
+     */
+    public void onFailure(Throwable failure) {
+        logger.debug("Call to {} failed: {}", name, failure != null ? failure.getMessage() : "unknown");
+        record(true, false);
+    }
+
+    /**
+     * Report a call whose outcome says nothing about backend health (cancelled, or rejected by the
+     * backend as a bad request). Only frees its trial slot.
+     */
+    public void onIgnored() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (state == State.HALF_OPEN && trialsInFlight > 0) {
+                trialsInFlight--;
+            }
+        }
+    }
+
+    /**
+     * Report the result of a background health probe. A failed probe opens the breaker;
+     * a successful one moves an open breaker to half-open without waiting for {@code open-seconds}.
+     *
+     * @param healthy whether the backend answered
+     * @param detail  what the probe saw, for the transition log
+     */
+    public void onProbe(boolean healthy, String detail) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Transition transition = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (!healthy && state != State.OPEN) {
+                transition = open(now, "health probe failed (" + detail + ")");
+            } else if (healthy && state == State.OPEN) {
+                transition = halfOpen("health probe succeeded");
+            }
+        }
+        publish(transition);
+    }
+
+    /**
+     * Register a listener for state changes. Listeners run on the reporting thread, outside the
+     * breaker's lock, and must not block.
+     *
+     * @param listener receives the new state
+     */
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Transition transition = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            switch (state) {
+                case CLOSED -> {
+                    callTimes[nextSlot] = now;
+                    callFlags[nextSlot] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+                    nextSlot = (nextSlot + 1) % callTimes.length;
+                    recorded = Math.min(recorded + 1, callTimes.length);
+                    transition = evaluate(now);
+                }
+                case HALF_OPEN -> {
+                    if (trialsInFlight > 0) {
+                        trialsInFlight--;
+                    }
+                    if (failed || slow) {
+                        transition = open(now, failed ? "trial call failed" : "trial call was slow");
+                    } else if (++trialSuccesses >= Math.max(1, config.getHalfOpenCalls())) {
+                        transition = close("trial calls succeeded");
+                    }
+                }
+                case OPEN -> {
+                    // A call that started before the breaker opened; it changes nothing
+                }
+            }
+        }
+        publish(transition);
+    }
+
+    /**
+     * Open the breaker if the recent failure or slow-call rate is over its threshold.
+     */
+    private Transition evaluate(long now) {
+        long horizon = now - TimeUnit.SECONDS.toNanos(config.getWindowSeconds());
+        int calls = 0;
+        int failures = 0;
+        int slowCalls = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (callTimes[i] - horizon < 0) {
+                continue;
+            }
+            calls++;
+            if ((callFlags[i] & FAILED) != 0) {
+                failures++;
+            }
+            if ((callFlags[i] & SLOW) != 0) {
+                slowCalls++;
+            }
+        }
+        if (calls < Math.max(1, config.getMinimumCalls())) {
+            return null;
+        }
+
+        int failureRate = failures * 100 / calls;
+        if (failureRate >= config.getFailureRatePercent()) {
+            return open(now, "failure rate " + failureRate + "% over the last " + calls + " calls");
+        }
+        int slowRate = slowCalls * 100 / calls;
+        if (slowRate >= config.getSlowCallRatePercent()) {
+            return open(now, "slow call rate " + slowRate + "% over the last " + calls + " calls");
+        }
+        return null;
+    }
+
+    private boolean openExpired(long now) {
+        return now - openedAt >= TimeUnit.SECONDS.toNanos(config.getOpenSeconds());
+    }
+
+    private Transition expireOpen(long now) {
+        if (state == State.OPEN && openExpired(now)) {
+            return halfOpen(config.getOpenSeconds() + "s open period elapsed");
+        }
+        return null;
+    }
+
+    private Transition open(long now, String reason) {
+        openedAt = now;
+        return moveTo(State.OPEN, reason);
+    }
+
+    private Transition halfOpen(String reason) {
+        trialsInFlight = 0;
+        trialSuccesses = 0;
+        return moveTo(State.HALF_OPEN, reason);
+    }
+
+    private Transition close(String reason) {
+        // Start over so that the failures that opened the breaker do not reopen it
+        recorded = 0;
+        nextSlot = 0;
+        return moveTo(State.CLOSED, reason);
+    }
+
+    private Transition moveTo(State next, String reason) {
+        State previous = state;
+        state = next;
+        return new Transition(previous, next, reason);
+    }
+
+    /**
+     * Log, count and announce a transition. Called outside the lock.
+     */
+    private void publish(Transition transition) {
+        if (transition == null || transition.from() == transition.to()) {
+            return;
+        }
+        switch (transition.to()) {
+            case OPEN -> logger.warn("Circuit for {} opened: {}. Failing fast for up to {}s",
+                    name, transition.reason(), config.getOpenSeconds());
+            case HALF_OPEN -> logger.info("Circuit for {} half-open: {}. Letting {} trial call(s) through",
+                    name, transition.reason(), Math.max(1, config.getHalfOpenCalls()));
+            case CLOSED -> logger.info("Circuit for {} closed: {}", name, transition.reason());
+        }
+        meterRegistry.counter("pudel.ollama.circuit.transitions",
+                "backend", name, "from", transition.from().tag(), "to", transition.to().tag()).increment();
+
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(transition.to());
+            } catch (Exception e) {
+                logger.debug("Circuit listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private record Transition(State from, State to, String reason) {
+    }
+}
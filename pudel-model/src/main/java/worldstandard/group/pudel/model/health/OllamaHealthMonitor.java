@@ -0,0 +1,203 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.health;
+
+import dev.langchain4j.exception.HttpException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.handler.timeout.ReadTimeoutException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.ollama.OllamaDto.ListModelsResponse;
+import worldstandard.group.pudel.model.ollama.OllamaDto.ModelInfo;
+import worldstandard.group.pudel.model.routing.OllamaEndpoint;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Live health tracking for the Ollama endpoints.
+ * <p>
+ * Probes every endpoint of the {@link OllamaEndpointPool} in the background every
+ * {@code circuit-breaker.probe-interval-seconds} and reports to its {@link CircuitBreaker}, so that
+ * an outage is noticed without user traffic and a recovery is noticed while the breaker is refusing
+ * calls. A healthy probe also reads {@code /api/ps}, so routing knows which models each endpoint
+ * has loaded.
+ */
+@Service
+public class OllamaHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaHealthMonitor.class);
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final OllamaEndpointPool pool;
+    private final OllamaConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pudel-ollama-probe").daemon().factory());
+
+    public OllamaHealthMonitor(OllamaEndpointPool pool, OllamaConfig config, MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Probe once before dependent services initialize, then keep probing in the background.
+     */
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        probeQuietly();
+        long interval = Math.max(1, config.getCircuitBreaker().getProbeIntervalSeconds());
+        prober.scheduleWithFixedDelay(this::probeQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    /**
+     * Ping every endpoint and report the results to their circuit breakers.
+     *
+     * @return whether any endpoint answered as Ollama
+     */
+    public Mono<Boolean> probe() {
+        if (!config.isEnabled()) {
+            return Mono.just(false);
+        }
+        return Flux.fromIterable(pool.getEndpoints())
+                .flatMap(this::probe)
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    /**
+     * Ping one endpoint and report the result to its circuit breaker.
+     *
+     * @return whether the endpoint answered as Ollama
+     */
+    public Mono<Boolean> probe(OllamaEndpoint endpoint) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            CircuitBreaker breaker = endpoint.getBreaker();
+            return endpoint.getWebClient().get()
+                    .uri("/")
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .timeout(PROBE_TIMEOUT)
+                    .map(response -> {
+                        boolean healthy = response.contains("Ollama");
+                        if (healthy) {
+                            endpoint.setServerVersion(response.trim());
+                        }
+                        breaker.onProbe(healthy, healthy ? "up" : "unexpected response");
+                        return healthy;
+                    })
+                    .onErrorResume(e -> {
+                        logger.debug("Ollama health probe failed at {}: {}", endpoint.getName(), e.getMessage());
+                        breaker.onProbe(false, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                        return Mono.just(false);
+                    })
+                    .doOnNext(healthy -> sample.stop(meterRegistry.timer("pudel.ollama.probe",
+                            "backend", endpoint.getName(), "outcome", healthy ? "up" : "down")))
+                    .flatMap(healthy -> healthy ? readLoadedModels(endpoint).thenReturn(true) : Mono.just(false));
+        });
+    }
+
+    /**
+     * Tell routing which models the endpoint has in memory. Failures leave the previous view.
+     */
+    private Mono<Void> readLoadedModels(OllamaEndpoint endpoint) {
+        return endpoint.getWebClient().get()
+                .uri("/api/ps")
+                .retrieve()
+                .bodyToMono(ListModelsResponse.class)
+                .timeout(PROBE_TIMEOUT)
+                .doOnNext(response -> {
+                    if (response.models() != null) {
+                        endpoint.updateLoadedModels(response.models().stream().map(ModelInfo::name).toList());
+                    }
+                })
+                .onErrorResume(e -> {
+                    logger.debug("Could not read loaded models from {}: {}", endpoint.getName(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void probeQuietly() {
+        try {
+            probe().toFuture().join();
+        } catch (Exception e) {
+            logger.debug("Ollama health probe error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Version string of the first endpoint that answered a probe.
+     */
+    public String getServerVersion() {
+        for (OllamaEndpoint endpoint : pool.getEndpoints()) {
+            if (endpoint.getServerVersion() != null) {
+                return endpoint.getServerVersion();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether an error says the backend is unhealthy (connection failure, timeout, overload or
+     * server error) rather than that the request itself was wrong.
+     */
+    public static boolean isBackendFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof CircuitBreaker.OpenException) {
+                return false;
+            }
+            if (t instanceof IOException || t instanceof TimeoutException || t instanceof ReadTimeoutException) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException wcre) {
+                int status = wcre.getStatusCode().value();
+                return status == 429 || status >= 500;
+            }
+            if (t instanceof HttpException http) {
+                return http.statusCode() == 429 || http.statusCode() >= 500;
+            }
+            // LangChain4j wraps client timeouts in its own exception types
+            if (t.getClass().getSimpleName().contains("Timeout")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -14,24 +14,37 @@
  */
 package worldstandard.group.pudel.model.ollama;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.netty.handler.timeout.ReadTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.health.CircuitBreaker;
+import worldstandard.group.pudel.model.health.OllamaHealthMonitor;
 import worldstandard.group.pudel.model.ollama.OllamaDto.*;
+import worldstandard.group.pudel.model.routing.OllamaEndpoint;
+import worldstandard.group.pudel.model.routing.OllamaEndpointPool;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler;
+import worldstandard.group.pudel.model.scheduler.LlmScheduler.Priority;
 
 import java.io.IOException;
 import java.net.ConnectException;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * HTTP client for communicating with Ollama local LLM server.
@@ -41,380 +54,539 @@ import java.util.concurrent.TimeoutException;
  * <p>
  * Key features:
  * - Chat completion with conversation history
+ * - Streamed chat completion with partial output callbacks
  * - Generate endpoint for simple prompts
  * - Embedding generation (optional, prefer local ONNX for performance)
- * - Health monitoring and model management
+ * - Health monitoring and model management, behind per-endpoint {@link CircuitBreaker}s
+ * - Non-blocking {@link Mono} API, with blocking conveniences on top
+ * - Routing across the {@link OllamaEndpointPool}, with failover to another endpoint
  * - Automatic retry with backoff
+ * - Interactive priority in the shared {@link LlmScheduler}
  */
 @Service
 public class OllamaClient {
 
     private static final Logger logger = LoggerFactory.getLogger(OllamaClient.class);
 
-    private final WebClient webClient;
+    // Closed reasoning blocks, hidden from partial output as soon as they end
+    private static final Pattern CLOSED_THINKING = Pattern.compile(
+            "(?s)<(think|reasoning|thought)>.*?</\\1>");
+
     private final OllamaConfig config;
-    private volatile boolean serverAvailable = false;
-    private volatile String serverVersion = null;
+    private final MeterRegistry meterRegistry;
+    private final LlmScheduler scheduler;
+    private final OllamaHealthMonitor healthMonitor;
+    private final OllamaEndpointPool pool;
 
-    public OllamaClient(@Qualifier("ollamaWebClient") WebClient webClient, OllamaConfig config) {
-        this.webClient = webClient;
+    public OllamaClient(OllamaConfig config, MeterRegistry meterRegistry, LlmScheduler scheduler,
+                        OllamaHealthMonitor healthMonitor, OllamaEndpointPool pool) {
         this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = scheduler;
+        this.healthMonitor = healthMonitor;
+        this.pool = pool;
 
-        // Check server availability on startup
+        // Log the server's models on startup
         checkServerHealth();
     }
 
     /**
-     * Check if Ollama server is available and reachable.
+     * Check if Ollama is available, i.e. enabled and some endpoint serving the chat model has a closed
+     * or half-open circuit. Availability follows the background health probes and recent call outcomes.
      */
     public boolean isAvailable() {
-        return serverAvailable && config.isEnabled();
+        return config.isEnabled() && pool.isAvailable(config.getModel());
     }
 
     /**
      * Check server health and update availability status.
+     * Blocking convenience over {@link #checkServerHealthReactive()}.
      */
     public HealthStatus checkServerHealth() {
-        if (!config.isEnabled()) {
-            return new HealthStatus(false, null, Collections.emptyList());
-        }
-
-        try {
-            // Ping the server
-            String response = webClient.get()
-                    .uri("/")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(5))
-                    .block();
-
-            if (response != null && response.contains("Ollama")) {
-                serverAvailable = true;
-                serverVersion = response.trim();
-
-                // Get loaded models
-                List<String> models = listModels().stream()
-                        .map(ModelInfo::name)
-                        .toList();
-
-                logger.info("Ollama server available at {}, models: {}",
-                        config.getBaseUrl(), models);
+        return checkServerHealthReactive().toFuture().join();
+    }
 
-                return new HealthStatus(true, serverVersion, models);
-            }
-        } catch (Exception e) {
-            logger.warn("Ollama server not available at {}: {}",
-                    config.getBaseUrl(), e.getMessage());
-            serverAvailable = false;
+    /**
+     * Ping the server and list its models without blocking, updating availability status.
+     */
+    public Mono<HealthStatus> checkServerHealthReactive() {
+        if (!config.isEnabled()) {
+            return Mono.just(new HealthStatus(false, null, Collections.emptyList()));
         }
 
-        return new HealthStatus(false, null, Collections.emptyList());
+        // The probe also feeds the circuit breaker
+        return healthMonitor.probe()
+                .filter(Boolean::booleanValue)
+                .flatMap(_ -> listModelsReactive().map(models -> {
+                    List<String> names = models.stream().map(ModelInfo::name).toList();
+                    logger.info("Ollama server available at {}, models: {}", pool.getEndpoints(), names);
+                    return new HealthStatus(true, healthMonitor.getServerVersion(), names);
+                }))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    logger.warn("Ollama server not available at {}", pool.getEndpoints());
+                    return new HealthStatus(false, null, Collections.emptyList());
+                }));
     }
 
     /**
      * Generate a chat response using conversation history.
      * This is the primary method for Pudel's chatbot functionality.
      * <p>
-     * Uses a separate thread pool to avoid JDA heartbeat interruptions.
+     * Blocking convenience over {@link #chatReactive(List)}; the waiting thread is not
+     * interrupted by JDA heartbeat reconnects.
      *
      * @param messages Conversation history (system, user, assistant messages)
      * @return Generated response text
      */
     public Optional<String> chat(List<ChatMessage> messages) {
-        if (!isAvailable()) {
-            logger.debug("Ollama not available, skipping chat");
-            return Optional.empty();
+        return Optional.ofNullable(chatReactive(messages).toFuture().join());
+    }
+
+    /**
+     * Generate a chat response, streaming tokens to {@code onPartial} as they arrive.
+     * Blocking convenience over {@link #chatReactive(List, Consumer)}.
+     *
+     * @param messages  Conversation history (system, user, assistant messages)
+     * @param onPartial Receives the accumulated visible text after each chunk
+     * @return Generated response text
+     */
+    public Optional<String> chat(List<ChatMessage> messages, Consumer<String> onPartial) {
+        return Optional.ofNullable(chatReactive(messages, onPartial).toFuture().join());
+    }
+
+    /**
+     * Generate a chat response without blocking.
+     * <p>
+     * Each attempt waits for an interactive slot in the {@link LlmScheduler}, is bounded by
+     * {@code timeout-seconds}, and is retried with backoff on timeouts and retryable errors.
+     * No thread is held while the request is queued or in flight.
+     *
+     * @param messages Conversation history (system, user, assistant messages)
+     * @return the response text, or empty if Ollama is unavailable or every attempt failed
+     */
+    public Mono<String> chatReactive(List<ChatMessage> messages) {
+        return Mono.defer(() -> {
+            if (!isAvailable()) {
+                logger.debug("Ollama not available, skipping chat");
+                return Mono.empty();
+            }
+
+            ChatRequest request = ChatRequest.builder()
+                    .model(config.getModel())
+                    .messages(messages)
+                    .stream(false)
+                    .options(buildOptions())
+                    .keepAlive(config.getKeepAliveDuration())
+                    .build();
+            int promptTokens = PromptTokens.estimate(messages);
+
+            return execute("chat", lease -> timed("chat", lease, lease.endpoint().getWebClient().post()
+                    .uri("/api/chat")
+                    .bodyValue(request)
+                    .retrieve()
+                    .bodyToMono(ChatResponse.class)
+                    .mapNotNull(response -> chatContent(response, promptTokens))));
+        });
+    }
+
+    /**
+     * Generate a chat response without blocking, streaming tokens to {@code onPartial} as they arrive.
+     * <p>
+     * Ollama sends the reply as NDJSON chunks. {@code onPartial} receives the visible text so far
+     * (thinking blocks removed) after every chunk, on a Reactor thread, so it must not block.
+     * The emitted value is the complete response, post-processed like {@link #chatReactive(List)}.
+     * <p>
+     * Falls back to {@link #chatReactive(List)} when streaming is disabled or {@code onPartial} is null.
+     * A failed attempt is only retried if nothing has been shown yet; otherwise the text
+     * received so far is emitted so that the caller can finish what the user already sees.
+     *
+     * @param messages  Conversation history (system, user, assistant messages)
+     * @param onPartial Receives the accumulated visible text after each chunk
+     * @return the response text, or empty if Ollama is unavailable or every attempt failed
+     */
+    public Mono<String> chatReactive(List<ChatMessage> messages, Consumer<String> onPartial) {
+        if (onPartial == null || !config.isStreaming()) {
+            return chatReactive(messages);
         }
+        return Mono.defer(() -> {
+            if (!isAvailable()) {
+                logger.debug("Ollama not available, skipping chat");
+                return Mono.empty();
+            }
 
-        int maxRetries = config.getRetryCount() + 1;
-        int timeoutCount = 0;  // Track consecutive timeouts
-        Exception lastException = null;
-
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                Map<String, Object> options = buildOptions();
-
-                ChatRequest request = ChatRequest.builder()
-                        .model(config.getModel())
-                        .messages(messages)
-                        .stream(false)
-                        .options(options)
-                        .keepAlive(config.getKeepAliveDuration())
-                        .build();
-
-                // Use CompletableFuture to run on a separate thread pool
-                // This prevents JDA heartbeat reconnections from interrupting the request
-                CompletableFuture<ChatResponse> future = webClient.post()
+            ChatRequest request = ChatRequest.builder()
+                    .model(config.getModel())
+                    .messages(messages)
+                    .stream(true)
+                    .options(buildOptions())
+                    .keepAlive(config.getKeepAliveDuration())
+                    .build();
+            int promptTokens = PromptTokens.estimate(messages);
+
+            return execute("chat", lease -> {
+                StreamState state = new StreamState(System.nanoTime(), promptTokens);
+                // Chunks are decoded one NDJSON line at a time
+                Mono<String> stream = lease.endpoint().getWebClient().post()
                         .uri("/api/chat")
                         .bodyValue(request)
                         .retrieve()
-                        .bodyToMono(ChatResponse.class)
-                        .subscribeOn(Schedulers.boundedElastic())  // Run on separate thread pool
-                        .toFuture();
+                        .bodyToFlux(ChatResponse.class)
+                        .doOnNext(chunk -> onStreamChunk(chunk, state, onPartial))
+                        .then(Mono.fromCallable(() -> streamContent(state)));
+                // A retry would restart the reply the user is already reading
+                return timed("chat", lease, stream)
+                        .onErrorResume(e -> state.emitted ? partialResult(state) : Mono.error(e));
+            });
+        });
+    }
 
-                // Wait with timeout using a loop to handle interruptions gracefully
-                ChatResponse response = waitForResponse(future, config.getTimeoutSeconds());
+    /**
+     * Generate response with a simple prompt (no conversation history).
+     * Blocking convenience over {@link #generateReactive(String, String)}.
+     *
+     * @param prompt The user's prompt
+     * @param systemPrompt Optional system prompt for context
+     * @return Generated response text
+     */
+    public Optional<String> generate(String prompt, String systemPrompt) {
+        return Optional.ofNullable(generateReactive(prompt, systemPrompt).toFuture().join());
+    }
 
-                if (response != null && response.message() != null) {
-                    String content = response.message().content();
-                    logger.debug("Ollama chat response: {} tokens in {}ms",
-                            response.evalCount(),
-                            response.totalDuration() != null ? response.totalDuration() / 1_000_000 : "?");
+    /**
+     * Generate response with a simple prompt without blocking.
+     * Scheduled, bounded and retried like {@link #chatReactive(List)}.
+     *
+     * @param prompt The user's prompt
+     * @param systemPrompt Optional system prompt for context
+     * @return the response text, or empty if Ollama is unavailable or every attempt failed
+     */
+    public Mono<String> generateReactive(String prompt, String systemPrompt) {
+        return Mono.defer(() -> {
+            if (!isAvailable()) {
+                logger.debug("Ollama not available, skipping generate");
+                return Mono.empty();
+            }
 
-                    // Post-process response: remove thinking tags from thinking models (e.g., qwen3)
-                    content = stripThinkingTags(content);
+            GenerateRequest request = GenerateRequest.builder()
+                    .model(config.getModel())
+                    .prompt(prompt)
+                    .system(systemPrompt)
+                    .stream(false)
+                    .options(buildOptions())
+                    .keepAlive(config.getKeepAliveDuration())
+                    .build();
+            int promptTokens = PromptTokens.estimate(List.of(ChatMessage.system(systemPrompt), ChatMessage.user(prompt)));
+
+            return execute("generate", lease -> timed("generate", lease, lease.endpoint().getWebClient().post()
+                    .uri("/api/generate")
+                    .bodyValue(request)
+                    .retrieve()
+                    .bodyToMono(GenerateResponse.class)
+                    .mapNotNull(response -> generateContent(response, promptTokens))));
+        });
+    }
 
-                    // Validate content is not empty after processing
-                    if (content != null && !content.isBlank()) {
-                        return Optional.of(content);
+    /**
+     * Run request attempts, each holding an interactive scheduler slot and then an endpoint from the
+     * pool, retrying per {@link #retryPolicy}. An attempt that fails because of its endpoint is retried
+     * on another endpoint right away. Failures after the last attempt, and requests no endpoint can
+     * take, complete the result empty so callers fall back right away.
+     */
+    private <T> Mono<T> execute(String endpoint, Function<OllamaEndpointPool.Lease, Mono<T>> attempt) {
+        Set<OllamaEndpoint> tried = ConcurrentHashMap.newKeySet();
+        return Mono.defer(() -> {
+                    // Fail fast instead of queueing while every endpoint's circuit is open
+                    if (!pool.isAvailable(config.getModel())) {
+                        return Mono.<T>error(new CircuitBreaker.OpenException(config.getModel() + " endpoints"));
+                    }
+                    return Mono.usingWhen(
+                            Mono.fromFuture(() -> scheduler.reserve(Priority.INTERACTIVE, config.getModel())),
+                            // The endpoint is chosen once the slot is held, by the load at that moment
+                            _ -> pool.acquire(config.getModel(), endpoint, tried)
+                                    .map(lease -> attempt.apply(lease)
+                                            .doOnError(_ -> tried.add(lease.endpoint())))
+                                    .orElseGet(() -> Mono.<T>error(
+                                            new CircuitBreaker.OpenException(config.getModel() + " endpoints"))),
+                            permit -> Mono.fromRunnable(permit::close));
+                })
+                .retryWhen(retryPolicy(endpoint, tried))
+                .onErrorResume(e -> {
+                    if (e instanceof CircuitBreaker.OpenException) {
+                        logger.debug("Ollama {} skipped: {}", endpoint, e.getMessage());
                     } else {
-                        logger.warn("Ollama returned empty response after stripping thinking tags");
-                        return Optional.empty();
+                        logger.warn("Ollama {} failed after retries: {}", endpoint, e.getMessage());
                     }
-                }
+                    return Mono.empty();
+                });
+    }
 
-                // Response was null, retry
-                logger.debug("Ollama returned null response, attempt {}/{}", attempt, maxRetries);
+    /**
+     * Apply the request timeout to one attempt and record its outcome, in metrics and on the endpoint's lease.
+     */
+    private <T> Mono<T> timed(String endpoint, OllamaEndpointPool.Lease lease, Mono<T> request) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String backend = lease.endpoint().getName();
+            return request
+                    .timeout(Duration.ofSeconds(config.getTimeoutSeconds()))
+                    .doOnSuccess(value -> {
+                        recordAttempt(sample, endpoint, backend, value != null ? "success" : "empty");
+                        lease.onSuccess();
+                    })
+                    .doOnError(e -> {
+                        recordAttempt(sample, endpoint, backend, isTimeout(e) ? "timeout" : "error");
+                        lease.onError(e);
+                        handleError(e, backend);
+                    })
+                    .doOnCancel(() -> {
+                        recordAttempt(sample, endpoint, backend, "cancelled");
+                        lease.onIgnored();
+                    });
+        });
+    }
 
-            } catch (TimeoutException e) {
-                lastException = e;
-                timeoutCount++;
-                logger.warn("Ollama request timed out on attempt {}/{} (timeout #{} consecutive)",
-                        attempt, maxRetries, timeoutCount);
+    /**
+     * Retry timeouts and retryable errors up to {@code retry-count} times, with exponential backoff
+     * (a short one after a timeout, which already waited). Two consecutive timeouts mean the server
+     * is overloaded, so the request gives up. While an endpoint that has not failed this request
+     * is available, the retry goes there at once and does not count towards either limit.
+     */
+    private Retry retryPolicy(String endpoint, Set<OllamaEndpoint> tried) {
+        AtomicInteger consecutiveTimeouts = new AtomicInteger();
+        AtomicInteger failovers = new AtomicInteger();
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            boolean timeout = isTimeout(failure);
+            if ((timeout || OllamaHealthMonitor.isBackendFailure(failure))
+                    && pool.hasAlternative(config.getModel(), tried)) {
+                failovers.incrementAndGet();
+                logger.debug("Ollama {} failed ({}), retrying on another endpoint", endpoint, failure.getMessage());
+                return Mono.just(signal.totalRetries());
+            }
 
-                // If we've had 2+ consecutive timeouts, stop retrying - server is too slow
-                if (timeoutCount >= 2) {
-                    logger.warn("Multiple consecutive timeouts, Ollama server appears overloaded. Giving up.");
-                    return Optional.empty();
-                }
-            } catch (java.util.concurrent.ExecutionException e) {
-                Throwable cause = e.getCause();
-                lastException = e;
-
-                // Check for read timeout (netty timeout)
-                if (cause instanceof ReadTimeoutException) {
-                    timeoutCount++;
-                    logger.warn("Ollama read timeout on attempt {}/{} (timeout #{} consecutive)",
-                            attempt, maxRetries, timeoutCount);
-                    if (timeoutCount >= 2) {
-                        logger.warn("Multiple consecutive read timeouts. Giving up.");
-                        return Optional.empty();
-                    }
-                } else if (isRetryable(cause)) {
-                    timeoutCount = 0; // Reset timeout count on non-timeout retryable error
-                    logger.debug("Retryable error on attempt {}/{}: {}",
-                            attempt, maxRetries, cause != null ? cause.getMessage() : e.getMessage());
-                } else {
-                    timeoutCount = 0; // Reset timeout count on non-timeout error
-                    logger.error("Non-retryable error calling Ollama chat: {}",
-                            cause != null ? cause.getMessage() : e.getMessage());
-                    handleError(cause instanceof Exception ? (Exception) cause : e);
-                    return Optional.empty();
-                }
-            } catch (Exception e) {
-                lastException = e;
-                timeoutCount = 0; // Reset timeout count on non-timeout error
-                logger.error("Error calling Ollama chat on attempt {}/{}: {}", attempt, maxRetries, e.getMessage());
-                handleError(e);
+            int timeouts = timeout ? consecutiveTimeouts.incrementAndGet() : 0;
+            if (!timeout) {
+                consecutiveTimeouts.set(0);
             }
 
-            // Backoff before retry (shorter for timeouts since we already waited)
-            if (attempt < maxRetries) {
-                try {
-                    long backoffMs = timeoutCount > 0 ? 500 : (long) Math.pow(2, attempt) * 1000;
-                    logger.debug("Backing off {}ms before retry", backoffMs);
-                    Thread.sleep(backoffMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    // Continue with retry anyway
+            long attempt = signal.totalRetries() + 1 - failovers.get();
+            if (attempt > config.getRetryCount() || timeouts >= 2 || !(timeout || isRetryable(failure))) {
+                if (timeouts >= 2) {
+                    logger.warn("Multiple consecutive timeouts, Ollama server appears overloaded. Giving up.");
                 }
+                return Mono.error(failure);
             }
-        }
 
-        logger.warn("All Ollama retries exhausted: {}",
-                lastException != null ? lastException.getMessage() : "unknown error");
-        return Optional.empty();
+            long backoffMs = timeout ? 500 : (long) Math.pow(2, attempt) * 1000;
+            logger.debug("Ollama {} attempt {} failed ({}), retrying in {}ms",
+                    endpoint, attempt, failure.getMessage(), backoffMs);
+            meterRegistry.counter("pudel.ollama.retries", "endpoint", endpoint, "model", config.getModel()).increment();
+            return Mono.delay(Duration.ofMillis(backoffMs));
+        }));
     }
 
     /**
-     * Wait for a future response, handling thread interruptions gracefully.
-     * JDA heartbeat reconnections can interrupt threads, but we want to
-     * continue waiting for Ollama since it runs on a separate thread pool.
+     * Extract the reply text from a chat response, or null if there is none.
      */
-    private <T> T waitForResponse(CompletableFuture<T> future, long timeoutSeconds)
-            throws TimeoutException, java.util.concurrent.ExecutionException {
-
-        long startTime = System.currentTimeMillis();
-        long timeoutMs = timeoutSeconds * 1000;
+    private String chatContent(ChatResponse response, int promptTokens) {
+        if (response.message() == null) {
+            return null;
+        }
+        recordTokens(response.promptEvalCount(), response.evalCount());
+        recordPromptReuse(promptTokens, response.promptEvalCount());
+        logger.debug("Ollama chat response: {} tokens in {}ms",
+                response.evalCount(),
+                response.totalDuration() != null ? response.totalDuration() / 1_000_000 : "?");
+
+        // Post-process response: remove thinking tags from thinking models (e.g., qwen3)
+        String content = stripThinkingTags(response.message().content());
+        if (content == null || content.isBlank()) {
+            logger.warn("Ollama returned empty response after stripping thinking tags");
+            return null;
+        }
+        return content;
+    }
 
-        while (true) {
-            try {
-                long elapsed = System.currentTimeMillis() - startTime;
-                long remaining = timeoutMs - elapsed;
+    /**
+     * Extract the text from a generate response, or null if there is none.
+     */
+    private String generateContent(GenerateResponse response, int promptTokens) {
+        recordTokens(response.promptEvalCount(), response.evalCount());
+        recordPromptReuse(promptTokens, response.promptEvalCount());
+        logger.debug("Ollama generate response: {} tokens in {}ms",
+                response.evalCount(),
+                response.totalDuration() != null ? response.totalDuration() / 1_000_000 : "?");
+        // Strip thinking tags for generate as well
+        String content = stripThinkingTags(response.response());
+        return content != null && !content.isBlank() ? content : null;
+    }
 
-                if (remaining <= 0) {
-                    throw new TimeoutException("Ollama request exceeded " + timeoutSeconds + " seconds");
-                }
+    /**
+     * Append one streamed chunk and publish the visible text so far.
+     */
+    private void onStreamChunk(ChatResponse chunk, StreamState state, Consumer<String> onPartial) {
+        if (chunk.message() != null && chunk.message().content() != null && !chunk.message().content().isEmpty()) {
+            String raw = state.append(chunk.message().content());
+            if (raw.length() == chunk.message().content().length()) {
+                meterRegistry.timer("pudel.ollama.first_token", "model", config.getModel())
+                        .record(System.nanoTime() - state.startNanos, TimeUnit.NANOSECONDS);
+            }
 
-                return future.get(remaining, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                // JDA heartbeat reconnection interrupted us, but the future is still running
-                logger.debug("Thread interrupted while waiting for Ollama, continuing to wait ({}ms elapsed)...",
-                        System.currentTimeMillis() - startTime);
-                // Don't clear interrupt flag immediately - check if future is done first
-                if (future.isDone()) {
-                    Thread.currentThread().interrupt(); // Restore interrupt flag
-                    try {
-                        return future.get(); // Get the completed result
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new TimeoutException("Future completed but interrupted during retrieval");
-                    }
+            String visible = visiblePartial(raw);
+            if (!visible.isEmpty()) {
+                state.emitted = true;
+                try {
+                    onPartial.accept(visible);
+                } catch (Exception e) {
+                    logger.debug("Partial response consumer failed: {}", e.getMessage());
                 }
-                // Future still running, continue waiting
             }
         }
+        if (Boolean.TRUE.equals(chunk.done())) {
+            recordTokens(chunk.promptEvalCount(), chunk.evalCount());
+            recordPromptReuse(state.promptTokens, chunk.promptEvalCount());
+            state.evalCount = chunk.evalCount();
+        }
     }
 
     /**
-     * Generate response with a simple prompt (no conversation history).
-     * Uses a separate thread pool to avoid JDA heartbeat interruptions.
-     *
-     * @param prompt The user's prompt
-     * @param systemPrompt Optional system prompt for context
-     * @return Generated response text
+     * Complete text of a finished stream, or null if there is none.
      */
-    public Optional<String> generate(String prompt, String systemPrompt) {
-        if (!isAvailable()) {
-            logger.debug("Ollama not available, skipping generate");
-            return Optional.empty();
+    private String streamContent(StreamState state) {
+        String content = stripThinkingTags(state.text());
+        if (content == null || content.isBlank()) {
+            return null;
         }
+        logger.debug("Ollama streamed chat response: {} tokens in {}ms",
+                state.evalCount, (System.nanoTime() - state.startNanos) / 1_000_000);
+        return content;
+    }
 
-        int maxRetries = config.getRetryCount() + 1;
-        int timeoutCount = 0;  // Track consecutive timeouts
-        Exception lastException = null;
-
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                Map<String, Object> options = buildOptions();
-
-                GenerateRequest request = GenerateRequest.builder()
-                        .model(config.getModel())
-                        .prompt(prompt)
-                        .system(systemPrompt)
-                        .stream(false)
-                        .options(options)
-                        .keepAlive(config.getKeepAliveDuration())
-                        .build();
-
-                CompletableFuture<GenerateResponse> future = webClient.post()
-                        .uri("/api/generate")
-                        .bodyValue(request)
-                        .retrieve()
-                        .bodyToMono(GenerateResponse.class)
-                        .subscribeOn(Schedulers.boundedElastic())
-                        .toFuture();
-
-                GenerateResponse response = waitForResponse(future, config.getTimeoutSeconds());
-
-                if (response != null) {
-                    logger.debug("Ollama generate response: {} tokens in {}ms",
-                            response.evalCount(),
-                            response.totalDuration() != null ? response.totalDuration() / 1_000_000 : "?");
-                    String content = response.response();
-                    // Strip thinking tags for generate as well
-                    content = stripThinkingTags(content);
-                    if (content != null && !content.isBlank()) {
-                        return Optional.of(content);
-                    }
-                }
+    /**
+     * Visible part of a reply that is still being generated: closed thinking blocks are removed
+     * and an open {@code <think>} block hides everything after it until it closes.
+     */
+    private static String visiblePartial(String raw) {
+        String visible = raw;
+        if (visible.indexOf('<') >= 0) {
+            visible = CLOSED_THINKING.matcher(visible).replaceAll("");
+            int open = visible.indexOf("<think>");
+            if (open >= 0) {
+                visible = visible.substring(0, open);
+            }
+        }
+        return visible.strip();
+    }
 
-                logger.debug("Ollama generate returned empty, attempt {}/{}", attempt, maxRetries);
+    /**
+     * Result of a stream that failed after text was already shown.
+     */
+    private Mono<String> partialResult(StreamState state) {
+        String partial = visiblePartial(state.text());
+        logger.warn("Ollama stream interrupted after {} chars, keeping the partial response", partial.length());
+        return partial.isEmpty() ? Mono.empty() : Mono.just(partial);
+    }
 
-            } catch (TimeoutException e) {
-                lastException = e;
-                timeoutCount++;
-                logger.warn("Ollama generate timed out on attempt {}/{} (timeout #{} consecutive)",
-                        attempt, maxRetries, timeoutCount);
+    /**
+     * Accumulated state of one streamed attempt, written by the Reactor thread and read by the caller.
+     */
+    private static final class StreamState {
+        private final long startNanos;
+        private final int promptTokens;
+        private final StringBuilder content = new StringBuilder();
+        private volatile boolean emitted;
+        private volatile Integer evalCount;
+
+        private StreamState(long startNanos, int promptTokens) {
+            this.startNanos = startNanos;
+            this.promptTokens = promptTokens;
+        }
 
-                // If we've had 2+ consecutive timeouts, stop retrying
-                if (timeoutCount >= 2) {
-                    logger.warn("Multiple consecutive generate timeouts. Giving up.");
-                    return Optional.empty();
-                }
-            } catch (java.util.concurrent.ExecutionException e) {
-                Throwable cause = e.getCause();
-                lastException = e;
-
-                // Check for read timeout (netty timeout)
-                if (cause instanceof ReadTimeoutException) {
-                    timeoutCount++;
-                    logger.warn("Ollama generate read timeout on attempt {}/{} (timeout #{} consecutive)",
-                            attempt, maxRetries, timeoutCount);
-                    if (timeoutCount >= 2) {
-                        logger.warn("Multiple consecutive generate read timeouts. Giving up.");
-                        return Optional.empty();
-                    }
-                } else if (isRetryable(cause)) {
-                    timeoutCount = 0; // Reset on non-timeout retryable error
-                    logger.debug("Retryable error on attempt {}/{}: {}",
-                            attempt, maxRetries, cause != null ? cause.getMessage() : e.getMessage());
-                } else {
-                    timeoutCount = 0; // Reset on non-timeout error
-                    logger.error("Non-retryable error calling Ollama generate: {}",
-                            cause != null ? cause.getMessage() : e.getMessage());
-                    handleError(cause instanceof Exception ? (Exception) cause : e);
-                    return Optional.empty();
-                }
-            } catch (Exception e) {
-                lastException = e;
-                timeoutCount = 0; // Reset on non-timeout error
-                logger.error("Error calling Ollama generate on attempt {}/{}: {}", attempt, maxRetries, e.getMessage());
-                handleError(e);
-            }
+        synchronized String append(String token) {
+            content.append(token);
+            return content.toString();
+        }
 
-            // Backoff before retry (shorter for timeouts)
-            if (attempt < maxRetries) {
-                try {
-                    long backoffMs = timeoutCount > 0 ? 500 : (long) Math.pow(2, attempt) * 1000;
-                    logger.debug("Backing off {}ms before retry", backoffMs);
-                    Thread.sleep(backoffMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    // Continue with retry anyway
-                }
-            }
+        // A timed-out stream may still be appending while the caller reads
+        synchronized String text() {
+            return content.toString();
         }
+    }
 
-        logger.warn("All Ollama generate retries exhausted: {}",
-                lastException != null ? lastException.getMessage() : "unknown error");
-        return Optional.empty();
+    /**
+     * Record one request attempt, tagged by API endpoint, backend, model and outcome.
+     */
+    private void recordAttempt(Timer.Sample sample, String endpoint, String backend, String outcome) {
+        sample.stop(meterRegistry.timer("pudel.ollama.request",
+                "endpoint", endpoint, "backend", backend, "model", config.getModel(), "outcome", outcome));
     }
 
     /**
-     * List available models on the Ollama server.
+     * Record prompt and completion token counts reported by Ollama.
      */
-    public List<ModelInfo> listModels() {
-        if (!config.isEnabled()) {
-            return Collections.emptyList();
+    private void recordTokens(Integer promptEvalCount, Integer evalCount) {
+        if (promptEvalCount != null) {
+            meterRegistry.counter("pudel.ollama.tokens", "model", config.getModel(), "type", "prompt")
+                    .increment(promptEvalCount);
         }
+        if (evalCount != null) {
+            meterRegistry.counter("pudel.ollama.tokens", "model", config.getModel(), "type", "completion")
+                    .increment(evalCount);
+        }
+    }
 
-        try {
-            ListModelsResponse response = webClient.get()
-                    .uri("/api/tags")
-                    .retrieve()
-                    .bodyToMono(ListModelsResponse.class)
-                    .timeout(Duration.ofSeconds(10))
-                    .block();
+    /**
+     * Record how much of the prompt Ollama served from its KV cache.
+     * <p>
+     * {@code prompt_eval_count} only counts the tokens Ollama had to prefill; tokens of a prefix
+     * that matched the previous request on the same slot are reused. The total is estimated with
+     * {@link PromptTokens}, so the ratio is approximate but tracks prompt-prefix stability.
+     */
+    private void recordPromptReuse(int promptTokens, Integer promptEvalCount) {
+        if (promptEvalCount == null || promptTokens <= 0) {
+            return;
+        }
+        int reused = Math.max(0, promptTokens - promptEvalCount);
+        meterRegistry.counter("pudel.ollama.prompt.reused", "model", config.getModel()).increment(reused);
+        DistributionSummary.builder("pudel.ollama.prompt.reuse")
+                .description("Estimated share of prompt tokens served from Ollama's prompt cache")
+                .tag("model", config.getModel())
+                .register(meterRegistry)
+                .record((double) reused / promptTokens);
+    }
 
-            if (response != null && response.models() != null) {
-                return response.models();
-            }
-        } catch (Exception e) {
-            logger.debug("Error listing Ollama models: {}", e.getMessage());
+    /**
+     * List available models on the Ollama server.
+     * Blocking convenience over {@link #listModelsReactive()}.
+     */
+    public List<ModelInfo> listModels() {
+        return listModelsReactive().toFuture().join();
+    }
+
+    /**
+     * List available models on the Ollama servers without blocking.
+     *
+     * @return the models of every endpoint that answered, or an empty list if none can be reached
+     */
+    public Mono<List<ModelInfo>> listModelsReactive() {
+        if (!config.isEnabled()) {
+            return Mono.just(Collections.emptyList());
         }
 
-        return Collections.emptyList();
+        return Flux.fromIterable(pool.getEndpoints())
+                .flatMap(backend -> backend.getWebClient().get()
+                        .uri("/api/tags")
+                        .retrieve()
+                        .bodyToMono(ListModelsResponse.class)
+                        .timeout(Duration.ofSeconds(10))
+                        .<List<ModelInfo>>mapNotNull(ListModelsResponse::models)
+                        .onErrorResume(e -> {
+                            logger.debug("Error listing Ollama models at {}: {}", backend.getName(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .flatMapIterable(models -> models)
+                .distinct(ModelInfo::name)
+                .collectList();
     }
 
     /**
@@ -459,20 +631,26 @@ public class OllamaClient {
     }
 
     /**
-     * Handle errors and potentially mark server as unavailable.
+     * Check if an exception is a request timeout, from Reactor or from Netty.
+     */
+    private boolean isTimeout(Throwable throwable) {
+        return throwable instanceof TimeoutException
+                || throwable instanceof ReadTimeoutException
+                || (throwable != null && throwable.getCause() instanceof ReadTimeoutException);
+    }
+
+    /**
+     * Log hints for common errors.
      */
-    private void handleError(Exception e) {
+    private void handleError(Throwable e, String backend) {
         if (e instanceof WebClientResponseException wcre) {
             if (wcre.getStatusCode().value() == 404) {
-                logger.warn("Ollama model '{}' not found. Run: ollama pull {}",
-                        config.getModel(), config.getModel());
+                logger.warn("Ollama model '{}' not found at {}. Run: ollama pull {}",
+                        config.getModel(), backend, config.getModel());
             }
-        } else if (e.getCause() instanceof ConnectException) {
-            serverAvailable = false;
-            logger.warn("Ollama server disconnected. Start with: ollama serve");
-        } else if (e instanceof ConnectException) {
-            serverAvailable = false;
-            logger.warn("Ollama server disconnected. Start with: ollama serve");
+        } else if (e instanceof ConnectException || e.getCause() instanceof ConnectException) {
+            // The endpoint's circuit breaker has recorded the failure; routing follows it
+            logger.warn("Ollama server at {} disconnected. Start with: ollama serve", backend);
         }
     }
 
@@ -0,0 +1,99 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.ollama;
+
+import worldstandard.group.pudel.model.ollama.OllamaDto.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Cheap prompt token estimates, without a tokenizer.
+ * <p>
+ * Latin text averages about four characters per token; other scripts (Thai, CJK) are
+ * closer to one token per character, so they are counted per code point.
+ */
+public final class PromptTokens {
+
+    // Role markers and separators added by the chat template, per message
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private PromptTokens() {
+        // Utility class
+    }
+
+    /**
+     * Estimate the tokens of a text.
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * Cut a text down to about {@code maxTokens} estimated tokens, marking the cut with an ellipsis.
+     * The cut is deterministic, so the same text always yields the same prefix.
+     *
+     * @return the text itself if it already fits
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || estimate(text) <= maxTokens) {
+            return text;
+        }
+        // Count in quarter tokens: a quarter per ASCII character, a whole token otherwise
+        long budget = Math.max(0, maxTokens - 1) * 4L;
+        long used = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            used += codePoint < 0x80 ? 1 : 4;
+            if (used > budget) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end).stripTrailing() + "…";
+    }
+
+    /**
+     * Estimate the tokens of one chat message, including template overhead.
+     */
+    public static int estimate(ChatMessage message) {
+        return estimate(message.content()) + MESSAGE_OVERHEAD;
+    }
+
+    /**
+     * Estimate the prompt tokens of a chat conversation, including template overhead.
+     */
+    public static int estimate(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+}
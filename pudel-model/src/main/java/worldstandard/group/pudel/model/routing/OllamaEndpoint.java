@@ -0,0 +1,146 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.routing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.WebClient;
+import worldstandard.group.pudel.model.config.ModelConfiguration;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.health.CircuitBreaker;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One Ollama server in the {@link OllamaEndpointPool}: its HTTP client, circuit breaker,
+ * outstanding request count and the models it has loaded.
+ */
+public class OllamaEndpoint {
+
+    private final String url;
+    private final OllamaConfig.Endpoint config;
+    private final OllamaConfig.Routing routing;
+    private final WebClient webClient;
+    private final CircuitBreaker breaker;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    // key = model name, value = System.nanoTime() until which the model counts as loaded
+    private final ConcurrentHashMap<String, Long> warmUntil = new ConcurrentHashMap<>();
+    private volatile String serverVersion = null;
+
+    OllamaEndpoint(OllamaConfig.Endpoint config, OllamaConfig ollamaConfig, MeterRegistry meterRegistry) {
+        this.url = config.getUrl();
+        this.config = config;
+        this.routing = ollamaConfig.getRouting();
+        this.webClient = ModelConfiguration.ollamaWebClient(url, ollamaConfig);
+        this.breaker = new CircuitBreaker(url, ollamaConfig.getCircuitBreaker(), meterRegistry);
+
+        Gauge.builder("pudel.ollama.backend.outstanding", outstanding, AtomicInteger::get)
+                .tag("backend", url)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether this endpoint serves a model.
+     */
+    public boolean serves(String model) {
+        return config.serves(model);
+    }
+
+    /**
+     * Whether this endpoint served the model recently or a probe saw it loaded.
+     */
+    public boolean isWarm(String model, long now) {
+        Long until = warmUntil.get(model);
+        return until != null && until - now > 0;
+    }
+
+    /**
+     * Remember that this endpoint has a model loaded.
+     */
+    void markWarm(String model, long now) {
+        if (model != null) {
+            warmUntil.put(model, now + TimeUnit.SECONDS.toNanos(routing.getWarmSeconds()));
+        }
+    }
+
+    /**
+     * Replace the loaded models with what the server reported in {@code /api/ps}.
+     *
+     * @param models the models the server has in memory
+     */
+    public void updateLoadedModels(Collection<String> models) {
+        long now = System.nanoTime();
+        Set<String> loaded = Set.copyOf(models);
+        warmUntil.keySet().removeIf(model -> !loaded.contains(model));
+        for (String model : loaded) {
+            markWarm(model, now);
+        }
+    }
+
+    /**
+     * Routing score: outstanding requests per unit of weight, lowered when the model is loaded.
+     * Lower is better.
+     */
+    double score(String model, long now) {
+        int load = outstanding.get() - (isWarm(model, now) ? routing.getAffinityBonus() : 0);
+        return (double) load / Math.max(1, config.getWeight());
+    }
+
+    void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    void onEnd() {
+        outstanding.decrementAndGet();
+    }
+
+    public String getName() {
+        return url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public WebClient getWebClient() {
+        return webClient;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    public void setServerVersion(String serverVersion) {
+        this.serverVersion = serverVersion;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.routing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+import worldstandard.group.pudel.model.health.CircuitBreaker;
+import worldstandard.group.pudel.model.health.OllamaHealthMonitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The Ollama servers Pudel sends requests to ({@code pudel.ollama.endpoints}, or {@code base-url} alone).
+ * <p>
+ * Each request is routed to an endpoint that serves its model and whose circuit is not open, choosing
+ * the fewest outstanding requests per unit of weight. An endpoint that already has the model loaded
+ * gets {@code routing.affinity-bonus} requests of head start, so a model stays on the nodes that
+ * loaded it until they are busier than the others. A request that fails because of its endpoint is
+ * retried on another endpoint.
+ * <p>
+ * Every {@link Lease} must be completed exactly once; it reports to the endpoint's circuit breaker
+ * and per-endpoint metrics.
+ */
+@Service
+public class OllamaEndpointPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaEndpointPool.class);
+
+    private final MeterRegistry meterRegistry;
+    private final List<OllamaEndpoint> endpoints;
+
+    public OllamaEndpointPool(OllamaConfig config, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        List<OllamaEndpoint> built = new ArrayList<>();
+        for (OllamaConfig.Endpoint endpoint : config.resolveEndpoints()) {
+            built.add(new OllamaEndpoint(endpoint, config, meterRegistry));
+        }
+        this.endpoints = List.copyOf(built);
+        if (endpoints.size() > 1) {
+            logger.info("Ollama endpoint pool: {}", endpoints);
+        }
+    }
+
+    /**
+     * Take an endpoint for a request to a model.
+     *
+     * @param model  the model the request goes to
+     * @param caller the calling component, used as a metric tag
+     * @return the lease, or empty if no endpoint serving the model can take calls
+     */
+    public Optional<Lease> acquire(String model, String caller) {
+        return acquire(model, caller, Set.of());
+    }
+
+    /**
+     * Take an endpoint for a retry, avoiding the endpoints already tried while others are available.
+     *
+     * @param tried endpoints that already failed this request
+     * @see #acquire(String, String)
+     */
+    public Optional<Lease> acquire(String model, String caller, Collection<OllamaEndpoint> tried) {
+        long now = System.nanoTime();
+        List<OllamaEndpoint> candidates = new ArrayList<>();
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (endpoint.serves(model) && endpoint.getBreaker().isCallPermitted() && !tried.contains(endpoint)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty() && !tried.isEmpty()) {
+            // Every other endpoint is down; try the same ones again
+            for (OllamaEndpoint endpoint : endpoints) {
+                if (endpoint.serves(model) && endpoint.getBreaker().isCallPermitted()) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(endpoint -> endpoint.score(model, now)));
+
+        for (OllamaEndpoint endpoint : candidates) {
+            // A half-open breaker may have no trial slot left
+            if (endpoint.getBreaker().tryAcquire(caller)) {
+                endpoint.onStart();
+                return Optional.of(new Lease(endpoint, model, caller));
+            }
+        }
+        meterRegistry.counter("pudel.ollama.pool.unavailable", "model", String.valueOf(model), "caller", caller)
+                .increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Whether some endpoint serving the model can take calls.
+     */
+    public boolean isAvailable(String model) {
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (endpoint.serves(model) && endpoint.getBreaker().isCallPermitted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether some endpoint serving the model, other than the ones tried, can take calls.
+     */
+    public boolean hasAlternative(String model, Collection<OllamaEndpoint> tried) {
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (endpoint.serves(model) && !tried.contains(endpoint) && endpoint.getBreaker().isCallPermitted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of endpoints serving a model, whatever their health.
+     */
+    public int countServing(String model) {
+        int count = 0;
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (endpoint.serves(model)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run a blocking call on an endpoint, retrying on another endpoint when the endpoint fails.
+     * Errors that are not the endpoint's fault are thrown without a retry.
+     *
+     * @param model  the model the call goes to
+     * @param caller the calling component, used as a metric tag
+     * @param call   the call, given the endpoint to use
+     * @return the call's result, or null if no endpoint could take it
+     */
+    public <T> T call(String model, String caller, Function<OllamaEndpoint, T> call) {
+        Set<OllamaEndpoint> tried = new HashSet<>();
+        while (true) {
+            Optional<Lease> acquired = acquire(model, caller, tried);
+            if (acquired.isEmpty()) {
+                return null;
+            }
+            Lease lease = acquired.get();
+            try {
+                T result = call.apply(lease.endpoint());
+                lease.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                lease.onError(e);
+                tried.add(lease.endpoint());
+                if (!OllamaHealthMonitor.isBackendFailure(e) || !hasAlternative(model, tried)) {
+                    throw e;
+                }
+                onFailover(lease, e);
+            }
+        }
+    }
+
+    /**
+     * Reactive {@link #call}: subscribe to the request on an endpoint, resubscribing on another
+     * endpoint when the endpoint fails.
+     *
+     * @return the request's result, or empty if no endpoint could take it
+     */
+    public <T> Mono<T> callReactive(String model, String caller, Function<OllamaEndpoint, Mono<T>> request) {
+        Set<OllamaEndpoint> tried = ConcurrentHashMap.newKeySet();
+        return callReactive(model, caller, request, tried);
+    }
+
+    private <T> Mono<T> callReactive(String model, String caller, Function<OllamaEndpoint, Mono<T>> request,
+                                     Set<OllamaEndpoint> tried) {
+        return Mono.defer(() -> {
+            Optional<Lease> acquired = acquire(model, caller, tried);
+            if (acquired.isEmpty()) {
+                return Mono.<T>empty();
+            }
+            Lease lease = acquired.get();
+            // Deferred so a request that throws while being built still completes its lease
+            return lease.track(Mono.defer(() -> request.apply(lease.endpoint())))
+                    .onErrorResume(e -> {
+                        tried.add(lease.endpoint());
+                        if (!OllamaHealthMonitor.isBackendFailure(e) || !hasAlternative(model, tried)) {
+                            return Mono.error(e);
+                        }
+                        onFailover(lease, e);
+                        return callReactive(model, caller, request, tried);
+                    });
+        });
+    }
+
+    private void onFailover(Lease lease, Throwable failure) {
+        logger.debug("Ollama {} request for {} failed on {}, retrying on another endpoint: {}",
+                lease.caller, lease.model, lease.endpoint().getName(), failure.getMessage());
+        meterRegistry.counter("pudel.ollama.backend.failover",
+                "backend", lease.endpoint().getName(), "caller", lease.caller).increment();
+    }
+
+    /**
+     * Register a listener for state changes of every endpoint's circuit breaker.
+     *
+     * @see CircuitBreaker#addListener(Consumer)
+     */
+    public void addListener(Consumer<CircuitBreaker.State> listener) {
+        for (OllamaEndpoint endpoint : endpoints) {
+            endpoint.getBreaker().addListener(listener);
+        }
+    }
+
+    public List<OllamaEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * A request in flight on an endpoint. Complete it exactly once; later completions are ignored.
+     */
+    public final class Lease {
+        private final OllamaEndpoint endpoint;
+        private final String model;
+        private final String caller;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Lease(OllamaEndpoint endpoint, String model, String caller) {
+            this.endpoint = endpoint;
+            this.model = model;
+            this.caller = caller;
+        }
+
+        public OllamaEndpoint endpoint() {
+            return endpoint;
+        }
+
+        /**
+         * The request succeeded; a slow one counts against the endpoint.
+         */
+        public void onSuccess() {
+            if (finish("success")) {
+                endpoint.getBreaker().onSuccess(System.nanoTime() - startNanos);
+                endpoint.markWarm(model, System.nanoTime());
+            }
+        }
+
+        /**
+         * The request succeeded, but its duration says nothing about the endpoint's health,
+         * e.g. an agent run that waits on tools between model turns.
+         */
+        public void onSuccessIgnoringDuration() {
+            if (finish("success")) {
+                endpoint.getBreaker().onSuccess();
+                endpoint.markWarm(model, System.nanoTime());
+            }
+        }
+
+        /**
+         * The request failed. Only failures of the endpoint itself count against it.
+         */
+        public void onError(Throwable error) {
+            if (OllamaHealthMonitor.isBackendFailure(error)) {
+                if (finish("failure")) {
+                    endpoint.getBreaker().onFailure(error);
+                }
+            } else if (finish("error")) {
+                endpoint.getBreaker().onIgnored();
+            }
+        }
+
+        /**
+         * The request was cancelled, or never sent.
+         */
+        public void onIgnored() {
+            if (finish("cancelled")) {
+                endpoint.getBreaker().onIgnored();
+            }
+        }
+
+        /**
+         * Complete this lease with the outcome of a request.
+         */
+        public <T> Mono<T> track(Mono<T> request) {
+            return request
+                    .doOnSuccess(_ -> onSuccess())
+                    .doOnError(this::onError)
+                    .doOnCancel(this::onIgnored);
+        }
+
+        private boolean finish(String outcome) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            endpoint.onEnd();
+            Timer.builder("pudel.ollama.backend.requests")
+                    .tag("backend", endpoint.getName())
+                    .tag("model", String.valueOf(model))
+                    .tag("caller", caller)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return true;
+        }
+    }
+}
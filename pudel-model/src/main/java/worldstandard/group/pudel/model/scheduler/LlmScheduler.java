@@ -0,0 +1,343 @@
+/*
+ * Pudel - A Moderate Discord Chat Bot
+ * Copyright (C) 2026 Napapon Kamanee
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed with an additional permission known as the
+ * "Pudel Plugin Exception".
+ *
+ * See the LICENSE and PLUGIN_EXCEPTION files in the project root for details.
+ */
+package worldstandard.group.pudel.model.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import worldstandard.group.pudel.model.config.OllamaConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Central scheduler for every request that occupies the Ollama servers.
+ * <p>
+ * Each model has a fixed number of slots per endpoint serving it ({@link OllamaConfig.Scheduler#getMaxParallel()},
+ * which should match Ollama's {@code OLLAMA_NUM_PARALLEL}). Which endpoint a request runs on is up to
+ * the endpoint pool once the request holds a slot. Requests beyond that wait in a per-model priority queue:
+ * interactive replies first, then agent runs, then synchronous analysis, then passive analysis.
+ * <p>
+ * Interactive replies always get the next free slot. The other priorities age: a waiting request is
+ * ordered by its enqueue time plus {@link OllamaConfig.Scheduler#getAgingSeconds()} per priority step,
+ * so a passive request that has waited long enough runs ahead of newly arrived agent or analysis
+ * requests instead of starving, but never ahead of a user waiting for a reply.
+ * Passive requests are rejected once their queue is full; callers fall back to pattern-based analysis.
+ */
+@Service
+public class LlmScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmScheduler.class);
+
+    /**
+     * Request classes, highest priority first.
+     */
+    public enum Priority {
+        /** A reply a user is waiting for. */
+        INTERACTIVE,
+        /** An agent run with tool calls, also user-facing but allowed to be slower. */
+        AGENT,
+        /** Analysis on the reply path. */
+        ANALYSIS,
+        /** Background analysis of messages that did not address the bot. */
+        PASSIVE;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final OllamaConfig ollamaConfig;
+    private final OllamaConfig.Scheduler config;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, ModelLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Runs tasks passed to submit() once they hold a slot
+    private final ExecutorService workers =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pudel-llm-", 0).factory());
+
+    public LlmScheduler(OllamaConfig ollamaConfig, MeterRegistry meterRegistry) {
+        this.ollamaConfig = ollamaConfig;
+        this.config = ollamaConfig.getScheduler();
+        this.meterRegistry = meterRegistry;
+
+        for (Priority priority : Priority.values()) {
+            Gauge.builder("pudel.llm.queue.pending", this, s -> s.getPendingCount(priority))
+                    .tag("priority", priority.tag())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("pudel.llm.active", this, LlmScheduler::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for a slot on a model. Close the permit when the request is done.
+     * <p>
+     * Interrupts do not abort the wait (JDA heartbeat reconnects interrupt threads); the
+     * interrupt flag is kept for the caller.
+     *
+     * @param priority the request class
+     * @param model    the model the request goes to
+     * @return the held slot
+     * @throws RejectedExecutionException if the request's queue is full
+     */
+    public Permit acquire(Priority priority, String model) {
+        try {
+            return reserve(priority, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Request a slot on a model without blocking.
+     *
+     * @param priority the request class
+     * @param model    the model the request goes to
+     * @return a future that completes with the held slot, or fails with {@link RejectedExecutionException}
+     */
+    public CompletableFuture<Permit> reserve(Priority priority, String model) {
+        return lanes.computeIfAbsent(model, ModelLane::new).reserve(priority);
+    }
+
+    /**
+     * Run a task once it holds a slot on a model, releasing the slot when it finishes.
+     *
+     * @param priority the request class
+     * @param model    the model the task calls
+     * @param task     the model call
+     * @return the task's result
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, String model, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Permit> reservation = reserve(priority, model);
+
+        reservation.whenComplete((permit, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                workers.execute(() -> {
+                    try (permit) {
+                        if (!result.isDone()) {
+                            result.complete(task.call());
+                        }
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permit.close();
+                result.completeExceptionally(e);
+            }
+        });
+        // A caller that times out or cancels while queued gives up its place; no-op once granted
+        result.whenComplete((_, _) -> reservation.cancel(false));
+        return result;
+    }
+
+    public int getPendingCount(Priority priority) {
+        int pending = 0;
+        for (ModelLane lane : lanes.values()) {
+            pending += lane.pendingCount(priority);
+        }
+        return pending;
+    }
+
+    public int getActiveCount() {
+        int active = 0;
+        for (ModelLane lane : lanes.values()) {
+            active += lane.activeCount();
+        }
+        return active;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private int maxParallel(String model) {
+        Integer override = config.getModelParallel().get(model);
+        int perEndpoint = Math.max(1, override != null ? override : config.getMaxParallel());
+        int endpoints = 0;
+        for (OllamaConfig.Endpoint endpoint : ollamaConfig.resolveEndpoints()) {
+            if (endpoint.serves(model)) {
+                endpoints++;
+            }
+        }
+        return perEndpoint * Math.max(1, endpoints);
+    }
+
+    /**
+     * A slot held on a model. Closing it more than once has no effect.
+     */
+    public final class Permit implements AutoCloseable {
+        private final ModelLane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelLane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                lane.release();
+            }
+        }
+    }
+
+    /**
+     * A request waiting for a slot. Interactive requests run first, then lower {@code score}.
+     */
+    private record Ticket(Priority priority, long enqueuedNanos, long score, long sequence,
+                          CompletableFuture<Permit> future) {
+    }
+
+    /**
+     * Slots and waiting requests for one model.
+     */
+    private final class ModelLane {
+        private final String model;
+        private final int slots;
+        private final PriorityQueue<Ticket> queue = new PriorityQueue<>(Comparator
+                .comparing((Ticket ticket) -> ticket.priority() != Priority.INTERACTIVE)
+                .thenComparingLong(Ticket::score)
+                .thenComparingLong(Ticket::sequence));
+        private final int[] pending = new int[Priority.values().length];
+        private int running;
+
+        ModelLane(String model) {
+            this.model = model;
+            this.slots = maxParallel(model);
+        }
+
+        CompletableFuture<Permit> reserve(Priority priority) {
+            long now = System.nanoTime();
+            Ticket ticket = new Ticket(priority, now,
+                    now + priority.ordinal() * TimeUnit.SECONDS.toNanos(config.getAgingSeconds()),
+                    sequence.incrementAndGet(), new CompletableFuture<>());
+
+            boolean queued;
+            synchronized (this) {
+                if (running < slots && queue.isEmpty()) {
+                    running++;
+                    queued = false;
+                } else if (priority == Priority.PASSIVE
+                        && pending[Priority.PASSIVE.ordinal()] >= config.getPassiveQueueCapacity()) {
+                    meterRegistry.counter("pudel.llm.rejected", "priority", priority.tag(), "model", model)
+                            .increment();
+                    return CompletableFuture.failedFuture(
+                            new RejectedExecutionException("Passive queue for " + model + " is full"));
+                } else {
+                    queue.add(ticket);
+                    pending[priority.ordinal()]++;
+                    queued = true;
+                }
+            }
+            if (!queued) {
+                grant(ticket);
+            } else {
+                // A caller that times out or cancels while queued leaves the queue right away
+                ticket.future().whenComplete((_, error) -> {
+                    if (error != null) {
+                        abandon(ticket);
+                    }
+                });
+            }
+            return ticket.future();
+        }
+
+        private synchronized void abandon(Ticket ticket) {
+            if (queue.remove(ticket)) {
+                pending[ticket.priority().ordinal()]--;
+            }
+        }
+
+        /**
+         * Free one slot and hand it to the next waiters. Slots of tickets abandoned between the poll
+         * and the grant are passed on in this loop, not by recursing through {@link Permit#close()}.
+         */
+        void release() {
+            int freed = 1;
+            List<Ticket> granted = new ArrayList<>(1);
+            while (freed > 0) {
+                granted.clear();
+                synchronized (this) {
+                    running -= freed;
+                    while (running < slots && !queue.isEmpty()) {
+                        Ticket next = queue.poll();
+                        pending[next.priority().ordinal()]--;
+                        running++;
+                        granted.add(next);
+                    }
+                }
+                freed = 0;
+                // Complete outside the lock; waiters may run continuations inline
+                for (Ticket ticket : granted) {
+                    if (!grant(ticket)) {
+                        freed++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hand a slot to a ticket.
+         *
+         * @return false if the caller gave up while waiting; the slot is still taken and must be released
+         */
+        private boolean grant(Ticket ticket) {
+            meterRegistry.timer("pudel.llm.queue.wait", "priority", ticket.priority().tag(), "model", model)
+                    .record(System.nanoTime() - ticket.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            if (!ticket.future().complete(new Permit(this))) {
+                logger.debug("Abandoned {} request for {}, releasing its slot", ticket.priority().tag(), model);
+                return false;
+            }
+            return true;
+        }
+
+        synchronized int pendingCount(Priority priority) {
+            return pending[priority.ordinal()];
+        }
+
+        synchronized int activeCount() {
+            return running;
+        }
+    }
+}